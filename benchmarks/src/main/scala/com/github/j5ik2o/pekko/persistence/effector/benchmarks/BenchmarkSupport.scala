@@ -0,0 +1,141 @@
+package com.github.j5ik2o.pekko.persistence.effector.benchmarks
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceEffectorConfig, PersistenceId, PersistenceMode}
+import com.typesafe.config.{Config, ConfigFactory}
+import org.apache.pekko.actor.typed.scaladsl.AskPattern.*
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+import org.apache.pekko.Done
+import org.apache.pekko.actor.typed.{ActorRef, ActorSystem, Behavior, Scheduler, Terminated}
+import org.apache.pekko.util.Timeout
+
+import java.util.UUID
+import java.util.concurrent.atomic.AtomicLong
+import scala.concurrent.duration.*
+import scala.concurrent.{Await, Future, Promise}
+
+/**
+ * Helpers shared by the benchmarks
+ */
+object BenchmarkSupport {
+
+  private val actorCounter = new AtomicLong(0L)
+
+  given Timeout = Timeout(30.seconds)
+
+  /**
+   * Create the configuration of an actor system whose journal and snapshot store live in a fresh directory under
+   * target/benchmarks, so that every trial starts from an empty store.
+   *
+   * @return
+   *   Configuration
+   */
+  def freshConfig(): Config = {
+    val dir = s"target/benchmarks/${UUID.randomUUID()}"
+    ConfigFactory
+      .parseString(s"""
+                      |pekko.persistence.journal.leveldb.dir = "$dir/journal"
+                      |pekko.persistence.snapshot-store.local.dir = "$dir/snapshot"
+                      |""".stripMargin)
+      .withFallback(ConfigFactory.load())
+  }
+
+  /**
+   * Start an actor system for a benchmark trial.
+   *
+   * @param name
+   *   Name of the actor system
+   * @return
+   *   Actor system
+   */
+  def startSystem(name: String): ActorSystem[Nothing] =
+    ActorSystem(Behaviors.empty[Nothing], name, freshConfig())
+
+  /**
+   * Terminate an actor system and wait for its termination.
+   *
+   * @param system
+   *   Actor system
+   */
+  def stopSystem(system: ActorSystem[?]): Unit = {
+    system.terminate()
+    Await.result(system.whenTerminated, 30.seconds)
+  }
+
+  /**
+   * Spawn an actor with a unique name.
+   *
+   * @param system
+   *   Actor system
+   * @param behavior
+   *   Behavior of the actor
+   * @return
+   *   Actor reference
+   */
+  def spawn[M](system: ActorSystem[?], behavior: Behavior[M]): ActorRef[M] =
+    system.systemActorOf(behavior, s"benchmark-${actorCounter.incrementAndGet()}")
+
+  /**
+   * Send a message that stops an actor and wait until the actor has terminated.
+   *
+   * @param system
+   *   Actor system
+   * @param target
+   *   Actor to stop
+   * @param stop
+   *   Message that makes the actor stop
+   */
+  def stopAndAwait[M](system: ActorSystem[?], target: ActorRef[M], stop: M): Unit = {
+    val terminated = Promise[Done]()
+    spawn(
+      system,
+      Behaviors.setup[Nothing] { context =>
+        context.watch(target)
+        target ! stop
+        Behaviors.receiveSignal[Nothing] { case (_, Terminated(_)) =>
+          terminated.success(Done)
+          Behaviors.stopped
+        }
+      },
+    )
+    Await.result(terminated.future, 30.seconds)
+  }
+
+  /**
+   * Send a request and wait for the reply.
+   *
+   * @param system
+   *   Actor system
+   * @param target
+   *   Actor to send the request to
+   * @param request
+   *   Function creating the request from the reply address
+   * @return
+   *   Reply
+   */
+  def askAndAwait[M, R](system: ActorSystem[?], target: ActorRef[M], request: ActorRef[R] => M): R = {
+    given Scheduler = system.scheduler
+    val reply: Future[R] = target.ask(request)
+    Await.result(reply, 30.seconds)
+  }
+
+  /**
+   * Create the effector configuration of the counter.
+   *
+   * @param persistenceId
+   *   Persistence ID
+   * @param mode
+   *   Persistence mode
+   * @return
+   *   Configuration
+   */
+  def counterConfig(
+    persistenceId: PersistenceId,
+    mode: PersistenceMode,
+  ): PersistenceEffectorConfig[CounterState, CounterEvent, CounterCommand] =
+    PersistenceEffectorConfig.create[CounterState, CounterEvent, CounterCommand](
+      persistenceId = persistenceId,
+      initialState = CounterState.Empty,
+      applyEvent = (state, event) => state.applyEvent(event),
+      persistenceMode = mode,
+    )
+}
@@ -0,0 +1,68 @@
+package com.github.j5ik2o.pekko.persistence.effector.benchmarks
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceId, PersistenceMode, RecoveryConfig}
+import org.apache.pekko.actor.typed.ActorSystem
+import org.openjdk.jmh.annotations.*
+
+import java.util.concurrent.TimeUnit
+import scala.compiletime.uninitialized
+
+/**
+ * Time until an actor is ready after replaying a long journal without snapshots, with the default recovery, with a
+ * chunked recovery folding on the actor thread, and with a chunked recovery folding on the blocking I/O dispatcher.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+class ChunkedRecoveryBenchmark {
+
+  @Param(Array("Default", "Chunked", "Dispatcher"))
+  var recovery: String = uninitialized
+
+  @Param(Array("10000"))
+  var events: Int = uninitialized
+
+  private var system: ActorSystem[Nothing] = uninitialized
+
+  private var persistenceId: PersistenceId = uninitialized
+
+  private def spawnCounter() = {
+    val config = BenchmarkSupport.counterConfig(persistenceId, PersistenceMode.Persisted)
+    BenchmarkSupport.spawn(
+      system,
+      EffectorCounter(recovery match {
+        case "Chunked" => config.withRecoveryConfig(RecoveryConfig(chunkSize = 1000))
+        case "Dispatcher" =>
+          config.withRecoveryConfig(
+            RecoveryConfig(chunkSize = 1000, dispatcher = Some("pekko.actor.default-blocking-io-dispatcher")))
+        case _ => config
+      }),
+    )
+  }
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    system = BenchmarkSupport.startSystem("chunked-recovery-benchmark")
+    persistenceId = PersistenceId.ofUniqueId(s"chunked-recovery-benchmark-$recovery-$events")
+
+    val writer = spawnCounter()
+    (1 to events).foreach(_ => BenchmarkSupport.askAndAwait(system, writer, CounterCommand.Increment(_)))
+    writer ! CounterCommand.Stop
+  }
+
+  @TearDown(Level.Trial)
+  def tearDown(): Unit =
+    BenchmarkSupport.stopSystem(system)
+
+  @Benchmark
+  def recover(): Long = {
+    val counter = spawnCounter()
+    // The request is stashed until recovery has completed
+    val value: Long = BenchmarkSupport.askAndAwait(system, counter, CounterCommand.GetValue(_))
+    counter ! CounterCommand.Stop
+    value
+  }
+}
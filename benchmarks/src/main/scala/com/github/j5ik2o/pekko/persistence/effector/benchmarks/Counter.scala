@@ -0,0 +1,103 @@
+package com.github.j5ik2o.pekko.persistence.effector.benchmarks
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceEffector, PersistenceEffectorConfig}
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+import org.apache.pekko.actor.typed.{ActorRef, Behavior}
+
+/**
+ * State of the counter used by the benchmarks
+ *
+ * @param value
+ *   Current value
+ */
+final case class CounterState(value: Long) {
+  def applyEvent(event: CounterEvent): CounterState = event match {
+    case CounterEvent.Incremented(amount) => copy(value = value + amount)
+  }
+}
+
+object CounterState {
+  val Empty: CounterState = CounterState(0L)
+}
+
+/**
+ * Events of the counter used by the benchmarks
+ */
+enum CounterEvent {
+  case Incremented(amount: Int)
+}
+
+/**
+ * Commands of the counter used by the benchmarks
+ */
+enum CounterCommand {
+
+  /**
+   * Persist an increment and reply with the new value once the event is persisted
+   */
+  case Increment(replyTo: ActorRef[Long])
+
+  /**
+   * Persist `count` increments with a single multi-event persist and reply with the new value once they are persisted
+   */
+  case IncrementBatch(count: Int, replyTo: ActorRef[Long])
+
+  /**
+   * Reply with the current value
+   */
+  case GetValue(replyTo: ActorRef[Long])
+
+  /**
+   * Save a snapshot of the current state and reply with its value once the snapshot is saved
+   */
+  case TakeSnapshot(replyTo: ActorRef[Long])
+
+  /**
+   * Stop the actor
+   */
+  case Stop
+}
+
+/**
+ * Counter actor built on PersistenceEffector
+ */
+object EffectorCounter {
+
+  def apply(config: PersistenceEffectorConfig[CounterState, CounterEvent, CounterCommand]): Behavior[CounterCommand] =
+    Behaviors.setup[CounterCommand] { implicit ctx =>
+      PersistenceEffector.fromConfig(config) { case (state, effector) =>
+        handler(state, effector)
+      }
+    }
+
+  private def handler(
+    state: CounterState,
+    effector: PersistenceEffector[CounterState, CounterEvent, CounterCommand],
+  ): Behavior[CounterCommand] =
+    Behaviors.receiveMessagePartial {
+      case CounterCommand.Increment(replyTo) =>
+        val event = CounterEvent.Incremented(1)
+        val newState = state.applyEvent(event)
+        effector.persistEvent(event) { _ =>
+          replyTo ! newState.value
+          handler(newState, effector)
+        }
+      case CounterCommand.IncrementBatch(count, replyTo) =>
+        val events = Seq.fill(count)(CounterEvent.Incremented(1))
+        val newState = events.foldLeft(state)(_.applyEvent(_))
+        effector.persistEvents(events) { _ =>
+          replyTo ! newState.value
+          handler(newState, effector)
+        }
+      case CounterCommand.GetValue(replyTo) =>
+        replyTo ! state.value
+        Behaviors.same
+      case CounterCommand.TakeSnapshot(replyTo) =>
+        effector.persistSnapshot(state, force = true) { snapshot =>
+          replyTo ! snapshot.value
+          handler(snapshot, effector)
+        }
+      case CounterCommand.Stop =>
+        Behaviors.stopped
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.j5ik2o.pekko.persistence.effector.benchmarks
+
+import org.apache.pekko.actor.typed.{ActorRef, ActorSystem, Behavior}
+import org.apache.pekko.persistence.typed.PersistenceId
+import org.apache.pekko.persistence.typed.scaladsl.{Effect, EventSourcedBehavior}
+import org.openjdk.jmh.annotations.*
+
+import java.util.concurrent.TimeUnit
+import scala.compiletime.uninitialized
+
+/**
+ * Baseline for [[PersistEventBenchmark]]: the same counter implemented with a plain EventSourcedBehavior on the same
+ * LevelDB journal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput, Mode.SampleTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+class EventSourcedBehaviorBenchmark {
+
+  private var system: ActorSystem[Nothing] = uninitialized
+
+  private var counter: ActorRef[CounterCommand] = uninitialized
+
+  private def eventSourcedCounter(persistenceId: PersistenceId): Behavior[CounterCommand] =
+    EventSourcedBehavior[CounterCommand, CounterEvent, CounterState](
+      persistenceId = persistenceId,
+      emptyState = CounterState.Empty,
+      commandHandler = (state, command) =>
+        command match {
+          case CounterCommand.Increment(replyTo) =>
+            Effect.persist(CounterEvent.Incremented(1)).thenRun(newState => replyTo ! newState.value)
+          case CounterCommand.IncrementBatch(count, replyTo) =>
+            Effect.persist(Seq.fill(count)(CounterEvent.Incremented(1))).thenRun(newState => replyTo ! newState.value)
+          case CounterCommand.GetValue(replyTo) =>
+            Effect.reply(replyTo)(state.value)
+          case CounterCommand.TakeSnapshot(replyTo) =>
+            Effect.reply(replyTo)(state.value)
+          case CounterCommand.Stop =>
+            Effect.stop()
+        },
+      eventHandler = (state, event) => state.applyEvent(event),
+    )
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    system = BenchmarkSupport.startSystem("event-sourced-behavior-benchmark")
+    counter = BenchmarkSupport.spawn(system, eventSourcedCounter(PersistenceId.ofUniqueId("event-sourced-benchmark")))
+  }
+
+  @TearDown(Level.Trial)
+  def tearDown(): Unit =
+    BenchmarkSupport.stopSystem(system)
+
+  @Benchmark
+  def persistEvent(): Long =
+    BenchmarkSupport.askAndAwait(system, counter, CounterCommand.Increment(_))
+}
@@ -0,0 +1,50 @@
+package com.github.j5ik2o.pekko.persistence.effector.benchmarks
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceId, PersistenceMode, SnapshotCodec}
+import org.apache.pekko.actor.typed.{ActorRef, ActorSystem}
+import org.openjdk.jmh.annotations.*
+
+import java.util.concurrent.TimeUnit
+import scala.compiletime.uninitialized
+
+/**
+ * Latency of a multi-event persist of many small events to the LevelDB journal, written as one journal event per event,
+ * or as a single packed journal event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+class PackedBatchBenchmark {
+
+  @Param(Array("false", "true"))
+  var packed: Boolean = uninitialized
+
+  @Param(Array("50"))
+  var events: Int = uninitialized
+
+  private var system: ActorSystem[Nothing] = uninitialized
+
+  private var counter: ActorRef[CounterCommand] = uninitialized
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    system = BenchmarkSupport.startSystem("packed-batch-benchmark")
+    val config = BenchmarkSupport.counterConfig(
+      PersistenceId.ofUniqueId(s"packed-batch-benchmark-$packed-$events"),
+      PersistenceMode.Persisted)
+    counter = BenchmarkSupport.spawn(
+      system,
+      EffectorCounter(if (packed) config.withPackedBatches(SnapshotCodec.Deflate) else config))
+  }
+
+  @TearDown(Level.Trial)
+  def tearDown(): Unit =
+    BenchmarkSupport.stopSystem(system)
+
+  @Benchmark
+  def persistEvents(): Long =
+    BenchmarkSupport.askAndAwait(system, counter, CounterCommand.IncrementBatch(events, _))
+}
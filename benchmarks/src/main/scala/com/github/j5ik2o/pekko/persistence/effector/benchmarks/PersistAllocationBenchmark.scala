@@ -0,0 +1,52 @@
+package com.github.j5ik2o.pekko.persistence.effector.benchmarks
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceId, PersistenceMode}
+import com.typesafe.config.ConfigFactory
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+import org.apache.pekko.actor.typed.{ActorRef, ActorSystem}
+import org.openjdk.jmh.annotations.*
+
+import java.util.concurrent.TimeUnit
+import scala.compiletime.uninitialized
+
+/**
+ * Allocations of the effector hot path per persisted event. The Persisted mode writes to the in-memory journal of Pekko
+ * Persistence, so that journal I/O does not hide the allocations of the effector. Run it with the GC profiler and
+ * compare `gc.alloc.rate.norm` (bytes per persisted event) between revisions:
+ *
+ * {{{
+ * sbt "benchmarks/Jmh/run -prof gc PersistAllocationBenchmark"
+ * }}}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+class PersistAllocationBenchmark {
+
+  private var system: ActorSystem[Nothing] = uninitialized
+
+  private var counter: ActorRef[CounterCommand] = uninitialized
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    val config = ConfigFactory
+      .parseString("pekko.persistence.journal.plugin = pekko.persistence.journal.inmem")
+      .withFallback(BenchmarkSupport.freshConfig())
+    system = ActorSystem(Behaviors.empty[Nothing], "persist-allocation-benchmark", config)
+    val persistenceId = PersistenceId.ofUniqueId("persist-allocation-benchmark")
+    counter = BenchmarkSupport.spawn(
+      system,
+      EffectorCounter(BenchmarkSupport.counterConfig(persistenceId, PersistenceMode.Persisted)))
+  }
+
+  @TearDown(Level.Trial)
+  def tearDown(): Unit =
+    BenchmarkSupport.stopSystem(system)
+
+  @Benchmark
+  def persistEvent(): Long =
+    BenchmarkSupport.askAndAwait(system, counter, CounterCommand.Increment(_))
+}
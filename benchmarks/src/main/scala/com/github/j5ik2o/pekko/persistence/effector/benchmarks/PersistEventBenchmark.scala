@@ -0,0 +1,53 @@
+package com.github.j5ik2o.pekko.persistence.effector.benchmarks
+
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.InMemoryEventStore
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceId, PersistenceMode}
+import org.apache.pekko.actor.typed.{ActorRef, ActorSystem}
+import org.openjdk.jmh.annotations.*
+
+import java.util.concurrent.TimeUnit
+import scala.compiletime.uninitialized
+
+/**
+ * Throughput and latency of a persistEvent round trip (command, persist, reply) for each persistence mode. The
+ * Persisted and Direct modes write to a local LevelDB journal, through the persistence store actor of the entity and
+ * directly to the journal respectively; compare them with [[EventSourcedBehaviorBenchmark]] to get the overhead of the
+ * effector over a plain EventSourcedBehavior.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput, Mode.SampleTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+class PersistEventBenchmark {
+
+  @Param(Array("Persisted", "Direct", "Ephemeral", "Deferred"))
+  var mode: String = uninitialized
+
+  private var system: ActorSystem[Nothing] = uninitialized
+
+  private var counter: ActorRef[CounterCommand] = uninitialized
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    system = BenchmarkSupport.startSystem("persist-event-benchmark")
+    val persistenceId = PersistenceId.ofUniqueId("persist-event-benchmark")
+    counter = BenchmarkSupport.spawn(
+      system,
+      EffectorCounter(BenchmarkSupport.counterConfig(persistenceId, PersistenceMode.valueOf(mode))))
+  }
+
+  @TearDown(Level.Iteration)
+  def discardEphemeralEvents(): Unit =
+    // The running counter keeps its state, so only the retained events are discarded to bound the heap
+    InMemoryEventStore.clear()
+
+  @TearDown(Level.Trial)
+  def tearDown(): Unit =
+    BenchmarkSupport.stopSystem(system)
+
+  @Benchmark
+  def persistEvent(): Long =
+    BenchmarkSupport.askAndAwait(system, counter, CounterCommand.Increment(_))
+}
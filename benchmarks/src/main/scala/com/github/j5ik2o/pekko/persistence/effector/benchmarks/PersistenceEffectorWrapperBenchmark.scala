@@ -0,0 +1,84 @@
+package com.github.j5ik2o.pekko.persistence.effector.benchmarks
+
+import com.github.j5ik2o.pekko.persistence.effector.internal.javaimpl.PersistenceEffectorWrapper
+import com.github.j5ik2o.pekko.persistence.effector.javadsl.PersistenceEffector as JPersistenceEffector
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.PersistenceEffector
+import org.apache.pekko.actor.typed.Behavior
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+import org.openjdk.jmh.annotations.*
+
+import java.util.concurrent.TimeUnit
+import scala.compiletime.uninitialized
+import scala.jdk.CollectionConverters.*
+
+/**
+ * Overhead of the Java-to-Scala conversion done by PersistenceEffectorWrapper. The wrapped effector invokes the
+ * callback immediately, so only the conversion of functions and collections is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+class PersistenceEffectorWrapperBenchmark {
+
+  @Param(Array("1", "10", "100"))
+  var batchSize: Int = uninitialized
+
+  private val behavior: Behavior[CounterCommand] = Behaviors.empty
+
+  private val scalaEffector: PersistenceEffector[CounterState, CounterEvent, CounterCommand] =
+    new PersistenceEffector[CounterState, CounterEvent, CounterCommand] {
+      override def persistEvent(event: CounterEvent)(
+        onPersisted: CounterEvent => Behavior[CounterCommand]): Behavior[CounterCommand] =
+        onPersisted(event)
+
+      override def persistEvents(events: Seq[CounterEvent])(
+        onPersisted: Seq[CounterEvent] => Behavior[CounterCommand]): Behavior[CounterCommand] =
+        onPersisted(events)
+
+      override def persistSnapshot(snapshot: CounterState, force: Boolean)(
+        onPersisted: CounterState => Behavior[CounterCommand]): Behavior[CounterCommand] =
+        onPersisted(snapshot)
+
+      override def persistEventWithSnapshot(event: CounterEvent, snapshot: CounterState, forceSnapshot: Boolean)(
+        onPersisted: CounterEvent => Behavior[CounterCommand]): Behavior[CounterCommand] =
+        onPersisted(event)
+
+      override def persistEventsWithSnapshot(events: Seq[CounterEvent], snapshot: CounterState, forceSnapshot: Boolean)(
+        onPersisted: Seq[CounterEvent] => Behavior[CounterCommand]): Behavior[CounterCommand] =
+        onPersisted(events)
+    }
+
+  private val javaEffector: JPersistenceEffector[CounterState, CounterEvent, CounterCommand] =
+    PersistenceEffectorWrapper.create(scalaEffector)
+
+  private val event: CounterEvent = CounterEvent.Incremented(1)
+
+  private var scalaEvents: Seq[CounterEvent] = uninitialized
+
+  private var javaEvents: java.util.List[CounterEvent] = uninitialized
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    scalaEvents = Vector.fill(batchSize)(event)
+    javaEvents = scalaEvents.asJava
+  }
+
+  @Benchmark
+  def scalaPersistEvent(): Behavior[CounterCommand] =
+    scalaEffector.persistEvent(event)(_ => behavior)
+
+  @Benchmark
+  def javaPersistEvent(): Behavior[CounterCommand] =
+    javaEffector.persistEvent(event, _ => behavior)
+
+  @Benchmark
+  def scalaPersistEvents(): Behavior[CounterCommand] =
+    scalaEffector.persistEvents(scalaEvents)(_ => behavior)
+
+  @Benchmark
+  def javaPersistEvents(): Behavior[CounterCommand] =
+    javaEffector.persistEvents(javaEvents, _ => behavior)
+}
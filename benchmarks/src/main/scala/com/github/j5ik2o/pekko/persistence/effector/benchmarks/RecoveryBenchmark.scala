@@ -0,0 +1,63 @@
+package com.github.j5ik2o.pekko.persistence.effector.benchmarks
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceId, PersistenceMode}
+import org.apache.pekko.actor.typed.ActorSystem
+import org.openjdk.jmh.annotations.*
+
+import java.util.concurrent.TimeUnit
+import scala.compiletime.uninitialized
+
+/**
+ * Time until an actor is ready after recovering from a snapshot followed by a number of events.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+class RecoveryBenchmark {
+
+  // Number of events covered by the snapshot
+  private val EventsBeforeSnapshot = 100
+
+  @Param(Array("Persisted", "Ephemeral"))
+  var mode: String = uninitialized
+
+  @Param(Array("0", "100", "1000"))
+  var eventsAfterSnapshot: Int = uninitialized
+
+  private var system: ActorSystem[Nothing] = uninitialized
+
+  private var persistenceId: PersistenceId = uninitialized
+
+  private def spawnCounter() =
+    BenchmarkSupport.spawn(
+      system,
+      EffectorCounter(BenchmarkSupport.counterConfig(persistenceId, PersistenceMode.valueOf(mode))))
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    system = BenchmarkSupport.startSystem("recovery-benchmark")
+    persistenceId = PersistenceId.ofUniqueId(s"recovery-benchmark-$mode-$eventsAfterSnapshot")
+
+    val writer = spawnCounter()
+    (1 to EventsBeforeSnapshot).foreach(_ => BenchmarkSupport.askAndAwait(system, writer, CounterCommand.Increment(_)))
+    BenchmarkSupport.askAndAwait(system, writer, CounterCommand.TakeSnapshot(_))
+    (1 to eventsAfterSnapshot).foreach(_ => BenchmarkSupport.askAndAwait(system, writer, CounterCommand.Increment(_)))
+    writer ! CounterCommand.Stop
+  }
+
+  @TearDown(Level.Trial)
+  def tearDown(): Unit =
+    BenchmarkSupport.stopSystem(system)
+
+  @Benchmark
+  def recover(): Long = {
+    val counter = spawnCounter()
+    // The request is stashed until recovery has completed
+    val value: Long = BenchmarkSupport.askAndAwait(system, counter, CounterCommand.GetValue(_))
+    counter ! CounterCommand.Stop
+    value
+  }
+}
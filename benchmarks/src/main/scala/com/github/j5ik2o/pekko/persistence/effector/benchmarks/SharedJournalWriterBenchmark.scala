@@ -0,0 +1,61 @@
+package com.github.j5ik2o.pekko.persistence.effector.benchmarks
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{BatchingConfig, PersistenceId, PersistenceMode}
+import org.apache.pekko.actor.typed.scaladsl.AskPattern.*
+import org.apache.pekko.actor.typed.{ActorRef, ActorSystem, Scheduler}
+import org.apache.pekko.util.Timeout
+import org.openjdk.jmh.annotations.*
+
+import java.util.concurrent.TimeUnit
+import scala.compiletime.uninitialized
+import scala.concurrent.duration.*
+import scala.concurrent.{Await, ExecutionContext, Future}
+
+/**
+ * Throughput of many entities persisting concurrently in Direct mode on a local LevelDB journal, each writing to the
+ * journal on its own or through the journal writer shared by the node. Each invocation persists one event in every
+ * entity, so the score multiplied by `entities` is the number of events per millisecond.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+class SharedJournalWriterBenchmark {
+
+  @Param(Array("false", "true"))
+  var shared: Boolean = uninitialized
+
+  @Param(Array("64"))
+  var entities: Int = uninitialized
+
+  private var system: ActorSystem[Nothing] = uninitialized
+
+  private var counters: Vector[ActorRef[CounterCommand]] = uninitialized
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    system = BenchmarkSupport.startSystem("shared-journal-writer-benchmark")
+    counters = Vector.tabulate(entities) { i =>
+      val config = BenchmarkSupport.counterConfig(PersistenceId.ofUniqueId(s"counter-$i"), PersistenceMode.Direct)
+      BenchmarkSupport.spawn(
+        system,
+        EffectorCounter(
+          if (shared) config.withSharedWriteBatching(BatchingConfig(maxBatchSize = entities, maxLatency = 1.millis))
+          else config))
+    }
+  }
+
+  @TearDown(Level.Trial)
+  def tearDown(): Unit =
+    BenchmarkSupport.stopSystem(system)
+
+  @Benchmark
+  def persistEventInEveryEntity(): Seq[Long] = {
+    given Timeout = Timeout(30.seconds)
+    given Scheduler = system.scheduler
+    given ExecutionContext = system.executionContext
+    Await.result(Future.sequence(counters.map(_.ask[Long](CounterCommand.Increment(_)))), 30.seconds)
+  }
+}
@@ -0,0 +1,48 @@
+package com.github.j5ik2o.pekko.persistence.effector.benchmarks
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.SnapshotCriteria
+import org.openjdk.jmh.annotations.*
+
+import java.util.concurrent.TimeUnit
+import scala.compiletime.uninitialized
+
+/**
+ * Cost of evaluating SnapshotCriteria, as done by the effector after every persisted event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+class SnapshotCriteriaBenchmark {
+
+  @Param(Array("countBased", "eventType", "combinedAny", "combinedAll"))
+  var criteriaType: String = uninitialized
+
+  private var criteria: SnapshotCriteria[CounterState, CounterEvent] = uninitialized
+
+  private val event: CounterEvent = CounterEvent.Incremented(1)
+
+  private val state: CounterState = CounterState(42L)
+
+  private var sequenceNumber: Long = 0L
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    val countBased = SnapshotCriteria.every[CounterState, CounterEvent](100)
+    val eventType = SnapshotCriteria.onEventType[CounterState, CounterEvent](classOf[CounterEvent.Incremented])
+    criteria = criteriaType match {
+      case "countBased" => countBased
+      case "eventType" => eventType
+      case "combinedAny" => SnapshotCriteria.Combined(Seq(countBased, eventType), requireAll = false)
+      case "combinedAll" => SnapshotCriteria.Combined(Seq(countBased, eventType), requireAll = true)
+    }
+  }
+
+  @Benchmark
+  def evaluate(): Boolean = {
+    sequenceNumber += 1
+    criteria.shouldTakeSnapshot(event, state, sequenceNumber)
+  }
+}
@@ -0,0 +1,61 @@
+package com.github.j5ik2o.pekko.persistence.effector.benchmarks
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceId, PersistenceMode}
+import org.apache.pekko.actor.typed.ActorSystem
+import org.openjdk.jmh.annotations.*
+
+import java.util.concurrent.TimeUnit
+import scala.compiletime.uninitialized
+
+/**
+ * Time to reactivate an entity on the same node, i.e. until a restarted actor is ready and has stopped again, after
+ * writing a journal without snapshots, with and without state caching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.AverageTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+class StateCacheBenchmark {
+
+  @Param(Array("false", "true"))
+  var cached: Boolean = uninitialized
+
+  @Param(Array("10000"))
+  var events: Int = uninitialized
+
+  private var system: ActorSystem[Nothing] = uninitialized
+
+  private var persistenceId: PersistenceId = uninitialized
+
+  private def spawnCounter() =
+    BenchmarkSupport.spawn(
+      system,
+      EffectorCounter(BenchmarkSupport.counterConfig(persistenceId, PersistenceMode.Persisted).withStateCaching(cached)),
+    )
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    system = BenchmarkSupport.startSystem("state-cache-benchmark")
+    persistenceId = PersistenceId.ofUniqueId(s"state-cache-benchmark-$cached-$events")
+
+    val writer = spawnCounter()
+    (1 to events).foreach(_ => BenchmarkSupport.askAndAwait(system, writer, CounterCommand.Increment(_)))
+    BenchmarkSupport.stopAndAwait(system, writer, CounterCommand.Stop)
+  }
+
+  @TearDown(Level.Trial)
+  def tearDown(): Unit =
+    BenchmarkSupport.stopSystem(system)
+
+  @Benchmark
+  def reactivate(): Long = {
+    val counter = spawnCounter()
+    // The request is stashed until recovery has completed
+    val value: Long = BenchmarkSupport.askAndAwait(system, counter, CounterCommand.GetValue(_))
+    // The state is cached once the actor has stopped
+    BenchmarkSupport.stopAndAwait(system, counter, CounterCommand.Stop)
+    value
+  }
+}
@@ -0,0 +1,58 @@
+package com.github.j5ik2o.pekko.persistence.effector.benchmarks
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceId, PersistenceMode}
+import org.apache.pekko.actor.typed.ActorSystem
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import java.util.UUID
+
+/**
+ * Test that the counter and the helpers the benchmarks are built on measure what they claim to
+ */
+class EffectorCounterSpec extends AnyWordSpec with Matchers with BeforeAndAfterAll {
+
+  private val system: ActorSystem[Nothing] = BenchmarkSupport.startSystem("effector-counter-spec")
+
+  override def afterAll(): Unit = {
+    BenchmarkSupport.stopSystem(system)
+    super.afterAll()
+  }
+
+  private def spawnCounter(persistenceId: PersistenceId, mode: PersistenceMode) =
+    BenchmarkSupport.spawn(system, EffectorCounter(BenchmarkSupport.counterConfig(persistenceId, mode)))
+
+  private def uniquePersistenceId(prefix: String): PersistenceId =
+    PersistenceId.ofUniqueId(s"$prefix-${UUID.randomUUID()}")
+
+  "EffectorCounter" should {
+    "reply once its increments are persisted in every benchmarked mode" in {
+      for (mode <- PersistenceMode.values) {
+        val counter = spawnCounter(uniquePersistenceId(s"counter-$mode"), mode)
+
+        (1 to 3).map(_ => BenchmarkSupport.askAndAwait(system, counter, CounterCommand.Increment(_))) shouldBe
+          Seq(1L, 2L, 3L)
+        BenchmarkSupport.askAndAwait(system, counter, CounterCommand.IncrementBatch(5, _)) shouldBe 8L
+        BenchmarkSupport.askAndAwait(system, counter, CounterCommand.GetValue(_)) shouldBe 8L
+
+        BenchmarkSupport.stopAndAwait(system, counter, CounterCommand.Stop)
+      }
+    }
+
+    "recover from a snapshot followed by events as set up by the recovery benchmark" in {
+      for (mode <- Seq(PersistenceMode.Persisted, PersistenceMode.Ephemeral)) {
+        val persistenceId = uniquePersistenceId(s"recovery-$mode")
+        val writer = spawnCounter(persistenceId, mode)
+        (1 to 10).foreach(_ => BenchmarkSupport.askAndAwait(system, writer, CounterCommand.Increment(_)))
+        BenchmarkSupport.askAndAwait(system, writer, CounterCommand.TakeSnapshot(_)) shouldBe 10L
+        (1 to 5).foreach(_ => BenchmarkSupport.askAndAwait(system, writer, CounterCommand.Increment(_)))
+        BenchmarkSupport.stopAndAwait(system, writer, CounterCommand.Stop)
+
+        val counter = spawnCounter(persistenceId, mode)
+        BenchmarkSupport.askAndAwait(system, counter, CounterCommand.GetValue(_)) shouldBe 15L
+        BenchmarkSupport.stopAndAwait(system, counter, CounterCommand.Stop)
+      }
+    }
+  }
+}
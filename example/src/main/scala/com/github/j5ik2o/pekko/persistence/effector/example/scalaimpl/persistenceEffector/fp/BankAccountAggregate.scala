@@ -27,6 +27,11 @@ object BankAccountAggregate {
       .withPersistenceMode(persistenceMode)
       .withSnapshotCriteria(SnapshotCriteria.every(2))
       .withRetentionCriteria(RetentionCriteria.snapshotEvery(2))
+      // Answer balance queries with the confirmed state instead of stashing them while a write is in flight
+      .withReadOnlyCommandHandler(ReadOnlyCommandHandler.fromPartialFunction {
+        case (BankAccountAggregateState.Created(_, bankAccount), BankAccountCommand.GetBalance(aggregateId, replyTo)) =>
+          replyTo ! GetBalanceReply.Succeeded(aggregateId, bankAccount.balance)
+      })
     Behaviors.setup[BankAccountCommand] { implicit ctx =>
       PersistenceEffector
         .fromConfig[BankAccountAggregateState, BankAccountEvent, BankAccountCommand](
@@ -11,6 +11,13 @@ public enum PersistenceMode {
    */
   PERSISTENCE,
 
+  /**
+   * Persistence mode where events are saved to disk like {@link #PERSISTENCE}, but written by the
+   * effector directly to the journal plugin actor shared by the entities of the node, instead of
+   * through the persistence store actor of the entity. This saves two message hops per write.
+   */
+  DIRECT,
+
   /**
    * In-memory persistence mode where events and snapshots are only kept in memory. This mode is
    * faster but does not provide durability across application restarts. Useful for testing or
@@ -51,6 +51,12 @@ private[effector] final class PersistenceEffectorWrapper[S, E, M] private (
   override def persistEvent(event: E, onPersisted: java.util.function.Function[E, Behavior[M]]): Behavior[M] =
     underlying.persistEvent(event)(e => onPersisted.apply(e))
 
+  override def persistEvent(
+    event: E,
+    onPersisted: java.util.function.Function[E, Behavior[M]],
+    onFailure: java.util.function.Function[Throwable, Behavior[M]]): Behavior[M] =
+    underlying.persistEvent(event, cause => onFailure.apply(cause))(e => onPersisted.apply(e))
+
   override def persistEvents(
     events: java.util.List[E],
     onPersisted: java.util.function.Function[java.util.List[E], Behavior[M]]): Behavior[M] =
@@ -58,12 +64,27 @@ private[effector] final class PersistenceEffectorWrapper[S, E, M] private (
       onPersisted.apply(es.asJava)
     }
 
+  override def persistEvents(
+    events: java.util.List[E],
+    onPersisted: java.util.function.Function[java.util.List[E], Behavior[M]],
+    onFailure: java.util.function.Function[Throwable, Behavior[M]]): Behavior[M] =
+    underlying.persistEvents(events.asScala.toSeq, cause => onFailure.apply(cause)) { es =>
+      onPersisted.apply(es.asJava)
+    }
+
   override def persistSnapshot(
     snapshot: S,
     force: Boolean,
     onPersisted: java.util.function.Function[S, Behavior[M]]): Behavior[M] =
     underlying.persistSnapshot(snapshot, force)(s => onPersisted.apply(s))
 
+  override def persistSnapshot(
+    snapshot: S,
+    force: Boolean,
+    onPersisted: java.util.function.Function[S, Behavior[M]],
+    onFailure: java.util.function.Function[Throwable, Behavior[M]]): Behavior[M] =
+    underlying.persistSnapshot(snapshot, force, cause => onFailure.apply(cause))(s => onPersisted.apply(s))
+
   override def persistEventWithSnapshot(
     event: E,
     snapshot: S,
@@ -71,6 +92,16 @@ private[effector] final class PersistenceEffectorWrapper[S, E, M] private (
     onPersisted: java.util.function.Function[E, Behavior[M]]): Behavior[M] =
     underlying.persistEventWithSnapshot(event, snapshot, forceSnapshot)(e => onPersisted.apply(e))
 
+  override def persistEventWithSnapshot(
+    event: E,
+    snapshot: S,
+    forceSnapshot: Boolean,
+    onPersisted: java.util.function.Function[E, Behavior[M]],
+    onFailure: java.util.function.Function[Throwable, Behavior[M]]): Behavior[M] =
+    underlying.persistEventWithSnapshot(event, snapshot, forceSnapshot, cause => onFailure.apply(cause)) { e =>
+      onPersisted.apply(e)
+    }
+
   override def persistEventsWithSnapshot(
     events: java.util.List[E],
     snapshot: S,
@@ -79,4 +110,18 @@ private[effector] final class PersistenceEffectorWrapper[S, E, M] private (
     underlying.persistEventsWithSnapshot(events.asScala.toSeq, snapshot, forceSnapshot) { es =>
       onPersisted.apply(es.asJava)
     }
+
+  override def persistEventsWithSnapshot(
+    events: java.util.List[E],
+    snapshot: S,
+    forceSnapshot: Boolean,
+    onPersisted: java.util.function.Function[java.util.List[E], Behavior[M]],
+    onFailure: java.util.function.Function[Throwable, Behavior[M]]): Behavior[M] =
+    underlying.persistEventsWithSnapshot(
+      events.asScala.toSeq,
+      snapshot,
+      forceSnapshot,
+      cause => onFailure.apply(cause)) { es =>
+      onPersisted.apply(es.asJava)
+    }
 }
@@ -0,0 +1,92 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
+  PersistenceEffectorConfig,
+  PersistenceEffectorInstrumentation,
+  StashOverflowStrategy,
+}
+import org.apache.pekko.actor.typed.Behavior
+import org.apache.pekko.actor.typed.javadsl.StashOverflowException
+import org.apache.pekko.actor.typed.scaladsl.{ActorContext, StashBuffer}
+
+import scala.collection.mutable
+
+/**
+ * Stash of the messages received while recovering or waiting for a write, bounded by the stash size of the
+ * configuration. The stashed messages are kept in a queue of their own, so that the overflow strategy can drop the
+ * oldest one, which a StashBuffer only allows by unstashing it. They are moved to the unbounded StashBuffer of the
+ * actor when they are unstashed, and messages stashed again while they are processed go back to the queue, so that an
+ * overflow during [[unstashAll]] applies to the queue only.
+ *
+ * @param ctx
+ *   Actor context
+ * @param stashBuffer
+ *   Unbounded stash buffer of the actor, only used to process the unstashed messages
+ * @param config
+ *   Effector configuration
+ * @tparam M
+ *   Type of message
+ */
+private[effector] final class BoundedStash[M](
+  ctx: ActorContext[M],
+  stashBuffer: StashBuffer[M],
+  config: PersistenceEffectorConfig[?, ?, M],
+) {
+  import config.*
+
+  private val stashed = mutable.Queue.empty[M]
+
+  private val instrumented = PersistenceEffectorInstrumentation.isEnabled(instrumentation)
+
+  /**
+   * Whether no message is stashed or waiting to be processed after an unstash.
+   *
+   * @return
+   *   true if the stash is empty
+   */
+  def isEmpty: Boolean = stashed.isEmpty && stashBuffer.isEmpty
+
+  /**
+   * Stash a message, or apply the stash overflow strategy if the stash is full.
+   *
+   * @param msg
+   *   Message to stash
+   */
+  def stash(msg: M): Unit =
+    if (stashed.size < stashSize) {
+      stashed.enqueue(msg)
+      if (instrumented) instrumentation.messageStashed(persistenceId, stashed.size)
+    } else {
+      if (instrumented) instrumentation.stashOverflowed(persistenceId, stashed.size)
+      stashOverflowStrategy match {
+        case StashOverflowStrategy.Fail =>
+          throw new StashOverflowException(
+            s"Couldn't add [${msg.getClass.getName}] because stash with capacity [$stashSize] is full")
+        case StashOverflowStrategy.DropNewest =>
+          ctx.log.warn("Stash is full, dropping message: {}", msg)
+          ctx.system.deadLetters ! msg
+        case StashOverflowStrategy.DropOldest =>
+          val oldest = stashed.dequeue()
+          ctx.log.warn("Stash is full, dropping oldest message: {}", oldest)
+          ctx.system.deadLetters ! oldest
+          stashed.enqueue(msg)
+        case StashOverflowStrategy.Reject(onRejected) =>
+          ctx.log.debug("Stash is full, rejecting message: {}", msg)
+          onRejected(msg)
+      }
+    }
+
+  /**
+   * Process the stashed messages with a behavior, in the order they were stashed
+   *
+   * @param behavior
+   *   Behavior processing the messages
+   * @return
+   *   The behavior after processing the messages
+   */
+  def unstashAll(behavior: Behavior[M]): Behavior[M] = {
+    stashed.foreach(stashBuffer.stash)
+    stashed.clear()
+    stashBuffer.unstashAll(behavior)
+  }
+}
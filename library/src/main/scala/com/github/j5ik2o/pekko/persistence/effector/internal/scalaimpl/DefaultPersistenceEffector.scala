@@ -1,275 +1,361 @@
 package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
 
 import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.PersistenceStoreProtocol.*
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.SnapshotCoordinator.SnapshotRequest
 import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
   PersistenceEffector,
   PersistenceEffectorConfig,
-  PersistenceId,
-  RetentionCriteria,
+  StateCache,
 }
-import org.apache.pekko.actor.typed.scaladsl.{ActorContext, Behaviors, StashBuffer}
+import org.apache.pekko.actor.typed.scaladsl.{ActorContext, Behaviors}
 import org.apache.pekko.actor.typed.{ActorRef, Behavior}
 
 import scala.compiletime.asMatchable
 
+private[effector] object DefaultPersistenceEffector {
+
+  /**
+   * Reply to a snapshot save or deletion, routed to the effector without going through the message converter so that it
+   * can be handled while the actor keeps processing commands.
+   *
+   * @param reply
+   *   Reply from the persistence store actor
+   */
+  private[effector] final case class SnapshotReplyReceived[S, E](reply: PersistenceReply[S, E])
+
+  /**
+   * Whether requests are pipelined instead of waiting for each reply
+   *
+   * @param config
+   *   Effector configuration
+   * @return
+   *   true if persists are pipelined
+   */
+  private[effector] def isPipelined(config: PersistenceEffectorConfig[?, ?, ?]): Boolean =
+    config.maxInFlightPersists > 1 || config.batchingConfig.isDefined
+
+  /**
+   * Whether replies from the persistence store actor have to be intercepted before they reach the actor behavior
+   *
+   * @param config
+   *   Effector configuration
+   * @return
+   *   true if replies are handled by [[PersistenceReplyInterceptor]]
+   */
+  private[effector] def interceptsReplies(config: PersistenceEffectorConfig[?, ?, ?]): Boolean =
+    isPipelined(config) || config.asyncSnapshots
+
+  /**
+   * Whether journal events are deleted with old snapshots. Replies to event deletions are never waited for, so they are
+   * always consumed by [[PersistenceReplyInterceptor]].
+   *
+   * @param config
+   *   Effector configuration
+   * @return
+   *   true if the retention criteria delete journal events
+   */
+  private[effector] def deletesEvents(config: PersistenceEffectorConfig[?, ?, ?]): Boolean =
+    config.retentionCriteria.exists(_.deleteEventsOnSnapshot)
+
+  /**
+   * Whether [[PersistenceReplyInterceptor]] has to be installed around the actor behavior
+   *
+   * @param config
+   *   Effector configuration
+   * @return
+   *   true if replies may arrive while the effector is not waiting for them
+   */
+  private[effector] def installsInterceptor(config: PersistenceEffectorConfig[?, ?, ?]): Boolean =
+    interceptsReplies(config) || deletesEvents(config) || config.persistTimeout.isDefined ||
+      config.passivation.isDefined || config.stateCaching
+}
+
+/**
+ * Effector of Persisted and Direct mode. The effector assigns the sequence numbers of the persisted events and hands
+ * them to the [[WriteStrategy]] of the configuration, which either waits for each write or pipelines them. Its
+ * collaborators each own one concern: the [[EventJournal]] the events are written to, the [[SnapshotCoordinator]] of
+ * the snapshots and their retention, the [[MessageStash]] of the messages that wait for a reply, and the
+ * [[EntityPassivation]] of an idle entity.
+ */
 private[effector] final class DefaultPersistenceEffector[S, E, M](
   ctx: ActorContext[M],
-  stashBuffer: StashBuffer[M],
+  stash: BoundedStash[M],
   config: PersistenceEffectorConfig[S, E, M],
   persistenceRef: ActorRef[PersistenceCommand[S, E]],
   adapter: ActorRef[PersistenceReply[S, E]],
   initialSequenceNr: Long,
+  recoveredState: S,
+  replayedEvents: Long,
+  recoveryDurationNanos: Long,
+  recoveredSnapshotSequenceNr: Long,
+  directWriter: Option[DirectJournalWriter[S, E]],
 ) extends PersistenceEffector[S, E, M] {
+  import DefaultPersistenceEffector.*
   import config.*
 
-  // Manage the current sequence number for each PersistenceId
-  // Set initial value with initialSequenceNr
-  private val sequenceNumbers =
-    scala.collection.mutable.Map[PersistenceId, Long](persistenceId -> initialSequenceNr)
+  private val deletesEventsOnSnapshot: Boolean = deletesEvents(config)
 
-  // Change the default value of getOrElse to initialSequenceNr (however, it should normally exist in the map)
-  private def getCurrentSequenceNumber: Long =
-    sequenceNumbers.getOrElse(persistenceId, initialSequenceNr)
+  // Whether multi-event persists are written as a single packed journal event. The configuration rejects packed
+  // batches in Direct mode and with batching, whose batches collect the events of several persists.
+  private val packsBatches: Boolean = packedBatchCodec.isDefined
 
-  private def incrementSequenceNumber(inc: Long = 1): Long = {
-    val current = getCurrentSequenceNumber
-    val newValue = current + inc
-    sequenceNumbers.update(persistenceId, newValue)
-    newValue
-  }
+  private val tracksConfirmedState: Boolean =
+    readOnlyCommandHandler.isDefined || passivation.exists(_.snapshotOnPassivate) || stateCaching
+
+  private val journal = new EventJournal[S, E, M](
+    ctx,
+    persistenceRef,
+    directWriter,
+    packsBatches,
+    initialSequenceNr,
+    recoveredState,
+    applyEvent,
+    tracksConfirmedState,
+  )
+
+  private val snapshots = new SnapshotCoordinator[S, E, M](
+    ctx,
+    config,
+    journal,
+    adapter,
+    initialSequenceNr,
+    replayedEvents,
+    recoveryDurationNanos,
+    recoveredSnapshotSequenceNr,
+  )
+
+  // Interceptor around every behavior the effector hands to the actor. Pekko does not nest an interceptor in itself, so
+  // the behaviors returned from within the interceptor keep a single instance around them.
+  private val replyInterceptor: Option[PersistenceReplyInterceptor[S, E, M]] =
+    Option.when(installsInterceptor(config))(new PersistenceReplyInterceptor(this))
+
+  private val messages = new MessageStash[S, E, M](ctx, stash, config, journal, replyInterceptor)
+
+  private val writes: WriteStrategy[S, E, M] =
+    if (isPipelined(config)) new PipelinedWrites(ctx, config, journal, snapshots, messages)
+    else new SequentialWrites(ctx, config, journal, snapshots, messages)
+
+  private val entityPassivation: Option[EntityPassivation[S, E, M]] =
+    passivation.map { settings =>
+      new EntityPassivation(ctx, persistenceId, settings, journal, snapshots, messages, () => awaitingReplies)
+    }
 
   /**
-   * Calculate the maximum sequence number of snapshots to be deleted based on RetentionCriteria
+   * Whether a reply or a write is pending, in which case the entity is not passivated
+   */
+  private def awaitingReplies: Boolean =
+    writes.awaitingReplies || snapshots.savePending || !messages.isEmpty
+
+  /**
+   * Start the behavior returned by `onReady`, processing the messages stashed during recovery
    *
-   * @param currentSequenceNumber
-   *   Current sequence number
-   * @param retention
-   *   Retention policy
+   * @param ready
+   *   Behavior returned by `onReady`
    * @return
-   *   Maximum sequence number of snapshots to be deleted (0 if there are no snapshots to delete)
+   *   The behavior of the actor
    */
-  private def calculateMaxSequenceNumberToDelete(
-    currentSequenceNumber: Long,
-    retention: RetentionCriteria,
-  ): Long = {
-    val result = RetentionHelper.calculateMaxSequenceNumberToDelete(currentSequenceNumber, retention)
-    ctx.log.debug(
-      "Calculated maxSequenceNumberToDelete: currentSequenceNumber={}, retention={}, result={}",
-      currentSequenceNumber,
-      retention,
-      result,
-    )
-    result
-  }
+  private[effector] def start(ready: Behavior[M]): Behavior[M] =
+    messages.start(ready)
 
   /**
-   * Generic method to wait for a specified message type
+   * Turn a reply of the journal to a direct write into the reply of the persistence store actor it stands for (Direct
+   * mode). Other messages are returned as is.
    *
-   * @param messageMatcher
-   *   Function to detect messages
-   * @param logMessage
-   *   Log message on success
-   * @param onSuccess
-   *   Callback on success
-   * @tparam T
-   *   Type of result to be extracted
+   * @param msg
+   *   Received message
    * @return
-   *   Message waiting behavior
+   *   The adapted message
    */
-  private def waitForMessage[T](
-    messageMatcher: M => Option[T],
-    logMessage: String,
-    onSuccess: T => Behavior[M],
-  ): Behavior[M] =
-    Behaviors.receiveMessage { msg =>
-      ctx.log.debug("Waiting for message: {}", msg)
-      msg.asMatchable match {
-        case msg if messageMatcher(msg).isDefined =>
-          val result = messageMatcher(msg).get
-          ctx.log.debug(s"$logMessage: {}", msg)
-          stashBuffer.unstashAll(onSuccess(result))
-        case other =>
-          ctx.log.debug("Stashing message: {}", other)
-          stashBuffer.stash(other)
-          Behaviors.same
-      }
-    }
+  private[scalaimpl] def adaptJournalResponse(msg: M): M =
+    journal.adaptResponse(msg)
 
   /**
-   * Delete old snapshots based on RetentionCriteria
+   * Consume a message of the effector before it reaches the actor behavior. Each kind of message is handed to the
+   * collaborator that owns it, which decides whether it is consumed.
    *
-   * @param retention
-   *   Retention policy
-   * @param onDeleted
-   *   Behavior after deletion is complete
+   * @param msg
+   *   Received message
    * @return
-   *   Waiting behavior
+   *   The behavior to continue with if the message was consumed, None otherwise
    */
-  private def deleteOldSnapshots(retention: RetentionCriteria, onDeleted: => Behavior[M]): Behavior[M] = {
-    val currentSequenceNumber = getCurrentSequenceNumber
-    val maxSequenceNumberToDelete =
-      calculateMaxSequenceNumberToDelete(currentSequenceNumber, retention)
-
-    if (maxSequenceNumberToDelete > 0) {
-      ctx.log.debug(
-        "Deleting snapshots with sequence numbers up to {} based on retention policy",
-        maxSequenceNumberToDelete,
-      )
-      persistenceRef ! DeleteSnapshots(maxSequenceNumberToDelete, adapter)
-      waitForMessage(
-        unwrapDeleteSnapshots,
-        "Delete snapshots succeeded",
-        _ => onDeleted,
-      )
-    } else {
-      ctx.log.debug("No snapshots to delete based on retention policy")
-      onDeleted
+  private[scalaimpl] def receiveInterceptedMessage(msg: M): Option[Behavior[M]] =
+    msg.asMatchable match {
+      case EventJournal.JournalResponseConsumed =>
+        Some(Behaviors.same)
+      case PassivationTimer.PassivationCheck =>
+        entityPassivation.map(_.check())
+      case reply: PersistSnapshotReply[?, ?] =>
+        // Only the snapshot saved before passivating replies to the actor itself
+        entityPassivation.map(_.snapshotReplied(reply.asInstanceOf[PersistSnapshotReply[S, E]]))
+      case reply: PersistEventsReply[?, ?] =>
+        writes.receiveEventReply(reply.asInstanceOf[PersistEventsReply[S, E]])
+      case signal: WriteStrategy.WriteSignal =>
+        writes.receiveSignal(signal)
+      case SnapshotReplyReceived(reply) =>
+        reply match {
+          case DeleteEventsFailed(toSequenceNr, cause) =>
+            snapshots.eventsDeleteFailed(toSequenceNr, cause)
+            Some(Behaviors.same)
+          case other =>
+            writes.receiveSnapshotReply(other.asInstanceOf[PersistenceReply[S, E]])
+        }
+      case _ =>
+        receiveBehaviorMessage(msg)
     }
-  }
 
   /**
-   * Evaluate whether to take a snapshot
+   * Let a message through to the actor behavior, unless it reports deleted events, the entity is being passivated, or
+   * the write strategy defers messages until a reply arrives.
    *
-   * @param event
-   *   Event
-   * @param state
-   *   State
-   * @param sequenceNumber
-   *   Sequence number
-   * @param force
-   *   Force flag
+   * @param msg
+   *   Received message
    * @return
-   *   Whether a snapshot should be taken
+   *   None if the message is to be passed to the actor behavior
    */
-  private def shouldTakeSnapshot(event: E, state: S, sequenceNumber: Long, force: Boolean): Boolean = {
-    val result = SnapshotHelper.shouldTakeSnapshot(Some(event), state, sequenceNumber, force, config.snapshotCriteria)
-    ctx.log.debug("Snapshot criteria evaluation result: {}", result)
-    result
+  private def receiveBehaviorMessage(msg: M): Option[Behavior[M]] = {
+    val deletedEvents = if (deletesEventsOnSnapshot) unwrapDeletedEvents(msg) else None
+    deletedEvents match {
+      case Some(toSequenceNr) =>
+        snapshots.eventsDeleted(toSequenceNr)
+        Some(Behaviors.same)
+      case None =>
+        entityPassivation match {
+          case Some(entity) => entity.receive(msg)(deferIfBlocked(msg))
+          case None => deferIfBlocked(msg)
+        }
+    }
   }
 
+  private def deferIfBlocked(msg: M): Option[Behavior[M]] =
+    if (writes.defersMessages) Some(messages.defer(msg)) else None
+
+  /**
+   * Put the confirmed state in the state cache when the actor stops, unless a write is in flight, in which case the
+   * confirmed state may lag behind the journal.
+   */
+  private[scalaimpl] def cacheState(): Unit =
+    if (stateCaching && journal.currentSequenceNumber > 0) {
+      if (writes.writesInFlight) {
+        ctx.log.debug("Not caching the state of {}, as writes are in flight", persistenceId)
+      } else {
+        ctx.log.debug("Caching the state of {} at sequence number {}", persistenceId, journal.currentSequenceNumber)
+        StateCache(ctx.system).put(
+          persistenceId,
+          journal.confirmedState,
+          journal.currentSequenceNumber,
+          snapshots.latestSnapshotSequenceNr,
+        )
+      }
+    }
+
   /**
-   * Handle snapshot saving
+   * Assign the sequence numbers of the events of a persist and hand them to the write strategy
    *
-   * @param state
-   *   State to save
-   * @param onCompleted
-   *   Callback after snapshot processing is complete
+   * @param events
+   *   Events to persist
+   * @param single
+   *   Whether the events come from a single-event persist
+   * @param onFailure
+   *   Callback on failure, or None to fail the actor
+   * @param snapshot
+   *   Snapshot to take with the events if the snapshot criteria call for it
+   * @param onPersisted
+   *   Callback on success
    * @return
-   *   Waiting behavior
+   *   The behavior to continue with
    */
-  private def handleSnapshotSave[T](state: S, onCompleted: => Behavior[M]): Behavior[M] = {
-    ctx.log.debug("Taking snapshot for state: {}", state)
-    persistenceRef ! PersistSnapshot(state, adapter)
-
-    waitForMessage(
-      unwrapPersistedSnapshot,
-      "Persisted snapshot",
-      snapshot =>
-        // Delete old snapshots if RetentionCriteria is set
-        config.retentionCriteria match {
-          case Some(retention) => deleteOldSnapshots(retention, onCompleted)
-          case None => onCompleted
-        },
-    )
+  private def persistWith(
+    events: Seq[E],
+    single: Boolean,
+    onFailure: Option[Throwable => Behavior[M]],
+    snapshot: Option[SnapshotRequest[S, E]],
+  )(onPersisted: () => Behavior[M]): Behavior[M] = {
+    journal.assignSequenceNumbers(events)
+    snapshots.eventsPersisted(events)
+    writes.persist(events, single, onFailure, snapshot)(onPersisted)
   }
 
-  override def persistEvent(event: E)(onPersisted: E => Behavior[M]): Behavior[M] = {
-    ctx.log.debug("Persisting event: {}", event)
-    persistenceRef ! PersistSingleEvent(event, adapter)
-    incrementSequenceNumber()
+  override def persistEvent(event: E)(onPersisted: E => Behavior[M]): Behavior[M] =
+    persistSingleEvent(event, None)(onPersisted)
+
+  override def persistEvent(event: E, onFailure: Throwable => Behavior[M])(onPersisted: E => Behavior[M]): Behavior[M] =
+    persistSingleEvent(event, Some(onFailure))(onPersisted)
 
-    waitForMessage(
-      unwrapPersistedEvents,
-      "Persisted event",
-      events => onPersisted(events.head),
-    )
+  private def persistSingleEvent(event: E, onFailure: Option[Throwable => Behavior[M]])(
+    onPersisted: E => Behavior[M]): Behavior[M] = {
+    if (ctx.log.isDebugEnabled) ctx.log.debug("Persisting event: {}", event)
+    persistWith(Seq(event), single = true, onFailure, None)(() => onPersisted(event))
   }
 
-  override def persistEvents(events: Seq[E])(onPersisted: Seq[E] => Behavior[M]): Behavior[M] = {
-    ctx.log.debug("Persisting events: {}", events)
-    persistenceRef ! PersistMultipleEvents(events, adapter)
-    incrementSequenceNumber(events.size)
+  override def persistEvents(events: Seq[E])(onPersisted: Seq[E] => Behavior[M]): Behavior[M] =
+    persistMultipleEvents(events, None)(onPersisted)
 
-    waitForMessage(
-      unwrapPersistedEvents,
-      "Persisted events",
-      persistedEvents => onPersisted(persistedEvents),
-    )
+  override def persistEvents(events: Seq[E], onFailure: Throwable => Behavior[M])(
+    onPersisted: Seq[E] => Behavior[M]): Behavior[M] =
+    persistMultipleEvents(events, Some(onFailure))(onPersisted)
+
+  private def persistMultipleEvents(events: Seq[E], onFailure: Option[Throwable => Behavior[M]])(
+    onPersisted: Seq[E] => Behavior[M]): Behavior[M] = {
+    if (ctx.log.isDebugEnabled) ctx.log.debug("Persisting events: {}", events)
+    persistWith(events, single = false, onFailure, None)(() => onPersisted(events))
   }
 
-  override def persistSnapshot(snapshot: S, force: Boolean)(onPersisted: S => Behavior[M]): Behavior[M] = {
-    ctx.log.debug("Persisting snapshot: {}", snapshot)
+  override def persistSnapshot(snapshot: S, force: Boolean)(onPersisted: S => Behavior[M]): Behavior[M] =
+    persistSnapshotWith(snapshot, force, None)(onPersisted)
 
-    // Determine whether to save based on force parameter or snapshot strategy
-    val shouldSaveSnapshot = force || config.snapshotCriteria.exists { criteria =>
-      val sequenceNumber = getCurrentSequenceNumber
-      val result = SnapshotHelper.shouldTakeSnapshot(None, snapshot, sequenceNumber, force, Some(criteria))
-      ctx.log.debug("Snapshot criteria evaluation result: {}", result)
-      result
-    }
+  override def persistSnapshot(snapshot: S, force: Boolean, onFailure: Throwable => Behavior[M])(
+    onPersisted: S => Behavior[M]): Behavior[M] =
+    persistSnapshotWith(snapshot, force, Some(onFailure))(onPersisted)
 
-    if (shouldSaveSnapshot) {
-      handleSnapshotSave(snapshot, stashBuffer.unstashAll(onPersisted(snapshot)))
-    } else {
-      ctx.log.debug("Skipping snapshot persistence based on criteria evaluation")
-      onPersisted(snapshot)
-    }
+  private def persistSnapshotWith(snapshot: S, force: Boolean, onFailure: Option[Throwable => Behavior[M]])(
+    onPersisted: S => Behavior[M]): Behavior[M] = {
+    ctx.log.debug("Persisting snapshot: {}", snapshot)
+    // Without events awaiting acknowledgement, the snapshot is the state the actor continues with
+    if (!writes.writesInFlight) journal.confirmSnapshot(snapshot)
+    val save = snapshots.shouldSaveSnapshot(snapshot, force)
+    writes.persistSnapshot(snapshot, save, onFailure)(() => onPersisted(snapshot))
   }
 
   override def persistEventWithSnapshot(event: E, snapshot: S, forceSnapshot: Boolean)(
-    onPersisted: E => Behavior[M]): Behavior[M] = {
-    ctx.log.debug("Persisting event with state: {}", event)
-    persistenceRef ! PersistSingleEvent(event, adapter)
-    val sequenceNumber = incrementSequenceNumber()
-
-    waitForMessage(
-      unwrapPersistedEvents,
-      "Persisted event",
-      events => {
-        val shouldSaveSnapshot = shouldTakeSnapshot(event, snapshot, sequenceNumber, forceSnapshot)
-
-        if (shouldSaveSnapshot) {
-          ctx.log.debug("Taking snapshot at sequence number {}", sequenceNumber)
-          handleSnapshotSave(snapshot, stashBuffer.unstashAll(onPersisted(events.head)))
-        } else {
-          stashBuffer.unstashAll(onPersisted(events.head))
-        }
-      },
-    )
+    onPersisted: E => Behavior[M]): Behavior[M] =
+    persistSingleEventWithSnapshot(event, snapshot, forceSnapshot, None)(onPersisted)
+
+  override def persistEventWithSnapshot(
+    event: E,
+    snapshot: S,
+    forceSnapshot: Boolean,
+    onFailure: Throwable => Behavior[M])(onPersisted: E => Behavior[M]): Behavior[M] =
+    persistSingleEventWithSnapshot(event, snapshot, forceSnapshot, Some(onFailure))(onPersisted)
+
+  private def persistSingleEventWithSnapshot(
+    event: E,
+    snapshot: S,
+    forceSnapshot: Boolean,
+    onFailure: Option[Throwable => Behavior[M]])(onPersisted: E => Behavior[M]): Behavior[M] = {
+    if (ctx.log.isDebugEnabled) ctx.log.debug("Persisting event with state: {}", event)
+    val request = SnapshotRequest(snapshot, Some(event), forceSnapshot)
+    persistWith(Seq(event), single = true, onFailure, Some(request))(() => onPersisted(event))
   }
 
   override def persistEventsWithSnapshot(events: Seq[E], snapshot: S, forceSnapshot: Boolean)(
-    onPersisted: Seq[E] => Behavior[M]): Behavior[M] = {
-    ctx.log.debug("Persisting events with state: {}", events)
-    persistenceRef ! PersistMultipleEvents(events, adapter)
-    val finalSequenceNumber = incrementSequenceNumber(events.size)
-
-    waitForMessage(
-      unwrapPersistedEvents,
-      "Persisted events",
-      persistedEvents => {
-        // Automatic snapshot acquisition when evaluating snapshot strategy or force=true
-        // Evaluates with only the last event and sequence number
-        val shouldSaveSnapshot =
-          forceSnapshot || (events.nonEmpty && {
-            val lastEvent = events.last
-            val result = SnapshotHelper.shouldTakeSnapshot(
-              Some(lastEvent),
-              snapshot,
-              finalSequenceNumber,
-              forceSnapshot,
-              config.snapshotCriteria)
-            ctx.log.debug("Snapshot criteria evaluation result: {}", result)
-            result
-          })
-
-        if (shouldSaveSnapshot) {
-          ctx.log.debug("Taking snapshot at sequence number {}", finalSequenceNumber)
-          handleSnapshotSave(snapshot, stashBuffer.unstashAll(onPersisted(persistedEvents)))
-        } else {
-          stashBuffer.unstashAll(onPersisted(persistedEvents))
-        }
-      },
-    )
+    onPersisted: Seq[E] => Behavior[M]): Behavior[M] =
+    persistMultipleEventsWithSnapshot(events, snapshot, forceSnapshot, None)(onPersisted)
+
+  override def persistEventsWithSnapshot(
+    events: Seq[E],
+    snapshot: S,
+    forceSnapshot: Boolean,
+    onFailure: Throwable => Behavior[M])(onPersisted: Seq[E] => Behavior[M]): Behavior[M] =
+    persistMultipleEventsWithSnapshot(events, snapshot, forceSnapshot, Some(onFailure))(onPersisted)
+
+  private def persistMultipleEventsWithSnapshot(
+    events: Seq[E],
+    snapshot: S,
+    forceSnapshot: Boolean,
+    onFailure: Option[Throwable => Behavior[M]])(onPersisted: Seq[E] => Behavior[M]): Behavior[M] = {
+    if (ctx.log.isDebugEnabled) ctx.log.debug("Persisting events with state: {}", events)
+    // The snapshot criteria are evaluated with the last event and its sequence number only
+    val request = SnapshotRequest(snapshot, events.lastOption, forceSnapshot)
+    persistWith(events, single = false, onFailure, Some(request))(() => onPersisted(events))
   }
 }
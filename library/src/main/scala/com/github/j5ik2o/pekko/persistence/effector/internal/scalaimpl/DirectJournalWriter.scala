@@ -0,0 +1,199 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.PersistenceStoreProtocol.*
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
+  PersistenceEffectorInstrumentation,
+  PersistenceId,
+  PersistenceOperation,
+}
+import org.apache.pekko.actor.ActorRef
+import org.apache.pekko.persistence.effector.JournalProtocolBridge
+import org.apache.pekko.persistence.{AtomicWrite, PersistentRepr}
+
+import java.util.UUID
+import java.util.concurrent.atomic.AtomicInteger
+import scala.collection.mutable
+import scala.compiletime.asMatchable
+
+/**
+ * Companion object for DirectJournalWriter.
+ */
+private[effector] object DirectJournalWriter {
+
+  private val instanceIds = new AtomicInteger(0)
+
+  /**
+   * Write whose replies from the journal have not all arrived yet.
+   *
+   * @param succeeded
+   *   Reply to send once all events have been written
+   * @param events
+   *   Number of events of the write
+   * @param operation
+   *   Kind of operation, for instrumentation
+   * @param startNanos
+   *   Time the write was sent, or 0 if instrumentation is disabled
+   */
+  private final class PendingWrite[S, E](
+    val succeeded: PersistEventsReply[S, E],
+    events: Int,
+    val operation: PersistenceOperation,
+    val startNanos: Long,
+  ) {
+    var remaining: Int = events
+    var rejection: Option[Throwable] = None
+    var failure: Option[Throwable] = None
+  }
+}
+
+/**
+ * Writes the events of an entity to the journal plugin actor on behalf of the effector in
+ * [[com.github.j5ik2o.pekko.persistence.effector.scaladsl.PersistenceMode.Direct]] mode, skipping the hop through the
+ * persistence store actor of the entity. The journal is shared by all entities of the node and replies to the actor
+ * itself; the replies are turned into the same [[PersistEventsReply]] the persistence store actor sends.
+ *
+ * The journal acknowledges the writes of a writer in the order they were sent, so the effector keeps the sequence
+ * numbers and the ordering guarantees of a persistent actor. With a [[SharedJournalWriter]], the writes are combined
+ * with those of other entities into larger journal requests, and the replies are forwarded to the actor in the same
+ * order.
+ *
+ * @param persistenceId
+ *   Persistence ID of the entity
+ * @param journal
+ *   Journal plugin actor
+ * @param self
+ *   Actor receiving the replies of the journal
+ * @param instrumentation
+ *   Instrumentation notified of the writes
+ * @param sharedWriter
+ *   Shared journal writer batching the writes with those of other entities, if any
+ * @tparam S
+ *   Type of state
+ * @tparam E
+ *   Type of event
+ */
+private[effector] final class DirectJournalWriter[S, E](
+  persistenceId: PersistenceId,
+  journal: ActorRef,
+  self: ActorRef,
+  instrumentation: PersistenceEffectorInstrumentation,
+  sharedWriter: Option[ActorRef] = None,
+) {
+  import DirectJournalWriter.*
+
+  private val instrumented = PersistenceEffectorInstrumentation.isEnabled(instrumentation)
+
+  private val writerUuid = UUID.randomUUID().toString
+
+  // Distinguishes the replies to this writer from those to a previous incarnation of the actor
+  private val actorInstanceId = instanceIds.incrementAndGet()
+
+  // Writes sent to the journal, in the order they were sent
+  private val pendingWrites = mutable.Queue.empty[PendingWrite[S, E]]
+
+  /**
+   * Write a single event.
+   *
+   * @param event
+   *   Event to write
+   * @param sequenceNr
+   *   Sequence number of the event
+   */
+  def writeEvent(event: E, sequenceNr: Long): Unit = {
+    pendingWrites.enqueue(
+      new PendingWrite(PersistSingleEventSucceeded(event), 1, PersistenceOperation.SingleEvent, startTime()))
+    send(AtomicWrite(toRepr(event, sequenceNr)))
+  }
+
+  /**
+   * Write events atomically.
+   *
+   * @param events
+   *   Events to write
+   * @param fromSequenceNr
+   *   Sequence number of the first event
+   */
+  def writeEvents(events: Seq[E], fromSequenceNr: Long): Unit =
+    if (events.nonEmpty) {
+      pendingWrites.enqueue(
+        new PendingWrite(
+          PersistMultipleEventsSucceeded(events),
+          events.size,
+          PersistenceOperation.MultipleEvents,
+          startTime()))
+      val reprs = events.iterator.zipWithIndex.map { case (event, i) => toRepr(event, fromSequenceNr + i) }.toVector
+      send(AtomicWrite(reprs))
+    }
+
+  private def send(write: AtomicWrite): Unit =
+    sharedWriter match {
+      case Some(writer) => writer.tell(SharedJournalWriter.Write(write, self, actorInstanceId), self)
+      case None => JournalProtocolBridge.writeMessages(journal, write :: Nil, self, actorInstanceId)
+    }
+
+  /**
+   * Handle a reply of the journal.
+   *
+   * @param response
+   *   Reply of the journal
+   * @return
+   *   The reply to the write completed by the response, if any
+   */
+  def receive(response: Any): Option[PersistEventsReply[S, E]] =
+    response.asMatchable match {
+      case JournalProtocolBridge.WriteMessageSuccess(_, instanceId) if instanceId == actorInstanceId =>
+        acknowledge()
+      case JournalProtocolBridge.WriteMessageRejected(repr, cause, instanceId) if instanceId == actorInstanceId =>
+        pendingWrites.head.rejection = Some(cause)
+        acknowledge(repr.sequenceNr)
+      case JournalProtocolBridge.WriteMessageFailure(repr, cause, instanceId) if instanceId == actorInstanceId =>
+        pendingWrites.head.failure = Some(cause)
+        acknowledge(repr.sequenceNr)
+      case _ =>
+        // Summary of a write request, or reply to a previous incarnation of the actor
+        None
+    }
+
+  private def acknowledge(sequenceNr: Long = 0L): Option[PersistEventsReply[S, E]] = {
+    if (pendingWrites.isEmpty) {
+      throw new IllegalStateException(s"Unexpected reply of the journal for $persistenceId")
+    }
+    val pending = pendingWrites.head
+    pending.remaining -= 1
+    if (pending.remaining > 0) {
+      None
+    } else {
+      pendingWrites.dequeue()
+      (pending.failure, pending.rejection) match {
+        case (Some(cause), _) =>
+          if (instrumented) instrumentation.persistFailed(persistenceId, pending.operation, cause)
+          Some(PersistEventsFailed(eventsOf(pending.succeeded), sequenceNr, cause))
+        case (None, Some(cause)) =>
+          if (instrumented) instrumentation.persistFailed(persistenceId, pending.operation, cause)
+          Some(PersistEventsRejected(eventsOf(pending.succeeded), sequenceNr, cause))
+        case (None, None) =>
+          if (instrumented)
+            instrumentation.persistCompleted(persistenceId, pending.operation, System.nanoTime() - pending.startNanos)
+          Some(pending.succeeded)
+      }
+    }
+  }
+
+  private def eventsOf(reply: PersistEventsReply[S, E]): Seq[E] =
+    reply match {
+      case PersistSingleEventSucceeded(event) => Seq(event)
+      case PersistMultipleEventsSucceeded(events) => events
+      case other => throw new IllegalStateException(s"Unexpected reply: $other")
+    }
+
+  private def toRepr(event: E, sequenceNr: Long): PersistentRepr =
+    PersistentRepr(
+      payload = event,
+      sequenceNr = sequenceNr,
+      persistenceId = persistenceId.asString,
+      writerUuid = writerUuid,
+    )
+
+  private def startTime(): Long =
+    if (instrumented) System.nanoTime() else 0L
+}
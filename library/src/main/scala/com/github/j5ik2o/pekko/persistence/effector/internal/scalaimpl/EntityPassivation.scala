@@ -0,0 +1,158 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.PersistenceStoreProtocol.*
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PassivationConfig, PersistenceId}
+import org.apache.pekko.actor.typed.Behavior
+import org.apache.pekko.actor.typed.scaladsl.{ActorContext, Behaviors}
+
+private[scalaimpl] object EntityPassivation {
+
+  /**
+   * Phase of the passivation of an idle entity.
+   */
+  private enum PassivationPhase {
+
+    /**
+     * The entity processes messages.
+     */
+    case Active
+
+    /**
+     * The snapshot saved before passivating is awaited; messages are stashed.
+     */
+    case SavingSnapshot
+
+    /**
+     * The persistence store actor has been stopped; only the passivation message reaches the actor behavior.
+     */
+    case Passivated
+  }
+}
+
+/**
+ * Passivation of an idle entity in Persisted and Direct mode. Once the entity has been idle for the idle timeout and
+ * no reply is pending, the confirmed state is saved as a snapshot if configured, the persistence store actor is
+ * stopped, and the actor is stopped or passed the passivation message.
+ *
+ * @param ctx
+ *   Actor context
+ * @param persistenceId
+ *   Persistence ID of the entity
+ * @param settings
+ *   Passivation configuration
+ * @param journal
+ *   Journal of the effector
+ * @param snapshots
+ *   Snapshots of the effector
+ * @param messages
+ *   Messages stashed during passivation
+ * @param awaitingReplies
+ *   Whether a reply or a write is pending, in which case the entity is not passivated
+ * @tparam S
+ *   Type of state
+ * @tparam E
+ *   Type of event
+ * @tparam M
+ *   Type of message
+ */
+private[scalaimpl] final class EntityPassivation[S, E, M](
+  ctx: ActorContext[M],
+  persistenceId: PersistenceId,
+  settings: PassivationConfig[M],
+  journal: EventJournal[S, E, M],
+  snapshots: SnapshotCoordinator[S, E, M],
+  messages: MessageStash[S, E, M],
+  awaitingReplies: () => Boolean,
+) {
+  import EntityPassivation.*
+
+  private val timer = new PassivationTimer(ctx, settings.idleTimeout)
+
+  private var phase: PassivationPhase = PassivationPhase.Active
+
+  /**
+   * Let a message through to the actor behavior, recording the activity of the entity, unless the entity is being
+   * passivated. Messages that arrive during passivation are stashed, and dropped when the actor stops.
+   *
+   * @param msg
+   *   Received message
+   * @param deliver
+   *   How the message reaches the actor behavior while the entity is active
+   * @return
+   *   None if the message is to be passed to the actor behavior
+   */
+  def receive(msg: M)(deliver: => Option[Behavior[M]]): Option[Behavior[M]] =
+    phase match {
+      case PassivationPhase.Active =>
+        timer.recordActivity()
+        deliver
+      case PassivationPhase.Passivated if settings.passivateMessage.contains(msg) =>
+        None
+      case _ =>
+        messages.stash(msg)
+        Some(Behaviors.same)
+    }
+
+  /**
+   * Passivate the entity if it has been idle for the idle timeout
+   *
+   * @return
+   *   The behavior to continue with
+   */
+  def check(): Behavior[M] =
+    if (phase == PassivationPhase.Active && timer.checkIdle(awaitingReplies())) {
+      if (settings.snapshotOnPassivate && journal.currentSequenceNumber > snapshots.latestSnapshotSequenceNr) {
+        ctx.log.debug("Saving snapshot at sequence number {} before passivating", journal.currentSequenceNumber)
+        phase = PassivationPhase.SavingSnapshot
+        // The reply is sent to the actor itself, so that it is told apart from the replies handled by the converter
+        snapshots.request(journal.confirmedState, ctx.self.unsafeUpcast[Any])
+        Behaviors.same
+      } else {
+        complete()
+      }
+    } else {
+      Behaviors.same
+    }
+
+  /**
+   * Complete the passivation once the snapshot saved before passivating has been saved or has failed
+   *
+   * @param reply
+   *   Reply of the persistence store actor
+   * @return
+   *   The behavior to continue with
+   */
+  def snapshotReplied(reply: PersistSnapshotReply[S, E]): Behavior[M] = {
+    if (phase != PassivationPhase.SavingSnapshot) {
+      throw new IllegalStateException(s"Unexpected snapshot reply: $reply")
+    }
+    reply match {
+      case PersistSnapshotSucceeded(_, sequenceNr) =>
+        snapshots.saved(sequenceNr)
+      case PersistSnapshotFailed(_, sequenceNr, cause) =>
+        // The events are in the journal, so the entity is passivated all the same
+        ctx.log.warn(s"Failed to persist snapshot before passivating at sequence number $sequenceNr", cause)
+        snapshots.failed(sequenceNr, cause)
+    }
+    complete()
+  }
+
+  /**
+   * Stop the persistence store actor, and stop the actor or pass it the passivation message
+   *
+   * @return
+   *   The behavior to continue with
+   */
+  private def complete(): Behavior[M] = {
+    ctx.log.debug("Passivating {}", persistenceId)
+    phase = PassivationPhase.Passivated
+    ctx.stop(journal.persistenceRef)
+    settings.passivateMessage match {
+      case Some(message) =>
+        ctx.self ! message
+        Behaviors.same
+      case None =>
+        Behaviors.stopped
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.PersistenceStoreProtocol.*
+import org.apache.pekko.actor.typed.ActorRef
+import org.apache.pekko.actor.typed.scaladsl.ActorContext
+import org.apache.pekko.persistence.effector.JournalProtocolBridge
+
+private[scalaimpl] object EventJournal {
+
+  /**
+   * Result of adapting a reply of the journal that does not complete a write (Direct mode).
+   */
+  case object JournalResponseConsumed
+}
+
+/**
+ * Journal of an effector in Persisted and Direct mode. Events are written through the persistence store actor, or
+ * straight to the journal in Direct mode. The journal tracks the sequence numbers of the events sent and acknowledged,
+ * and the state derived from the acknowledged events when the configuration needs it.
+ *
+ * @param ctx
+ *   Actor context
+ * @param persistenceRef
+ *   Persistence store actor
+ * @param directWriter
+ *   Writer of the events in Direct mode
+ * @param packsBatches
+ *   Whether multi-event writes are packed into a single journal event
+ * @param initialSequenceNr
+ *   Sequence number of the last recovered event
+ * @param recoveredState
+ *   Recovered state
+ * @param applyEvent
+ *   Function applying an event to the state
+ * @param tracksConfirmedState
+ *   Whether the state derived from the acknowledged events is needed
+ * @tparam S
+ *   Type of state
+ * @tparam E
+ *   Type of event
+ * @tparam M
+ *   Type of message
+ */
+private[scalaimpl] final class EventJournal[S, E, M](
+  ctx: ActorContext[M],
+  val persistenceRef: ActorRef[PersistenceCommand[S, E]],
+  directWriter: Option[DirectJournalWriter[S, E]],
+  packsBatches: Boolean,
+  initialSequenceNr: Long,
+  recoveredState: S,
+  applyEvent: (S, E) => S,
+  tracksConfirmedState: Boolean,
+) {
+  import EventJournal.*
+
+  // Replies to event writes are sent to the actor itself rather than through a message adapter, so that they are
+  // neither wrapped by the adapter nor converted into a message of the actor. They are always consumed by the effector.
+  private val eventReplyTo: ActorRef[PersistEventsReply[S, E]] = ctx.self.unsafeUpcast[Any]
+
+  // Sequence number of the last event sent to the journal
+  private var currentSequenceNr: Long = initialSequenceNr
+
+  // Sequence number of the last event acknowledged by the journal
+  private var confirmedSequenceNr: Long = initialSequenceNr
+
+  // State derived from the events acknowledged by the journal, used to handle read-only messages during writes, to
+  // save a snapshot on passivation and to cache the state when the actor stops
+  private var confirmedStateValue: S = recoveredState
+
+  /**
+   * Get the sequence number of the last event sent to the journal.
+   *
+   * @return
+   *   Sequence number
+   */
+  def currentSequenceNumber: Long = currentSequenceNr
+
+  /**
+   * Get the sequence number of the last event acknowledged by the journal.
+   *
+   * @return
+   *   Sequence number
+   */
+  def confirmedSequenceNumber: Long = confirmedSequenceNr
+
+  /**
+   * Get the state derived from the acknowledged events.
+   *
+   * @return
+   *   Confirmed state
+   */
+  def confirmedState: S = confirmedStateValue
+
+  /**
+   * Number of journal events, and thus sequence numbers, taken by a write of events
+   *
+   * @param events
+   *   Events of the write
+   * @return
+   *   1 if the events are packed, the number of events otherwise
+   */
+  def journalEventCount(events: Seq[E]): Int =
+    if (packsBatches && events.size > 1) 1 else events.size
+
+  /**
+   * Take the sequence numbers of a write of events
+   *
+   * @param events
+   *   Events of the write
+   * @return
+   *   Sequence number of the last event of the write
+   */
+  def assignSequenceNumbers(events: Seq[E]): Long = {
+    currentSequenceNr += journalEventCount(events)
+    currentSequenceNr
+  }
+
+  /**
+   * Give back the sequence numbers of a write whose events were not stored
+   *
+   * @param journalEvents
+   *   Number of journal events of the write
+   */
+  def releaseSequenceNumbers(journalEvents: Int): Unit =
+    currentSequenceNr -= journalEvents
+
+  /**
+   * Record that the journal acknowledged a write
+   *
+   * @param events
+   *   Events of the write
+   * @param journalEvents
+   *   Number of journal events of the write
+   */
+  def confirm(events: Seq[E], journalEvents: Int): Unit = {
+    confirmedSequenceNr += journalEvents
+    if (tracksConfirmedState) confirmedStateValue = events.foldLeft(confirmedStateValue)(applyEvent)
+  }
+
+  /**
+   * Record that the journal acknowledged the latest write, when writes are sent one at a time
+   *
+   * @param events
+   *   Events of the write
+   */
+  def confirmLatest(events: Seq[E]): Unit = {
+    confirmedSequenceNr = currentSequenceNr
+    if (tracksConfirmedState) confirmedStateValue = events.foldLeft(confirmedStateValue)(applyEvent)
+  }
+
+  /**
+   * Replace the confirmed state with a snapshot that the actor continues with
+   *
+   * @param snapshot
+   *   Snapshot of the state
+   */
+  def confirmSnapshot(snapshot: S): Unit =
+    if (tracksConfirmedState) confirmedStateValue = snapshot
+
+  /**
+   * Go back to the last acknowledged event after a rejected write
+   */
+  def rollBack(): Unit =
+    currentSequenceNr = confirmedSequenceNr
+
+  /**
+   * Send the events of a persist, which are the latest events sent, to the persistence store actor or directly to the
+   * journal
+   *
+   * @param events
+   *   Events to write
+   * @param single
+   *   Whether the events come from a single-event persist
+   */
+  def write(events: Seq[E], single: Boolean): Unit =
+    if (single) writeEvent(events.head) else writeEvents(events)
+
+  /**
+   * Send an event, which is the latest event sent, to the persistence store actor or directly to the journal
+   *
+   * @param event
+   *   Event to write
+   */
+  private def writeEvent(event: E): Unit =
+    directWriter match {
+      case Some(writer) => writer.writeEvent(event, currentSequenceNr)
+      case None => persistenceRef ! PersistSingleEvent(event, eventReplyTo)
+    }
+
+  /**
+   * Send events, which are the latest events sent, to the persistence store actor or directly to the journal
+   *
+   * @param events
+   *   Events to write
+   */
+  def writeEvents(events: Seq[E]): Unit =
+    directWriter match {
+      case Some(writer) => writer.writeEvents(events, currentSequenceNr - events.size + 1)
+      case None => persistenceRef ! PersistMultipleEvents(events, eventReplyTo, packsBatches && events.size > 1)
+    }
+
+  /**
+   * Turn a reply of the journal to a direct write into the reply of the persistence store actor it stands for (Direct
+   * mode). Other messages are returned as is.
+   *
+   * @param msg
+   *   Received message
+   * @return
+   *   The reply to the completed write, [[EventJournal.JournalResponseConsumed]] if the reply does not complete a
+   *   write, or the message itself
+   */
+  def adaptResponse(msg: M): M =
+    directWriter match {
+      case Some(writer) if JournalProtocolBridge.isResponse(msg) =>
+        writer.receive(msg) match {
+          case Some(reply) => reply.asInstanceOf[M]
+          case None => JournalResponseConsumed.asInstanceOf[M]
+        }
+      case _ =>
+        msg
+    }
+
+  /**
+   * Let the persistence store actor know the sequence number of the events written directly to the journal (Direct
+   * mode)
+   */
+  def advanceStoreSequenceNr(): Unit =
+    if (directWriter.isDefined) persistenceRef ! AdvanceSequenceNr(currentSequenceNr)
+
+  /**
+   * Let the persistence store actor write events again after a rejection. In Direct mode events are not written by the
+   * persistence store actor, which is thus never waiting for this.
+   */
+  def resumeWrites(): Unit =
+    if (directWriter.isEmpty) persistenceRef ! ResumeWrites()
+}
@@ -0,0 +1,68 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PackedEvents, SnapshotCodec}
+import org.apache.pekko.serialization.{Serialization, Serializers}
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, DataInputStream, DataOutputStream}
+
+/**
+ * Packing of the events of a multi-event persist into a single [[PackedEvents]] journal event. Each event is serialized
+ * with the serializer bound to its class, and the events are encoded together by the codec.
+ */
+private[scalaimpl] object EventPacking {
+
+  /**
+   * Pack events into a single journal event.
+   *
+   * @param serialization
+   *   Serialization extension of the actor system
+   * @param codec
+   *   Codec encoding the serialized events
+   * @param events
+   *   Events to pack
+   * @return
+   *   Packed events
+   */
+  def pack(serialization: Serialization, codec: SnapshotCodec, events: Seq[Any]): PackedEvents = {
+    val bytes = new ByteArrayOutputStream()
+    val output = new DataOutputStream(bytes)
+    output.writeInt(events.size)
+    events.foreach { event =>
+      val ref = event.asInstanceOf[AnyRef]
+      val serializer = serialization.findSerializerFor(ref)
+      val payload = serializer.toBinary(ref)
+      output.writeInt(serializer.identifier)
+      output.writeUTF(Serializers.manifestFor(serializer, ref))
+      output.writeInt(payload.length)
+      output.write(payload)
+    }
+    output.flush()
+    PackedEvents(codec.id, codec.encode(bytes.toByteArray))
+  }
+
+  /**
+   * Unpack the events of a journal event written by [[pack]].
+   *
+   * @param serialization
+   *   Serialization extension of the actor system
+   * @param codec
+   *   Codec of the configuration, if any
+   * @param packed
+   *   Packed events
+   * @return
+   *   The events, in the order they were persisted
+   */
+  def unpack(serialization: Serialization, codec: Option[SnapshotCodec], packed: PackedEvents): Vector[Any] = {
+    val decoder = SnapshotCodec
+      .forId(packed.codecId, codec)
+      .getOrElse(throw new IllegalStateException(s"No codec with id ${packed.codecId} is configured for packed events"))
+    val input = new DataInputStream(new ByteArrayInputStream(decoder.decode(packed.payload)))
+    Vector.fill(input.readInt()) {
+      val serializerId = input.readInt()
+      val manifest = input.readUTF()
+      val payload = new Array[Byte](input.readInt())
+      input.readFully(payload)
+      serialization.deserialize(payload, serializerId, manifest).get
+    }
+  }
+}
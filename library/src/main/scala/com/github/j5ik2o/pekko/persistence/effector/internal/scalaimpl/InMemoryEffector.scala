@@ -3,10 +3,13 @@ package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
 import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
   PersistenceEffector,
   PersistenceEffectorConfig,
-  RetentionCriteria,
+  SnapshotOutcome,
 }
 import org.apache.pekko.actor.typed.Behavior
-import org.apache.pekko.actor.typed.scaladsl.{ActorContext, StashBuffer}
+import org.apache.pekko.actor.typed.scaladsl.{ActorContext, Behaviors, StashBuffer}
+import org.apache.pekko.serialization.SerializationExtension
+
+import scala.compiletime.asMatchable
 
 /**
  * In-memory implementation of PersistenceEffector. This implementation stores events and snapshots in memory, making it
@@ -32,6 +35,15 @@ private[effector] final class InMemoryEffector[S, E, M](
 ) extends PersistenceEffector[S, E, M] {
   import config.*
 
+  // Criteria of this effector, fed with the measured replay and snapshot costs
+  private val activeSnapshotCriteria = snapshotCriteria.map(_.instantiate())
+
+  private val recoveryStartNanos = System.nanoTime()
+
+  private lazy val serialization = SerializationExtension(ctx.system.classicSystem)
+
+  private def serializedSize(event: E): Long = SnapshotHelper.serializedSize(serialization, event)
+
   // Restore initial state (snapshot + events) - similar role to receiveRecover in PersistentActor
   private val latestSnapshot = InMemoryEventStore.getLatestSnapshot[S](persistenceId)
   private var currentState: S = latestSnapshot match {
@@ -49,21 +61,58 @@ private[effector] final class InMemoryEffector[S, E, M](
   private def getCurrentSequenceNumber: Long =
     InMemoryEventStore.getCurrentSequenceNumber(persistenceId)
 
+  private def latestSnapshotSequenceNumber: Long =
+    InMemoryEventStore.getSnapshotSequenceNumbers(persistenceId).maxOption.getOrElse(0L)
+
+  private val passivationTimer: Option[PassivationTimer[M]] =
+    passivation.map(settings => new PassivationTimer(ctx, settings.idleTimeout))
+
+  private var passivated: Boolean = false
+
+  activeSnapshotCriteria.foreach { criteria =>
+    val sequenceNumber = getCurrentSequenceNumber
+    val snapshotSequenceNumber = latestSnapshotSequenceNumber
+    criteria.recoveryCompleted(
+      sequenceNumber,
+      sequenceNumber - snapshotSequenceNumber,
+      System.nanoTime() - recoveryStartNanos,
+    )
+  }
+
   /**
-   * Calculate the maximum sequence number of snapshots to be deleted based on RetentionCriteria
+   * Save a snapshot to memory and delete old snapshots based on RetentionCriteria. Without RetentionCriteria only the
+   * latest snapshot is kept.
    *
-   * @param currentSequenceNumber
-   *   Current sequence number
-   * @param retention
-   *   Retention policy
-   * @return
-   *   Maximum sequence number of snapshots to be deleted (0 if there are no snapshots to delete)
+   * @param snapshot
+   *   Snapshot to save
    */
-  private def calculateMaxSequenceNumberToDelete(
-    currentSequenceNumber: Long,
-    retention: RetentionCriteria,
-  ): Long =
-    RetentionHelper.calculateMaxSequenceNumberToDelete(currentSequenceNumber, retention)
+  private def saveSnapshot(snapshot: S): Unit = {
+    val startNanos = System.nanoTime()
+    activeSnapshotCriteria.foreach(_.snapshotStarted(getCurrentSequenceNumber))
+    val sequenceNumber = InMemoryEventStore.saveSnapshot(persistenceId, snapshot)
+    activeSnapshotCriteria.foreach(_.snapshotSaved(sequenceNumber, System.nanoTime() - startNanos))
+    // Update state (directly update in case of snapshot)
+    // This is correct behavior because snapshot represents complete state
+    currentState = snapshot
+    snapshotOutcomeHandler(SnapshotOutcome.Saved(sequenceNumber))
+
+    config.retentionCriteria match {
+      case Some(retention) =>
+        ctx.log.debug("Applying retention policy: {}", retention)
+        val maxSeqNrToDelete = RetentionHelper.calculateMaxSequenceNumberToDelete(
+          InMemoryEventStore.getSnapshotSequenceNumbers(persistenceId).sorted.toIndexedSeq,
+          retention,
+        )
+        if (maxSeqNrToDelete > 0) {
+          ctx.log.debug("Deleting snapshots up to sequence number: {}", maxSeqNrToDelete)
+          InMemoryEventStore.deleteSnapshots(persistenceId, maxSeqNrToDelete)
+          snapshotOutcomeHandler(SnapshotOutcome.Deleted(maxSeqNrToDelete))
+        }
+      case None =>
+        // Without retention criteria, only the latest snapshot of an entity is kept
+        InMemoryEventStore.deleteSnapshots(persistenceId, sequenceNumber - 1)
+    }
+  }
 
   // Emulate the persist method of PersistentActor
   override def persistEvent(event: E)(onPersisted: E => Behavior[M]): Behavior[M] = {
@@ -73,6 +122,7 @@ private[effector] final class InMemoryEffector[S, E, M](
     // Note: Similar to the persist method of PersistentActor, it only saves the event
     // and does not update the state at this point
     InMemoryEventStore.addEvent(persistenceId, event)
+    activeSnapshotCriteria.foreach(_.eventsPersisted(Seq(event), serializedSize))
 
     // Execute callback immediately (no waiting for persistence)
     // Command handler updates state within the callback
@@ -94,6 +144,7 @@ private[effector] final class InMemoryEffector[S, E, M](
     // Note: Similar to the persistAll method of PersistentActor, it only saves the events
     // and does not update the state at this point
     InMemoryEventStore.addEvents(persistenceId, events)
+    activeSnapshotCriteria.foreach(_.eventsPersisted(events, serializedSize))
 
     // Execute callback immediately
     // Command handler updates state within the callback
@@ -114,33 +165,13 @@ private[effector] final class InMemoryEffector[S, E, M](
     // Determine whether to save based on force parameter or snapshot strategy
     val shouldSaveSnapshot = {
       val sequenceNumber = getCurrentSequenceNumber
-      val result = SnapshotHelper.shouldTakeSnapshot(None, snapshot, sequenceNumber, force, config.snapshotCriteria)
+      val result = SnapshotHelper.shouldTakeSnapshot(None, snapshot, sequenceNumber, force, activeSnapshotCriteria)
       ctx.log.debug("Snapshot criteria evaluation result: {}", result)
       result
     }
 
     if (shouldSaveSnapshot) {
-      // Save snapshot to memory
-      InMemoryEventStore.saveSnapshot(persistenceId, snapshot)
-
-      // Update state (directly update in case of snapshot)
-      // This is correct behavior because snapshot represents complete state
-      currentState = snapshot
-
-      // Apply retention policy (if set)
-      config.retentionCriteria.foreach { retention =>
-        ctx.log.debug("Applying retention policy: {}", retention)
-        // Calculate sequence number to delete based on current sequence number
-        val currentSeqNr = getCurrentSequenceNumber
-        val maxSeqNrToDelete = calculateMaxSequenceNumberToDelete(currentSeqNr, retention)
-
-        // Actual deletion process (just logging here)
-        if (maxSeqNrToDelete > 0) {
-          ctx.log.debug("Would delete snapshots up to sequence number: {}", maxSeqNrToDelete)
-          // Since the actual InMemoryEventStore does not have a method to delete old snapshots,
-          // only log output is performed here as a simulation
-        }
-      }
+      saveSnapshot(snapshot)
 
       // Execute callback immediately
       val behavior = onPersisted(snapshot)
@@ -163,38 +194,21 @@ private[effector] final class InMemoryEffector[S, E, M](
 
     // Save event to memory
     InMemoryEventStore.addEvent(persistenceId, event)
+    activeSnapshotCriteria.foreach(_.eventsPersisted(Seq(event), serializedSize))
 
     val sequenceNumber = getCurrentSequenceNumber
 
     // Save snapshot when evaluating snapshot strategy or force=true
     val shouldSaveSnapshot = {
       val result =
-        SnapshotHelper.shouldTakeSnapshot(Some(event), snapshot, sequenceNumber, forceSnapshot, config.snapshotCriteria)
+        SnapshotHelper.shouldTakeSnapshot(Some(event), snapshot, sequenceNumber, forceSnapshot, activeSnapshotCriteria)
       ctx.log.debug("Snapshot criteria evaluation result: {}", result)
       result
     }
 
     if (shouldSaveSnapshot) {
       ctx.log.debug("Taking snapshot at sequence number {}", sequenceNumber)
-
-      // Save snapshot to memory
-      InMemoryEventStore.saveSnapshot(persistenceId, snapshot)
-
-      // Update state
-      currentState = snapshot
-
-      // Apply retention policy (if set)
-      config.retentionCriteria.foreach { retention =>
-        ctx.log.debug("Applying retention policy: {}", retention)
-        // Calculate sequence number to delete based on current sequence number
-        val currentSeqNr = getCurrentSequenceNumber
-        val maxSeqNrToDelete = calculateMaxSequenceNumberToDelete(currentSeqNr, retention)
-
-        // Actual deletion process (just logging here)
-        if (maxSeqNrToDelete > 0) {
-          ctx.log.debug("Would delete snapshots up to sequence number: {}", maxSeqNrToDelete)
-        }
-      }
+      saveSnapshot(snapshot)
     }
 
     // Execute callback immediately
@@ -214,6 +228,7 @@ private[effector] final class InMemoryEffector[S, E, M](
 
     // Save events to memory
     InMemoryEventStore.addEvents(persistenceId, events)
+    activeSnapshotCriteria.foreach(_.eventsPersisted(events, serializedSize))
 
     val finalSequenceNumber = getCurrentSequenceNumber
 
@@ -226,32 +241,14 @@ private[effector] final class InMemoryEffector[S, E, M](
           snapshot,
           finalSequenceNumber,
           forceSnapshot,
-          config.snapshotCriteria)
+          activeSnapshotCriteria)
         ctx.log.debug("Snapshot criteria evaluation result: {}", result)
         result
       })
 
     if (shouldSave) {
       ctx.log.debug("Taking snapshot at sequence number {}", finalSequenceNumber)
-
-      // Save snapshot to memory
-      InMemoryEventStore.saveSnapshot(persistenceId, snapshot)
-
-      // Update state
-      currentState = snapshot
-
-      // Apply retention policy (if set)
-      config.retentionCriteria.foreach { retention =>
-        ctx.log.debug("Applying retention policy: {}", retention)
-        // Calculate sequence number to delete based on current sequence number
-        val currentSeqNr = getCurrentSequenceNumber
-        val maxSeqNrToDelete = calculateMaxSequenceNumberToDelete(currentSeqNr, retention)
-
-        // Actual deletion process (just logging here)
-        if (maxSeqNrToDelete > 0) {
-          ctx.log.debug("Would delete snapshots up to sequence number: {}", maxSeqNrToDelete)
-        }
-      }
+      saveSnapshot(snapshot)
     }
 
     // Execute callback immediately
@@ -265,6 +262,53 @@ private[effector] final class InMemoryEffector[S, E, M](
     }
   }
 
+  /**
+   * Consume a passivation check, and record the activity of the entity for other messages, which are passed to the
+   * actor behavior.
+   *
+   * @param msg
+   *   Received message
+   * @return
+   *   The behavior to continue with if the message was consumed, None otherwise
+   */
+  private[scalaimpl] def receiveInterceptedMessage(msg: M): Option[Behavior[M]] =
+    msg.asMatchable match {
+      case PassivationTimer.PassivationCheck =>
+        Some(if (!passivated && passivationTimer.get.checkIdle(!stashBuffer.isEmpty)) passivate() else Behaviors.same)
+      case _ =>
+        passivationTimer.foreach(_.recordActivity())
+        None
+    }
+
+  /**
+   * Save a snapshot if events were persisted since the latest one, which discards them from the store, and stop the
+   * actor or pass it the passivation message. The store entity is unpinned when the actor stops, so that it can be
+   * evicted.
+   *
+   * @return
+   *   The behavior to continue with
+   */
+  private def passivate(): Behavior[M] = {
+    val settings = passivation.get
+    if (settings.snapshotOnPassivate && getCurrentSequenceNumber > latestSnapshotSequenceNumber) {
+      // The state of the actor is not tracked by the effector, so it is rebuilt from the store
+      val state = InMemoryEventStore.getLatestSnapshot[S](persistenceId) match {
+        case Some(snapshot) => InMemoryEventStore.replayEvents(persistenceId, snapshot, applyEvent)
+        case None => InMemoryEventStore.replayEvents(persistenceId, initialState, applyEvent)
+      }
+      saveSnapshot(state)
+    }
+    ctx.log.debug("Passivating {}", persistenceId)
+    passivated = true
+    settings.passivateMessage match {
+      case Some(message) =>
+        ctx.self ! message
+        Behaviors.same
+      case None =>
+        Behaviors.stopped
+    }
+  }
+
   /**
    * Get the current state of the entity. This method is primarily used for testing and debugging.
    *
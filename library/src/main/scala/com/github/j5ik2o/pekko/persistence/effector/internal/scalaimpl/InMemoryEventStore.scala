@@ -2,26 +2,189 @@ package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
 
 import com.github.j5ik2o.pekko.persistence.effector.scaladsl.PersistenceId
 
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicLong}
+import scala.jdk.CollectionConverters.*
+
 /**
- * Singleton object for storing in-memory events and snapshots
+ * Singleton object for storing in-memory events and snapshots.
+ *
+ * By default every event is retained, and the state is rebuilt from the latest snapshot and the events written after
+ * it. Two opt-in settings bound the memory of the store:
+ *   - with compaction, the events written before a snapshot are discarded when the snapshot is saved, so an entity
+ *     only retains the events needed to rebuild its state;
+ *   - a global budget limits the number of retained events. When it is exceeded, the least recently used entities
+ *     that are not pinned by a running effector are evicted until the retained events are an eighth below the budget,
+ *     so that the eviction pass runs once per batch of writes rather than on every write. The sequence number of an
+ *     evicted entity is kept, so that its sequence numbers continue where they stopped.
  */
 private[effector] object InMemoryEventStore {
 
-  import scala.jdk.CollectionConverters.*
+  private final val InitialCapacity = 16
+
+  // Eviction frees this fraction of the budget below it
+  private final val EvictionHeadroomDivisor = 8
+
+  private val EmptyEvents = new Array[AnyRef](0)
+
+  private val EmptyRange = new EventRange(EmptyEvents, 0, 0)
+
+  /**
+   * All data stored for a persistence ID. Every access is synchronized on the record itself, so entities never contend
+   * with each other and the events, snapshots and sequence number of an entity are always updated together.
+   */
+  private final class EntityRecord(initialSequenceNumber: Long) {
+    // Append-only event buffer holding the events up to sequenceNumber; slots below eventCount are never overwritten
+    var events: Array[AnyRef] = EmptyEvents
+    var eventCount: Int = 0
+    // Snapshots as (sequence number, snapshot), latest first
+    var snapshots: List[(Long, Any)] = Nil
+    var sequenceNumber: Long = initialSequenceNumber
+    // Number of running effectors using this record; pinned records are never evicted
+    var pins: Int = 0
+    // Set once the record has been removed from the store
+    var evicted: Boolean = false
+    // Logical time of the last access, for LRU eviction
+    @volatile var lastAccess: Long = 0L
+
+    def ensureCapacity(required: Int): Unit =
+      if (required > events.length) {
+        var newCapacity = math.max(events.length * 2, InitialCapacity)
+        while (newCapacity < required) newCapacity *= 2
+        events = java.util.Arrays.copyOf(events, newCapacity)
+      }
+
+    def append(event: Any): Unit = {
+      ensureCapacity(eventCount + 1)
+      events(eventCount) = event.asInstanceOf[AnyRef]
+      eventCount += 1
+      sequenceNumber += 1
+    }
+
+    /**
+     * Capture the retained events written after a sequence number.
+     *
+     * @param afterSequenceNumber
+     *   Sequence number the events follow
+     * @return
+     *   Range of the events
+     */
+    def eventsAfter(afterSequenceNumber: Long): EventRange = {
+      val firstRetained = sequenceNumber - eventCount
+      val from = math.min(math.max(afterSequenceNumber - firstRetained, 0L), eventCount.toLong).toInt
+      new EventRange(events, from, eventCount)
+    }
+
+    /**
+     * Discard all retained events. A new buffer is allocated, since ranges captured earlier may still be read.
+     *
+     * @return
+     *   Number of discarded events
+     */
+    def discardEvents(): Int = {
+      val discarded = eventCount
+      events = EmptyEvents
+      eventCount = 0
+      discarded
+    }
+  }
+
+  /**
+   * Range of events captured under the record lock. Since slots below the captured count are never overwritten, the
+   * range can be read after the lock has been released.
+   */
+  private final class EventRange(events: Array[AnyRef], from: Int, until: Int) {
+    def foldLeft[S, E](state: S)(f: (S, E) => S): S = {
+      var result = state
+      var i = from
+      while (i < until) {
+        result = f(result, events(i).asInstanceOf[E])
+        i += 1
+      }
+      result
+    }
+
+    def toVector[E]: Vector[E] = {
+      val builder = Vector.newBuilder[E]
+      builder.sizeHint(until - from)
+      var i = from
+      while (i < until) {
+        builder += events(i).asInstanceOf[E]
+        i += 1
+      }
+      builder.result()
+    }
+  }
+
+  // persistenceId -> all data of the entity
+  private val records = new ConcurrentHashMap[PersistenceId, EntityRecord]()
+
+  // persistenceId -> sequence number of an evicted entity, taken over by its next record
+  private val evictedSequenceNumbers = new ConcurrentHashMap[PersistenceId, java.lang.Long]()
+
+  // Total number of events retained by all records, updated under the lock of the record whose events change
+  private val retainedEvents = new AtomicLong(0L)
+
+  private val accessClock = new AtomicLong(0L)
 
-  // Use thread-safe collections
-  // persistenceId -> event list
-  private val events: scala.collection.mutable.Map[PersistenceId, Vector[Any]] =
-    new java.util.concurrent.ConcurrentHashMap[PersistenceId, Vector[Any]]().asScala
-  // persistenceId -> latest snapshot
-  private val snapshots: scala.collection.mutable.Map[PersistenceId, Any] =
-    new java.util.concurrent.ConcurrentHashMap[PersistenceId, Any]().asScala
-  // persistenceId -> latest event index at snapshot save time
-  private val snapshotEventIndices: scala.collection.mutable.Map[PersistenceId, Int] =
-    new java.util.concurrent.ConcurrentHashMap[PersistenceId, Int]().asScala
-  // persistenceId -> current sequence number
-  private val sequenceNumbers: scala.collection.mutable.Map[PersistenceId, Long] =
-    new java.util.concurrent.ConcurrentHashMap[PersistenceId, Long]().asScala
+  @volatile private var maxRetainedEvents: Long = Long.MaxValue
+
+  @volatile private var compactOnSnapshot: Boolean = false
+
+  // Set when eviction could not get below the budget, until a record is unpinned
+  @volatile private var evictionBlocked: Boolean = false
+
+  private val evicting = new AtomicBoolean(false)
+
+  /**
+   * Apply a function to the live record of a persistence ID under its lock, creating the record if necessary.
+   */
+  private def updateRecord[A](id: PersistenceId)(f: EntityRecord => A): A = {
+    val record = records.computeIfAbsent(
+      id,
+      _ => new EntityRecord(Option(evictedSequenceNumbers.remove(id)).fold(0L)(_.longValue)),
+    )
+    val result = record.synchronized {
+      if (record.evicted) None
+      else {
+        record.lastAccess = accessClock.incrementAndGet()
+        Some(f(record))
+      }
+    }
+    // The record was evicted concurrently, so retry with a new one
+    result match {
+      case Some(value) => value
+      case None => updateRecord(id)(f)
+    }
+  }
+
+  private def withRecord[A](id: PersistenceId)(ifAbsent: => A)(f: EntityRecord => A): A = {
+    val record = records.get(id)
+    if (record eq null) ifAbsent else record.synchronized(f(record))
+  }
+
+  /**
+   * Pin a persistence ID so that it is not evicted while an effector is using it.
+   *
+   * @param id
+   *   Persistence ID
+   */
+  def pin(id: PersistenceId): Unit =
+    updateRecord(id)(_.pins += 1)
+
+  /**
+   * Release a pin acquired with [[pin]].
+   *
+   * @param id
+   *   Persistence ID
+   */
+  def unpin(id: PersistenceId): Unit = {
+    withRecord(id)(()) { record =>
+      record.pins = math.max(record.pins - 1, 0)
+    }
+    evictionBlocked = false
+    evictIfOverBudget()
+  }
 
   /**
    * Add a single event to the store.
@@ -34,12 +197,11 @@ private[effector] object InMemoryEventStore {
    *   Event type
    */
   def addEvent[E](id: PersistenceId, event: E): Unit = {
-    events.updateWith(id) {
-      case Some(existing) => Some(existing :+ event)
-      case None => Some(Vector(event))
+    updateRecord(id) { record =>
+      record.append(event)
+      retainedEvents.incrementAndGet()
     }
-    val currentSeq = sequenceNumbers.getOrElse(id, 0L)
-    sequenceNumbers.update(id, currentSeq + 1)
+    evictIfOverBudget()
   }
 
   /**
@@ -53,12 +215,12 @@ private[effector] object InMemoryEventStore {
    *   Event type
    */
   def addEvents[E](id: PersistenceId, newEvents: Seq[E]): Unit = {
-    events.updateWith(id) {
-      case Some(existing) => Some(existing ++ newEvents)
-      case None => Some(newEvents.toVector)
+    updateRecord(id) { record =>
+      record.ensureCapacity(record.eventCount + newEvents.size)
+      newEvents.foreach(record.append)
+      retainedEvents.addAndGet(newEvents.size)
     }
-    val currentSeq = sequenceNumbers.getOrElse(id, 0L)
-    sequenceNumbers.update(id, currentSeq + newEvents.size)
+    evictIfOverBudget()
   }
 
   /**
@@ -70,10 +232,11 @@ private[effector] object InMemoryEventStore {
    *   Current sequence number
    */
   def getCurrentSequenceNumber(id: PersistenceId): Long =
-    sequenceNumbers.getOrElse(id, 0L)
+    withRecord(id)(Option(evictedSequenceNumbers.get(id)).fold(0L)(_.longValue))(_.sequenceNumber)
 
   /**
-   * Save a snapshot for a persistence ID.
+   * Save a snapshot for a persistence ID at its current sequence number. The events written before the snapshot are
+   * discarded if compaction is enabled.
    *
    * @param id
    *   Persistence ID
@@ -81,15 +244,38 @@ private[effector] object InMemoryEventStore {
    *   Snapshot to save
    * @tparam S
    *   Snapshot type
+   * @return
+   *   Sequence number of the snapshot
    */
-  def saveSnapshot[S](id: PersistenceId, snapshot: S): Unit = {
-    snapshots.update(id, snapshot)
-    // Record the number of events at the time of snapshot save
-    snapshotEventIndices.update(id, events.getOrElse(id, Vector.empty).size)
-  }
+  def saveSnapshot[S](id: PersistenceId, snapshot: S): Long =
+    updateRecord(id) { record =>
+      record.snapshots = (record.sequenceNumber, snapshot) :: record.snapshots
+      if (compactOnSnapshot) retainedEvents.addAndGet(-record.discardEvents())
+      record.sequenceNumber
+    }
 
   /**
-   * Get all events for a persistence ID.
+   * Delete snapshots up to the specified sequence number. If compaction is enabled, the latest snapshot is always kept,
+   * since the events before it may have been discarded.
+   *
+   * @param id
+   *   Persistence ID
+   * @param maxSequenceNumber
+   *   Maximum sequence number of the snapshots to delete
+   */
+  def deleteSnapshots(id: PersistenceId, maxSequenceNumber: Long): Unit =
+    withRecord(id)(()) { record =>
+      record.snapshots match {
+        case latest :: older if compactOnSnapshot =>
+          record.snapshots = latest :: older.filter(_._1 > maxSequenceNumber)
+        case snapshots =>
+          record.snapshots = snapshots.filter(_._1 > maxSequenceNumber)
+      }
+    }
+
+  /**
+   * Get the events retained for a persistence ID, i.e. all its events, or the events written after the latest snapshot
+   * if compaction is enabled.
    *
    * @param id
    *   Persistence ID
@@ -99,7 +285,7 @@ private[effector] object InMemoryEventStore {
    *   Vector of events
    */
   def getEvents[E](id: PersistenceId): Vector[E] =
-    events.getOrElse(id, Vector.empty).asInstanceOf[Vector[E]]
+    withRecord(id)(EmptyRange)(_.eventsAfter(0L)).toVector[E]
 
   /**
    * Get the latest snapshot for a persistence ID.
@@ -112,7 +298,18 @@ private[effector] object InMemoryEventStore {
    *   Option containing the latest snapshot, or None if no snapshot exists
    */
   def getLatestSnapshot[S](id: PersistenceId): Option[S] =
-    snapshots.get(id).map(_.asInstanceOf[S])
+    withRecord(id)(Option.empty[S])(_.snapshots.headOption.map(_._2.asInstanceOf[S]))
+
+  /**
+   * Get the sequence numbers of the snapshots retained for a persistence ID.
+   *
+   * @param id
+   *   Persistence ID
+   * @return
+   *   Sequence numbers of the snapshots, latest first
+   */
+  def getSnapshotSequenceNumbers(id: PersistenceId): Seq[Long] =
+    withRecord(id)(Seq.empty[Long])(_.snapshots.map(_._1))
 
   /**
    * Get only events that occurred after the latest snapshot.
@@ -124,20 +321,16 @@ private[effector] object InMemoryEventStore {
    * @return
    *   Vector of events after the latest snapshot
    */
-  def getEventsAfterSnapshot[E](id: PersistenceId): Vector[E] = {
-    val allEvents = getEvents[E](id)
-    if (snapshots.contains(id) && allEvents.nonEmpty) {
-      // If a snapshot exists and events also exist,
-      // return only events after the last snapshot was created
-      val snapshotIndex = snapshotEventIndices.getOrElse(id, 0)
-      allEvents.drop(snapshotIndex)
-    } else {
-      allEvents
+  def getEventsAfterSnapshot[E](id: PersistenceId): Vector[E] =
+    eventsAfterSnapshot(id).toVector[E]
+
+  private def eventsAfterSnapshot(id: PersistenceId): EventRange =
+    withRecord(id)(EmptyRange) { record =>
+      record.eventsAfter(record.snapshots.headOption.fold(0L)(_._1))
     }
-  }
 
   /**
-   * Replay events to rebuild state.
+   * Replay the events written after the latest snapshot to rebuild state.
    *
    * @param id
    *   Persistence ID
@@ -153,15 +346,105 @@ private[effector] object InMemoryEventStore {
    *   Updated state after applying all events
    */
   def replayEvents[S, E](id: PersistenceId, state: S, applyEvent: (S, E) => S): S =
-    getEventsAfterSnapshot[E](id).foldLeft(state)(applyEvent)
+    // Events are applied outside the record lock
+    eventsAfterSnapshot(id).foldLeft(state)(applyEvent)
+
+  /**
+   * Set the maximum number of events retained by all entities.
+   *
+   * @param value
+   *   Maximum number of retained events (Long.MaxValue for no limit)
+   */
+  def setMaxRetainedEvents(value: Long): Unit = {
+    require(value > 0, "maxRetainedEvents must be > 0")
+    maxRetainedEvents = value
+    evictionBlocked = false
+    evictIfOverBudget()
+  }
+
+  /**
+   * Get the maximum number of events retained by all entities.
+   *
+   * @return
+   *   Maximum number of retained events (Long.MaxValue if there is no limit)
+   */
+  def getMaxRetainedEvents: Long = maxRetainedEvents
+
+  /**
+   * Set whether the events written before a snapshot are discarded when the snapshot is saved.
+   *
+   * @param enabled
+   *   true to discard the events, false to retain every event
+   */
+  def setCompactOnSnapshot(enabled: Boolean): Unit =
+    compactOnSnapshot = enabled
+
+  /**
+   * Get whether the events written before a snapshot are discarded when the snapshot is saved.
+   *
+   * @return
+   *   true if the events are discarded
+   */
+  def isCompactOnSnapshot: Boolean = compactOnSnapshot
+
+  /**
+   * Get the number of entities in the store.
+   *
+   * @return
+   *   Number of entities
+   */
+  def entityCount: Int = records.size()
+
+  /**
+   * Get the number of events retained by all entities.
+   *
+   * @return
+   *   Number of retained events
+   */
+  def retainedEventCount: Long = retainedEvents.get()
+
+  /**
+   * Evict the least recently used entities that are not pinned until the retained events are below the budget by its
+   * headroom, so that the records are only sorted once for many writes. Only one thread evicts at a time; the others
+   * continue without waiting.
+   */
+  private def evictIfOverBudget(): Unit =
+    if (retainedEvents.get() > maxRetainedEvents && !evictionBlocked && evicting.compareAndSet(false, true)) {
+      try {
+        val target = maxRetainedEvents - maxRetainedEvents / EvictionHeadroomDivisor
+        // Pins are checked again under the record lock
+        val candidates = records
+          .entrySet()
+          .asScala
+          .filter(_.getValue.pins == 0)
+          .toVector
+          .sortBy(_.getValue.lastAccess)
+          .iterator
+        while (retainedEvents.get() > target && candidates.hasNext) {
+          val entry = candidates.next()
+          val record = entry.getValue
+          record.synchronized {
+            if (record.pins == 0 && !record.evicted) {
+              record.evicted = true
+              evictedSequenceNumbers.put(entry.getKey, record.sequenceNumber)
+              records.remove(entry.getKey, record)
+              record.snapshots = Nil
+              retainedEvents.addAndGet(-record.discardEvents())
+            }
+          }
+        }
+        evictionBlocked = retainedEvents.get() > maxRetainedEvents
+      } finally evicting.set(false)
+    }
 
   /**
    * Clear all data from the store. This method is primarily used for testing.
    */
   def clear(): Unit = {
-    events.clear()
-    snapshots.clear()
-    snapshotEventIndices.clear()
-    sequenceNumbers.clear()
+    records.values().asScala.foreach(record => record.synchronized(record.evicted = true))
+    records.clear()
+    evictedSequenceNumbers.clear()
+    retainedEvents.set(0L)
+    evictionBlocked = false
   }
 }
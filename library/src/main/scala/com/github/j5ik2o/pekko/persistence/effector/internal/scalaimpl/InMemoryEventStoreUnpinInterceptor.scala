@@ -0,0 +1,37 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.PersistenceId
+import org.apache.pekko.actor.typed.{
+  Behavior,
+  BehaviorInterceptor,
+  BehaviorSignalInterceptor,
+  PostStop,
+  PreRestart,
+  Signal,
+  TypedActorContext,
+}
+
+/**
+ * Interceptor that releases the pin on an entity of the [[InMemoryEventStore]] when the actor stops or restarts, so
+ * that the entity becomes eligible for eviction again.
+ *
+ * @param persistenceId
+ *   Persistence ID pinned by the actor
+ * @tparam M
+ *   Type of message
+ */
+private[effector] final class InMemoryEventStoreUnpinInterceptor[M](persistenceId: PersistenceId)
+  extends BehaviorSignalInterceptor[M] {
+
+  override def aroundSignal(
+    ctx: TypedActorContext[M],
+    signal: Signal,
+    target: BehaviorInterceptor.SignalTarget[M],
+  ): Behavior[M] = {
+    signal match {
+      case PostStop | PreRestart => InMemoryEventStore.unpin(persistenceId)
+      case _ => ()
+    }
+    target(ctx, signal)
+  }
+}
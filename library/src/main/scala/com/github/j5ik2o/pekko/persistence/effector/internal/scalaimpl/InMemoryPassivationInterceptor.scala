@@ -0,0 +1,30 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import org.apache.pekko.actor.typed.{Behavior, BehaviorInterceptor, TypedActorContext}
+
+/**
+ * Interceptor that tracks the messages reaching the user behavior and passivates the entity when idle (Ephemeral mode).
+ * It is only installed with passivation.
+ *
+ * @param effector
+ *   Effector of the entity
+ * @tparam S
+ *   Type of state
+ * @tparam E
+ *   Type of event
+ * @tparam M
+ *   Type of message
+ */
+private[effector] final class InMemoryPassivationInterceptor[S, E, M](effector: InMemoryEffector[S, E, M])
+  extends BehaviorInterceptor[M, M](classOf[AnyRef].asInstanceOf[Class[M]]) {
+
+  override def aroundReceive(
+    ctx: TypedActorContext[M],
+    msg: M,
+    target: BehaviorInterceptor.ReceiveTarget[M],
+  ): Behavior[M] =
+    effector.receiveInterceptedMessage(msg) match {
+      case Some(behavior) => behavior
+      case None => target(ctx, msg)
+    }
+}
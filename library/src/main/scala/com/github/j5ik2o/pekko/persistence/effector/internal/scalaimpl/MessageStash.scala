@@ -0,0 +1,129 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.PersistenceEffectorConfig
+import org.apache.pekko.actor.typed.scaladsl.{ActorContext, Behaviors}
+import org.apache.pekko.actor.typed.{Behavior, BehaviorInterceptor}
+
+/**
+ * Messages of an effector in Persisted and Direct mode that cannot be processed while a reply is awaited. Read-only
+ * messages are handled against the confirmed state instead of being stashed, and the stashed messages are processed
+ * by the behavior the actor continues with, through the reply interceptor if it is installed.
+ *
+ * @param ctx
+ *   Actor context
+ * @param stashed
+ *   Bounded stash of the actor
+ * @param config
+ *   Effector configuration
+ * @param journal
+ *   Journal of the effector, whose confirmed state read-only messages are handled against
+ * @param interceptor
+ *   Interceptor installed around every behavior the effector hands to the actor, if any
+ * @tparam S
+ *   Type of state
+ * @tparam E
+ *   Type of event
+ * @tparam M
+ *   Type of message
+ */
+private[scalaimpl] final class MessageStash[S, E, M](
+  ctx: ActorContext[M],
+  stashed: BoundedStash[M],
+  config: PersistenceEffectorConfig[S, E, M],
+  journal: EventJournal[S, E, M],
+  interceptor: Option[BehaviorInterceptor[M, M]],
+) {
+
+  // Whether the actor runs the behavior returned by `onReady`, so that pipelined persists can keep its behavior
+  private var readyStarted: Boolean = false
+
+  /**
+   * Whether the actor runs the behavior returned by `onReady`.
+   *
+   * @return
+   *   true once [[start]] has been called
+   */
+  def started: Boolean = readyStarted
+
+  /**
+   * Whether no message is stashed.
+   *
+   * @return
+   *   true if the stash is empty
+   */
+  def isEmpty: Boolean = stashed.isEmpty
+
+  /**
+   * Start the behavior returned by `onReady`, processing the messages stashed during recovery
+   *
+   * @param ready
+   *   Behavior returned by `onReady`
+   * @return
+   *   The behavior of the actor
+   */
+  def start(ready: Behavior[M]): Behavior[M] = {
+    readyStarted = true
+    unstashAll(ready)
+  }
+
+  /**
+   * Stash a message, applying the stash overflow strategy if the stash is full
+   *
+   * @param msg
+   *   Message to stash
+   */
+  def stash(msg: M): Unit =
+    stashed.stash(msg)
+
+  /**
+   * Handle a message that has to wait for a reply: it is handled against the confirmed state if it is read-only, and
+   * stashed otherwise.
+   *
+   * @param msg
+   *   Received message
+   * @return
+   *   Behaviors.same
+   */
+  def defer(msg: M): Behavior[M] = {
+    if (!handleReadOnly(msg)) {
+      if (ctx.log.isDebugEnabled) ctx.log.debug("Stashing message: {}", msg)
+      stash(msg)
+    }
+    Behaviors.same
+  }
+
+  /**
+   * Continue with a behavior after processing the stashed messages, which go through the reply interceptor if it is
+   * installed
+   *
+   * @param next
+   *   Behavior to continue with
+   * @return
+   *   The behavior to continue with
+   */
+  def unstashAll(next: Behavior[M]): Behavior[M] =
+    interceptor match {
+      case Some(replyInterceptor) if Behavior.isAlive(next) && (next ne Behaviors.same[M]) =>
+        stashed.unstashAll(Behaviors.intercept(() => replyInterceptor)(next))
+      case _ =>
+        stashed.unstashAll(next)
+    }
+
+  /**
+   * Handle a message against the confirmed state if it is read-only
+   *
+   * @param msg
+   *   Received message
+   * @return
+   *   true if the message was handled, false if it has to be stashed
+   */
+  private def handleReadOnly(msg: M): Boolean =
+    config.readOnlyCommandHandler match {
+      case Some(handler) if handler.isReadOnly(journal.confirmedState, msg) =>
+        if (ctx.log.isDebugEnabled) ctx.log.debug("Handling read-only message with the confirmed state: {}", msg)
+        handler.handle(journal.confirmedState, msg)
+        true
+      case _ =>
+        false
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import org.apache.pekko.actor.typed.scaladsl.ActorContext
+
+import scala.concurrent.duration.*
+
+/**
+ * Companion object for PassivationTimer.
+ */
+private[effector] object PassivationTimer {
+
+  /**
+   * Message sent to the actor itself to check whether it has been idle for the idle timeout.
+   */
+  case object PassivationCheck
+}
+
+/**
+ * Tracks the activity of an actor for passivation. A single check is scheduled at a time: when it arrives before the
+ * idle timeout has elapsed since the last activity, the next check is scheduled for the remaining time, so that
+ * recording an activity does not touch the scheduler.
+ *
+ * @param ctx
+ *   Actor context of the actor
+ * @param idleTimeout
+ *   Time without activity after which the actor is idle
+ * @tparam M
+ *   Type of message
+ */
+private[effector] final class PassivationTimer[M](ctx: ActorContext[M], idleTimeout: FiniteDuration) {
+  import PassivationTimer.*
+
+  private val idleTimeoutNanos = idleTimeout.toNanos
+
+  private var lastActivityNanos: Long = System.nanoTime()
+
+  scheduleCheck(idleTimeout)
+
+  /**
+   * Record that a message has been processed.
+   */
+  def recordActivity(): Unit =
+    lastActivityNanos = System.nanoTime()
+
+  /**
+   * Handle a [[PassivationTimer.PassivationCheck]], scheduling the next check unless the actor is to be passivated.
+   *
+   * @param busy
+   *   Whether the actor is waiting for a reply, in which case it is not idle
+   * @return
+   *   true if the actor has been idle for the idle timeout
+   */
+  def checkIdle(busy: Boolean): Boolean = {
+    val idleNanos = System.nanoTime() - lastActivityNanos
+    if (busy) {
+      scheduleCheck(idleTimeout)
+      false
+    } else if (idleNanos < idleTimeoutNanos) {
+      scheduleCheck((idleTimeoutNanos - idleNanos).nanos)
+      false
+    } else {
+      true
+    }
+  }
+
+  private def scheduleCheck(delay: FiniteDuration): Unit =
+    ctx.scheduleOnce(delay, ctx.self, PassivationCheck.asInstanceOf[M])
+}
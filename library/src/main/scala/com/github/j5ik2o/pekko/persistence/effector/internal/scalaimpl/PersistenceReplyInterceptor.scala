@@ -0,0 +1,44 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import org.apache.pekko.actor.typed.{Behavior, BehaviorInterceptor, PostStop, Signal, TypedActorContext}
+
+/**
+ * Interceptor that consumes replies from the persistence store actor before they reach the user behavior. It is only
+ * installed in pipelined mode or with asynchronous snapshots, where the user behavior keeps processing messages while
+ * requests are in flight, when journal events are deleted with old snapshots, whose replies are never waited for, with
+ * a persist timeout, after which the reply to the write is no longer waited for, with passivation, which tracks the
+ * messages reaching the user behavior, and with state caching, which caches the state when the actor stops.
+ *
+ * @param effector
+ *   Effector that owns the in-flight requests
+ * @tparam S
+ *   Type of state
+ * @tparam E
+ *   Type of event
+ * @tparam M
+ *   Type of message
+ */
+private[effector] final class PersistenceReplyInterceptor[S, E, M](effector: DefaultPersistenceEffector[S, E, M])
+  extends BehaviorInterceptor[M, M](classOf[AnyRef].asInstanceOf[Class[M]]) {
+
+  override def aroundReceive(
+    ctx: TypedActorContext[M],
+    msg: M,
+    target: BehaviorInterceptor.ReceiveTarget[M],
+  ): Behavior[M] = {
+    val adapted = effector.adaptJournalResponse(msg)
+    effector.receiveInterceptedMessage(adapted) match {
+      case Some(behavior) => behavior
+      case None => target(ctx, adapted)
+    }
+  }
+
+  override def aroundSignal(
+    ctx: TypedActorContext[M],
+    signal: Signal,
+    target: BehaviorInterceptor.SignalTarget[M],
+  ): Behavior[M] = {
+    if (signal == PostStop) effector.cacheState()
+    target(ctx, signal)
+  }
+}
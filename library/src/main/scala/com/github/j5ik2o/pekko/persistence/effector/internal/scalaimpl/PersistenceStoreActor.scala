@@ -1,13 +1,33 @@
 package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
 
 import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.PersistenceStoreProtocol.*
-import com.github.j5ik2o.pekko.persistence.effector.scaladsl.BackoffConfig
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
+  BackoffConfig,
+  DeltaSnapshot,
+  DeltaSnapshotConfig,
+  EncodedSnapshot,
+  EventUpcaster,
+  PackedEvents,
+  PersistenceEffectorInstrumentation,
+  PersistenceId,
+  PersistenceOperation,
+  RecoveryConfig,
+  RecoveryWarmup,
+  SnapshotCodec,
+  StateCache,
+}
 import org.apache.pekko.actor.typed.ActorRef
-import org.apache.pekko.actor.{ActorLogging, Props, Stash}
+import org.apache.pekko.actor.typed.scaladsl.adapter.*
+import org.apache.pekko.actor.{ActorLogging, Props}
 import org.apache.pekko.pattern.{BackoffOpts, BackoffSupervisor}
 import org.apache.pekko.persistence.*
+import org.apache.pekko.persistence.effector.SnapshotProtocolBridge
+import org.apache.pekko.serialization.SerializationExtension
 
+import scala.collection.mutable
 import scala.compiletime.asMatchable
+import scala.concurrent.{ExecutionContext, Future}
+import scala.util.{Failure, Success, Try}
 
 /**
  * Companion object for PersistenceStoreActor.
@@ -27,6 +47,20 @@ private[effector] object PersistenceStoreActor {
    *   Actor reference to notify when recovery is complete
    * @param backoffConfig
    *   Optional backoff configuration for supervisor
+   * @param instrumentation
+   *   Instrumentation notified of the operations of the actor
+   * @param deltaSnapshotConfig
+   *   Optional configuration for incremental snapshots
+   * @param recoveryConfig
+   *   Optional configuration for chunked recovery
+   * @param eventUpcaster
+   *   Optional upcaster of replayed events
+   * @param snapshotCodec
+   *   Optional codec applied to the serialized snapshots
+   * @param packedBatchCodec
+   *   Optional codec of the events of multi-event persists written as a single journal event
+   * @param pipelinedWrites
+   *   Whether the effector pipelines its writes, which are then written without waiting for the previous ones
    * @tparam S
    *   Type of state
    * @tparam E
@@ -37,14 +71,33 @@ private[effector] object PersistenceStoreActor {
    *   Props for creating a PersistenceStoreActor
    */
   def props[S, E, M](
-    persistenceId: String,
+    persistenceId: PersistenceId,
     initialState: S,
     applyEvent: (S, E) => S,
     recoveryActorRef: ActorRef[RecoveryDone[S]],
     backoffConfig: Option[BackoffConfig],
+    instrumentation: PersistenceEffectorInstrumentation,
+    deltaSnapshotConfig: Option[DeltaSnapshotConfig[S]],
+    recoveryConfig: Option[RecoveryConfig] = None,
+    eventUpcaster: Option[EventUpcaster[E]] = None,
+    snapshotCodec: Option[SnapshotCodec] = None,
+    packedBatchCodec: Option[SnapshotCodec] = None,
+    pipelinedWrites: Boolean = false,
   ): Props = {
     val childProps = Props(
-      new PersistenceStoreActor[S, E, M](persistenceId, initialState, applyEvent, recoveryActorRef))
+      new PersistenceStoreActor[S, E, M](
+        persistenceId,
+        initialState,
+        applyEvent,
+        recoveryActorRef,
+        instrumentation,
+        deltaSnapshotConfig,
+        recoveryConfig,
+        eventUpcaster,
+        snapshotCodec,
+        packedBatchCodec,
+        pipelinedWrites,
+      ))
     backoffConfig match {
       case Some(BackoffConfig(minBackoff, maxBackoff, randomFactor)) =>
         BackoffSupervisor.props(
@@ -61,121 +114,650 @@ private[effector] object PersistenceStoreActor {
     }
   }
 
+  /**
+   * Persist request whose journal write has not completed yet.
+   *
+   * @param events
+   *   Events to persist
+   * @param replyTo
+   *   Actor reference to reply to
+   * @param operation
+   *   Kind of operation, for instrumentation
+   * @param startNanos
+   *   Time the request was received, or 0 if instrumentation is disabled
+   * @param journalEvents
+   *   Number of events written to the journal, i.e. 1 if the events are packed
+   */
+  private final class PendingPersist[S, E](
+    val events: Seq[E],
+    val replyTo: ActorRef[PersistEventsReply[S, E]],
+    val operation: PersistenceOperation,
+    val startNanos: Long,
+    journalEvents: Int,
+  ) {
+    // Number of journal events whose write has not been acknowledged or rejected yet
+    var remaining: Int = journalEvents
+    var rejected: Boolean = false
+  }
+
+  /**
+   * Message that makes the actor fail, so that it is restarted and recovers from the journal
+   */
+  private case object WarmedStateOutdated
+
+  /**
+   * Base snapshot of the current delta chain.
+   *
+   * @param state
+   *   State of the base snapshot
+   * @param sequenceNr
+   *   Sequence number of the base snapshot
+   */
+  private final case class DeltaBase[S](state: S, sequenceNr: Long)
+
+  /**
+   * Result of folding the replayed events on the recovery dispatcher.
+   *
+   * @param result
+   *   Recovered state, or the failure of `applyEvent`
+   * @param recovery
+   *   Actor instance whose recovery the fold belongs to, so that the result of a previous incarnation is ignored
+   */
+  private final case class RecoveryFolded(result: Try[Any], recovery: AnyRef)
+
 }
 
 private[effector] final class PersistenceStoreActor[S, E, M](
-  override val persistenceId: String,
+  id: PersistenceId,
   initialState: S,
   applyEvent: (S, E) => S,
-  recoveryActorRef: ActorRef[RecoveryDone[S]])
+  recoveryActorRef: ActorRef[RecoveryDone[S]],
+  instrumentation: PersistenceEffectorInstrumentation,
+  deltaSnapshotConfig: Option[DeltaSnapshotConfig[S]],
+  recoveryConfig: Option[RecoveryConfig],
+  eventUpcaster: Option[EventUpcaster[E]],
+  snapshotCodec: Option[SnapshotCodec],
+  packedBatchCodec: Option[SnapshotCodec],
+  pipelinedWrites: Boolean)
   extends PersistentActor
-  with ActorLogging
-  with Stash {
+  with ActorLogging {
+  import PersistenceStoreActor.*
+
+  override val persistenceId: String = id.asString
+
+  private val instrumented = PersistenceEffectorInstrumentation.isEnabled(instrumentation)
+
+  private lazy val serialization = SerializationExtension(context.system)
+
+  // State cached when a previous incarnation of the entity stopped on this node, or recovered ahead of time by
+  // RecoveryWarmup, whichever is more recent. Taken when the instance is created, so an instance restarted because the
+  // state was outdated recovers from the journal.
+  private val warmedState: Option[StateCache.Entry] = {
+    val cached = StateCache(context.system.toTyped).take(id)
+    val warmed = RecoveryWarmup(context.system.toTyped)
+      .take[S](id, upcasts = eventUpcaster.isDefined)
+      .map { case (state, sequenceNr) => StateCache.Entry(state, sequenceNr, 0L) }
+    (cached ++ warmed).maxByOption(_.sequenceNr)
+  }
+
+  private var recoveryState: S = initialState
+  // Measured regardless of instrumentation, as adaptive snapshot criteria use the recovery duration
+  private val recoveryStartNanos = System.nanoTime()
+  private var replayedEvents = 0L
+  // Number of replayed events that went through a step of the upcaster
+  private var upcastEvents = 0L
+  private var snapshotHit = false
+  private var recoveredSnapshotSequenceNr = 0L
+
+  // Number of replayed events between progress reports, and the dispatcher the events are folded on, if any
+  private val recoveryChunkSize: Long = recoveryConfig.fold(Long.MaxValue)(_.chunkSize.toLong)
+  private val recoveryExecutionContext: Option[ExecutionContext] =
+    recoveryConfig.flatMap(_.dispatcher).map(context.system.dispatchers.lookup)
+
+  // Replayed events collected for the next fold on the recovery dispatcher, and the fold of the previous chunks
+  private val recoveryChunk = mutable.ArrayBuffer.empty[E]
+  private var recoveryFold: Option[Future[S]] = None
+
+  // Delta snapshot offered during recovery, whose base is loaded once the events have been replayed
+  private var recoveredDelta: Option[(DeltaSnapshot, SnapshotMetadata)] = None
+
+  // Events replayed after a delta snapshot, applied once its base has been loaded
+  private val eventsAfterDelta = mutable.ArrayBuffer.empty[E]
+
+  // Base of the current delta chain, the number of deltas written for it, and their sequence numbers
+  private var deltaBase: Option[DeltaBase[S]] = None
+  private var deltasSinceBase = 0
+  private val deltaSequenceNrs = mutable.ArrayBuffer.empty[Long]
+
+  // Persist requests whose journal write has not completed yet, in the order they were issued
+  private val pendingPersists = mutable.Queue.empty[PendingPersist[S, E]]
+
+  // Snapshot saves awaiting the result from the snapshot store, keyed by sequence number. Event persistence is not
+  // suspended while they are in progress.
+  private val pendingSnapshotSaves =
+    mutable.Map.empty[Long, mutable.Queue[(S, ActorRef[PersistSnapshotReply[S, E]], Long)]]
+
+  // Snapshot deletions awaiting the result from the snapshot store, keyed by maximum sequence number
+  private val pendingSnapshotDeletions =
+    mutable.Map.empty[Long, mutable.Queue[(ActorRef[DeleteSnapshotsReply[S, E]], Long)]]
+
+  // Event deletions awaiting the result from the journal, keyed by maximum sequence number
+  private val pendingEventDeletions =
+    mutable.Map.empty[Long, mutable.Queue[(ActorRef[DeleteEventsReply[S, E]], Long)]]
+
+  // Sequence number of the events written directly to the journal by the effector (Direct mode)
+  private var directSequenceNr = 0L
+
+  // Cause of the last rejected write, until the effector resumes the writes. Only pipelined writes are gated, as the
+  // effector otherwise sends a write once the previous one has completed, or has been given up after a timeout.
+  private var writeRejection: Option[Throwable] = None
 
-  private var recoveryState: Option[S] = Some(initialState)
+  // Events written directly to the journal are not written by this actor, so their sequence numbers are merged in for
+  // snapshots and event deletions
+  override def lastSequenceNr: Long = math.max(super.lastSequenceNr, directSequenceNr)
+
+  // Only read the highest sequence number when a cached state is available
+  override def recovery: Recovery =
+    if (warmedState.isDefined) Recovery.none else Recovery()
 
   override def receiveRecover: Receive = { msg =>
     msg.asMatchable match {
-      case SnapshotOffer(_, snapshot) =>
+      case SnapshotOffer(metadata, snapshot) if snapshot.isInstanceOf[EncodedSnapshot] =>
+        receiveRecover(SnapshotOffer(metadata, decodeSnapshot(snapshot.asInstanceOf[EncodedSnapshot])))
+      case SnapshotOffer(metadata, snapshot) if snapshot.isInstanceOf[DeltaSnapshot] =>
+        log.debug("receiveRecover: SnapshotOffer: {}", snapshot)
+        recoveredDelta = Some((snapshot.asInstanceOf[DeltaSnapshot], metadata))
+        recoveredSnapshotSequenceNr = metadata.sequenceNr
+        snapshotHit = true
+      case SnapshotOffer(metadata, snapshot) =>
         log.debug("receiveRecover: SnapshotOffer: {}", snapshot)
-        recoveryState = Some(snapshot.asInstanceOf[S])
+        recoveryState = snapshot.asInstanceOf[S]
+        if (deltaSnapshotConfig.isDefined) deltaBase = Some(DeltaBase(snapshot.asInstanceOf[S], metadata.sequenceNr))
+        recoveredSnapshotSequenceNr = metadata.sequenceNr
+        snapshotHit = true
+      case RecoveryCompleted if warmedState.exists(_.sequenceNr != lastSequenceNr) =>
+        log.info(
+          "Cached state of {} is at sequence number {} but the journal is at {}, recovering from the journal",
+          persistenceId,
+          warmedState.get.sequenceNr,
+          lastSequenceNr,
+        )
+        self ! WarmedStateOutdated
+      case RecoveryCompleted if recoveredDelta.isDefined =>
+        val (delta, _) = recoveredDelta.get
+        log.debug("receiveRecover: RecoveryCompleted, loading base snapshot {}", delta.baseSequenceNumber)
+        loadSnapshot(
+          persistenceId,
+          SnapshotSelectionCriteria(
+            maxSequenceNr = delta.baseSequenceNumber,
+            minSequenceNr = delta.baseSequenceNumber,
+          ),
+          delta.baseSequenceNumber,
+        )
       case RecoveryCompleted =>
         log.debug("receiveRecover: RecoveryCompleted")
-        recoveryActorRef ! RecoveryDone(
-          recoveryState.getOrElse(throw new IllegalStateException("State is not set")),
-          lastSequenceNr, // Include lastSequenceNr
-        )
-        recoveryState = None
+        warmedState.foreach { warmed =>
+          log.debug("Taking over the cached state of {} at sequence number {}", persistenceId, warmed.sequenceNr)
+          recoveryState = warmed.state.asInstanceOf[S]
+          recoveredSnapshotSequenceNr = warmed.snapshotSequenceNr
+        }
+        foldRecoveryChunk()
+        recoveryFold match {
+          case Some(fold) =>
+            // Complete once the chunks still being folded on the recovery dispatcher are done
+            fold.onComplete(result => self ! RecoveryFolded(result, this))(using ExecutionContext.parasitic)
+          case None =>
+            completeRecovery()
+        }
       case event =>
         if (event != null) {
-          log.debug("receiveRecover: Event: {}", event)
-          val e = event.asInstanceOf[E]
-          recoveryState = Some(applyEvent(recoveryState.getOrElse(throw new AssertionError()), e))
+          if (log.isDebugEnabled) log.debug("receiveRecover: Event: {}", event)
+          if (event.isInstanceOf[PackedEvents])
+            EventPacking
+              .unpack(serialization, packedBatchCodec, event.asInstanceOf[PackedEvents])
+              .foreach(replayEvent)
+          else
+            replayEvent(event)
+          // Counts journal events, as sequence numbers do
+          replayedEvents += 1
+          if (replayedEvents % recoveryChunkSize == 0) {
+            foldRecoveryChunk()
+            if (instrumented)
+              instrumentation.recoveryProgress(id, replayedEvents, System.nanoTime() - recoveryStartNanos)
+          }
         }
     }
   }
 
+  /**
+   * Upcast a replayed event if needed, and apply it to the recovery state.
+   *
+   * @param event
+   *   Replayed event, unpacked if it was written as part of packed events
+   */
+  private def replayEvent(event: Any): Unit =
+    eventUpcaster match {
+      case Some(upcaster) if !upcaster.isCurrent(event) =>
+        upcastEvents += 1
+        upcaster.upcast(event).foreach(recoverEvent)
+      case _ =>
+        recoverEvent(event.asInstanceOf[E])
+    }
+
+  /**
+   * Apply a replayed event of the current version to the recovery state, or keep it for a later fold.
+   *
+   * @param event
+   *   Replayed event, after upcasting
+   */
+  private def recoverEvent(event: E): Unit =
+    if (recoveredDelta.isDefined) eventsAfterDelta += event
+    else if (recoveryExecutionContext.isDefined) recoveryChunk += event
+    else recoveryState = applyEvent(recoveryState, event)
+
+  /**
+   * Hand the collected events to the recovery dispatcher, to be folded after the previous chunks
+   */
+  private def foldRecoveryChunk(): Unit =
+    if (recoveryChunk.nonEmpty) {
+      val chunk = recoveryChunk.toVector
+      recoveryChunk.clear()
+      val previous = recoveryFold.getOrElse(Future.successful(recoveryState))
+      recoveryFold = Some(previous.map(chunk.foldLeft(_)(applyEvent))(using recoveryExecutionContext.get))
+    }
+
+  private def completeRecovery(): Unit = {
+    val durationNanos = System.nanoTime() - recoveryStartNanos
+    recoveryActorRef ! RecoveryDone(
+      recoveryState,
+      lastSequenceNr, // Include lastSequenceNr
+      replayedEvents,
+      durationNanos,
+      recoveredSnapshotSequenceNr,
+      upcastEvents,
+    )
+    // Release the recovered state, which is owned by the effector from now on
+    recoveryState = initialState
+    if (instrumented)
+      instrumentation.recoveryCompleted(id, durationNanos, replayedEvents, snapshotHit)
+  }
+
+  /**
+   * Complete the recovery from a delta snapshot once its base has been loaded.
+   *
+   * @param base
+   *   The base snapshot, if it could be loaded
+   */
+  private def completeDeltaRecovery(base: Option[SelectedSnapshot]): Unit = {
+    val (delta, metadata) = recoveredDelta.getOrElse(throw new IllegalStateException("No delta snapshot recovered"))
+    (base, deltaSnapshotConfig) match {
+      case (Some(SelectedSnapshot(_, baseSnapshot)), Some(config)) =>
+        val baseState = baseSnapshot.asInstanceOf[S]
+        val state = config.patch(baseState, delta.delta.asInstanceOf[config.Delta])
+        recoveryState = eventsAfterDelta.foldLeft(state)(applyEvent)
+        deltaBase = Some(DeltaBase(baseState, delta.baseSequenceNumber))
+        deltasSinceBase = delta.index
+        recoveredDelta = None
+        eventsAfterDelta.clear()
+        completeRecovery()
+      case (None, _) =>
+        // The base is missing, e.g. because its save failed. Delete the orphaned delta and restart, so that the next
+        // recovery starts from an older snapshot.
+        log.warning(
+          "Base snapshot {} of delta snapshot {} of {} is missing, deleting the delta",
+          delta.baseSequenceNumber,
+          metadata.sequenceNr,
+          persistenceId,
+        )
+        deleteSnapshot(metadata.sequenceNr)
+        throw new IllegalStateException(s"Base snapshot of delta snapshot ${metadata.sequenceNr} is missing")
+      case (_, None) =>
+        throw new IllegalStateException(
+          s"Recovered a delta snapshot of $persistenceId, but no DeltaSnapshotConfig is configured")
+    }
+  }
+
+  /**
+   * Convert a state to the snapshot to save, i.e. a delta if a base is available and the chain is not complete, or the
+   * state itself otherwise.
+   *
+   * @param state
+   *   State to save
+   * @param sequenceNr
+   *   Sequence number of the snapshot
+   * @return
+   *   Snapshot to save
+   */
+  private def toSnapshot(state: S, sequenceNr: Long): Any =
+    deltaSnapshotConfig match {
+      case Some(config) =>
+        deltaBase match {
+          case Some(DeltaBase(base, baseSequenceNr))
+              if deltasSinceBase < config.fullSnapshotEvery - 1 && baseSequenceNr < sequenceNr =>
+            deltasSinceBase += 1
+            deltaSequenceNrs += sequenceNr
+            DeltaSnapshot(baseSequenceNr, deltasSinceBase, config.diff(base, state))
+          case _ =>
+            deltaBase = Some(DeltaBase(state, sequenceNr))
+            deltasSinceBase = 0
+            deltaSequenceNrs.clear()
+            state
+        }
+      case None =>
+        state
+    }
+
   override def receiveCommand: Receive = { cmd =>
     cmd.asMatchable match {
+      case WarmedStateOutdated =>
+        throw new IllegalStateException(s"Cached state of $persistenceId is outdated")
+      case RecoveryFolded(result, recovery) if recovery eq this =>
+        recoveryFold = None
+        result match {
+          case Success(state) =>
+            recoveryState = state.asInstanceOf[S]
+            completeRecovery()
+          case Failure(cause) =>
+            throw new IllegalStateException(s"Failed to fold the replayed events of $persistenceId", cause)
+        }
+      case _: RecoveryFolded =>
+        // Result of the recovery of a previous incarnation
+        ()
+      case SnapshotProtocolBridge.LoadSnapshotResult(base) =>
+        completeDeltaRecovery(base.map {
+          case selected @ SelectedSnapshot(_, snapshot) if snapshot.isInstanceOf[EncodedSnapshot] =>
+            selected.copy(snapshot = decodeSnapshot(snapshot.asInstanceOf[EncodedSnapshot]))
+          case selected => selected
+        })
+      case SnapshotProtocolBridge.LoadSnapshotFailed(cause) =>
+        throw new IllegalStateException(s"Failed to load the base snapshot of $persistenceId", cause)
+      case cmd: PersistSingleEvent[?, ?] if writeRejection.isDefined =>
+        val typedCmd = cmd.asInstanceOf[PersistSingleEvent[S, E]]
+        rejectAfterRejection(Seq(typedCmd.event), typedCmd.replyTo, PersistenceOperation.SingleEvent)
+      case cmd: PersistMultipleEvents[?, ?] if writeRejection.isDefined =>
+        val typedCmd = cmd.asInstanceOf[PersistMultipleEvents[S, E]]
+        rejectAfterRejection(typedCmd.events, typedCmd.replyTo, PersistenceOperation.MultipleEvents)
+      case _: ResumeWrites[?, ?] =>
+        writeRejection = None
       case cmd: PersistSingleEvent[?, ?] =>
         log.debug("PersistSingleEvent: {}", cmd)
         val typedCmd = cmd.asInstanceOf[PersistSingleEvent[S, E]]
         val event = typedCmd.event
         val replyTo = typedCmd.replyTo
-        persist(event) { evt =>
+        pendingPersists.enqueue(
+          new PendingPersist(Seq(event), replyTo, PersistenceOperation.SingleEvent, startTime(), 1))
+        persistEvent(event) { evt =>
+          completePersist(pendingPersists.dequeue())
           replyTo ! PersistSingleEventSucceeded(evt)
         }
+      case cmd: PersistMultipleEvents[?, ?] if cmd.packed && packedBatchCodec.isDefined =>
+        log.debug("PersistPackedEvents: {}", cmd)
+        val typedCmd = cmd.asInstanceOf[PersistMultipleEvents[S, E]]
+        val events = typedCmd.events
+        val replyTo = typedCmd.replyTo
+        Try(EventPacking.pack(serialization, packedBatchCodec.get, events)) match {
+          case Success(packed) =>
+            pendingPersists.enqueue(
+              new PendingPersist(events, replyTo, PersistenceOperation.MultipleEvents, startTime(), 1))
+            persistEvent(packed) { _ =>
+              completePersist(pendingPersists.dequeue())
+              replyTo ! PersistMultipleEventsSucceeded(events)
+            }
+          case Failure(cause) =>
+            // Nothing is written, as when the journal rejects events it cannot serialize
+            log.warning("Failed to pack events of {}: {}", persistenceId, cause.getMessage)
+            if (instrumented) instrumentation.persistFailed(id, PersistenceOperation.MultipleEvents, cause)
+            if (pipelinedWrites) writeRejection = Some(cause)
+            replyTo ! PersistEventsRejected(events, lastSequenceNr + 1, cause)
+        }
       case cmd: PersistMultipleEvents[?, ?] =>
         log.debug("PersistEventSequence: {}", cmd)
         val typedCmd = cmd.asInstanceOf[PersistMultipleEvents[S, E]]
         val events = typedCmd.events
         val replyTo = typedCmd.replyTo
-        var counter = 0
-        persistAll(events) { evt =>
-          counter += 1
-          if (counter == events.size) {
+        val pending =
+          new PendingPersist(events, replyTo, PersistenceOperation.MultipleEvents, startTime(), events.size)
+        pendingPersists.enqueue(pending)
+        persistAllEvents(events) { evt =>
+          pending.remaining -= 1
+          if (pending.remaining == 0) {
+            completePersist(pendingPersists.dequeue())
             replyTo ! PersistMultipleEventsSucceeded(events)
           }
         }
+      case AdvanceSequenceNr(sequenceNr) =>
+        directSequenceNr = sequenceNr
+      case cmd: PersistSnapshot[?, ?] if pipelinedWrites =>
+        // The snapshot covers the events of the writes received before it, so it is saved once they are stored and
+        // snapshotSequenceNr has reached their sequence numbers
+        deferAsync(cmd.asInstanceOf[PersistSnapshot[S, E]])(saveRequestedSnapshot)
       case cmd: PersistSnapshot[?, ?] =>
-        log.debug("PersistSnapshot: {}", cmd)
-        val typedCmd = cmd.asInstanceOf[PersistSnapshot[S, E]]
-        val snapshot = typedCmd.snapshot
-        val replyTo = typedCmd.replyTo
-        saveSnapshot(snapshot)
-        context.become(waitForSaveSnapshot(snapshot, replyTo))
+        saveRequestedSnapshot(cmd.asInstanceOf[PersistSnapshot[S, E]])
       case cmd: DeleteSnapshots[?, ?] =>
         log.debug("DeleteSnapshot: {}", cmd)
         val typedCmd = cmd.asInstanceOf[DeleteSnapshots[S, E]]
-        val maxSequenceNumber = typedCmd.maxSequenceNumber
-        val replyTo = typedCmd.replyTo
+        // Keep the base of the current delta chain, and thus the deltas that depend on it
+        val maxSequenceNumber = deltaBase.fold(typedCmd.maxSequenceNumber) { base =>
+          math.max(0L, math.min(typedCmd.maxSequenceNumber, base.sequenceNr - 1))
+        }
+        pendingSnapshotDeletions
+          .getOrElseUpdate(maxSequenceNumber, mutable.Queue.empty)
+          .enqueue((typedCmd.replyTo, startTime()))
         deleteSnapshots(SnapshotSelectionCriteria(maxSequenceNr = maxSequenceNumber))
-        context.become(waitForDeleteSnapshots(maxSequenceNumber, replyTo))
+      case SaveSnapshotSuccess(metadata) =>
+        log.debug("SaveSnapshotSuccess: {}", metadata)
+        takePending(pendingSnapshotSaves, metadata.sequenceNr).foreach { case (snapshot, replyTo, startNanos) =>
+          if (instrumented) reportCompleted(PersistenceOperation.Snapshot, startNanos)
+          replyTo ! PersistSnapshotSucceeded(snapshot, metadata.sequenceNr)
+        }
+      case cmd: DeleteEvents[?, ?] =>
+        log.debug("DeleteEvents: {}", cmd)
+        // Events after the base of the current delta chain are needed to recover from its deltas
+        val toSequenceNr = deltaBase.fold(cmd.toSequenceNumber)(base => math.min(cmd.toSequenceNumber, base.sequenceNr))
+        if (toSequenceNr > 0) {
+          val typedCmd = cmd.asInstanceOf[DeleteEvents[S, E]]
+          pendingEventDeletions
+            .getOrElseUpdate(toSequenceNr, mutable.Queue.empty)
+            .enqueue((typedCmd.replyTo, startTime()))
+          deleteMessages(toSequenceNr)
+        }
+      case DeleteMessagesSuccess(toSequenceNr) =>
+        log.debug("DeleteMessagesSuccess: toSequenceNr = {}", toSequenceNr)
+        takePending(pendingEventDeletions, toSequenceNr).foreach { case (replyTo, startNanos) =>
+          if (instrumented) reportCompleted(PersistenceOperation.DeleteEvents, startNanos)
+          replyTo ! DeleteEventsSucceeded(toSequenceNr)
+        }
+      case DeleteMessagesFailure(cause, toSequenceNr) =>
+        log.warning("Failed to delete events of {} up to {}: {}", persistenceId, toSequenceNr, cause.getMessage)
+        takePending(pendingEventDeletions, toSequenceNr).foreach { case (replyTo, _) =>
+          if (instrumented) instrumentation.persistFailed(id, PersistenceOperation.DeleteEvents, cause)
+          replyTo ! DeleteEventsFailed(toSequenceNr, cause)
+        }
+      case SaveSnapshotFailure(metadata, cause) =>
+        log.error(cause, "SaveSnapshotFailure: {}", metadata)
+        if (deltaBase.exists(_.sequenceNr == metadata.sequenceNr)) {
+          // Deltas of a base that could not be saved cannot be recovered, so delete them and start a new chain
+          deltaSequenceNrs.foreach(deleteSnapshot)
+          deltaBase = None
+          deltasSinceBase = 0
+          deltaSequenceNrs.clear()
+        }
+        takePending(pendingSnapshotSaves, metadata.sequenceNr).foreach { case (snapshot, replyTo, _) =>
+          if (instrumented) instrumentation.persistFailed(id, PersistenceOperation.Snapshot, cause)
+          replyTo ! PersistSnapshotFailed(snapshot, metadata.sequenceNr, cause)
+        }
+      case DeleteSnapshotSuccess(metadata) =>
+        log.debug("DeleteSnapshotSuccess: {}", metadata)
+      case DeleteSnapshotFailure(metadata, cause) =>
+        log.warning("Failed to delete snapshot {}: {}", metadata, cause.getMessage)
+      case DeleteSnapshotsSuccess(criteria) =>
+        log.debug("DeleteSnapshotsSuccess: maxSequenceNumber = {}", criteria.maxSequenceNr)
+        takePending(pendingSnapshotDeletions, criteria.maxSequenceNr).foreach { case (replyTo, startNanos) =>
+          if (instrumented) reportCompleted(PersistenceOperation.DeleteSnapshots, startNanos)
+          replyTo ! DeleteSnapshotsSucceeded(criteria.maxSequenceNr)
+        }
+      case DeleteSnapshotsFailure(criteria, cause) =>
+        log.error(cause, "DeleteSnapshotsFailed: maxSequenceNumber = {}", criteria.maxSequenceNr)
+        takePending(pendingSnapshotDeletions, criteria.maxSequenceNr).foreach { case (replyTo, _) =>
+          if (instrumented) instrumentation.persistFailed(id, PersistenceOperation.DeleteSnapshots, cause)
+          replyTo ! DeleteSnapshotsFailed(criteria.maxSequenceNr, cause)
+        }
     }
   }
 
-  override protected def onPersistFailure(cause: Throwable, event: Any, seqNr: Long): Unit =
-    super.onPersistFailure(cause, event, seqNr)
+  /**
+   * Remove the oldest pending request registered under the given sequence number.
+   *
+   * @param pending
+   *   Pending requests keyed by sequence number
+   * @param sequenceNr
+   *   Sequence number of the completed operation
+   * @return
+   *   The pending request, if any
+   */
+  private def takePending[A](pending: mutable.Map[Long, mutable.Queue[A]], sequenceNr: Long): Option[A] =
+    pending.get(sequenceNr).map { queue =>
+      val request = queue.dequeue()
+      if (queue.isEmpty) pending.remove(sequenceNr)
+      request
+    }
 
-  private def waitForDeleteSnapshots(
-    maxSequenceNumber: Long,
-    replyTo: ActorRef[DeleteSnapshotsReply[S, E]]): Receive = { msg =>
-    msg.asMatchable match {
-      case DeleteSnapshotsSuccess(_) =>
-        log.debug("DeleteSnapshotsSuccess: maxSequenceNumber = {}", maxSequenceNumber)
-        replyTo ! DeleteSnapshotsSucceeded(maxSequenceNumber)
-        context.unbecome()
-        unstashAll()
-      case DeleteSnapshotsFailure(_, cause) =>
-        log.error(cause, "DeleteSnapshotsFailed: maxSequenceNumber = {}", maxSequenceNumber)
-        replyTo ! DeleteSnapshotsFailed(maxSequenceNumber, cause)
-        context.unbecome()
-        unstashAll()
-      case other =>
-        log.debug("Stashing message while waiting for delete snapshot result: {}", other)
-        stash()
+  /**
+   * Persist an event, without waiting for the write before processing the next commands if the writes are pipelined.
+   *
+   * @param event
+   *   Event to persist
+   * @param handler
+   *   Handler invoked once the event is stored
+   */
+  private def persistEvent[A](event: A)(handler: A => Unit): Unit =
+    if (pipelinedWrites) persistAsync(event)(handler) else persist(event)(handler)
+
+  /**
+   * Persist events, without waiting for the write before processing the next commands if the writes are pipelined.
+   *
+   * @param events
+   *   Events to persist
+   * @param handler
+   *   Handler invoked once for each stored event
+   */
+  private def persistAllEvents(events: Seq[E])(handler: E => Unit): Unit =
+    if (pipelinedWrites) persistAllAsync(events)(handler) else persistAll(events)(handler)
+
+  /**
+   * Save a snapshot requested by the effector, unless a write received before it was rejected, as the snapshot may
+   * then cover the rejected events.
+   *
+   * @param cmd
+   *   Snapshot request
+   */
+  private def saveRequestedSnapshot(cmd: PersistSnapshot[S, E]): Unit =
+    writeRejection match {
+      case Some(rejection) =>
+        val cause = new IllegalStateException(s"An earlier write of $persistenceId was rejected", rejection)
+        if (instrumented) instrumentation.persistFailed(id, PersistenceOperation.Snapshot, cause)
+        cmd.replyTo ! PersistSnapshotFailed(cmd.snapshot, snapshotSequenceNr, cause)
+      case None =>
+        log.debug("PersistSnapshot: {}", cmd)
+        pendingSnapshotSaves
+          .getOrElseUpdate(snapshotSequenceNr, mutable.Queue.empty)
+          .enqueue((cmd.snapshot, cmd.replyTo, startTime()))
+        save(toSnapshot(cmd.snapshot, snapshotSequenceNr))
     }
+
+  /**
+   * Reject a write sent after a rejected one without writing it, until the effector resumes the writes.
+   *
+   * @param events
+   *   Events of the write
+   * @param replyTo
+   *   Actor reference to reply to
+   * @param operation
+   *   Kind of operation, for instrumentation
+   */
+  private def rejectAfterRejection(
+    events: Seq[E],
+    replyTo: ActorRef[PersistEventsReply[S, E]],
+    operation: PersistenceOperation): Unit = {
+    val cause = new IllegalStateException(s"An earlier write of $persistenceId was rejected", writeRejection.get)
+    if (instrumented) instrumentation.persistFailed(id, operation, cause)
+    replyTo ! PersistEventsRejected(events, lastSequenceNr, cause)
   }
 
-  private def waitForSaveSnapshot(
-    snapshot: S,
-    replyTo: ActorRef[PersistSnapshotReply[S, E]],
-  ): Receive = { msg =>
-    msg.asMatchable match {
-      case msg @ SaveSnapshotSuccess(_) =>
-        log.debug("SaveSnapshotSuccess")
-        replyTo ! PersistSnapshotSucceeded(snapshot)
-        context.unbecome()
-        unstashAll()
-      case msg @ SaveSnapshotFailure(_, cause) =>
-        log.error(cause, "SaveSnapshotFailure")
-        replyTo ! PersistSnapshotFailed(snapshot, cause)
-        context.unbecome()
-        unstashAll()
-      case other =>
-        log.debug("Stashing message while waiting for snapshot result: {}", other)
-        stash()
+  private def startTime(): Long =
+    if (instrumented) System.nanoTime() else 0L
+
+  private def completePersist(pending: PendingPersist[S, E]): Unit =
+    if (instrumented) reportCompleted(pending.operation, pending.startNanos)
+
+  private def reportCompleted(operation: PersistenceOperation, startNanos: Long): Unit =
+    instrumentation.persistCompleted(id, operation, System.nanoTime() - startNanos)
+
+  /**
+   * Save a snapshot, encoded by the snapshot codec if one is configured.
+   *
+   * @param snapshot
+   *   Snapshot to save
+   */
+  private def save(snapshot: Any): Unit =
+    snapshotCodec match {
+      case Some(codec) =>
+        val startNanos = System.nanoTime()
+        val (encoded, rawSize) = SnapshotHelper.encodeSnapshot(serialization, codec, snapshot)
+        if (instrumented) {
+          val durationNanos = System.nanoTime() - startNanos
+          instrumentation.snapshotSerialized(id, rawSize.toLong)
+          instrumentation.snapshotEncoded(id, rawSize.toLong, encoded.payload.length.toLong, durationNanos)
+        }
+        saveSnapshot(encoded)
+      case None =>
+        if (instrumented) reportSnapshotSize(snapshot)
+        saveSnapshot(snapshot)
+    }
+
+  private def decodeSnapshot(snapshot: EncodedSnapshot): Any = {
+    val startNanos = System.nanoTime()
+    val decoded = SnapshotHelper.decodeSnapshot(serialization, snapshotCodec, snapshot)
+    if (instrumented)
+      instrumentation.snapshotDecoded(id, snapshot.payload.length.toLong, System.nanoTime() - startNanos)
+    decoded
+  }
+
+  private def reportSnapshotSize(snapshot: Any): Unit =
+    serialization
+      .serialize(snapshot.asInstanceOf[AnyRef])
+      .fold(
+        cause => log.warning("Failed to serialize snapshot to measure its size: {}", cause.getMessage),
+        bytes => instrumentation.snapshotSerialized(id, bytes.length.toLong),
+      )
+
+  override protected def onPersistFailure(cause: Throwable, event: Any, seqNr: Long): Unit = {
+    // The actor is stopped after this method returns, so notify the requesters instead of leaving them waiting. Writes
+    // queued behind the failed one are not performed either.
+    pendingPersists.foreach { pending =>
+      if (instrumented) instrumentation.persistFailed(id, pending.operation, cause)
+      pending.replyTo ! PersistEventsFailed(pending.events, seqNr, cause)
+    }
+    pendingPersists.clear()
+    super.onPersistFailure(cause, event, seqNr)
+  }
+
+  override protected def onPersistRejected(cause: Throwable, event: Any, seqNr: Long): Unit = {
+    // The persist handler is not invoked for rejected events, so retire the request once all of its events have been
+    // rejected to keep the following requests aligned with their acknowledgements
+    pendingPersists.headOption.foreach { pending =>
+      if (!pending.rejected) {
+        pending.rejected = true
+        if (instrumented) instrumentation.persistFailed(id, pending.operation, cause)
+      }
+      pending.remaining -= 1
+      if (pending.remaining == 0) {
+        pendingPersists.dequeue()
+        if (pipelinedWrites) writeRejection = Some(cause)
+        pending.replyTo ! PersistEventsRejected(pending.events, seqNr, cause)
+      }
     }
+    super.onPersistRejected(cause, event, seqNr)
   }
 
 }
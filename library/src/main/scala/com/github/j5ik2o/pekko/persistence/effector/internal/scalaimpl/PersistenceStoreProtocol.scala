@@ -30,7 +30,7 @@ private[effector] object PersistenceStoreProtocol {
    * @tparam E
    *   Type of event
    */
-  final case class PersistSingleEvent[S, E](event: E, replyTo: ActorRef[PersistSingleEventSucceeded[S, E]])
+  final case class PersistSingleEvent[S, E](event: E, replyTo: ActorRef[PersistEventsReply[S, E]])
     extends PersistenceCommand[S, E]
 
   /**
@@ -40,6 +40,8 @@ private[effector] object PersistenceStoreProtocol {
    *   Events to persist
    * @param replyTo
    *   Actor reference to send the reply to
+   * @param packed
+   *   Whether the events are written as a single `PackedEvents` journal event
    * @tparam S
    *   Type of state
    * @tparam E
@@ -47,7 +49,8 @@ private[effector] object PersistenceStoreProtocol {
    */
   final case class PersistMultipleEvents[S, E](
     events: Seq[E],
-    replyTo: ActorRef[PersistMultipleEventsSucceeded[S, E]],
+    replyTo: ActorRef[PersistEventsReply[S, E]],
+    packed: Boolean = false,
   ) extends PersistenceCommand[S, E]
 
   /**
@@ -82,6 +85,48 @@ private[effector] object PersistenceStoreProtocol {
     replyTo: ActorRef[PersistenceReply[S, E]],
   ) extends PersistenceCommand[S, E]
 
+  /**
+   * Command to delete journal events.
+   *
+   * @param toSequenceNumber
+   *   Maximum sequence number of events to delete
+   * @param replyTo
+   *   Actor reference to send the reply to
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   */
+  final case class DeleteEvents[S, E](
+    toSequenceNumber: Long,
+    replyTo: ActorRef[PersistenceReply[S, E]],
+  ) extends PersistenceCommand[S, E]
+
+  /**
+   * Command to advance the sequence number of the persistence store actor to that of events written directly to the
+   * journal, so that snapshots and event deletions refer to them. No reply is sent.
+   *
+   * @param sequenceNr
+   *   Sequence number of the last event written
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   */
+  final case class AdvanceSequenceNr[S, E](sequenceNr: Long) extends PersistenceCommand[S, E]
+
+  /**
+   * Command to write events again after the journal rejected a write. Until it is received, the persistence store actor
+   * rejects the writes sent after the rejected one, so that their events are not stored without the rejected events. No
+   * reply is sent.
+   *
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   */
+  final case class ResumeWrites[S, E]() extends PersistenceCommand[S, E]
+
   /**
    * Base trait for all persistence replies.
    *
@@ -92,6 +137,16 @@ private[effector] object PersistenceStoreProtocol {
    */
   sealed trait PersistenceReply[S, E]
 
+  /**
+   * Base trait for event persistence replies.
+   *
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   */
+  sealed trait PersistEventsReply[S, E] extends PersistenceReply[S, E]
+
   /**
    * Reply for successful persistence of a single event.
    *
@@ -102,7 +157,7 @@ private[effector] object PersistenceStoreProtocol {
    * @tparam E
    *   Type of event
    */
-  final case class PersistSingleEventSucceeded[S, E](event: E) extends PersistenceReply[S, E]
+  final case class PersistSingleEventSucceeded[S, E](event: E) extends PersistEventsReply[S, E]
 
   /**
    * Reply for successful persistence of multiple events.
@@ -114,7 +169,43 @@ private[effector] object PersistenceStoreProtocol {
    * @tparam E
    *   Type of event
    */
-  final case class PersistMultipleEventsSucceeded[S, E](events: Seq[E]) extends PersistenceReply[S, E]
+  final case class PersistMultipleEventsSucceeded[S, E](events: Seq[E]) extends PersistEventsReply[S, E]
+
+  /**
+   * Reply for failed persistence of events. The journal write failed, so the events were not stored and the persistence
+   * store actor stops after sending this reply.
+   *
+   * @param events
+   *   Events that failed to persist
+   * @param sequenceNr
+   *   Sequence number of the event that failed
+   * @param cause
+   *   Cause of the failure
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   */
+  final case class PersistEventsFailed[S, E](events: Seq[E], sequenceNr: Long, cause: Throwable)
+    extends PersistEventsReply[S, E]
+
+  /**
+   * Reply for events rejected by the journal, e.g. because they could not be serialized. The events were not stored,
+   * and the persistence store actor keeps running.
+   *
+   * @param events
+   *   Events that were rejected
+   * @param sequenceNr
+   *   Sequence number of the last rejected event
+   * @param cause
+   *   Cause of the rejection
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   */
+  final case class PersistEventsRejected[S, E](events: Seq[E], sequenceNr: Long, cause: Throwable)
+    extends PersistEventsReply[S, E]
 
   /**
    * Base trait for snapshot persistence replies.
@@ -131,18 +222,22 @@ private[effector] object PersistenceStoreProtocol {
    *
    * @param snapshot
    *   Persisted snapshot
+   * @param sequenceNr
+   *   Sequence number the snapshot was saved at
    * @tparam S
    *   Type of state
    * @tparam E
    *   Type of event
    */
-  final case class PersistSnapshotSucceeded[S, E](snapshot: S) extends PersistSnapshotReply[S, E]
+  final case class PersistSnapshotSucceeded[S, E](snapshot: S, sequenceNr: Long) extends PersistSnapshotReply[S, E]
 
   /**
    * Reply for failed persistence of a snapshot.
    *
    * @param snapshot
    *   Snapshot that failed to persist
+   * @param sequenceNr
+   *   Sequence number the snapshot was to be saved at
    * @param cause
    *   Cause of the failure
    * @tparam S
@@ -150,7 +245,8 @@ private[effector] object PersistenceStoreProtocol {
    * @tparam E
    *   Type of event
    */
-  final case class PersistSnapshotFailed[S, E](snapshot: S, cause: Throwable) extends PersistSnapshotReply[S, E]
+  final case class PersistSnapshotFailed[S, E](snapshot: S, sequenceNr: Long, cause: Throwable)
+    extends PersistSnapshotReply[S, E]
 
   /**
    * Base trait for snapshot deletion replies.
@@ -189,6 +285,42 @@ private[effector] object PersistenceStoreProtocol {
   final case class DeleteSnapshotsFailed[S, E](maxSequenceNumber: Long, cause: Throwable)
     extends DeleteSnapshotsReply[S, E]
 
+  /**
+   * Base trait for journal event deletion replies.
+   *
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   */
+  sealed trait DeleteEventsReply[S, E] extends PersistenceReply[S, E]
+
+  /**
+   * Reply for successful deletion of journal events.
+   *
+   * @param toSequenceNumber
+   *   Maximum sequence number of deleted events
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   */
+  final case class DeleteEventsSucceeded[S, E](toSequenceNumber: Long) extends DeleteEventsReply[S, E]
+
+  /**
+   * Reply for failed deletion of journal events.
+   *
+   * @param toSequenceNumber
+   *   Maximum sequence number of events that failed to delete
+   * @param cause
+   *   Cause of the failure
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   */
+  final case class DeleteEventsFailed[S, E](toSequenceNumber: Long, cause: Throwable) extends DeleteEventsReply[S, E]
+
   /**
    * Message indicating that recovery is complete.
    *
@@ -196,8 +328,23 @@ private[effector] object PersistenceStoreProtocol {
    *   Recovered state
    * @param sequenceNr
    *   Sequence number of the last recovered event
+   * @param replayedEvents
+   *   Number of events replayed after the snapshot, if any
+   * @param durationNanos
+   *   Duration of the recovery, in nanoseconds
+   * @param snapshotSequenceNr
+   *   Sequence number of the snapshot the state was recovered from (0 if none)
+   * @param upcastEvents
+   *   Number of replayed events that were upcast
    * @tparam S
    *   Type of state
    */
-  final case class RecoveryDone[S](state: S, sequenceNr: Long)
+  final case class RecoveryDone[S](
+    state: S,
+    sequenceNr: Long,
+    replayedEvents: Long,
+    durationNanos: Long,
+    snapshotSequenceNr: Long,
+    upcastEvents: Long,
+  )
 }
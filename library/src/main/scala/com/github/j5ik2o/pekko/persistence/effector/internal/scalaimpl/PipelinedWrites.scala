@@ -0,0 +1,436 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.PersistenceStoreProtocol.*
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.SnapshotCoordinator.SnapshotRequest
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{BatchingConfig, PersistenceEffectorConfig}
+import org.apache.pekko.actor.Cancellable
+import org.apache.pekko.actor.typed.Behavior
+import org.apache.pekko.actor.typed.scaladsl.{ActorContext, Behaviors}
+
+import scala.collection.mutable
+
+private[scalaimpl] object PipelinedWrites {
+
+  /**
+   * Event write awaiting a reply.
+   *
+   * @param journalEvents
+   *   Number of journal events, and thus sequence numbers, taken by the write
+   * @param callbacks
+   *   Callbacks of the persists of the write, and of the snapshots persisted after it, invoked in order once the write
+   *   is acknowledged
+   * @param onFailure
+   *   Failure callback of the first persist of the write
+   */
+  private final class InFlightWrite[M](
+    val journalEvents: Int,
+    val callbacks: mutable.ArrayBuffer[() => Behavior[M]],
+    val onFailure: Option[Throwable => Behavior[M]],
+  )
+
+  /**
+   * Rollback after the journal rejected a write, which completes once the writes sent after it have been rejected as
+   * well.
+   *
+   * @param cause
+   *   Cause of the rejection
+   * @param onFailure
+   *   Failure callback of the rejected write
+   */
+  private final case class Rollback[M](cause: Throwable, onFailure: Throwable => Behavior[M])
+}
+
+/**
+ * Writes of an effector that keeps up to `maxInFlightPersists` requests in flight, optionally collecting the events of
+ * several persists into batches. The actor keeps its behavior while writes are in flight, and continues with the
+ * behavior returned by the callbacks of each write once the journal acknowledged it. Messages are stashed while the
+ * maximum number of in-flight requests is reached, and while a rejected write is rolled back.
+ *
+ * @param ctx
+ *   Actor context
+ * @param config
+ *   Effector configuration
+ * @param journal
+ *   Journal of the effector
+ * @param snapshots
+ *   Snapshots of the effector
+ * @param messages
+ *   Messages deferred while the pipeline is blocked
+ * @tparam S
+ *   Type of state
+ * @tparam E
+ *   Type of event
+ * @tparam M
+ *   Type of message
+ */
+private[scalaimpl] final class PipelinedWrites[S, E, M](
+  ctx: ActorContext[M],
+  config: PersistenceEffectorConfig[S, E, M],
+  journal: EventJournal[S, E, M],
+  snapshots: SnapshotCoordinator[S, E, M],
+  messages: MessageStash[S, E, M],
+) extends WriteStrategy[S, E, M] {
+  import PipelinedWrites.*
+  import WriteStrategy.*
+  import config.*
+
+  // Event writes awaiting a reply, in the order they were sent
+  private val inFlightWrites = mutable.Queue.empty[InFlightWrite[M]]
+
+  private def inFlightRequests: Int = inFlightWrites.size + snapshots.inFlightOperationCount
+
+  // Rollback in progress after a rejected write
+  private var rollback: Option[Rollback[M]] = None
+
+  // Whether messages are stashed until an in-flight slot becomes available
+  private var blocked: Boolean = false
+
+  // Events collected for the next batch in batching mode
+  private val batchBuffer = mutable.ArrayBuffer.empty[E]
+
+  // Callbacks of the persists of the open batch, and of the snapshots persisted after them, invoked once the batch is
+  // acknowledged
+  private val batchCallbacks = mutable.ArrayBuffer.empty[() => Behavior[M]]
+
+  // Failure callback of the first persist of the open batch, which handles a rejection of the batch
+  private var batchOnFailure: Option[Throwable => Behavior[M]] = None
+
+  // Generation of the open batch, so that flushes scheduled for batches already written are ignored
+  private var batchGeneration: Long = 0L
+
+  // Whether the maximum latency of the open batch has elapsed
+  private var batchDue: Boolean = false
+
+  private var batchFlushTimer: Option[Cancellable] = None
+
+  override def defersMessages: Boolean = blocked || rollback.isDefined
+
+  override def writesInFlight: Boolean = inFlightWrites.nonEmpty || batchBuffer.nonEmpty
+
+  override def awaitingReplies: Boolean = inFlightRequests > 0 || batchBuffer.nonEmpty || blocked
+
+  override def persist(
+    events: Seq[E],
+    single: Boolean,
+    onFailure: Option[Throwable => Behavior[M]],
+    snapshot: Option[SnapshotRequest[S, E]],
+  )(onPersisted: () => Behavior[M]): Behavior[M] = {
+    val sequenceNumber = journal.currentSequenceNumber
+    batchingConfig match {
+      case Some(batching) =>
+        openBatch(batching)
+        batchBuffer ++= events
+      case None =>
+        journal.write(events, single)
+    }
+    // The callback is tracked first, as the snapshot writes the open batch the events belong to
+    trackWrite(events, onFailure)(onPersisted)
+    snapshot.foreach { request =>
+      if (snapshots.shouldTakeSnapshot(request, sequenceNumber)) {
+        ctx.log.debug("Taking snapshot at sequence number {}", sequenceNumber)
+        sendSnapshot(request.state, None)
+      }
+    }
+    keepBehavior()
+  }
+
+  override def persistSnapshot(snapshot: S, save: Boolean, onFailure: Option[Throwable => Behavior[M]])(
+    onPersisted: () => Behavior[M]): Behavior[M] = {
+    if (save) sendSnapshot(snapshot, onFailure)
+    else ctx.log.debug("Skipping snapshot persistence based on criteria evaluation")
+    // The callback is invoked once the writes sent before the snapshot are acknowledged, or right away without them
+    if (batchBuffer.nonEmpty) {
+      batchCallbacks += onPersisted
+      keepBehavior()
+    } else if (inFlightWrites.nonEmpty) {
+      inFlightWrites.last.callbacks += onPersisted
+      keepBehavior()
+    } else {
+      continuePipeline(onPersisted())
+    }
+  }
+
+  /**
+   * Complete the oldest in-flight write with its reply. Event replies arrive in the order the writes were sent.
+   *
+   * @param reply
+   *   Reply of the persistence store actor
+   * @return
+   *   The behavior to continue with
+   */
+  override def receiveEventReply(reply: PersistEventsReply[S, E]): Option[Behavior[M]] =
+    reply match {
+      case PersistSingleEventSucceeded(event) =>
+        Some(completeInFlightWrite(reply, Seq(event)))
+      case PersistMultipleEventsSucceeded(events) =>
+        Some(completeInFlightWrite(reply, events))
+      case PersistEventsFailed(_, sequenceNr, cause) =>
+        // It is unknown whether the events were stored, so the state cannot be rolled back
+        throw new IllegalStateException(s"Failed to persist events at sequence number $sequenceNr", cause)
+      case PersistEventsRejected(_, sequenceNr, cause) =>
+        Some(rejectInFlightWrite(sequenceNr, cause))
+    }
+
+  override def receiveSignal(signal: WriteSignal): Option[Behavior[M]] =
+    signal match {
+      case FlushBatch(generation) =>
+        if (generation == batchGeneration) {
+          batchDue = true
+          flushBatchIfReady()
+        }
+        Some(resumePipeline())
+      case PersistTimedOut(_) =>
+        // Writes are not timed out in pipelined mode
+        Some(Behaviors.same)
+    }
+
+  override def receiveSnapshotReply(reply: PersistenceReply[S, E]): Option[Behavior[M]] =
+    if (rollback.isDefined) {
+      snapshots.handleReply(reply, rollingBack = true)
+      Some(completeRollbackIfDone())
+    } else {
+      val next = snapshots.handleReply(reply, rollingBack = false)
+      flushBatchIfReady()
+      Some(resumePipeline(next))
+    }
+
+  /**
+   * Send a snapshot without waiting for the reply, after writing the events of the open batch it covers
+   *
+   * @param state
+   *   State to save
+   * @param onFailure
+   *   Callback if the snapshot could not be saved, or None to fail the actor
+   */
+  private def sendSnapshot(state: S, onFailure: Option[Throwable => Behavior[M]]): Unit = {
+    flushBatch()
+    snapshots.send(state, onFailure)
+  }
+
+  /**
+   * Track an event write, whose callback is invoked once the journal acknowledged it. In batching mode the callback
+   * belongs to the open batch, which is written if it is ready.
+   *
+   * @param events
+   *   Events of the write
+   * @param onFailure
+   *   Callback on rejection
+   * @param callback
+   *   Callback on success
+   */
+  private def trackWrite(events: Seq[E], onFailure: Option[Throwable => Behavior[M]])(
+    callback: () => Behavior[M]): Unit =
+    batchingConfig match {
+      case Some(_) =>
+        if (batchCallbacks.isEmpty) batchOnFailure = onFailure
+        batchCallbacks += callback
+        flushBatchIfReady()
+      case None =>
+        inFlightWrites.enqueue(
+          new InFlightWrite(journal.journalEventCount(events), mutable.ArrayBuffer(callback), onFailure))
+    }
+
+  /**
+   * Schedule the flush of the open batch when its first event is added
+   *
+   * @param batching
+   *   Batching configuration
+   */
+  private def openBatch(batching: BatchingConfig): Unit =
+    if (batchBuffer.isEmpty) {
+      batchFlushTimer = Some(
+        ctx.scheduleOnce(batching.maxLatency, ctx.self, FlushBatch(batchGeneration).asInstanceOf[M]))
+    }
+
+  /**
+   * Write the open batch if it is full or its maximum latency has elapsed, and an in-flight slot is available
+   */
+  private def flushBatchIfReady(): Unit =
+    batchingConfig.foreach { batching =>
+      val ready = batchDue || batchBuffer.size >= batching.maxBatchSize
+      if (ready && inFlightRequests < maxInFlightPersists) {
+        flushBatch()
+      }
+    }
+
+  /**
+   * Write the open batch as a single persistAll, whose callbacks are invoked once it is acknowledged
+   */
+  private def flushBatch(): Unit =
+    if (batchBuffer.nonEmpty) {
+      val events = batchBuffer.toVector
+      val callbacks = mutable.ArrayBuffer.from(batchCallbacks)
+      val onFailure = batchOnFailure
+      ctx.log.debug("Flushing batch of {} events", events.size)
+      closeBatch()
+      journal.writeEvents(events)
+      inFlightWrites.enqueue(new InFlightWrite(events.size, callbacks, onFailure))
+    }
+
+  /**
+   * Clear the open batch, whose events are written or discarded, along with its callbacks
+   */
+  private def closeBatch(): Unit = {
+    batchBuffer.clear()
+    batchCallbacks.clear()
+    batchOnFailure = None
+    batchFlushTimer.foreach(_.cancel())
+    batchFlushTimer = None
+    batchGeneration += 1
+    batchDue = false
+  }
+
+  /**
+   * Whether messages have to be stashed until a reply arrives. In batching mode this is the case once the open batch is
+   * full and cannot be written yet.
+   */
+  private def atCapacity: Boolean =
+    batchingConfig match {
+      case Some(batching) => batchBuffer.size >= batching.maxBatchSize
+      case None => inFlightRequests >= maxInFlightPersists
+    }
+
+  /**
+   * Continue with a behavior after sending a request, stashing messages until a reply arrives if the maximum number of
+   * in-flight requests has been reached
+   *
+   * @param next
+   *   Behavior to continue with
+   * @return
+   *   The behavior to continue with
+   */
+  private def continuePipeline(next: Behavior[M]): Behavior[M] = {
+    if (atCapacity) {
+      if (ctx.log.isDebugEnabled) ctx.log.debug("Maximum number of in-flight requests reached: {}", inFlightRequests)
+      blocked = true
+    }
+    next
+  }
+
+  /**
+   * Continue with the current behavior of the actor after sending a write. A persist in `onReady` has no behavior to
+   * keep yet, so messages are stashed until a callback returns one.
+   *
+   * @return
+   *   The behavior to continue with
+   */
+  private def keepBehavior(): Behavior[M] =
+    continuePipeline(if (messages.started) Behaviors.same else Behaviors.receiveMessage(messages.defer))
+
+  /**
+   * Continue with a behavior once a reply has been handled, processing the stashed messages if capacity became
+   * available or the behavior changed
+   *
+   * @param next
+   *   Behavior to continue with, or Behaviors.same to keep the current one
+   * @return
+   *   The behavior to continue with
+   */
+  private def resumePipeline(next: Behavior[M] = Behaviors.same): Behavior[M] = {
+    val unblocked = blocked && !atCapacity
+    if (unblocked) blocked = false
+    if (unblocked || (next ne Behaviors.same[M])) messages.unstashAll(next) else next
+  }
+
+  /**
+   * Remove the oldest in-flight write, which the received reply is for
+   *
+   * @return
+   *   The oldest in-flight write
+   */
+  private def dequeueInFlightWrite(): InFlightWrite[M] = {
+    if (inFlightWrites.isEmpty) {
+      throw new IllegalStateException("Unexpected reply to an event write")
+    }
+    inFlightWrites.dequeue()
+  }
+
+  /**
+   * Complete the oldest in-flight write once the journal acknowledged it, invoking its callbacks in order. The last
+   * behavior other than Behaviors.same returned by the callbacks becomes the behavior of the actor, or the actor keeps
+   * its behavior if they all return Behaviors.same.
+   *
+   * @param reply
+   *   Received reply
+   * @param events
+   *   Events acknowledged by the reply
+   * @return
+   *   The behavior to continue with
+   */
+  private def completeInFlightWrite(reply: PersistEventsReply[S, E], events: Seq[E]): Behavior[M] = {
+    val write = dequeueInFlightWrite()
+    journal.confirm(events, write.journalEvents)
+    if (rollback.isDefined) {
+      // The events were stored after the rejected ones, so the journal no longer matches the state to roll back to
+      throw new IllegalStateException(
+        s"Events sent after a rejected write were stored up to sequence number ${journal.confirmedSequenceNumber}",
+        rollback.get.cause)
+    }
+    var next: Behavior[M] = Behaviors.same
+    val callbacks = write.callbacks.iterator
+    while (Behavior.isAlive(next) && callbacks.hasNext) {
+      val returned = callbacks.next()()
+      if (returned ne Behaviors.same[M]) next = returned
+    }
+    if (!Behavior.isAlive(next)) {
+      next
+    } else {
+      if (ctx.log.isDebugEnabled) ctx.log.debug("Received reply: {}, in-flight requests = {}", reply, inFlightRequests)
+      flushBatchIfReady()
+      resumePipeline(next)
+    }
+  }
+
+  /**
+   * Roll back to the last acknowledged event after the journal rejected the oldest in-flight write. The open batch is
+   * discarded and the persistence store actor rejects the writes it receives after the rejected one, so that none of
+   * their callbacks are invoked. Once they have all been rejected, the actor continues from the confirmed state with
+   * the failure callback of the rejected write. Without a failure callback, or if a later write is stored after all,
+   * the actor fails and recovers from the journal when it is started again.
+   *
+   * @param sequenceNr
+   *   Sequence number of the rejected events
+   * @param cause
+   *   Cause of the rejection
+   * @return
+   *   The behavior to continue with
+   */
+  private def rejectInFlightWrite(sequenceNr: Long, cause: Throwable): Behavior[M] = {
+    val write = dequeueInFlightWrite()
+    if (rollback.isEmpty) {
+      write.onFailure match {
+        case Some(onFailure) =>
+          val confirmedSequenceNr = journal.confirmedSequenceNumber
+          ctx.log.warn(
+            s"Events rejected by the journal at sequence number $sequenceNr, rolling back to $confirmedSequenceNr",
+            cause)
+          rollback = Some(Rollback(cause, onFailure))
+          if (batchBuffer.nonEmpty) closeBatch()
+        case None =>
+          throw new IllegalStateException(s"Events rejected by the journal at sequence number $sequenceNr", cause)
+      }
+    }
+    completeRollbackIfDone()
+  }
+
+  /**
+   * Complete the rollback once no event write or snapshot operation is in flight anymore, and stash messages until
+   * then
+   *
+   * @return
+   *   The behavior to continue with
+   */
+  private def completeRollbackIfDone(): Behavior[M] = {
+    blocked = false
+    if (inFlightRequests > 0) {
+      Behaviors.same
+    } else {
+      val Rollback(cause, onFailure) = rollback.get
+      rollback = None
+      journal.rollBack()
+      journal.resumeWrites()
+      ctx.log.debug("Rolled back to sequence number {}", journal.currentSequenceNumber)
+      messages.unstashAll(onFailure(cause))
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
+  DeltaSnapshot,
+  EncodedSnapshot,
+  EventUpcaster,
+  PackedEvents,
+  PersistenceId,
+  SnapshotCodec,
+}
+import org.apache.pekko.actor.{ActorLogging, Props}
+import org.apache.pekko.persistence.*
+import org.apache.pekko.serialization.SerializationExtension
+
+import scala.compiletime.asMatchable
+import scala.concurrent.Promise
+
+/**
+ * Companion object for RecoveryWarmupActor.
+ */
+private[effector] object RecoveryWarmupActor {
+
+  /**
+   * Create Props for a RecoveryWarmupActor.
+   *
+   * @param persistenceId
+   *   Persistence ID to recover
+   * @param initialState
+   *   Initial state
+   * @param applyEvent
+   *   Function to apply events to state
+   * @param eventUpcaster
+   *   Optional upcaster of replayed events
+   * @param snapshotCodec
+   *   Optional codec of the serialized snapshots
+   * @param packedBatchCodec
+   *   Optional codec of the packed events
+   * @param result
+   *   Promise completed with the recovered state and sequence number
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   * @return
+   *   Props for creating a RecoveryWarmupActor
+   */
+  def props[S, E](
+    persistenceId: PersistenceId,
+    initialState: S,
+    applyEvent: (S, E) => S,
+    eventUpcaster: Option[EventUpcaster[E]],
+    snapshotCodec: Option[SnapshotCodec],
+    packedBatchCodec: Option[SnapshotCodec],
+    result: Promise[(S, Long)],
+  ): Props =
+    Props(
+      new RecoveryWarmupActor[S, E](
+        persistenceId,
+        initialState,
+        applyEvent,
+        eventUpcaster,
+        snapshotCodec,
+        packedBatchCodec,
+        result,
+      ))
+
+}
+
+/**
+ * Persistent actor that only recovers the state of an entity, completes the promise with it and stops. It never writes
+ * to the journal, so it may run while the actor of the entity is running.
+ */
+private[effector] final class RecoveryWarmupActor[S, E](
+  id: PersistenceId,
+  initialState: S,
+  applyEvent: (S, E) => S,
+  eventUpcaster: Option[EventUpcaster[E]],
+  snapshotCodec: Option[SnapshotCodec],
+  packedBatchCodec: Option[SnapshotCodec],
+  result: Promise[(S, Long)])
+  extends PersistentActor
+  with ActorLogging {
+
+  override val persistenceId: String = id.asString
+
+  private var recoveryState: S = initialState
+
+  private lazy val serialization = SerializationExtension(context.system)
+
+  override def receiveRecover: Receive = { msg =>
+    msg.asMatchable match {
+      case SnapshotOffer(metadata, snapshot) if snapshot.isInstanceOf[EncodedSnapshot] =>
+        val decoded =
+          SnapshotHelper.decodeSnapshot(serialization, snapshotCodec, snapshot.asInstanceOf[EncodedSnapshot])
+        receiveRecover(SnapshotOffer(metadata, decoded))
+      case SnapshotOffer(_, snapshot) if snapshot.isInstanceOf[DeltaSnapshot] =>
+        // Patching requires the DeltaSnapshotConfig of the entity, so leave the recovery to its actor
+        result.tryFailure(new IllegalStateException(s"Warmup of $persistenceId does not support delta snapshots"))
+        context.stop(self)
+      case SnapshotOffer(_, snapshot) =>
+        recoveryState = snapshot.asInstanceOf[S]
+      case RecoveryCompleted =>
+        log.debug("Warmed up {} at sequence number {}", persistenceId, lastSequenceNr)
+        result.trySuccess((recoveryState, lastSequenceNr))
+        context.stop(self)
+      case event =>
+        if (event.isInstanceOf[PackedEvents]) {
+          EventPacking.unpack(serialization, packedBatchCodec, event.asInstanceOf[PackedEvents]).foreach(replayEvent)
+        } else if (event != null) {
+          replayEvent(event)
+        }
+    }
+  }
+
+  /**
+   * Upcast a replayed event if needed, as the persistence store actor does, and apply it to the recovery state.
+   *
+   * @param event
+   *   Replayed event, unpacked if it was written as part of packed events
+   */
+  private def replayEvent(event: Any): Unit =
+    eventUpcaster match {
+      case Some(upcaster) if !upcaster.isCurrent(event) =>
+        upcaster.upcast(event).foreach(upcast => recoveryState = applyEvent(recoveryState, upcast))
+      case _ =>
+        recoveryState = applyEvent(recoveryState, event.asInstanceOf[E])
+    }
+
+  override def receiveCommand: Receive = PartialFunction.empty
+
+  override protected def onRecoveryFailure(cause: Throwable, event: Option[Any]): Unit = {
+    result.tryFailure(cause)
+    super.onRecoveryFailure(cause, event)
+  }
+
+  override def postStop(): Unit = {
+    result.tryFailure(new IllegalStateException(s"Warmup of $persistenceId stopped before recovery completed"))
+    super.postStop()
+  }
+
+}
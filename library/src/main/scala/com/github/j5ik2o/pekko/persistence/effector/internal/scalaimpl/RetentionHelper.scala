@@ -13,46 +13,27 @@ private[scalaimpl] object RetentionHelper {
   /**
    * Calculate the maximum sequence number for snapshots that can be safely deleted.
    *
-   * This method implements the retention policy based on the current sequence number and the configured retention
-   * criteria. It ensures that the specified number of snapshots are kept while safely deleting older ones.
+   * This method implements the retention policy against the sequence numbers of the snapshots actually saved, so it
+   * also holds for snapshots that are not on multiples of `snapshotEvery`, e.g. forced snapshots or snapshots of event
+   * batches. It ensures that the specified number of snapshots are kept while safely deleting older ones.
    *
-   * @param currentSequenceNumber
-   *   The current sequence number of the aggregate
+   * @param snapshotSequenceNumbers
+   *   Sequence numbers of the saved snapshots, in ascending order
    * @param retention
    *   The retention criteria specifying how many snapshots to keep
    * @return
    *   Maximum sequence number of snapshots to be deleted (0 if there are no snapshots to delete)
    */
   def calculateMaxSequenceNumberToDelete(
-    currentSequenceNumber: Long,
+    snapshotSequenceNumbers: collection.IndexedSeq[Long],
     retention: RetentionCriteria,
   ): Long =
-    // Calculate only if both snapshotEvery and keepNSnapshots are set
-    (retention.snapshotEvery, retention.keepNSnapshots) match {
-      case (Some(snapshotEvery), Some(keepNSnapshots)) =>
-        // Calculate the sequence number of the latest snapshot
-        val latestSnapshotSeqNr = currentSequenceNumber - (currentSequenceNumber % snapshotEvery)
-
-        if (latestSnapshotSeqNr < snapshotEvery) {
-          // If even the first snapshot has not been created
-          0L
-        } else {
-          // The oldest sequence number of snapshots to keep
-          val oldestKeptSnapshot =
-            latestSnapshotSeqNr - (snapshotEvery.toLong * (keepNSnapshots - 1))
-
-          if (oldestKeptSnapshot <= 0) {
-            // If all snapshots to be kept do not exist
-            0L
-          } else {
-            // Maximum sequence number to be deleted (snapshot just before oldestKeptSnapshot)
-            val maxSequenceNumberToDelete = oldestKeptSnapshot - snapshotEvery
-
-            if (maxSequenceNumberToDelete <= 0) 0L else maxSequenceNumberToDelete
-          }
-        }
+    retention.keepNSnapshots match {
+      case Some(keepNSnapshots) if snapshotSequenceNumbers.size > keepNSnapshots =>
+        // The newest snapshot that is not kept; older snapshots, including unknown ones, are deleted with it
+        snapshotSequenceNumbers(snapshotSequenceNumbers.size - keepNSnapshots - 1)
       case _ =>
-        // Do not delete if either setting is missing
+        // Do not delete if keepNSnapshots is missing or only snapshots to keep exist
         0L
     }
 }
@@ -0,0 +1,276 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.DefaultPersistenceEffector.SnapshotReplyReceived
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.PersistenceStoreProtocol.*
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.SnapshotCoordinator.SnapshotRequest
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceEffectorConfig, RetentionCriteria}
+import org.apache.pekko.actor.typed.Behavior
+import org.apache.pekko.actor.typed.scaladsl.{ActorContext, Behaviors}
+
+import java.util.concurrent.TimeoutException
+import scala.compiletime.asMatchable
+
+/**
+ * Writes of an effector that waits for the reply to each write, stashing the other messages until it arrives. A write
+ * that is not acknowledged within the persist timeout is given up, and its reply is discarded when it arrives.
+ *
+ * @param ctx
+ *   Actor context
+ * @param config
+ *   Effector configuration
+ * @param journal
+ *   Journal of the effector
+ * @param snapshots
+ *   Snapshots of the effector
+ * @param messages
+ *   Messages deferred while a reply is awaited
+ * @tparam S
+ *   Type of state
+ * @tparam E
+ *   Type of event
+ * @tparam M
+ *   Type of message
+ */
+private[scalaimpl] final class SequentialWrites[S, E, M](
+  ctx: ActorContext[M],
+  config: PersistenceEffectorConfig[S, E, M],
+  journal: EventJournal[S, E, M],
+  snapshots: SnapshotCoordinator[S, E, M],
+  messages: MessageStash[S, E, M],
+) extends WriteStrategy[S, E, M] {
+  import EventJournal.JournalResponseConsumed
+  import WriteStrategy.*
+  import config.*
+
+  // Whether snapshot replies are handled by the interceptor rather than by the behavior waiting for a snapshot
+  private val interceptsSnapshotReplies: Boolean = DefaultPersistenceEffector.interceptsReplies(config)
+
+  // Generation of the write being waited for, or 0 if none, so that timeouts of completed writes are ignored
+  private var awaitedPersistGeneration: Long = 0L
+
+  private var persistGeneration: Long = 0L
+
+  // Writes given up after a timeout whose replies have not arrived yet. Replies arrive in the order the writes were
+  // sent, so they precede the reply of the write being waited for.
+  private var abandonedPersists: Int = 0
+
+  override def defersMessages: Boolean = false
+
+  override def writesInFlight: Boolean = awaitedPersistGeneration != 0L || abandonedPersists > 0
+
+  override def awaitingReplies: Boolean = writesInFlight
+
+  override def persist(
+    events: Seq[E],
+    single: Boolean,
+    onFailure: Option[Throwable => Behavior[M]],
+    snapshot: Option[SnapshotRequest[S, E]],
+  )(onPersisted: () => Behavior[M]): Behavior[M] = {
+    val sequenceNumber = journal.currentSequenceNumber
+    journal.write(events, single)
+    val logMessage = if (single) "Persisted event" else "Persisted events"
+    waitForPersist(journal.journalEventCount(events), logMessage, onFailure) {
+      journal.confirmLatest(events)
+      snapshot match {
+        case Some(request) if snapshots.shouldTakeSnapshot(request, sequenceNumber) =>
+          ctx.log.debug("Taking snapshot at sequence number {}", sequenceNumber)
+          saveSnapshot(request.state, None)(messages.unstashAll(onPersisted()))
+        case _ =>
+          onPersisted()
+      }
+    }
+  }
+
+  override def persistSnapshot(snapshot: S, save: Boolean, onFailure: Option[Throwable => Behavior[M]])(
+    onPersisted: () => Behavior[M]): Behavior[M] =
+    if (save) {
+      saveSnapshot(snapshot, onFailure)(messages.unstashAll(onPersisted()))
+    } else {
+      ctx.log.debug("Skipping snapshot persistence based on criteria evaluation")
+      onPersisted()
+    }
+
+  override def receiveEventReply(reply: PersistEventsReply[S, E]): Option[Behavior[M]] =
+    if (abandonedPersists > 0) {
+      abandonedPersists -= 1
+      ctx.log.warn("Discarding reply to a write that timed out: {}", reply)
+      // Nothing else lets the persistence store actor write again after the rejection
+      if (reply.isInstanceOf[PersistEventsRejected[?, ?]]) journal.resumeWrites()
+      Some(Behaviors.same)
+    } else {
+      // The reply completes the write being waited for
+      None
+    }
+
+  override def receiveSignal(signal: WriteSignal): Option[Behavior[M]] =
+    signal match {
+      case PersistTimedOut(generation) if generation == awaitedPersistGeneration =>
+        // The timeout of the write being waited for
+        None
+      case _ =>
+        // The write completed before the timeout message was processed
+        Some(Behaviors.same)
+    }
+
+  override def receiveSnapshotReply(reply: PersistenceReply[S, E]): Option[Behavior[M]] =
+    if (interceptsSnapshotReplies) {
+      Some(snapshots.handleReply(reply, rollingBack = false))
+    } else {
+      // The reply completes the snapshot being waited for
+      None
+    }
+
+  /**
+   * Wait for the reply to an event write. A failure, a rejection or the persist timeout completes the write with
+   * `onFailure`, or fails the actor if it is not given. The reply carries the events that were sent, so the callers
+   * complete the write with their own events instead of extracting them from the reply.
+   *
+   * @param journalEvents
+   *   Number of journal events of the write
+   * @param logMessage
+   *   Log message on success
+   * @param onFailure
+   *   Callback on failure
+   * @param onSuccess
+   *   Callback on success
+   * @return
+   *   Message waiting behavior
+   */
+  private def waitForPersist(
+    journalEvents: Int,
+    logMessage: String,
+    onFailure: Option[Throwable => Behavior[M]],
+  )(onSuccess: => Behavior[M]): Behavior[M] = {
+    persistGeneration += 1
+    awaitedPersistGeneration = persistGeneration
+    val timeout = persistTimeout match {
+      case Some(duration) =>
+        Some(ctx.scheduleOnce(duration, ctx.self, PersistTimedOut(persistGeneration).asInstanceOf[M]))
+      case None =>
+        None
+    }
+
+    def complete(): Unit = {
+      if (timeout.isDefined) timeout.get.cancel()
+      awaitedPersistGeneration = 0L
+    }
+
+    def fail(cause: Throwable, error: => Throwable): Behavior[M] =
+      onFailure match {
+        case Some(callback) => messages.unstashAll(callback(cause))
+        case None => throw error
+      }
+
+    Behaviors.receiveMessage { received =>
+      val msg = journal.adaptResponse(received)
+      msg.asMatchable match {
+        case JournalResponseConsumed =>
+          Behaviors.same
+        case _: PersistSingleEventSucceeded[?, ?] | _: PersistMultipleEventsSucceeded[?, ?] =>
+          complete()
+          if (ctx.log.isDebugEnabled) ctx.log.debug("{}: {}", logMessage, msg)
+          messages.unstashAll(onSuccess)
+        case PersistEventsRejected(_, sequenceNr, cause) =>
+          complete()
+          // The events were not stored
+          journal.releaseSequenceNumbers(journalEvents)
+          journal.resumeWrites()
+          ctx.log.warn(s"Events rejected by the journal at sequence number $sequenceNr", cause)
+          fail(
+            cause,
+            new IllegalStateException(s"Events rejected by the journal at sequence number $sequenceNr", cause))
+        case PersistEventsFailed(_, sequenceNr, cause) =>
+          complete()
+          // The events were not stored
+          journal.releaseSequenceNumbers(journalEvents)
+          ctx.log.error(s"Failed to persist events at sequence number $sequenceNr", cause)
+          fail(cause, new IllegalStateException(s"Failed to persist events at sequence number $sequenceNr", cause))
+        case PersistTimedOut(generation) if generation == awaitedPersistGeneration =>
+          complete()
+          abandonedPersists += 1
+          val cause = new TimeoutException(s"Persisting events timed out after ${persistTimeout.get}")
+          ctx.log.error(cause.getMessage)
+          fail(cause, cause)
+        case _ =>
+          messages.defer(msg)
+      }
+    }
+  }
+
+  /**
+   * Save a snapshot and wait for the reply, unless snapshots are asynchronous
+   *
+   * @param state
+   *   State to save
+   * @param onFailure
+   *   Callback if the snapshot could not be saved, or None to fail the actor
+   * @param onCompleted
+   *   Callback after snapshot processing is complete
+   * @return
+   *   Waiting behavior, or onCompleted itself if snapshots are asynchronous
+   */
+  private def saveSnapshot(state: S, onFailure: Option[Throwable => Behavior[M]])(
+    onCompleted: => Behavior[M]): Behavior[M] =
+    if (asyncSnapshots) {
+      snapshots.send(state, None)
+      onCompleted
+    } else {
+      snapshots.request(state)
+
+      Behaviors.receiveMessage { msg =>
+        if (unwrapPersistedSnapshot(msg).isDefined) {
+          if (ctx.log.isDebugEnabled) ctx.log.debug("Persisted snapshot: {}", msg)
+          snapshots.saved(journal.currentSequenceNumber)
+          // Delete old snapshots if RetentionCriteria is set
+          retentionCriteria match {
+            case Some(retention) => messages.unstashAll(deleteOldSnapshots(retention, onCompleted))
+            case None => messages.unstashAll(onCompleted)
+          }
+        } else {
+          msg.asMatchable match {
+            case SnapshotReplyReceived(PersistSnapshotFailed(_, sequenceNr, cause)) =>
+              snapshots.failed(sequenceNr, cause)
+              onFailure match {
+                case Some(callback) =>
+                  ctx.log.warn(s"Failed to persist snapshot at sequence number $sequenceNr", cause)
+                  messages.unstashAll(callback(cause))
+                case None =>
+                  throw new IllegalStateException("Failed to persist snapshot", cause)
+              }
+            case _ =>
+              messages.defer(msg)
+          }
+        }
+      }
+    }
+
+  /**
+   * Delete old snapshots based on RetentionCriteria and wait for the reply
+   *
+   * @param retention
+   *   Retention policy
+   * @param onDeleted
+   *   Behavior after deletion is complete
+   * @return
+   *   Waiting behavior
+   */
+  private def deleteOldSnapshots(retention: RetentionCriteria, onDeleted: => Behavior[M]): Behavior[M] = {
+    val maxSequenceNumberToDelete = snapshots.applyRetention(retention)
+
+    if (maxSequenceNumberToDelete > 0) {
+      snapshots.deleteSnapshots(maxSequenceNumberToDelete)
+      Behaviors.receiveMessage { msg =>
+        unwrapDeleteSnapshots(msg) match {
+          case Some(maxSequenceNr) =>
+            snapshots.deleted(maxSequenceNr)
+            messages.unstashAll(onDeleted)
+          case None =>
+            messages.defer(msg)
+        }
+      }
+    } else {
+      ctx.log.debug("No snapshots to delete based on retention policy")
+      onDeleted
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.BatchingConfig
+import org.apache.pekko.actor.typed.scaladsl.adapter.*
+import org.apache.pekko.actor.typed.{ActorSystem, Extension, ExtensionId}
+import org.apache.pekko.actor.{Actor, ActorLogging, ActorRef, ExtendedActorSystem, Props, Timers}
+import org.apache.pekko.persistence.AtomicWrite
+import org.apache.pekko.persistence.effector.JournalProtocolBridge
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import scala.collection.mutable
+import scala.compiletime.asMatchable
+
+/**
+ * Journal writers shared by the effectors of an actor system in Direct mode, one per batching configuration.
+ *
+ * @param system
+ *   Actor system in which the effectors run
+ */
+private[effector] final class SharedJournalWriter private (system: ActorSystem[?]) extends Extension {
+
+  private val writers = new ConcurrentHashMap[BatchingConfig, ActorRef]()
+
+  private val writerCounter = new AtomicLong(0L)
+
+  /**
+   * Get the writer with the given batching configuration, starting it on first use.
+   *
+   * @param batching
+   *   Batching configuration of the writer
+   * @return
+   *   Writer accepting [[SharedJournalWriter.Write]] requests
+   */
+  def writerFor(batching: BatchingConfig): ActorRef =
+    writers.computeIfAbsent(
+      batching,
+      _ =>
+        system.toClassic
+          .asInstanceOf[ExtendedActorSystem]
+          .systemActorOf(
+            SharedJournalWriterActor.props(JournalProtocolBridge.journalFor(system.toClassic, ""), batching),
+            s"sharedJournalWriter-${writerCounter.incrementAndGet()}",
+          ),
+    )
+}
+
+/**
+ * Companion object for SharedJournalWriter.
+ */
+private[effector] object SharedJournalWriter extends ExtensionId[SharedJournalWriter] {
+
+  override def createExtension(system: ActorSystem[?]): SharedJournalWriter = new SharedJournalWriter(system)
+
+  /**
+   * Request to write the events of an entity as part of the next batch.
+   *
+   * @param write
+   *   Events of the entity to write atomically
+   * @param replyTo
+   *   Actor the replies of the journal are forwarded to
+   * @param actorInstanceId
+   *   Instance ID the replies are addressed to
+   */
+  final case class Write(write: AtomicWrite, replyTo: ActorRef, actorInstanceId: Int)
+}
+
+/**
+ * Companion object for SharedJournalWriterActor.
+ */
+private[effector] object SharedJournalWriterActor {
+
+  def props(journal: ActorRef, batching: BatchingConfig): Props =
+    Props(new SharedJournalWriterActor(journal, batching))
+
+  /**
+   * Recipient of the replies of the journal to the events of a write.
+   *
+   * @param replyTo
+   *   Actor the replies are forwarded to
+   * @param actorInstanceId
+   *   Instance ID the replies are addressed to
+   * @param remaining
+   *   Number of events of the write whose reply has not been forwarded yet
+   */
+  private final class Route(val replyTo: ActorRef, val actorInstanceId: Int, var remaining: Int)
+
+  private case object FlushTimer
+
+  private case object Flush
+}
+
+/**
+ * Combines the writes of many effectors into journal requests of up to `maxBatchSize` events, written at the latest
+ * `maxLatency` after their first write, and forwards the reply of the journal to each event to the effector that wrote
+ * it. The journal replies to the events of its requests in the order they were sent, so replies are routed by position.
+ * A journal request fails or succeeds as a whole, while rejections only concern the write of a single entity.
+ *
+ * @param journal
+ *   Journal plugin actor
+ * @param batching
+ *   Batching configuration
+ */
+private[effector] final class SharedJournalWriterActor(journal: ActorRef, batching: BatchingConfig)
+  extends Actor
+  with ActorLogging
+  with Timers {
+  import SharedJournalWriterActor.*
+
+  // Writes collected for the next journal request, and the recipients of their replies
+  private val batch = mutable.ArrayBuffer.empty[AtomicWrite]
+  private val batchRoutes = mutable.ArrayBuffer.empty[Route]
+  private var batchEvents = 0
+
+  // Recipients of the replies to the journal requests sent, in the order of their events
+  private val routes = mutable.Queue.empty[Route]
+
+  override def receive: Receive = { msg =>
+    msg.asMatchable match {
+      case SharedJournalWriter.Write(write, replyTo, actorInstanceId) =>
+        if (batch.isEmpty) timers.startSingleTimer(FlushTimer, Flush, batching.maxLatency)
+        batch += write
+        batchRoutes += new Route(replyTo, actorInstanceId, write.size)
+        batchEvents += write.size
+        if (batchEvents >= batching.maxBatchSize) flush()
+      case Flush =>
+        flush()
+      case JournalProtocolBridge.WriteMessageSuccess(_, _) | JournalProtocolBridge.WriteMessageRejected(_, _, _) |
+          JournalProtocolBridge.WriteMessageFailure(_, _, _) =>
+        val route = routes.head
+        route.replyTo ! JournalProtocolBridge.withActorInstanceId(msg, route.actorInstanceId)
+        route.remaining -= 1
+        if (route.remaining == 0) routes.dequeue()
+      case _ =>
+        // Summary of a journal request; each event is answered individually
+        ()
+    }
+  }
+
+  private def flush(): Unit =
+    if (batch.nonEmpty) {
+      timers.cancel(FlushTimer)
+      if (log.isDebugEnabled) log.debug("Writing {} events of {} entities", batchEvents, batch.size)
+      JournalProtocolBridge.writeMessages(journal, batch.toVector, self, 0)
+      routes ++= batchRoutes
+      batch.clear()
+      batchRoutes.clear()
+      batchEvents = 0
+    }
+}
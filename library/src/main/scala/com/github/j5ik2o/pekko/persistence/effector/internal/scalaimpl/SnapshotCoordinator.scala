@@ -0,0 +1,367 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.PersistenceStoreProtocol.*
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
+  PersistenceEffectorConfig,
+  RetentionCriteria,
+  SnapshotCriteria,
+  SnapshotOutcome,
+}
+import org.apache.pekko.actor.typed.scaladsl.{ActorContext, Behaviors}
+import org.apache.pekko.actor.typed.{ActorRef, Behavior}
+import org.apache.pekko.serialization.SerializationExtension
+
+import scala.collection.mutable
+
+private[scalaimpl] object SnapshotCoordinator {
+
+  /**
+   * Snapshot to take with a write of events if the snapshot criteria call for it once the sequence number of the last
+   * event is known.
+   *
+   * @param state
+   *   State including the events of the write
+   * @param lastEvent
+   *   Last event of the write, against which the criteria are evaluated
+   * @param force
+   *   Whether to take the snapshot regardless of the criteria
+   */
+  final case class SnapshotRequest[S, E](state: S, lastEvent: Option[E], force: Boolean)
+}
+
+/**
+ * Snapshots of an effector in Persisted and Direct mode. The coordinator evaluates the snapshot criteria, sends the
+ * snapshots and the retention deletions to the persistence store actor, and keeps the index of the saved snapshots
+ * that the retention criteria are applied to. Snapshots that are not waited for are tracked until their reply
+ * arrives.
+ *
+ * @param ctx
+ *   Actor context
+ * @param config
+ *   Effector configuration
+ * @param journal
+ *   Journal of the effector
+ * @param adapter
+ *   Message adapter receiving the replies of the persistence store actor
+ * @param initialSequenceNr
+ *   Sequence number of the last recovered event
+ * @param replayedEvents
+ *   Number of events replayed during recovery
+ * @param recoveryDurationNanos
+ *   Duration of the recovery
+ * @param recoveredSnapshotSequenceNr
+ *   Sequence number of the snapshot the effector recovered from (0 if none)
+ * @tparam S
+ *   Type of state
+ * @tparam E
+ *   Type of event
+ * @tparam M
+ *   Type of message
+ */
+private[scalaimpl] final class SnapshotCoordinator[S, E, M](
+  ctx: ActorContext[M],
+  config: PersistenceEffectorConfig[S, E, M],
+  journal: EventJournal[S, E, M],
+  adapter: ActorRef[PersistenceReply[S, E]],
+  initialSequenceNr: Long,
+  replayedEvents: Long,
+  recoveryDurationNanos: Long,
+  recoveredSnapshotSequenceNr: Long,
+) {
+  import SnapshotCoordinator.*
+  import config.*
+
+  // Criteria of this effector, fed with the measured replay and snapshot costs
+  private val activeSnapshotCriteria: Option[SnapshotCriteria[S, E]] = snapshotCriteria.map(_.instantiate())
+
+  activeSnapshotCriteria.foreach(_.recoveryCompleted(initialSequenceNr, replayedEvents, recoveryDurationNanos))
+
+  private lazy val serialization = SerializationExtension(ctx.system.classicSystem)
+
+  private def serializedSize(event: E): Long = SnapshotHelper.serializedSize(serialization, event)
+
+  // Sequence numbers of the saved snapshots, to which the retention policy is applied
+  private val snapshotIndex = new SnapshotIndex(recoveredSnapshotSequenceNr)
+
+  // Start times of the snapshot saves awaiting a reply, in the order they were sent
+  private val snapshotStartNanos = mutable.Queue.empty[Long]
+
+  // Snapshot saves and deletions awaiting a reply in pipelined mode when snapshots are not asynchronous
+  private var inFlightOperations: Int = 0
+
+  // Failure callbacks of the snapshot saves awaiting a reply in pipelined mode, in the order they were sent
+  private val failureCallbacks = mutable.Queue.empty[Option[Throwable => Behavior[M]]]
+
+  /**
+   * Get the number of snapshot saves and deletions sent without waiting that count against the in-flight requests of
+   * pipelined mode.
+   *
+   * @return
+   *   Number of snapshot operations awaiting a reply
+   */
+  def inFlightOperationCount: Int = inFlightOperations
+
+  /**
+   * Whether a snapshot save awaits a reply.
+   *
+   * @return
+   *   true if a snapshot save is pending
+   */
+  def savePending: Boolean = snapshotStartNanos.nonEmpty
+
+  /**
+   * Get the sequence number of the latest saved snapshot.
+   *
+   * @return
+   *   Sequence number, or 0 if no snapshot is known
+   */
+  def latestSnapshotSequenceNr: Long = snapshotIndex.sequenceNumbers.lastOption.getOrElse(0L)
+
+  /**
+   * Let the snapshot criteria know that events are sent to the journal.
+   *
+   * @param events
+   *   Events sent
+   */
+  def eventsPersisted(events: Seq[E]): Unit =
+    if (activeSnapshotCriteria.isDefined) activeSnapshotCriteria.get.eventsPersisted(events, serializedSize)
+
+  /**
+   * Evaluate whether to take a snapshot
+   *
+   * @param request
+   *   Snapshot to take with a write of events
+   * @param sequenceNumber
+   *   Sequence number of the last event of the write
+   * @return
+   *   Whether a snapshot should be taken
+   */
+  def shouldTakeSnapshot(request: SnapshotRequest[S, E], sequenceNumber: Long): Boolean = {
+    val result = request.force || request.lastEvent.exists { event =>
+      SnapshotHelper.shouldTakeSnapshot(
+        Some(event),
+        request.state,
+        sequenceNumber,
+        request.force,
+        activeSnapshotCriteria)
+    }
+    ctx.log.debug("Snapshot criteria evaluation result: {}", result)
+    result
+  }
+
+  /**
+   * Evaluate whether to save a snapshot passed to `persistSnapshot`
+   *
+   * @param snapshot
+   *   Snapshot to save
+   * @param force
+   *   Whether to save the snapshot regardless of the criteria
+   * @return
+   *   Whether the snapshot should be saved
+   */
+  def shouldSaveSnapshot(snapshot: S, force: Boolean): Boolean =
+    force || activeSnapshotCriteria.exists { criteria =>
+      val result =
+        SnapshotHelper.shouldTakeSnapshot(None, snapshot, journal.currentSequenceNumber, force, Some(criteria))
+      ctx.log.debug("Snapshot criteria evaluation result: {}", result)
+      result
+    }
+
+  /**
+   * Send a snapshot to the persistence store actor and notify the snapshot criteria
+   *
+   * @param state
+   *   State to save
+   * @param replyTo
+   *   Recipient of the reply
+   */
+  def request(state: S, replyTo: ActorRef[PersistSnapshotReply[S, E]] = adapter): Unit = {
+    ctx.log.debug("Taking snapshot for state: {}", state)
+    activeSnapshotCriteria.foreach { criteria =>
+      snapshotStartNanos.enqueue(System.nanoTime())
+      criteria.snapshotStarted(journal.currentSequenceNumber)
+    }
+    journal.advanceStoreSequenceNr()
+    journal.persistenceRef ! PersistSnapshot(state, replyTo)
+  }
+
+  /**
+   * Send a snapshot without waiting for the reply, which is handled by [[handleReply]]
+   *
+   * @param state
+   *   State to save
+   * @param onFailure
+   *   Callback if the snapshot could not be saved, or None to fail the actor (pipelined mode)
+   */
+  def send(state: S, onFailure: Option[Throwable => Behavior[M]]): Unit = {
+    request(state)
+    if (!asyncSnapshots) {
+      inFlightOperations += 1
+      failureCallbacks.enqueue(onFailure)
+    }
+  }
+
+  /**
+   * Notify the snapshot criteria and the outcome handler that the oldest pending snapshot has been saved
+   *
+   * @param sequenceNr
+   *   Sequence number of the snapshot
+   */
+  def saved(sequenceNr: Long): Unit = {
+    snapshotIndex.add(sequenceNr)
+    activeSnapshotCriteria.foreach { criteria =>
+      criteria.snapshotSaved(sequenceNr, System.nanoTime() - snapshotStartNanos.dequeue())
+    }
+    snapshotOutcomeHandler(SnapshotOutcome.Saved(sequenceNr))
+  }
+
+  /**
+   * Notify the snapshot criteria and the outcome handler that the oldest pending snapshot could not be saved
+   *
+   * @param sequenceNr
+   *   Sequence number of the snapshot
+   * @param cause
+   *   Cause of the failure
+   */
+  def failed(sequenceNr: Long, cause: Throwable): Unit = {
+    activeSnapshotCriteria.foreach { criteria =>
+      snapshotStartNanos.dequeue()
+      criteria.snapshotFailed(sequenceNr)
+    }
+    snapshotOutcomeHandler(SnapshotOutcome.SaveFailed(sequenceNr, cause))
+  }
+
+  /**
+   * Apply RetentionCriteria to the saved snapshots. Snapshots that are not kept are removed from the index, and journal
+   * events covered by the oldest kept snapshot are deleted if the retention policy requests it.
+   *
+   * @param retention
+   *   Retention policy
+   * @return
+   *   Maximum sequence number of snapshots to be deleted (0 if there are no snapshots to delete)
+   */
+  def applyRetention(retention: RetentionCriteria): Long = {
+    val result = RetentionHelper.calculateMaxSequenceNumberToDelete(snapshotIndex.sequenceNumbers, retention)
+    ctx.log.debug(
+      "Calculated maxSequenceNumberToDelete: snapshotSequenceNumbers={}, retention={}, result={}",
+      snapshotIndex.sequenceNumbers,
+      retention,
+      result,
+    )
+    if (result > 0) {
+      snapshotIndex.removeUpTo(result)
+      if (retention.deleteEventsOnSnapshot) {
+        snapshotIndex.oldest.foreach { oldestKept =>
+          ctx.log.debug("Deleting events up to sequence number {}", oldestKept)
+          journal.advanceStoreSequenceNr()
+          journal.persistenceRef ! DeleteEvents(oldestKept, adapter)
+        }
+      }
+    }
+    result
+  }
+
+  /**
+   * Send the deletion of the snapshots up to a sequence number
+   *
+   * @param maxSequenceNr
+   *   Maximum sequence number of the snapshots to delete
+   */
+  def deleteSnapshots(maxSequenceNr: Long): Unit = {
+    ctx.log.debug("Deleting snapshots with sequence numbers up to {} based on retention policy", maxSequenceNr)
+    journal.persistenceRef ! DeleteSnapshots(maxSequenceNr, adapter)
+  }
+
+  /**
+   * Report the deletion of the snapshots up to a sequence number
+   *
+   * @param maxSequenceNr
+   *   Maximum sequence number of the deleted snapshots
+   */
+  def deleted(maxSequenceNr: Long): Unit = {
+    ctx.log.debug("Deleted snapshots up to sequence number {}", maxSequenceNr)
+    snapshotOutcomeHandler(SnapshotOutcome.Deleted(maxSequenceNr))
+  }
+
+  /**
+   * Handle a reply to a snapshot save or deletion sent without waiting
+   *
+   * @param reply
+   *   Reply from the persistence store actor
+   * @param rollingBack
+   *   Whether a rejected write is being rolled back, in which case failed saves are only logged as they may cover its
+   *   events
+   * @return
+   *   The behavior returned by the failure callback of a snapshot that could not be saved, Behaviors.same otherwise
+   */
+  def handleReply(reply: PersistenceReply[S, E], rollingBack: Boolean): Behavior[M] = {
+    if (!asyncSnapshots) inFlightOperations -= 1
+    reply match {
+      case PersistSnapshotSucceeded(_, sequenceNr) =>
+        if (!asyncSnapshots) failureCallbacks.dequeue()
+        ctx.log.debug("Persisted snapshot at sequence number {}", sequenceNr)
+        saved(sequenceNr)
+        // Old snapshots are only deleted once the new one has been saved
+        config.retentionCriteria.foreach { retention =>
+          val maxSequenceNumberToDelete = applyRetention(retention)
+          if (maxSequenceNumberToDelete > 0) {
+            deleteSnapshots(maxSequenceNumberToDelete)
+            if (!asyncSnapshots) inFlightOperations += 1
+          }
+        }
+        Behaviors.same
+      case PersistSnapshotFailed(_, sequenceNr, cause) =>
+        val onFailure = if (asyncSnapshots) None else failureCallbacks.dequeue()
+        failed(sequenceNr, cause)
+        if (asyncSnapshots || rollingBack) {
+          ctx.log.warn(s"Failed to persist snapshot at sequence number $sequenceNr", cause)
+          Behaviors.same
+        } else {
+          onFailure match {
+            case Some(callback) =>
+              ctx.log.warn(s"Failed to persist snapshot at sequence number $sequenceNr", cause)
+              callback(cause)
+            case None =>
+              throw new IllegalStateException("Failed to persist snapshot", cause)
+          }
+        }
+      case DeleteSnapshotsSucceeded(maxSequenceNr) =>
+        deleted(maxSequenceNr)
+        Behaviors.same
+      case DeleteSnapshotsFailed(maxSequenceNr, cause) =>
+        snapshotOutcomeHandler(SnapshotOutcome.DeleteFailed(maxSequenceNr, cause))
+        if (asyncSnapshots) {
+          ctx.log.warn(s"Failed to delete snapshots up to sequence number $maxSequenceNr", cause)
+          Behaviors.same
+        } else {
+          throw new IllegalStateException("Failed to delete snapshots", cause)
+        }
+      case other =>
+        throw new IllegalStateException(s"Unexpected snapshot reply: $other")
+    }
+  }
+
+  /**
+   * Report the deletion of journal events, which is never waited for
+   *
+   * @param toSequenceNr
+   *   Maximum sequence number of the deleted events
+   */
+  def eventsDeleted(toSequenceNr: Long): Unit = {
+    ctx.log.debug("Deleted events up to sequence number {}", toSequenceNr)
+    snapshotOutcomeHandler(SnapshotOutcome.EventsDeleted(toSequenceNr))
+  }
+
+  /**
+   * Report a failed deletion of journal events, which the next retention pass retries
+   *
+   * @param toSequenceNr
+   *   Maximum sequence number of the events to delete
+   * @param cause
+   *   Cause of the failure
+   */
+  def eventsDeleteFailed(toSequenceNr: Long, cause: Throwable): Unit = {
+    ctx.log.warn(s"Failed to delete events up to sequence number $toSequenceNr", cause)
+    snapshotOutcomeHandler(SnapshotOutcome.EventsDeleteFailed(toSequenceNr, cause))
+  }
+}
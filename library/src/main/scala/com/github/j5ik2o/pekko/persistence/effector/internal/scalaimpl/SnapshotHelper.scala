@@ -1,6 +1,7 @@
 package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
 
-import com.github.j5ik2o.pekko.persistence.effector.scaladsl.SnapshotCriteria
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{EncodedSnapshot, SnapshotCodec, SnapshotCriteria}
+import org.apache.pekko.serialization.{Serialization, Serializers}
 
 /**
  * Utility object for handling snapshot evaluation logic.
@@ -58,4 +59,58 @@ private[scalaimpl] object SnapshotHelper {
           false
       }
     }
+
+  /**
+   * Get the serialized size of an event, as written to the journal by the serializer bound to its class. Used by
+   * size-based snapshot criteria.
+   *
+   * @param serialization
+   *   Serialization extension of the actor system
+   * @param event
+   *   Event to measure
+   * @return
+   *   Serialized size in bytes, or 0 if the event cannot be serialized
+   */
+  def serializedSize(serialization: Serialization, event: Any): Long =
+    serialization.serialize(event.asInstanceOf[AnyRef]).fold(_ => 0L, _.length.toLong)
+
+  /**
+   * Serialize a snapshot with the serializer bound to its class and encode the bytes with a codec.
+   *
+   * @param serialization
+   *   Serialization extension of the actor system
+   * @param codec
+   *   Codec encoding the serialized snapshot
+   * @param snapshot
+   *   Snapshot to encode
+   * @return
+   *   The encoded snapshot and the size of the serialized snapshot before encoding
+   */
+  def encodeSnapshot(serialization: Serialization, codec: SnapshotCodec, snapshot: Any): (EncodedSnapshot, Int) = {
+    val ref = snapshot.asInstanceOf[AnyRef]
+    val serializer = serialization.findSerializerFor(ref)
+    val bytes = serializer.toBinary(ref)
+    (
+      EncodedSnapshot(codec.id, serializer.identifier, Serializers.manifestFor(serializer, ref), codec.encode(bytes)),
+      bytes.length)
+  }
+
+  /**
+   * Decode and deserialize a snapshot encoded by [[encodeSnapshot]].
+   *
+   * @param serialization
+   *   Serialization extension of the actor system
+   * @param codec
+   *   Codec of the configuration, if any
+   * @param snapshot
+   *   Encoded snapshot
+   * @return
+   *   The snapshot
+   */
+  def decodeSnapshot(serialization: Serialization, codec: Option[SnapshotCodec], snapshot: EncodedSnapshot): Any = {
+    val decoder = SnapshotCodec
+      .forId(snapshot.codecId, codec)
+      .getOrElse(throw new IllegalStateException(s"No snapshot codec with id ${snapshot.codecId} is configured"))
+    serialization.deserialize(decoder.decode(snapshot.payload), snapshot.serializerId, snapshot.manifest).get
+  }
 }
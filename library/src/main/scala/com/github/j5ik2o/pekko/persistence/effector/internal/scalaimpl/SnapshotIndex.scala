@@ -0,0 +1,58 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import scala.collection.{mutable, Searching}
+
+/**
+ * Sequence numbers of the snapshots saved by an effector, in ascending order. Used to apply keep-N retention to
+ * snapshots at arbitrary positions, e.g. forced snapshots or snapshots of event batches.
+ *
+ * Only the latest snapshot found during recovery is known, so snapshots saved before the recovery are deleted once
+ * enough newer snapshots have been saved.
+ *
+ * @param recoveredSnapshotSequenceNr
+ *   Sequence number of the snapshot the effector recovered from (0 if none)
+ */
+private[scalaimpl] final class SnapshotIndex(recoveredSnapshotSequenceNr: Long) {
+
+  private val buffer = mutable.ArrayBuffer.empty[Long]
+
+  if (recoveredSnapshotSequenceNr > 0) buffer += recoveredSnapshotSequenceNr
+
+  /**
+   * Get the sequence numbers of the indexed snapshots.
+   *
+   * @return
+   *   Sequence numbers in ascending order
+   */
+  def sequenceNumbers: collection.IndexedSeq[Long] = buffer
+
+  /**
+   * Add a saved snapshot to the index, in sequence number order. A sequence number that is already indexed replaces the
+   * existing entry rather than adding another one, as the snapshot store keeps a single snapshot per sequence number.
+   *
+   * @param sequenceNr
+   *   Sequence number of the snapshot
+   */
+  def add(sequenceNr: Long): Unit =
+    buffer.search(sequenceNr) match {
+      case Searching.Found(index) => buffer(index) = sequenceNr
+      case Searching.InsertionPoint(index) => buffer.insert(index, sequenceNr)
+    }
+
+  /**
+   * Remove deleted snapshots from the index.
+   *
+   * @param maxSequenceNr
+   *   Maximum sequence number of the deleted snapshots
+   */
+  def removeUpTo(maxSequenceNr: Long): Unit =
+    buffer.dropWhileInPlace(_ <= maxSequenceNr)
+
+  /**
+   * Get the oldest indexed snapshot.
+   *
+   * @return
+   *   Sequence number of the oldest snapshot, if any
+   */
+  def oldest: Option[Long] = buffer.headOption
+}
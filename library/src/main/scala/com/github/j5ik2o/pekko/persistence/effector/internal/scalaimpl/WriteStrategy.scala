@@ -0,0 +1,139 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.PersistenceStoreProtocol.*
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.SnapshotCoordinator.SnapshotRequest
+import org.apache.pekko.actor.typed.Behavior
+
+private[scalaimpl] object WriteStrategy {
+
+  /**
+   * Message that a write strategy schedules to the actor itself.
+   */
+  sealed trait WriteSignal
+
+  /**
+   * Message sent to the actor itself when the maximum latency of a batch has elapsed.
+   *
+   * @param generation
+   *   Generation of the batch the message was scheduled for
+   */
+  final case class FlushBatch(generation: Long) extends WriteSignal
+
+  /**
+   * Message sent to the actor itself when the persist timeout of a write has elapsed.
+   *
+   * @param generation
+   *   Generation of the write the message was scheduled for
+   */
+  final case class PersistTimedOut(generation: Long) extends WriteSignal
+}
+
+/**
+ * How an effector in Persisted and Direct mode sends its writes and completes them: [[SequentialWrites]] waits for the
+ * reply to each write, while [[PipelinedWrites]] keeps several writes in flight. The sequence numbers of the events
+ * are assigned by the effector before they are handed to the strategy.
+ *
+ * @tparam S
+ *   Type of state
+ * @tparam E
+ *   Type of event
+ * @tparam M
+ *   Type of message
+ */
+private[scalaimpl] trait WriteStrategy[S, E, M] {
+  import WriteStrategy.*
+
+  /**
+   * Write the events of a persist
+   *
+   * @param events
+   *   Events to write, whose sequence numbers have been assigned
+   * @param single
+   *   Whether the events come from a single-event persist
+   * @param onFailure
+   *   Callback if the write fails or is rejected, or None to fail the actor
+   * @param snapshot
+   *   Snapshot to take with the events if the snapshot criteria call for it
+   * @param onPersisted
+   *   Callback once the events are persisted
+   * @return
+   *   The behavior to continue with
+   */
+  def persist(
+    events: Seq[E],
+    single: Boolean,
+    onFailure: Option[Throwable => Behavior[M]],
+    snapshot: Option[SnapshotRequest[S, E]],
+  )(onPersisted: () => Behavior[M]): Behavior[M]
+
+  /**
+   * Persist a snapshot
+   *
+   * @param snapshot
+   *   Snapshot to persist
+   * @param save
+   *   Whether the snapshot is saved, or only its callback is invoked
+   * @param onFailure
+   *   Callback if the snapshot could not be saved, or None to fail the actor
+   * @param onPersisted
+   *   Callback once the snapshot is persisted
+   * @return
+   *   The behavior to continue with
+   */
+  def persistSnapshot(snapshot: S, save: Boolean, onFailure: Option[Throwable => Behavior[M]])(
+    onPersisted: () => Behavior[M]): Behavior[M]
+
+  /**
+   * Receive a reply to an event write before it reaches the actor behavior
+   *
+   * @param reply
+   *   Reply of the persistence store actor
+   * @return
+   *   The behavior to continue with if the reply was consumed, None to pass it to the actor behavior
+   */
+  def receiveEventReply(reply: PersistEventsReply[S, E]): Option[Behavior[M]]
+
+  /**
+   * Receive a message that the strategy scheduled to the actor itself
+   *
+   * @param signal
+   *   Received message
+   * @return
+   *   The behavior to continue with if the message was consumed, None to pass it to the actor behavior
+   */
+  def receiveSignal(signal: WriteSignal): Option[Behavior[M]]
+
+  /**
+   * Receive a reply to a snapshot save or deletion before it reaches the actor behavior
+   *
+   * @param reply
+   *   Reply of the persistence store actor
+   * @return
+   *   The behavior to continue with if the reply was consumed, None to pass it to the actor behavior
+   */
+  def receiveSnapshotReply(reply: PersistenceReply[S, E]): Option[Behavior[M]]
+
+  /**
+   * Whether the messages of the actor have to wait for a reply instead of reaching the actor behavior.
+   *
+   * @return
+   *   true if messages are deferred
+   */
+  def defersMessages: Boolean
+
+  /**
+   * Whether events have been sent, or collected for a batch, that the journal has not acknowledged yet.
+   *
+   * @return
+   *   true if event writes are in flight
+   */
+  def writesInFlight: Boolean
+
+  /**
+   * Whether a reply or a write is pending.
+   *
+   * @return
+   *   true if the strategy awaits a reply
+   */
+  def awaitingReplies: Boolean
+}
@@ -0,0 +1,93 @@
+package com.github.j5ik2o.pekko.persistence.effector.javadsl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.BatchingConfig as SBatchingConfig
+
+import java.time.Duration
+import scala.jdk.DurationConverters.*
+
+/**
+ * Configuration for batching persist requests in Java API. Events persisted while a batch is open are written to the
+ * journal together once the batch is full or its maximum latency has elapsed.
+ */
+trait BatchingConfig {
+
+  /**
+   * Get the maximum number of events in a batch.
+   *
+   * @return
+   *   Maximum number of events in a batch
+   */
+  def maxBatchSize: Int
+
+  /**
+   * Get the maximum time an event waits in an open batch before the batch is written.
+   *
+   * @return
+   *   Maximum latency added by batching
+   */
+  def maxLatency: Duration
+
+  /**
+   * Convert this BatchingConfig to its Scala equivalent.
+   *
+   * @return
+   *   Scala version of this BatchingConfig
+   */
+  private[effector] def toScala: SBatchingConfig
+}
+
+/**
+ * Companion object for BatchingConfig. Provides factory methods to create BatchingConfig instances.
+ */
+object BatchingConfig {
+
+  private final case class Impl(
+    maxBatchSize: Int,
+    maxLatency: Duration,
+  ) extends BatchingConfig {
+
+    private[effector] override def toScala: SBatchingConfig = SBatchingConfig(
+      maxBatchSize = maxBatchSize,
+      maxLatency = maxLatency.toScala,
+    )
+  }
+
+  def unapply(self: BatchingConfig): Option[(Int, Duration)] =
+    Some((self.maxBatchSize, self.maxLatency))
+
+  /**
+   * Default batching configuration. Uses batches of up to 64 events and a maximum latency of 5 milliseconds.
+   */
+  final val Default: BatchingConfig = fromScala(SBatchingConfig.Default)
+
+  /**
+   * Create a BatchingConfig with the specified parameters.
+   *
+   * @param maxBatchSize
+   *   Maximum number of events in a batch
+   * @param maxLatency
+   *   Maximum time an event waits in an open batch
+   * @return
+   *   BatchingConfig instance
+   */
+  def create(maxBatchSize: Int, maxLatency: Duration): BatchingConfig = {
+    require(maxBatchSize > 0, "maxBatchSize must be greater than 0")
+    require(!maxLatency.isNegative && !maxLatency.isZero, "maxLatency must be greater than 0")
+
+    Impl(maxBatchSize, maxLatency)
+  }
+
+  /**
+   * Convert a Scala BatchingConfig to its Java equivalent.
+   *
+   * @param batchingConfig
+   *   Scala BatchingConfig
+   * @return
+   *   Java version of the BatchingConfig
+   */
+  private[effector] def fromScala(batchingConfig: SBatchingConfig): BatchingConfig =
+    Impl(
+      batchingConfig.maxBatchSize,
+      batchingConfig.maxLatency.toJava,
+    )
+}
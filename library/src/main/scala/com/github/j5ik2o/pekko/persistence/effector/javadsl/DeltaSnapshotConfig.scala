@@ -0,0 +1,95 @@
+package com.github.j5ik2o.pekko.persistence.effector.javadsl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.DeltaSnapshotConfig as SDeltaSnapshotConfig
+
+/**
+ * Configuration for incremental snapshots in Java API. The effector writes a full base snapshot followed by deltas
+ * holding the difference between the base and the current state.
+ *
+ * @tparam S
+ *   Type of state
+ * @tparam D
+ *   Type of the difference between two states
+ */
+trait DeltaSnapshotConfig[S, D] {
+
+  /**
+   * Get the number of snapshots per chain, i.e. every how many snapshots a full base snapshot is written.
+   *
+   * @return
+   *   Number of snapshots per chain
+   */
+  def fullSnapshotEvery: Int
+
+  /**
+   * Compute the difference between the base state and the current state.
+   *
+   * @param base
+   *   State of the base snapshot
+   * @param current
+   *   State to save
+   * @return
+   *   Difference to save as a delta snapshot
+   */
+  def diff(base: S, current: S): D
+
+  /**
+   * Apply a difference to the base state.
+   *
+   * @param base
+   *   State of the base snapshot
+   * @param delta
+   *   Difference saved as a delta snapshot
+   * @return
+   *   The state that was saved
+   */
+  def patch(base: S, delta: D): S
+
+  /**
+   * Convert this DeltaSnapshotConfig to its Scala equivalent.
+   *
+   * @return
+   *   Scala version of this DeltaSnapshotConfig
+   */
+  private[effector] def toScala: SDeltaSnapshotConfig[S] =
+    SDeltaSnapshotConfig[S, D](fullSnapshotEvery)(diff)(patch)
+}
+
+/**
+ * Companion object for DeltaSnapshotConfig. Provides factory methods to create DeltaSnapshotConfig instances.
+ */
+object DeltaSnapshotConfig {
+
+  private final case class Impl[S, D](
+    fullSnapshotEvery: Int,
+    diffFunction: java.util.function.BiFunction[S, S, D],
+    patchFunction: java.util.function.BiFunction[S, D, S],
+  ) extends DeltaSnapshotConfig[S, D] {
+    override def diff(base: S, current: S): D = diffFunction.apply(base, current)
+    override def patch(base: S, delta: D): S = patchFunction.apply(base, delta)
+  }
+
+  /**
+   * Create a DeltaSnapshotConfig from a diff and patch function pair.
+   *
+   * @param fullSnapshotEvery
+   *   Number of snapshots per chain (a full base snapshot followed by deltas)
+   * @param diff
+   *   Function computing the difference between the base state and the current state
+   * @param patch
+   *   Function applying a difference to the base state
+   * @tparam S
+   *   Type of state
+   * @tparam D
+   *   Type of the difference
+   * @return
+   *   DeltaSnapshotConfig instance
+   */
+  def create[S, D](
+    fullSnapshotEvery: Int,
+    diff: java.util.function.BiFunction[S, S, D],
+    patch: java.util.function.BiFunction[S, D, S]): DeltaSnapshotConfig[S, D] = {
+    require(fullSnapshotEvery > 0, "fullSnapshotEvery must be greater than 0")
+    Impl(fullSnapshotEvery, diff, patch)
+  }
+}
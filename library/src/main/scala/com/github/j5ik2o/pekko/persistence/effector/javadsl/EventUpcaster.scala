@@ -0,0 +1,100 @@
+package com.github.j5ik2o.pekko.persistence.effector.javadsl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.EventUpcaster as SEventUpcaster
+
+import scala.jdk.CollectionConverters.*
+import scala.reflect.ClassTag
+
+/**
+ * Chain of steps that transform the events of older versions replayed from the journal into events of the current
+ * version in Java API. A step turns each event of its class into zero, one or more events, which are in turn handled by
+ * the steps added after it. Events that no step handles are applied as they are.
+ *
+ * @tparam E
+ *   Type of event
+ */
+trait EventUpcaster[E] {
+
+  /**
+   * Get whether a snapshot of the recovered state is saved when a recovery has upcast events.
+   *
+   * @return
+   *   true if a snapshot is saved after a recovery that upcast events
+   */
+  def snapshotAfterUpcast: Boolean
+
+  /**
+   * Create a new upcaster with a step for the events of the specified class appended to the chain.
+   *
+   * @param eventClass
+   *   Class of the events handled by the step
+   * @param upcast
+   *   Function turning an event into the events that replace it
+   * @tparam A
+   *   Class of the events handled by the step
+   * @return
+   *   New upcaster with the step appended
+   */
+  def withStep[A](eventClass: Class[A], upcast: java.util.function.Function[A, java.util.List[?]]): EventUpcaster[E]
+
+  /**
+   * Create a new upcaster that saves, or does not save, a snapshot after a recovery that upcast events.
+   *
+   * @param value
+   *   Whether a snapshot is saved after a recovery that upcast events
+   * @return
+   *   New upcaster with updated setting
+   */
+  def withSnapshotAfterUpcast(value: Boolean): EventUpcaster[E]
+
+  /**
+   * Convert this EventUpcaster to its Scala equivalent.
+   *
+   * @return
+   *   Scala version of this EventUpcaster
+   */
+  private[effector] def toScala: SEventUpcaster[E]
+}
+
+/**
+ * Companion object for EventUpcaster. Provides factory methods to create EventUpcaster instances.
+ */
+object EventUpcaster {
+
+  private final case class Impl[E](toScala: SEventUpcaster[E]) extends EventUpcaster[E] {
+
+    override def snapshotAfterUpcast: Boolean = toScala.snapshotAfterUpcast
+
+    override def withStep[A](
+      eventClass: Class[A],
+      upcast: java.util.function.Function[A, java.util.List[?]]): EventUpcaster[E] =
+      Impl(toScala.withStep[A](event => upcast.apply(event).asScala.toSeq)(using ClassTag(eventClass)))
+
+    override def withSnapshotAfterUpcast(value: Boolean): EventUpcaster[E] =
+      Impl(toScala.withSnapshotAfterUpcast(value))
+  }
+
+  /**
+   * Create an empty upcaster that does not save a snapshot after upcasting.
+   *
+   * @tparam E
+   *   Type of event
+   * @return
+   *   EventUpcaster instance
+   */
+  def create[E](): EventUpcaster[E] =
+    create(false)
+
+  /**
+   * Create an empty upcaster.
+   *
+   * @param snapshotAfterUpcast
+   *   Whether a snapshot is saved after a recovery that upcast events
+   * @tparam E
+   *   Type of event
+   * @return
+   *   EventUpcaster instance
+   */
+  def create[E](snapshotAfterUpcast: Boolean): EventUpcaster[E] =
+    Impl(SEventUpcaster[E](snapshotAfterUpcast))
+}
@@ -16,14 +16,17 @@ import scala.jdk.CollectionConverters.*
 trait MessageConverter[S, E, M] {
 
   /**
-   * Wrap persisted events into a message.
+   * Wrap persisted events into a message. Replies to event writes are routed to the effector directly, so the effector
+   * never sends this message to the actor, and the method does not need to be overridden.
    *
    * @param events
    *   Events to wrap
    * @return
    *   Message containing the events
    */
-  def wrapPersistedEvents(events: java.util.List[E]): M & PersistedEvent[E, M]
+  @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
+  def wrapPersistedEvents(events: java.util.List[E]): M & PersistedEvent[E, M] =
+    new MessageConverter.StandardJavaPersistedEvent[E](events).asInstanceOf[M & PersistedEvent[E, M]]
 
   /**
    * Wrap a persisted snapshot into a message.
@@ -56,13 +59,27 @@ trait MessageConverter[S, E, M] {
   def wrapDeleteSnapshots(maxSequenceNumber: java.lang.Long): M & DeletedSnapshots[M]
 
   /**
-   * Extract persisted events from a message.
+   * Wrap deleted journal events information into a message. The message is consumed by the effector before it reaches
+   * the actor behavior, so the default implementation does not need to be overridden.
+   *
+   * @param toSequenceNumber
+   *   Maximum sequence number of deleted events
+   * @return
+   *   Message containing the maximum sequence number
+   */
+  def wrapDeletedEvents(toSequenceNumber: java.lang.Long): M & DeletedEvents[M] =
+    new MessageConverter.StandardJavaDeletedEvents(toSequenceNumber).asInstanceOf[M & DeletedEvents[M]]
+
+  /**
+   * Extract persisted events from a message. The effector does not use it, since replies to event writes never reach
+   * the actor behavior.
    *
    * @param message
    *   Message to extract from
    * @return
    *   Option containing the events, or None if the message doesn't contain events
    */
+  @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
   def unwrapPersistedEvents(message: M): Option[java.util.List[E]] = message.asMatchable match {
     case msg: PersistedEvent[E, M] @unchecked => Some(msg.events)
     case _ => None
@@ -108,6 +125,19 @@ trait MessageConverter[S, E, M] {
     case _ => None
   }
 
+  /**
+   * Extract deleted journal events information from a message.
+   *
+   * @param message
+   *   Message to extract from
+   * @return
+   *   Option containing the maximum sequence number, or None if the message doesn't contain deleted events information
+   */
+  def unwrapDeletedEvents(message: M): Option[java.lang.Long] = message.asMatchable match {
+    case msg: DeletedEvents[M] @unchecked => Some(msg.toSequenceNumber)
+    case _ => None
+  }
+
   /**
    * Convert this Java MessageConverter to its Scala equivalent.
    *
@@ -117,6 +147,7 @@ trait MessageConverter[S, E, M] {
   def toScala: com.github.j5ik2o.pekko.persistence.effector.scaladsl.MessageConverter[S, E, M] = {
     val self = this
     new com.github.j5ik2o.pekko.persistence.effector.scaladsl.MessageConverter[S, E, M] {
+      @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
       override def wrapPersistedEvents(
         events: Seq[E]): M & com.github.j5ik2o.pekko.persistence.effector.scaladsl.PersistedEvent[E, M] = {
         val javaEvents = events.asJava
@@ -127,6 +158,7 @@ trait MessageConverter[S, E, M] {
         result.asInstanceOf[M & com.github.j5ik2o.pekko.persistence.effector.scaladsl.PersistedEvent[E, M]]
       }
 
+      @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
       override def unwrapPersistedEvents(message: M): Option[Seq[E]] =
         self.unwrapPersistedEvents(message).map(_.asScala.toSeq)
 
@@ -166,6 +198,16 @@ trait MessageConverter[S, E, M] {
 
       override def unwrapDeleteSnapshots(message: M): Option[Long] =
         self.unwrapDeleteSnapshots(message).map(_.asInstanceOf[Long])
+
+      override def wrapDeletedEvents(
+        toSequenceNumber: Long): M & com.github.j5ik2o.pekko.persistence.effector.scaladsl.DeletedEvents[M] = {
+        val javaLong = toSequenceNumber.asInstanceOf[java.lang.Long]
+        val result = self.wrapDeletedEvents(javaLong)
+        result.asInstanceOf[M & com.github.j5ik2o.pekko.persistence.effector.scaladsl.DeletedEvents[M]]
+      }
+
+      override def unwrapDeletedEvents(message: M): Option[Long] =
+        self.unwrapDeletedEvents(message).map(_.asInstanceOf[Long])
     }
   }
 }
@@ -180,6 +222,7 @@ object MessageConverter {
     _wrapRecoveredState: java.util.function.Function[S, M & RecoveredState[S, M]],
     _wrapDeleteSnapshots: java.util.function.Function[java.lang.Long, M & DeletedSnapshots[M]],
   ) extends MessageConverter[S, E, M] {
+    @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
     override def wrapPersistedEvents(events: java.util.List[E]): M & PersistedEvent[E, M] =
       _wrapPersistedEvents(events)
 
@@ -195,7 +238,7 @@ object MessageConverter {
    * Create a MessageConverter with the specified functions.
    *
    * @param wrapPersistedEvents
-   *   Function to wrap persisted events
+   *   Function to wrap persisted events, which the effector no longer uses
    * @param wrapPersistedState
    *   Function to wrap persisted state
    * @param wrapRecoveredState
@@ -228,6 +271,8 @@ object MessageConverter {
 
   private[effector] class StandardJavaDeletedSnapshots(val maxSequenceNumber: Long) extends DeletedSnapshots[Any]
 
+  private[effector] class StandardJavaDeletedEvents(val toSequenceNumber: Long) extends DeletedEvents[Any]
+
   /**
    * Create a default MessageConverter with standard implementations.
    *
@@ -242,9 +287,6 @@ object MessageConverter {
    */
   def defaultFunctions[S, E, M]: MessageConverter[S, E, M] =
     new MessageConverter[S, E, M] {
-      override def wrapPersistedEvents(events: java.util.List[E]): M & PersistedEvent[E, M] =
-        new StandardJavaPersistedEvent[E](events).asInstanceOf[M & PersistedEvent[E, M]]
-
       override def wrapPersistedSnapshot(state: S): M & PersistedState[S, M] =
         new StandardJavaPersistedState[S](state).asInstanceOf[M & PersistedState[S, M]]
 
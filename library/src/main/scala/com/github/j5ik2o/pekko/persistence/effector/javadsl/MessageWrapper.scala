@@ -89,6 +89,24 @@ trait DeletedSnapshots[M] extends MessageWrapper[M] {
   def maxSequenceNumber: Long
 }
 
+/**
+ * Trait for messages containing information about deleted journal events in Java API. This trait is used to wrap
+ * information about events that have been deleted with old snapshots.
+ *
+ * @tparam M
+ *   Type of message
+ */
+trait DeletedEvents[M] extends MessageWrapper[M] {
+
+  /**
+   * Get the maximum sequence number of deleted events.
+   *
+   * @return
+   *   Maximum sequence number
+   */
+  def toSequenceNumber: Long
+}
+
 /**
  * Adapter to convert the JavaDSL version of MessageWrapper to the ScalaDSL version. This object provides adapter
  * classes to convert between Java and Scala message wrappers.
@@ -0,0 +1,108 @@
+package com.github.j5ik2o.pekko.persistence.effector.javadsl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.PassivationConfig as SPassivationConfig
+
+import java.time.Duration
+import java.util.Optional
+import scala.jdk.DurationConverters.*
+import scala.jdk.OptionConverters.*
+
+/**
+ * Configuration for passivating idle entities in Java API. Once the entity has been idle for `idleTimeout`, the
+ * effector optionally saves a snapshot, stops the persistence store actor and lets the actor stop.
+ *
+ * @tparam M
+ *   Type of message
+ */
+trait PassivationConfig[M] {
+
+  /**
+   * Get the time without messages after which the entity is passivated.
+   *
+   * @return
+   *   Idle timeout
+   */
+  def idleTimeout: Duration
+
+  /**
+   * Get whether a snapshot of the state is saved before passivating.
+   *
+   * @return
+   *   true if a snapshot is saved on passivation
+   */
+  def snapshotOnPassivate: Boolean
+
+  /**
+   * Get the message passed to the actor behavior to signal the passivation. When empty, the actor stops itself.
+   *
+   * @return
+   *   Optional message signaling the passivation
+   */
+  def passivateMessage: Optional[M]
+
+  /**
+   * Convert this PassivationConfig to its Scala equivalent.
+   *
+   * @return
+   *   Scala version of this PassivationConfig
+   */
+  private[effector] def toScala: SPassivationConfig[M]
+}
+
+/**
+ * Companion object for PassivationConfig. Provides factory methods to create PassivationConfig instances.
+ */
+object PassivationConfig {
+
+  private final case class Impl[M](
+    idleTimeout: Duration,
+    snapshotOnPassivate: Boolean,
+    passivateMessage: Optional[M],
+  ) extends PassivationConfig[M] {
+
+    private[effector] override def toScala: SPassivationConfig[M] = SPassivationConfig(
+      idleTimeout = idleTimeout.toScala,
+      snapshotOnPassivate = snapshotOnPassivate,
+      passivateMessage = passivateMessage.toScala,
+    )
+  }
+
+  def unapply[M](self: PassivationConfig[M]): Option[(Duration, Boolean, Optional[M])] =
+    Some((self.idleTimeout, self.snapshotOnPassivate, self.passivateMessage))
+
+  /**
+   * Create a PassivationConfig that saves a snapshot and stops the actor after the specified idle timeout.
+   *
+   * @param idleTimeout
+   *   Time without messages after which the entity is passivated
+   * @tparam M
+   *   Type of message
+   * @return
+   *   PassivationConfig instance
+   */
+  def create[M](idleTimeout: Duration): PassivationConfig[M] =
+    create(idleTimeout, true, Optional.empty())
+
+  /**
+   * Create a PassivationConfig with the specified parameters.
+   *
+   * @param idleTimeout
+   *   Time without messages after which the entity is passivated
+   * @param snapshotOnPassivate
+   *   Whether a snapshot of the state is saved before passivating
+   * @param passivateMessage
+   *   Message passed to the actor behavior to signal the passivation, or empty to stop the actor
+   * @tparam M
+   *   Type of message
+   * @return
+   *   PassivationConfig instance
+   */
+  def create[M](
+    idleTimeout: Duration,
+    snapshotOnPassivate: Boolean,
+    passivateMessage: Optional[M]): PassivationConfig[M] = {
+    require(!idleTimeout.isNegative && !idleTimeout.isZero, "idleTimeout must be greater than 0")
+
+    Impl(idleTimeout, snapshotOnPassivate, passivateMessage)
+  }
+}
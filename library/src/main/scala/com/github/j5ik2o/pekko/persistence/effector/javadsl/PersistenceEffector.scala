@@ -10,7 +10,8 @@ import java.util.function.{BiFunction, Function}
 import java.util.Optional
 
 /**
- * Java API for PersistenceEffector.
+ * Java API for PersistenceEffector. In pipelined mode persists return `Behaviors.same`, and callbacks are invoked in
+ * order once their events are acknowledged, the behaviors they return replacing the current one, as in the Scala API.
  *
  * @param S
  *   State type
@@ -33,6 +34,26 @@ trait PersistenceEffector[S, E, M] {
    */
   def persistEvent(event: E, onPersisted: Function[E, Behavior[M]]): Behavior[M]
 
+  /**
+   * Persist a single event, handling a failed write instead of failing the actor. The write fails if the journal
+   * rejects or fails to store the event, or does not acknowledge it within the persist timeout. After a failure or a
+   * timeout it is unknown whether the event was stored, so the callback should stop the actor. In pipelined mode a
+   * rejection rolls the effector back to the last acknowledged event before invoking the callback, as in the Scala API.
+   *
+   * @param event
+   *   event to persist
+   * @param onPersisted
+   *   callback to be called after the event is persisted
+   * @param onFailure
+   *   callback to be called if the event could not be persisted
+   * @return
+   *   new behavior
+   */
+  def persistEvent(
+    event: E,
+    onPersisted: Function[E, Behavior[M]],
+    onFailure: Function[Throwable, Behavior[M]]): Behavior[M]
+
   /**
    * Persist multiple events.
    *
@@ -45,6 +66,23 @@ trait PersistenceEffector[S, E, M] {
    */
   def persistEvents(events: util.List[E], onPersisted: Function[util.List[E], Behavior[M]]): Behavior[M]
 
+  /**
+   * Persist multiple events, handling a failed write instead of failing the actor, as for a single event.
+   *
+   * @param events
+   *   events to persist
+   * @param onPersisted
+   *   callback to be called after all events are persisted
+   * @param onFailure
+   *   callback to be called if the events could not be persisted
+   * @return
+   *   new behavior
+   */
+  def persistEvents(
+    events: util.List[E],
+    onPersisted: Function[util.List[E], Behavior[M]],
+    onFailure: Function[Throwable, Behavior[M]]): Behavior[M]
+
   /**
    * Persist a snapshot.
    *
@@ -72,6 +110,26 @@ trait PersistenceEffector[S, E, M] {
    */
   def persistSnapshot(snapshot: S, force: Boolean, onPersisted: Function[S, Behavior[M]]): Behavior[M]
 
+  /**
+   * Persist a snapshot with the force option, handling a failed save instead of failing the actor, as in the Scala API.
+   *
+   * @param snapshot
+   *   snapshot to persist
+   * @param force
+   *   if true, persist snapshot regardless of snapshot strategy
+   * @param onPersisted
+   *   callback to be called after the snapshot is persisted
+   * @param onFailure
+   *   callback to be called if the snapshot could not be saved
+   * @return
+   *   new behavior
+   */
+  def persistSnapshot(
+    snapshot: S,
+    force: Boolean,
+    onPersisted: Function[S, Behavior[M]],
+    onFailure: Function[Throwable, Behavior[M]]): Behavior[M]
+
   /**
    * Persist event with snapshot.
    *
@@ -107,6 +165,30 @@ trait PersistenceEffector[S, E, M] {
     forceSnapshot: Boolean,
     onPersisted: Function[E, Behavior[M]]): Behavior[M]
 
+  /**
+   * Persist event with a snapshot and force option, handling a failed write of the event instead of failing the actor,
+   * as in the Scala API.
+   *
+   * @param event
+   *   event to persist
+   * @param snapshot
+   *   current state to evaluate snapshot strategy
+   * @param forceSnapshot
+   *   if true, persist snapshot regardless of snapshot strategy
+   * @param onPersisted
+   *   callback to be called after the event is persisted
+   * @param onFailure
+   *   callback to be called if the event could not be persisted
+   * @return
+   *   new behavior
+   */
+  def persistEventWithSnapshot(
+    event: E,
+    snapshot: S,
+    forceSnapshot: Boolean,
+    onPersisted: Function[E, Behavior[M]],
+    onFailure: Function[Throwable, Behavior[M]]): Behavior[M]
+
   /**
    * Persist multiple events with a snapshot.
    *
@@ -144,6 +226,30 @@ trait PersistenceEffector[S, E, M] {
     snapshot: S,
     forceSnapshot: Boolean,
     onPersisted: Function[util.List[E], Behavior[M]]): Behavior[M]
+
+  /**
+   * Persist multiple events with snapshot and force option, handling a failed write of the events instead of failing
+   * the actor, as in the Scala API.
+   *
+   * @param events
+   *   events to persist
+   * @param snapshot
+   *   current state to evaluate snapshot strategy
+   * @param forceSnapshot
+   *   if true, persist snapshot regardless of snapshot strategy
+   * @param onPersisted
+   *   callback to be called after all events are persisted
+   * @param onFailure
+   *   callback to be called if the events could not be persisted
+   * @return
+   *   new behavior
+   */
+  def persistEventsWithSnapshot(
+    events: util.List[E],
+    snapshot: S,
+    forceSnapshot: Boolean,
+    onPersisted: Function[util.List[E], Behavior[M]],
+    onFailure: Function[Throwable, Behavior[M]]): Behavior[M]
 }
 
 object PersistenceEffector {
@@ -2,16 +2,23 @@ package com.github.j5ik2o.pekko.persistence.effector.javadsl
 
 import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
   PersistenceEffectorConfig as SPersistenceEffectorConfig,
+  PersistenceEffectorInstrumentation,
   PersistenceMode as SPersistenceMode,
+  SnapshotCodec,
+  SnapshotOutcome,
 }
 
 import java.util.Optional
+import scala.jdk.DurationConverters.*
 import scala.jdk.OptionConverters.*
 
 /**
  * Configuration for PersistenceEffector in Java API. This trait defines all the settings needed to create and configure
  * a PersistenceEffector.
  *
+ * Options that cannot take effect together are rejected with an IllegalArgumentException as soon as they are combined,
+ * as described on the Scala configuration. Set the persistence mode before the options that depend on it.
+ *
  * @tparam S
  *   Type of state
  * @tparam E
@@ -54,7 +61,8 @@ trait PersistenceEffectorConfig[S, E, M] {
   def persistenceMode: PersistenceMode
 
   /**
-   * Get the stash size for the effector. Determines how many messages can be stashed during recovery.
+   * Get the stash size for the effector. Determines how many messages can be stashed during recovery or while waiting
+   * for a write; further messages are handled by the stash overflow strategy.
    *
    * @return
    *   Maximum stash size
@@ -93,12 +101,164 @@ trait PersistenceEffectorConfig[S, E, M] {
    */
   def messageConverter: MessageConverter[S, E, M]
 
+  /**
+   * Get the maximum number of persist requests that may be in flight at the same time. Values greater than 1 enable
+   * pipelined mode, in which persists return `Behaviors.same` and the actor keeps its current behavior while callbacks
+   * are invoked in order once their write is acknowledged. `onReady` is invoked only once. A rejected write rolls the
+   * effector back to the last acknowledged event and completes with its failure callback.
+   *
+   * @return
+   *   Maximum number of in-flight persist requests
+   */
+  def maxInFlightPersists: Int
+
+  /**
+   * Get the batching configuration. When set, events from consecutive persist calls are written to the journal as one
+   * batch, and callbacks are invoked in order once the batch holding their events is acknowledged.
+   *
+   * @return
+   *   Optional batching configuration
+   */
+  def batchingConfig: Optional[BatchingConfig]
+
+  /**
+   * Get whether snapshots are saved asynchronously. When enabled, callbacks are invoked as soon as the events are
+   * persisted, the snapshot is written in the background, and a failed save or deletion is reported to the snapshot
+   * outcome handler instead of failing the actor.
+   *
+   * @return
+   *   true if snapshots are saved asynchronously
+   */
+  def asyncSnapshots: Boolean
+
+  /**
+   * Get the handler notified of the outcome of snapshot saves and deletions. It is invoked on the actor thread.
+   *
+   * @return
+   *   Optional snapshot outcome handler
+   */
+  def snapshotOutcomeHandler: Optional[java.util.function.Consumer[SnapshotOutcome]]
+
+  /**
+   * Get the instrumentation notified of write latencies, failures, stash depth, recovery and snapshot sizes. Callbacks
+   * are invoked on the actor threads, so implementations must be thread-safe and must not block.
+   *
+   * @return
+   *   Instrumentation
+   */
+  def instrumentation: PersistenceEffectorInstrumentation
+
+  /**
+   * Get the handler for read-only messages. When set, messages it classifies as read-only are handled against the last
+   * confirmed state while the effector waits for a write, instead of being stashed.
+   *
+   * @return
+   *   Optional read-only command handler
+   */
+  def readOnlyCommandHandler: Optional[ReadOnlyCommandHandler[S, M]]
+
+  /**
+   * Get the configuration for incremental snapshots. When set, snapshots are written as a full base snapshot followed
+   * by deltas against it.
+   *
+   * @return
+   *   Optional delta snapshot configuration
+   */
+  def deltaSnapshotConfig: Optional[DeltaSnapshotConfig[S, ?]]
+
+  /**
+   * Get the maximum time to wait for the journal to acknowledge a write. When it elapses, the write is treated as
+   * failed. Rejected in pipelined mode.
+   *
+   * @return
+   *   Optional persist timeout
+   */
+  def persistTimeout: Optional[java.time.Duration]
+
+  /**
+   * Get the strategy applied to messages that arrive while `stashSize` messages are already stashed.
+   *
+   * @return
+   *   Stash overflow strategy
+   */
+  def stashOverflowStrategy: StashOverflowStrategy[M]
+
+  /**
+   * Get the batching configuration of the journal writer shared with other entities. When set in Direct mode, the
+   * writes of this effector are handed to a writer shared by all effectors of the node with the same configuration,
+   * which combines the writes of many entities into one journal request once it holds `maxBatchSize` events or
+   * `maxLatency` has elapsed since its first write. Each entity still gets the replies to its own writes in order.
+   * Rejected in the other modes.
+   *
+   * @return
+   *   Optional batching configuration of the shared journal writer
+   */
+  def sharedWriteBatching: Optional[BatchingConfig]
+
+  /**
+   * Get the passivation configuration. When set, the entity is passivated once it has been idle for the configured
+   * timeout. Ignored in Deferred mode.
+   *
+   * @return
+   *   Optional passivation configuration
+   */
+  def passivation: Optional[PassivationConfig[M]]
+
+  /**
+   * Get the recovery configuration. When set in Persisted or Direct mode, replayed events are folded in chunks and the
+   * progress of the recovery is reported after each chunk. Rejected in the other modes.
+   *
+   * @return
+   *   Optional recovery configuration
+   */
+  def recoveryConfig: Optional[RecoveryConfig]
+
+  /**
+   * Get the upcaster of replayed events. When set in Persisted or Direct mode, events read from the journal during
+   * recovery go through its chain of steps before they are applied to the state. Rejected in the other modes.
+   *
+   * @return
+   *   Optional event upcaster
+   */
+  def eventUpcaster: Optional[EventUpcaster[E]]
+
+  /**
+   * Get the codec applied to snapshots. When set in Persisted or Direct mode, snapshots are serialized and encoded by
+   * the codec, e.g. compressed, before they are saved, and decoded during recovery. Rejected in the other modes.
+   *
+   * @return
+   *   Optional snapshot codec
+   */
+  def snapshotCodec: Optional[SnapshotCodec]
+
+  /**
+   * Get the codec of packed batches. When set in Persisted mode, the events of a multi-event persist are encoded
+   * together by the codec and written as a single journal event, which is unpacked during recovery. Sequence numbers
+   * then count journal events, so packed batches are rejected with retention criteria and with snapshot criteria
+   * counting events, as well as with batching and in the other modes.
+   *
+   * @return
+   *   Optional codec of packed batches
+   */
+  def packedBatchCodec: Optional[SnapshotCodec]
+
+  /**
+   * Get whether the state is cached when the actor stops. When enabled in Persisted and Direct modes, the next actor of
+   * the entity on the same node takes the cached state over instead of replaying the events, as long as the journal has
+   * not advanced in the meantime. Rejected in the other modes.
+   *
+   * @return
+   *   true if the state is cached when the actor stops
+   */
+  def stateCaching: Boolean
+
   /**
    * Get the function to wrap persisted events into a message.
    *
    * @return
    *   Function to wrap events
    */
+  @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
   def wrapPersistedEvents: java.util.function.Function[java.util.List[E], M]
 
   /**
@@ -131,6 +291,7 @@ trait PersistenceEffectorConfig[S, E, M] {
    * @return
    *   Function to extract events
    */
+  @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
   def unwrapPersistedEvents: java.util.function.Function[M, Option[java.util.List[E]]]
 
   /**
@@ -217,6 +378,167 @@ trait PersistenceEffectorConfig[S, E, M] {
    */
   def withMessageConverter(value: MessageConverter[S, E, M]): PersistenceEffectorConfig[S, E, M]
 
+  /**
+   * Create a new configuration with the specified maximum number of in-flight persist requests.
+   *
+   * @param value
+   *   Maximum number of in-flight persist requests (1 disables pipelining)
+   * @return
+   *   New configuration with updated maximum number of in-flight persist requests
+   */
+  def withMaxInFlightPersists(value: Int): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified batching configuration.
+   *
+   * @param value
+   *   Batching configuration to use
+   * @return
+   *   New configuration with updated batching configuration
+   */
+  def withBatchingConfig(value: BatchingConfig): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with asynchronous snapshot saving enabled or disabled.
+   *
+   * @param value
+   *   Whether snapshots are saved asynchronously
+   * @return
+   *   New configuration with updated snapshot saving mode
+   */
+  def withAsyncSnapshots(value: Boolean): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified snapshot outcome handler.
+   *
+   * @param value
+   *   Snapshot outcome handler to use
+   * @return
+   *   New configuration with updated snapshot outcome handler
+   */
+  def withSnapshotOutcomeHandler(
+    value: java.util.function.Consumer[SnapshotOutcome]): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified instrumentation.
+   *
+   * @param value
+   *   Instrumentation to use
+   * @return
+   *   New configuration with updated instrumentation
+   */
+  def withInstrumentation(value: PersistenceEffectorInstrumentation): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified read-only command handler.
+   *
+   * @param value
+   *   Read-only command handler to use
+   * @return
+   *   New configuration with updated read-only command handler
+   */
+  def withReadOnlyCommandHandler(value: ReadOnlyCommandHandler[S, M]): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified delta snapshot configuration.
+   *
+   * @param value
+   *   Delta snapshot configuration to use
+   * @return
+   *   New configuration with updated delta snapshot configuration
+   */
+  def withDeltaSnapshotConfig(value: DeltaSnapshotConfig[S, ?]): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified persist timeout.
+   *
+   * @param value
+   *   Maximum time to wait for the journal to acknowledge a write
+   * @return
+   *   New configuration with updated persist timeout
+   */
+  def withPersistTimeout(value: java.time.Duration): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified stash overflow strategy.
+   *
+   * @param value
+   *   Stash overflow strategy to use
+   * @return
+   *   New configuration with updated stash overflow strategy
+   */
+  def withStashOverflowStrategy(value: StashOverflowStrategy[M]): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified batching configuration of the shared journal writer.
+   *
+   * @param value
+   *   Batching configuration of the journal writer shared with other entities
+   * @return
+   *   New configuration with updated shared write batching
+   */
+  def withSharedWriteBatching(value: BatchingConfig): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified passivation configuration.
+   *
+   * @param value
+   *   Passivation configuration
+   * @return
+   *   New configuration with updated passivation
+   */
+  def withPassivation(value: PassivationConfig[M]): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified recovery configuration.
+   *
+   * @param value
+   *   Recovery configuration
+   * @return
+   *   New configuration with updated recovery configuration
+   */
+  def withRecoveryConfig(value: RecoveryConfig): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified event upcaster.
+   *
+   * @param value
+   *   Upcaster of replayed events
+   * @return
+   *   New configuration with updated event upcaster
+   */
+  def withEventUpcaster(value: EventUpcaster[E]): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified snapshot codec.
+   *
+   * @param value
+   *   Codec applied to snapshots
+   * @return
+   *   New configuration with updated snapshot codec
+   */
+  def withSnapshotCodec(value: SnapshotCodec): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration that writes multi-event persists as packed batches encoded by the specified codec.
+   *
+   * @param value
+   *   Codec of packed batches
+   * @return
+   *   New configuration with updated codec of packed batches
+   */
+  def withPackedBatches(value: SnapshotCodec): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with state caching enabled or disabled.
+   *
+   * @param value
+   *   Whether the state is cached when the actor stops
+   * @return
+   *   New configuration with updated state caching
+   */
+  def withStateCaching(value: Boolean): PersistenceEffectorConfig[S, E, M]
+
   /**
    * Convert this Java configuration to its Scala equivalent.
    *
@@ -241,10 +563,28 @@ object PersistenceEffectorConfig {
     retentionCriteria: Optional[RetentionCriteria],
     backoffConfig: Optional[BackoffConfig],
     messageConverter: MessageConverter[S, E, M],
+    maxInFlightPersists: Int = 1,
+    batchingConfig: Optional[BatchingConfig] = Optional.empty(),
+    asyncSnapshots: Boolean = false,
+    snapshotOutcomeHandler: Optional[java.util.function.Consumer[SnapshotOutcome]] = Optional.empty(),
+    instrumentation: PersistenceEffectorInstrumentation = PersistenceEffectorInstrumentation.NoOp,
+    readOnlyCommandHandler: Optional[ReadOnlyCommandHandler[S, M]] = Optional.empty[ReadOnlyCommandHandler[S, M]](),
+    deltaSnapshotConfig: Optional[DeltaSnapshotConfig[S, ?]] = Optional.empty[DeltaSnapshotConfig[S, ?]](),
+    persistTimeout: Optional[java.time.Duration] = Optional.empty[java.time.Duration](),
+    stashOverflowStrategy: StashOverflowStrategy[M] = StashOverflowStrategy.fail[M](),
+    sharedWriteBatching: Optional[BatchingConfig] = Optional.empty(),
+    passivation: Optional[PassivationConfig[M]] = Optional.empty[PassivationConfig[M]](),
+    recoveryConfig: Optional[RecoveryConfig] = Optional.empty(),
+    eventUpcaster: Optional[EventUpcaster[E]] = Optional.empty[EventUpcaster[E]](),
+    snapshotCodec: Optional[SnapshotCodec] = Optional.empty(),
+    packedBatchCodec: Optional[SnapshotCodec] = Optional.empty(),
+    stateCaching: Boolean = false,
   ) extends PersistenceEffectorConfig[S, E, M] {
-    private[effector] override def toScala: SPersistenceEffectorConfig[S, E, M] = {
+    // Converted once, which validates the combination of options as soon as they are set
+    private[effector] override val toScala: SPersistenceEffectorConfig[S, E, M] = {
       val scalaPersistenceMode = persistenceMode match {
         case PersistenceMode.PERSISTENCE => SPersistenceMode.Persisted
+        case PersistenceMode.DIRECT => SPersistenceMode.Direct
         case PersistenceMode.EPHEMERAL => SPersistenceMode.Ephemeral
         case PersistenceMode.DEFERRED => SPersistenceMode.Deferred
       }
@@ -259,9 +599,29 @@ object PersistenceEffectorConfig {
         retentionCriteria = retentionCriteria.toScala.map(_.toScala),
         backoffConfig = backoffConfig.toScala.map(_.toScala),
         messageConverter = messageConverter.toScala,
+        maxInFlightPersists = maxInFlightPersists,
+        batchingConfig = batchingConfig.toScala.map(_.toScala),
+        asyncSnapshots = asyncSnapshots,
+        snapshotOutcomeHandler = snapshotOutcomeHandler.toScala match {
+          case Some(handler) => outcome => handler.accept(outcome)
+          case None => _ => ()
+        },
+        instrumentation = instrumentation,
+        readOnlyCommandHandler = readOnlyCommandHandler.toScala.map(_.toScala),
+        deltaSnapshotConfig = deltaSnapshotConfig.toScala.map(_.toScala),
+        persistTimeout = persistTimeout.toScala.map(_.toScala),
+        stashOverflowStrategy = stashOverflowStrategy.toScala,
+        sharedWriteBatching = sharedWriteBatching.toScala.map(_.toScala),
+        passivation = passivation.toScala.map(_.toScala),
+        recoveryConfig = recoveryConfig.toScala.map(_.toScala),
+        eventUpcaster = eventUpcaster.toScala.map(_.toScala),
+        snapshotCodec = snapshotCodec.toScala,
+        packedBatchCodec = packedBatchCodec.toScala,
+        stateCaching = stateCaching,
       )
     }
 
+    @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
     override def wrapPersistedEvents: java.util.function.Function[java.util.List[E], M] =
       messageConverter.wrapPersistedEvents
 
@@ -274,6 +634,7 @@ object PersistenceEffectorConfig {
     override def wrapDeleteSnapshots: java.util.function.Function[java.lang.Long, M] =
       messageConverter.wrapDeleteSnapshots
 
+    @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
     override def unwrapPersistedEvents: java.util.function.Function[M, Option[java.util.List[E]]] =
       messageConverter.unwrapPersistedEvents
 
@@ -303,6 +664,55 @@ object PersistenceEffectorConfig {
 
     override def withMessageConverter(value: MessageConverter[S, E, M]): PersistenceEffectorConfig[S, E, M] =
       copy(messageConverter = value)
+
+    override def withMaxInFlightPersists(value: Int): PersistenceEffectorConfig[S, E, M] =
+      copy(maxInFlightPersists = value)
+
+    override def withBatchingConfig(value: BatchingConfig): PersistenceEffectorConfig[S, E, M] =
+      copy(batchingConfig = Optional.of(value))
+
+    override def withAsyncSnapshots(value: Boolean): PersistenceEffectorConfig[S, E, M] =
+      copy(asyncSnapshots = value)
+
+    override def withSnapshotOutcomeHandler(
+      value: java.util.function.Consumer[SnapshotOutcome]): PersistenceEffectorConfig[S, E, M] =
+      copy(snapshotOutcomeHandler = Optional.of(value))
+
+    override def withInstrumentation(value: PersistenceEffectorInstrumentation): PersistenceEffectorConfig[S, E, M] =
+      copy(instrumentation = value)
+
+    override def withReadOnlyCommandHandler(value: ReadOnlyCommandHandler[S, M]): PersistenceEffectorConfig[S, E, M] =
+      copy(readOnlyCommandHandler = Optional.of(value))
+
+    override def withDeltaSnapshotConfig(value: DeltaSnapshotConfig[S, ?]): PersistenceEffectorConfig[S, E, M] =
+      copy(deltaSnapshotConfig = Optional.of(value))
+
+    override def withPersistTimeout(value: java.time.Duration): PersistenceEffectorConfig[S, E, M] =
+      copy(persistTimeout = Optional.of(value))
+
+    override def withStashOverflowStrategy(value: StashOverflowStrategy[M]): PersistenceEffectorConfig[S, E, M] =
+      copy(stashOverflowStrategy = value)
+
+    override def withSharedWriteBatching(value: BatchingConfig): PersistenceEffectorConfig[S, E, M] =
+      copy(sharedWriteBatching = Optional.of(value))
+
+    override def withPassivation(value: PassivationConfig[M]): PersistenceEffectorConfig[S, E, M] =
+      copy(passivation = Optional.of(value))
+
+    override def withRecoveryConfig(value: RecoveryConfig): PersistenceEffectorConfig[S, E, M] =
+      copy(recoveryConfig = Optional.of(value))
+
+    override def withEventUpcaster(value: EventUpcaster[E]): PersistenceEffectorConfig[S, E, M] =
+      copy(eventUpcaster = Optional.of(value))
+
+    override def withSnapshotCodec(value: SnapshotCodec): PersistenceEffectorConfig[S, E, M] =
+      copy(snapshotCodec = Optional.of(value))
+
+    override def withPackedBatches(value: SnapshotCodec): PersistenceEffectorConfig[S, E, M] =
+      copy(packedBatchCodec = Optional.of(value))
+
+    override def withStateCaching(value: Boolean): PersistenceEffectorConfig[S, E, M] =
+      copy(stateCaching = value)
   }
 
   def unapply[S, E, M](self: PersistenceEffectorConfig[S, E, M]): Option[(
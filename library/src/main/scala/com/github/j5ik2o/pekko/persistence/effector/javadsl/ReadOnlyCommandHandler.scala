@@ -0,0 +1,79 @@
+package com.github.j5ik2o.pekko.persistence.effector.javadsl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.ReadOnlyCommandHandler as SReadOnlyCommandHandler
+
+/**
+ * Handler for read-only messages in Java API. While the effector waits for a write to complete, messages classified as
+ * read-only are handled against the last confirmed state instead of being stashed.
+ *
+ * @tparam S
+ *   Type of state
+ * @tparam M
+ *   Type of message
+ */
+trait ReadOnlyCommandHandler[S, M] {
+
+  /**
+   * Whether the message is read-only in the confirmed state.
+   *
+   * @param state
+   *   Last confirmed state
+   * @param message
+   *   Received message
+   * @return
+   *   true if the message can be handled against the confirmed state
+   */
+  def isReadOnly(state: S, message: M): Boolean
+
+  /**
+   * Handle a read-only message, typically by replying to it.
+   *
+   * @param state
+   *   Last confirmed state
+   * @param message
+   *   Read-only message
+   */
+  def handle(state: S, message: M): Unit
+
+  /**
+   * Convert this ReadOnlyCommandHandler to its Scala equivalent.
+   *
+   * @return
+   *   Scala version of this ReadOnlyCommandHandler
+   */
+  private[effector] def toScala: SReadOnlyCommandHandler[S, M] =
+    SReadOnlyCommandHandler[S, M](isReadOnly)(handle)
+}
+
+/**
+ * Companion object for ReadOnlyCommandHandler. Provides factory methods to create handlers.
+ */
+object ReadOnlyCommandHandler {
+
+  private final case class Impl[S, M](
+    predicate: java.util.function.BiPredicate[S, M],
+    handler: java.util.function.BiConsumer[S, M],
+  ) extends ReadOnlyCommandHandler[S, M] {
+    override def isReadOnly(state: S, message: M): Boolean = predicate.test(state, message)
+    override def handle(state: S, message: M): Unit = handler.accept(state, message)
+  }
+
+  /**
+   * Create a ReadOnlyCommandHandler from a predicate and a handler function.
+   *
+   * @param isReadOnly
+   *   Predicate classifying messages as read-only
+   * @param handle
+   *   Function handling a read-only message against the confirmed state
+   * @tparam S
+   *   Type of state
+   * @tparam M
+   *   Type of message
+   * @return
+   *   ReadOnlyCommandHandler instance
+   */
+  def create[S, M](
+    isReadOnly: java.util.function.BiPredicate[S, M],
+    handle: java.util.function.BiConsumer[S, M]): ReadOnlyCommandHandler[S, M] =
+    Impl(isReadOnly, handle)
+}
@@ -0,0 +1,103 @@
+package com.github.j5ik2o.pekko.persistence.effector.javadsl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.RecoveryConfig as SRecoveryConfig
+
+import java.util.Optional
+import scala.jdk.OptionConverters.*
+
+/**
+ * Configuration for the recovery of an entity in Java API. Replayed events are folded into the state in chunks,
+ * optionally on a dedicated dispatcher, and the progress is reported after each chunk.
+ */
+trait RecoveryConfig {
+
+  /**
+   * Get the number of replayed events folded at a time and between progress reports.
+   *
+   * @return
+   *   Number of events in a chunk
+   */
+  def chunkSize: Int
+
+  /**
+   * Get the ID of the dispatcher the chunks are folded on. When empty, they are folded on the actor thread.
+   *
+   * @return
+   *   Optional ID of the recovery dispatcher
+   */
+  def dispatcher: Optional[String]
+
+  /**
+   * Convert this RecoveryConfig to its Scala equivalent.
+   *
+   * @return
+   *   Scala version of this RecoveryConfig
+   */
+  private[effector] def toScala: SRecoveryConfig
+}
+
+/**
+ * Companion object for RecoveryConfig. Provides factory methods to create RecoveryConfig instances.
+ */
+object RecoveryConfig {
+
+  private final case class Impl(
+    chunkSize: Int,
+    dispatcher: Optional[String],
+  ) extends RecoveryConfig {
+
+    private[effector] override def toScala: SRecoveryConfig = SRecoveryConfig(
+      chunkSize = chunkSize,
+      dispatcher = dispatcher.toScala,
+    )
+  }
+
+  def unapply(self: RecoveryConfig): Option[(Int, Optional[String])] =
+    Some((self.chunkSize, self.dispatcher))
+
+  /**
+   * Default recovery configuration. Folds chunks of 1000 events on the actor thread.
+   */
+  final val Default: RecoveryConfig = fromScala(SRecoveryConfig.Default)
+
+  /**
+   * Create a RecoveryConfig that folds the chunks on the actor thread.
+   *
+   * @param chunkSize
+   *   Number of replayed events folded at a time
+   * @return
+   *   RecoveryConfig instance
+   */
+  def create(chunkSize: Int): RecoveryConfig =
+    create(chunkSize, Optional.empty())
+
+  /**
+   * Create a RecoveryConfig with the specified parameters.
+   *
+   * @param chunkSize
+   *   Number of replayed events folded at a time
+   * @param dispatcher
+   *   ID of the dispatcher the chunks are folded on, or empty to fold them on the actor thread
+   * @return
+   *   RecoveryConfig instance
+   */
+  def create(chunkSize: Int, dispatcher: Optional[String]): RecoveryConfig = {
+    require(chunkSize > 0, "chunkSize must be greater than 0")
+
+    Impl(chunkSize, dispatcher)
+  }
+
+  /**
+   * Convert a Scala RecoveryConfig to its Java equivalent.
+   *
+   * @param config
+   *   Scala RecoveryConfig
+   * @return
+   *   Java version of the RecoveryConfig
+   */
+  private[effector] def fromScala(config: SRecoveryConfig): RecoveryConfig =
+    Impl(
+      config.chunkSize,
+      config.dispatcher.toJava,
+    )
+}
@@ -0,0 +1,139 @@
+package com.github.j5ik2o.pekko.persistence.effector.javadsl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.RecoveryWarmup as SRecoveryWarmup
+import org.apache.pekko.actor.typed.ActorSystem
+import org.apache.pekko.stream.javadsl.Source
+
+import java.util.concurrent.CompletionStage
+import scala.jdk.FutureConverters.*
+
+/**
+ * Java API for recovering many entities ahead of their first message. See the Scala
+ * [[com.github.j5ik2o.pekko.persistence.effector.scaladsl.RecoveryWarmup]] for details.
+ */
+object RecoveryWarmup {
+
+  /**
+   * Recover the given entities with the default configuration and keep their states for their actors.
+   *
+   * @param system
+   *   Actor system in which the entities run
+   * @param persistenceIds
+   *   Persistence IDs of the entities to recover
+   * @param initialState
+   *   Initial state, as configured for the effector of the entities
+   * @param applyEvent
+   *   Function to apply events to a state, as configured for the effector of the entities
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   * @return
+   *   CompletionStage completed with the number of recovered entities
+   */
+  def warmUp[S, E](
+    system: ActorSystem[?],
+    persistenceIds: Source[PersistenceId, ?],
+    initialState: S,
+    applyEvent: java.util.function.BiFunction[S, E, S]): CompletionStage[Integer] =
+    warmUp(system, persistenceIds, initialState, applyEvent, RecoveryWarmupConfig.Default)
+
+  /**
+   * Recover the given entities and keep their states for their actors.
+   *
+   * @param system
+   *   Actor system in which the entities run
+   * @param persistenceIds
+   *   Persistence IDs of the entities to recover
+   * @param initialState
+   *   Initial state, as configured for the effector of the entities
+   * @param applyEvent
+   *   Function to apply events to a state, as configured for the effector of the entities
+   * @param config
+   *   Warmup configuration
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   * @return
+   *   CompletionStage completed with the number of recovered entities
+   */
+  def warmUp[S, E](
+    system: ActorSystem[?],
+    persistenceIds: Source[PersistenceId, ?],
+    initialState: S,
+    applyEvent: java.util.function.BiFunction[S, E, S],
+    config: RecoveryWarmupConfig): CompletionStage[Integer] =
+    SRecoveryWarmup(system)
+      .warmUp[S, E](
+        persistenceIds.asScala.map(_.toScala),
+        initialState,
+        (s: S, e: E) => applyEvent.apply(s, e),
+        config.toScala,
+      )
+      .map(Integer.valueOf)(using system.executionContext)
+      .asJava
+
+  /**
+   * Recover the given entities with the default configuration as their effector would, with the event upcaster and the
+   * codecs of its configuration, and keep their states for their actors.
+   *
+   * @param system
+   *   Actor system in which the entities run
+   * @param persistenceIds
+   *   Persistence IDs of the entities to recover
+   * @param effectorConfig
+   *   Configuration of the effector of the entities
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   * @return
+   *   CompletionStage completed with the number of recovered entities
+   */
+  def warmUpFromConfig[S, E](
+    system: ActorSystem[?],
+    persistenceIds: Source[PersistenceId, ?],
+    effectorConfig: PersistenceEffectorConfig[S, E, ?]): CompletionStage[Integer] =
+    warmUpFromConfig(system, persistenceIds, effectorConfig, RecoveryWarmupConfig.Default)
+
+  /**
+   * Recover the given entities as their effector would, with the event upcaster and the codecs of its configuration,
+   * and keep their states for their actors.
+   *
+   * @param system
+   *   Actor system in which the entities run
+   * @param persistenceIds
+   *   Persistence IDs of the entities to recover
+   * @param effectorConfig
+   *   Configuration of the effector of the entities
+   * @param config
+   *   Warmup configuration
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   * @return
+   *   CompletionStage completed with the number of recovered entities
+   */
+  def warmUpFromConfig[S, E](
+    system: ActorSystem[?],
+    persistenceIds: Source[PersistenceId, ?],
+    effectorConfig: PersistenceEffectorConfig[S, E, ?],
+    config: RecoveryWarmupConfig): CompletionStage[Integer] =
+    SRecoveryWarmup(system)
+      .warmUpFromConfig[S, E](persistenceIds.asScala.map(_.toScala), effectorConfig.toScala, config.toScala)
+      .map(Integer.valueOf)(using system.executionContext)
+      .asJava
+
+  /**
+   * Get the number of recovered states that have not been handed over yet.
+   *
+   * @param system
+   *   Actor system in which the entities run
+   * @return
+   *   Number of recovered states
+   */
+  def warmedCount(system: ActorSystem[?]): Int =
+    SRecoveryWarmup(system).warmedCount
+}
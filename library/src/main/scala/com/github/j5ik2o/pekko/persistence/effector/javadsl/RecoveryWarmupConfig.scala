@@ -0,0 +1,125 @@
+package com.github.j5ik2o.pekko.persistence.effector.javadsl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.RecoveryWarmupConfig as SRecoveryWarmupConfig
+
+import java.time.Duration
+import scala.jdk.DurationConverters.*
+
+/**
+ * Configuration for warming up entities with [[RecoveryWarmup]] in Java API.
+ */
+trait RecoveryWarmupConfig {
+
+  /**
+   * Get the maximum number of recoveries running at the same time.
+   *
+   * @return
+   *   Maximum number of concurrent recoveries
+   */
+  def parallelism: Int
+
+  /**
+   * Get the maximum number of recoveries started per second.
+   *
+   * @return
+   *   Maximum recovery rate
+   */
+  def maxRecoveriesPerSecond: Int
+
+  /**
+   * Get the maximum duration of the recovery of a single entity.
+   *
+   * @return
+   *   Recovery timeout
+   */
+  def recoveryTimeout: Duration
+
+  /**
+   * Get how long a recovered state is kept for its actor.
+   *
+   * @return
+   *   Time to live of recovered states
+   */
+  def timeToLive: Duration
+
+  /**
+   * Convert this RecoveryWarmupConfig to its Scala equivalent.
+   *
+   * @return
+   *   Scala version of this RecoveryWarmupConfig
+   */
+  private[effector] def toScala: SRecoveryWarmupConfig
+}
+
+/**
+ * Companion object for RecoveryWarmupConfig. Provides factory methods to create RecoveryWarmupConfig instances.
+ */
+object RecoveryWarmupConfig {
+
+  private final case class Impl(
+    parallelism: Int,
+    maxRecoveriesPerSecond: Int,
+    recoveryTimeout: Duration,
+    timeToLive: Duration,
+  ) extends RecoveryWarmupConfig {
+
+    private[effector] override def toScala: SRecoveryWarmupConfig = SRecoveryWarmupConfig(
+      parallelism = parallelism,
+      maxRecoveriesPerSecond = maxRecoveriesPerSecond,
+      recoveryTimeout = recoveryTimeout.toScala,
+      timeToLive = timeToLive.toScala,
+    )
+  }
+
+  def unapply(self: RecoveryWarmupConfig): Option[(Int, Int, Duration, Duration)] =
+    Some((self.parallelism, self.maxRecoveriesPerSecond, self.recoveryTimeout, self.timeToLive))
+
+  /**
+   * Default warmup configuration. Runs up to 16 recoveries at a time, starts at most 500 per second, times out after 30
+   * seconds and keeps recovered states for 5 minutes.
+   */
+  final val Default: RecoveryWarmupConfig = fromScala(SRecoveryWarmupConfig.Default)
+
+  /**
+   * Create a RecoveryWarmupConfig with the specified parameters.
+   *
+   * @param parallelism
+   *   Maximum number of concurrent recoveries
+   * @param maxRecoveriesPerSecond
+   *   Maximum number of recoveries started per second
+   * @param recoveryTimeout
+   *   Maximum duration of the recovery of a single entity
+   * @param timeToLive
+   *   How long a recovered state is kept for its actor
+   * @return
+   *   RecoveryWarmupConfig instance
+   */
+  def create(
+    parallelism: Int,
+    maxRecoveriesPerSecond: Int,
+    recoveryTimeout: Duration,
+    timeToLive: Duration): RecoveryWarmupConfig = {
+    require(parallelism > 0, "parallelism must be greater than 0")
+    require(maxRecoveriesPerSecond > 0, "maxRecoveriesPerSecond must be greater than 0")
+    require(!recoveryTimeout.isNegative && !recoveryTimeout.isZero, "recoveryTimeout must be greater than 0")
+    require(!timeToLive.isNegative && !timeToLive.isZero, "timeToLive must be greater than 0")
+
+    Impl(parallelism, maxRecoveriesPerSecond, recoveryTimeout, timeToLive)
+  }
+
+  /**
+   * Convert a Scala RecoveryWarmupConfig to its Java equivalent.
+   *
+   * @param config
+   *   Scala RecoveryWarmupConfig
+   * @return
+   *   Java version of the RecoveryWarmupConfig
+   */
+  private[effector] def fromScala(config: SRecoveryWarmupConfig): RecoveryWarmupConfig =
+    Impl(
+      config.parallelism,
+      config.maxRecoveriesPerSecond,
+      config.recoveryTimeout.toJava,
+      config.timeToLive.toJava,
+    )
+}
@@ -27,6 +27,25 @@ trait RetentionCriteria {
    */
   def keepNSnapshots: Optional[Integer]
 
+  /**
+   * Whether journal events covered by the oldest kept snapshot are deleted once old snapshots have been deleted. Only
+   * applies to Persisted mode.
+   *
+   * @return
+   *   true if events are deleted with old snapshots
+   */
+  def deleteEventsOnSnapshot: Boolean
+
+  /**
+   * Create a new retention criteria with the specified journal event deletion setting.
+   *
+   * @param value
+   *   true to delete journal events up to the oldest kept snapshot
+   * @return
+   *   New retention criteria with updated setting
+   */
+  def withDeleteEventsOnSnapshot(value: Boolean): RetentionCriteria
+
   /**
    * Convert this Java RetentionCriteria to its Scala equivalent.
    *
@@ -44,8 +63,12 @@ object RetentionCriteria {
   private final case class Impl(
     snapshotEvery: Optional[Integer],
     keepNSnapshots: Optional[Integer],
+    deleteEventsOnSnapshot: Boolean = false,
   ) extends RetentionCriteria {
 
+    override def withDeleteEventsOnSnapshot(value: Boolean): RetentionCriteria =
+      copy(deleteEventsOnSnapshot = value)
+
     /**
      * Convert this Java RetentionCriteria to its Scala equivalent.
      *
@@ -54,8 +77,9 @@ object RetentionCriteria {
      */
     private[effector] override def toScala: SRetentionCriteria =
       (snapshotEvery.toScala, keepNSnapshots.toScala) match {
-        case (Some(every), Some(keep)) => SRetentionCriteria.snapshotEvery(every, keep)
-        case _ => SRetentionCriteria.Default
+        case (Some(every), Some(keep)) =>
+          SRetentionCriteria.snapshotEvery(every, keep).withDeleteEventsOnSnapshot(deleteEventsOnSnapshot)
+        case _ => SRetentionCriteria.Default.withDeleteEventsOnSnapshot(deleteEventsOnSnapshot)
       }
   }
 
@@ -117,5 +141,5 @@ object RetentionCriteria {
     apply(
       retentionCriteria.snapshotEvery.map(Integer.valueOf).toJava,
       retentionCriteria.keepNSnapshots.map(Integer.valueOf).toJava,
-    )
+    ).withDeleteEventsOnSnapshot(retentionCriteria.deleteEventsOnSnapshot)
 }
@@ -1,6 +1,7 @@
 package com.github.j5ik2o.pekko.persistence.effector.javadsl
 
 import scala.jdk.CollectionConverters.*
+import scala.jdk.DurationConverters.*
 import com.github.j5ik2o.pekko.persistence.effector.scaladsl
 
 /**
@@ -140,6 +141,86 @@ object SnapshotCriteria {
       )
   }
 
+  /**
+   * Time-based snapshot criteria implementation. Takes a snapshot once a given time has elapsed since the last one.
+   *
+   * @param interval
+   *   Minimum time between two snapshots
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   */
+  private[effector] final case class JTimeBased[S, E](
+    interval: java.time.Duration,
+  ) extends SnapshotCriteria[S, E] {
+    private val underlying = toScala
+
+    override def shouldTakeSnapshot(event: E, state: S, sequenceNumber: Long): Boolean =
+      underlying.shouldTakeSnapshot(event, state, sequenceNumber)
+
+    override def toScala: scaladsl.SnapshotCriteria[S, E] =
+      scaladsl.SnapshotCriteria.TimeBased(interval.toScala)
+  }
+
+  /**
+   * Size-based snapshot criteria implementation. Takes a snapshot once the events written since the last one reach a
+   * given serialized size.
+   *
+   * @param maxBytes
+   *   Serialized size of the events between two snapshots, in bytes
+   * @param eventSize
+   *   Function estimating the serialized size of an event in bytes, or None to serialize each event to measure it
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   */
+  private[effector] final case class JSizeBased[S, E](
+    maxBytes: Long,
+    eventSize: Option[E => Long] = None,
+  ) extends SnapshotCriteria[S, E] {
+    private val underlying = toScala
+
+    override def shouldTakeSnapshot(event: E, state: S, sequenceNumber: Long): Boolean =
+      underlying.shouldTakeSnapshot(event, state, sequenceNumber)
+
+    override def toScala: scaladsl.SnapshotCriteria[S, E] =
+      scaladsl.SnapshotCriteria.SizeBased(maxBytes, eventSize)
+  }
+
+  /**
+   * Adaptive snapshot criteria implementation. Takes snapshots at an interval adapted to the measured replay and
+   * snapshot costs, so that the expected recovery time stays under a target.
+   *
+   * @param targetRecoveryTime
+   *   Expected recovery time to stay under
+   * @param initialEvery
+   *   Number of events between snapshots until the replay time has been measured
+   * @param minEvery
+   *   Lower bound of the interval, in events
+   * @param maxEvery
+   *   Upper bound of the interval, in events
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   */
+  private[effector] final case class JAdaptive[S, E](
+    targetRecoveryTime: java.time.Duration,
+    initialEvery: Int,
+    minEvery: Int,
+    maxEvery: Int,
+  ) extends SnapshotCriteria[S, E] {
+    private val underlying = toScala
+
+    override def shouldTakeSnapshot(event: E, state: S, sequenceNumber: Long): Boolean =
+      underlying.shouldTakeSnapshot(event, state, sequenceNumber)
+
+    override def toScala: scaladsl.SnapshotCriteria[S, E] =
+      scaladsl.SnapshotCriteria.Adaptive(targetRecoveryTime.toScala, initialEvery, minEvery, maxEvery)
+  }
+
   /**
    * Create an event-based snapshot criteria. Takes a snapshot when the predicate returns true.
    *
@@ -232,6 +313,106 @@ object SnapshotCriteria {
   def every[S, E](nth: Int): SnapshotCriteria[S, E] =
     countBased(nth)
 
+  /**
+   * Create a time-based snapshot criteria. Takes a snapshot once the given time has elapsed since the last one,
+   * measured per effector from its start.
+   *
+   * @param interval
+   *   Minimum time between two snapshots
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   * @return
+   *   SnapshotCriteria instance
+   */
+  def timeBased[S, E](interval: java.time.Duration): SnapshotCriteria[S, E] = {
+    require(!interval.isNegative && !interval.isZero, "interval must be greater than 0")
+    JTimeBased(interval)
+  }
+
+  /**
+   * Create a size-based snapshot criteria. Takes a snapshot once the events written since the last one reach the given
+   * size, as serialized by the Pekko serializer of the events. The journal does not report the size of the events it
+   * writes, so each event is serialized a second time to be measured.
+   *
+   * @param maxBytes
+   *   Serialized size of the events between two snapshots, in bytes
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   * @return
+   *   SnapshotCriteria instance
+   */
+  def sizeBased[S, E](maxBytes: Long): SnapshotCriteria[S, E] = {
+    require(maxBytes > 0, "maxBytes must be greater than 0")
+    JSizeBased(maxBytes)
+  }
+
+  /**
+   * Create a size-based snapshot criteria measuring events with an estimate. Takes a snapshot once the estimated size
+   * of the events written since the last one reaches the given size. Unlike [[sizeBased(maxBytes:Long)*]], the events
+   * are not serialized a second time to be measured.
+   *
+   * @param maxBytes
+   *   Size of the events between two snapshots, in bytes
+   * @param eventSize
+   *   Function estimating the serialized size of an event in bytes
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   * @return
+   *   SnapshotCriteria instance
+   */
+  def sizeBased[S, E](maxBytes: Long, eventSize: java.util.function.ToLongFunction[E]): SnapshotCriteria[S, E] = {
+    require(maxBytes > 0, "maxBytes must be greater than 0")
+    JSizeBased(maxBytes, Some((event: E) => eventSize.applyAsLong(event)))
+  }
+
+  /**
+   * Create an adaptive snapshot criteria. Measures the replay time per event during recovery and the time to save
+   * snapshots per persistence ID, and takes a snapshot at the largest interval that keeps the expected recovery time
+   * under the target. Takes a snapshot every 100 events until the replay time has been measured.
+   *
+   * @param targetRecoveryTime
+   *   Expected recovery time to stay under
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   * @return
+   *   SnapshotCriteria instance
+   */
+  def adaptive[S, E](targetRecoveryTime: java.time.Duration): SnapshotCriteria[S, E] =
+    adaptive(targetRecoveryTime, 100, 1, 100000)
+
+  /**
+   * Create an adaptive snapshot criteria with explicit interval bounds.
+   *
+   * @param targetRecoveryTime
+   *   Expected recovery time to stay under
+   * @param initialEvery
+   *   Number of events between snapshots until the replay time has been measured
+   * @param minEvery
+   *   Lower bound of the interval, in events
+   * @param maxEvery
+   *   Upper bound of the interval, in events
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   * @return
+   *   SnapshotCriteria instance
+   */
+  def adaptive[S, E](
+    targetRecoveryTime: java.time.Duration,
+    initialEvery: Int,
+    minEvery: Int,
+    maxEvery: Int): SnapshotCriteria[S, E] =
+    JAdaptive(targetRecoveryTime, initialEvery, minEvery, maxEvery)
+
   /**
    * Convert a Scala SnapshotCriteria to its Java equivalent.
    *
@@ -252,5 +433,13 @@ object SnapshotCriteria {
         countBased(n)
       case scaladsl.SnapshotCriteria.Combined(c, r) =>
         combined(c.map(fromScala[S, E]).asJava, r)
+      case scaladsl.SnapshotCriteria.TimeBased(interval) =>
+        timeBased(interval.toJava)
+      case scaladsl.SnapshotCriteria.SizeBased(maxBytes, eventSize) =>
+        JSizeBased(maxBytes, eventSize)
+      case scaladsl.SnapshotCriteria.Adaptive(t, initialEvery, minEvery, maxEvery) =>
+        adaptive(t.toJava, initialEvery, minEvery, maxEvery)
+      case measurements: scaladsl.SnapshotCriteria.Measurements[S, E] =>
+        fromScala(measurements.criteria)
     }
 }
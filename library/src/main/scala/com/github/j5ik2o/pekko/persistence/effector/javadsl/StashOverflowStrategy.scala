@@ -0,0 +1,72 @@
+package com.github.j5ik2o.pekko.persistence.effector.javadsl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.StashOverflowStrategy as SStashOverflowStrategy
+
+/**
+ * Strategy for messages that arrive while the stash is full in Java API. Stashing is unbounded with the default
+ * `stashSize`, so a strategy only takes effect with a bounded stash.
+ *
+ * @tparam M
+ *   Type of message
+ */
+trait StashOverflowStrategy[M] {
+
+  /**
+   * Convert this StashOverflowStrategy to its Scala equivalent.
+   *
+   * @return
+   *   Scala version of this StashOverflowStrategy
+   */
+  private[effector] def toScala: SStashOverflowStrategy[M]
+}
+
+/**
+ * Companion object for StashOverflowStrategy. Provides factory methods to create strategies.
+ */
+object StashOverflowStrategy {
+
+  private final case class Impl[M](toScala: SStashOverflowStrategy[M]) extends StashOverflowStrategy[M]
+
+  /**
+   * Fail the actor with a StashOverflowException. This is the default.
+   *
+   * @tparam M
+   *   Type of message
+   * @return
+   *   StashOverflowStrategy instance
+   */
+  def fail[M](): StashOverflowStrategy[M] = Impl(SStashOverflowStrategy.Fail)
+
+  /**
+   * Discard the arriving message by sending it to dead letters.
+   *
+   * @tparam M
+   *   Type of message
+   * @return
+   *   StashOverflowStrategy instance
+   */
+  def dropNewest[M](): StashOverflowStrategy[M] = Impl(SStashOverflowStrategy.DropNewest)
+
+  /**
+   * Discard the oldest stashed message by sending it to dead letters, and stash the arriving message.
+   *
+   * @tparam M
+   *   Type of message
+   * @return
+   *   StashOverflowStrategy instance
+   */
+  def dropOldest[M](): StashOverflowStrategy[M] = Impl(SStashOverflowStrategy.DropOldest)
+
+  /**
+   * Discard the arriving message after passing it to a handler, e.g. to reply to its sender with a rejection.
+   *
+   * @param onRejected
+   *   Handler of the rejected message
+   * @tparam M
+   *   Type of message
+   * @return
+   *   StashOverflowStrategy instance
+   */
+  def reject[M](onRejected: java.util.function.Consumer[M]): StashOverflowStrategy[M] =
+    Impl(SStashOverflowStrategy.Reject[M](onRejected.accept))
+}
@@ -0,0 +1,50 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+import scala.concurrent.duration.{Duration, DurationInt, FiniteDuration}
+
+/**
+ * Configuration for batching persist requests. Events persisted while a batch is open are written to the journal
+ * together as a single `persistAll` once the batch reaches `maxBatchSize` events or `maxLatency` has elapsed since its
+ * first event, whichever comes first.
+ */
+trait BatchingConfig {
+
+  /**
+   * Maximum number of events in a batch.
+   *
+   * @return
+   *   maximum number of events in a batch
+   */
+  def maxBatchSize: Int
+
+  /**
+   * Maximum time an event waits in an open batch before the batch is written.
+   *
+   * @return
+   *   maximum latency added by batching
+   */
+  def maxLatency: FiniteDuration
+}
+
+object BatchingConfig {
+
+  private[effector] final case class Impl(maxBatchSize: Int = 64, maxLatency: FiniteDuration = 5.millis)
+    extends BatchingConfig
+
+  private def apply(): BatchingConfig = Impl()
+
+  /**
+   * Default batching configuration. Uses batches of up to 64 events and a maximum latency of 5 milliseconds.
+   */
+  final val Default: BatchingConfig = apply()
+
+  def apply(maxBatchSize: Int, maxLatency: FiniteDuration): BatchingConfig = {
+    require(maxBatchSize > 0, "maxBatchSize must be greater than 0")
+    require(maxLatency > Duration.Zero, "maxLatency must be greater than 0")
+    Impl(maxBatchSize, maxLatency)
+  }
+
+  def unapply(self: BatchingConfig): Option[(Int, FiniteDuration)] =
+    Some((self.maxBatchSize, self.maxLatency))
+
+}
@@ -0,0 +1,14 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+/**
+ * Snapshot holding the difference between the state at its sequence number and a base snapshot, written when
+ * [[DeltaSnapshotConfig]] is configured. The snapshot serializer has to support this class and the type of the delta.
+ *
+ * @param baseSequenceNumber
+ *   Sequence number of the full base snapshot the delta applies to
+ * @param index
+ *   Position of the delta in its chain, starting at 1
+ * @param delta
+ *   Difference computed by [[DeltaSnapshotConfig.diff]]
+ */
+final case class DeltaSnapshot(baseSequenceNumber: Long, index: Int, delta: Any) extends Serializable
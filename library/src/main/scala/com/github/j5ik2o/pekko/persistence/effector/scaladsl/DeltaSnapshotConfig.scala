@@ -0,0 +1,90 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+/**
+ * Configuration for incremental snapshots. Instead of writing the full state on every snapshot, the effector writes a
+ * full base snapshot followed by up to `fullSnapshotEvery - 1` [[DeltaSnapshot]]s holding the difference between the
+ * base and the current state. Recovery loads the latest snapshot, patches its base with it if it is a delta, and
+ * replays the events written after it.
+ *
+ * Deltas are relative to the base, not to the previous delta, so recovery never needs more than two snapshots. Only
+ * applies to Persisted mode.
+ *
+ * @tparam S
+ *   Type of state
+ */
+trait DeltaSnapshotConfig[S] {
+
+  /**
+   * Type of the difference between two states. It must be serializable by the snapshot store.
+   */
+  type Delta
+
+  /**
+   * Number of snapshots per chain, i.e. every how many snapshots a full base snapshot is written.
+   *
+   * @return
+   *   number of snapshots per chain
+   */
+  def fullSnapshotEvery: Int
+
+  /**
+   * Compute the difference between the base state and the current state.
+   *
+   * @param base
+   *   State of the base snapshot
+   * @param current
+   *   State to save
+   * @return
+   *   Difference to save as a delta snapshot
+   */
+  def diff(base: S, current: S): Delta
+
+  /**
+   * Apply a difference computed by [[diff]] to the base state.
+   *
+   * @param base
+   *   State of the base snapshot
+   * @param delta
+   *   Difference saved as a delta snapshot
+   * @return
+   *   The state that was saved
+   */
+  def patch(base: S, delta: Delta): S
+}
+
+/**
+ * Companion object for DeltaSnapshotConfig.
+ */
+object DeltaSnapshotConfig {
+
+  private final case class Impl[S, D](
+    fullSnapshotEvery: Int,
+    diffFunction: (S, S) => D,
+    patchFunction: (S, D) => S,
+  ) extends DeltaSnapshotConfig[S] {
+    override type Delta = D
+    override def diff(base: S, current: S): D = diffFunction(base, current)
+    override def patch(base: S, delta: D): S = patchFunction(base, delta)
+  }
+
+  /**
+   * Create a DeltaSnapshotConfig from a diff and patch function pair.
+   *
+   * @param fullSnapshotEvery
+   *   Number of snapshots per chain (a full base snapshot followed by deltas)
+   * @param diff
+   *   Function computing the difference between the base state and the current state
+   * @param patch
+   *   Function applying a difference to the base state
+   * @tparam S
+   *   Type of state
+   * @tparam D
+   *   Type of the difference
+   * @return
+   *   DeltaSnapshotConfig instance
+   */
+  def apply[S, D](fullSnapshotEvery: Int)(diff: (S, S) => D)(patch: (S, D) => S): DeltaSnapshotConfig[S] = {
+    require(fullSnapshotEvery > 0, "fullSnapshotEvery must be greater than 0")
+    Impl(fullSnapshotEvery, diff, patch)
+  }
+}
@@ -0,0 +1,17 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+/**
+ * Snapshot whose serialized form has been encoded by a [[SnapshotCodec]], written when a codec is configured. The
+ * snapshot serializer has to support this class.
+ *
+ * @param codecId
+ *   Identifier of the codec that encoded the snapshot
+ * @param serializerId
+ *   Identifier of the serializer of the snapshot
+ * @param manifest
+ *   Manifest of the serialized snapshot
+ * @param payload
+ *   Serialized snapshot, encoded by the codec
+ */
+final case class EncodedSnapshot(codecId: String, serializerId: Int, manifest: String, payload: Array[Byte])
+  extends Serializable
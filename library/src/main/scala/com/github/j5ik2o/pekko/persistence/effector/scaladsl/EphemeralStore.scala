@@ -0,0 +1,67 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.InMemoryEventStore
+
+/**
+ * Settings and gauges of the in-memory store used by [[PersistenceMode.Ephemeral]]. The store is shared by all actor
+ * systems in the JVM.
+ *
+ * By default every event is retained, and only the latest snapshot of an entity is kept unless RetentionCriteria are
+ * set. Two opt-in settings bound the memory of the store: with compaction, the events written before a snapshot are
+ * discarded when the snapshot is saved; and a budget can limit the total number of retained events. When the budget is
+ * exceeded, the least recently used entities whose actors are not running are evicted, and their actors start from
+ * the initial state the next time they are spawned, with sequence numbers continuing where they stopped.
+ */
+object EphemeralStore {
+
+  /**
+   * Set the maximum number of events retained by all entities. Unlimited by default.
+   *
+   * @param value
+   *   Maximum number of retained events (Long.MaxValue for no limit)
+   */
+  def setMaxRetainedEvents(value: Long): Unit =
+    InMemoryEventStore.setMaxRetainedEvents(value)
+
+  /**
+   * Get the maximum number of events retained by all entities.
+   *
+   * @return
+   *   Maximum number of retained events (Long.MaxValue if there is no limit)
+   */
+  def maxRetainedEvents: Long = InMemoryEventStore.getMaxRetainedEvents
+
+  /**
+   * Set whether the events written before a snapshot of an entity are discarded when the snapshot is saved. Disabled by
+   * default.
+   *
+   * @param enabled
+   *   true to discard the events, false to retain every event
+   */
+  def setCompactOnSnapshot(enabled: Boolean): Unit =
+    InMemoryEventStore.setCompactOnSnapshot(enabled)
+
+  /**
+   * Get whether the events written before a snapshot of an entity are discarded when the snapshot is saved.
+   *
+   * @return
+   *   true if the events are discarded
+   */
+  def compactOnSnapshot: Boolean = InMemoryEventStore.isCompactOnSnapshot
+
+  /**
+   * Get the number of entities currently held by the store.
+   *
+   * @return
+   *   Number of entities
+   */
+  def entityCount: Int = InMemoryEventStore.entityCount
+
+  /**
+   * Get the number of events currently retained by all entities.
+   *
+   * @return
+   *   Number of retained events
+   */
+  def retainedEventCount: Long = InMemoryEventStore.retainedEventCount
+}
@@ -0,0 +1,146 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+import java.util.concurrent.ConcurrentHashMap
+import scala.collection.mutable
+import scala.reflect.ClassTag
+
+/**
+ * Chain of steps that transform the events of older versions replayed from the journal into events of the current
+ * version before they are applied to the state. A step handles the events of one class and turns each of them into zero
+ * (to drop it), one (to upcast it) or more (to split it) events, which are in turn handled by the steps added after it.
+ * Events that no step handles are applied as they are, so they must be of the current event type.
+ *
+ * The steps handling an event class are resolved once per class and cached, so events of the current version go through
+ * a single lookup. Only applies to the recovery of Persisted and Direct modes.
+ *
+ * @tparam E
+ *   Type of event
+ */
+trait EventUpcaster[E] {
+
+  /**
+   * Whether a snapshot of the recovered state is saved when a recovery has upcast events, so that the next recoveries
+   * start from it instead of replaying the legacy events again. The effector saves it like a forced `persistSnapshot`
+   * before calling `onReady`, so that the retention criteria and the snapshot outcome handler apply to it.
+   *
+   * @return
+   *   true if a snapshot is saved after a recovery that upcast events
+   */
+  def snapshotAfterUpcast: Boolean
+
+  /**
+   * Transform a replayed event into events of the current version.
+   *
+   * @param event
+   *   Event read from the journal
+   * @return
+   *   Events to apply to the state, in order
+   */
+  def upcast(event: Any): Seq[E]
+
+  /**
+   * Whether an event is applied as it is, i.e. no step handles its class.
+   *
+   * @param event
+   *   Event read from the journal
+   * @return
+   *   true if the event is of the current version
+   */
+  def isCurrent(event: Any): Boolean
+
+  /**
+   * Create a new upcaster with a step for the events of class `A` appended to the chain.
+   *
+   * @param upcast
+   *   Function turning an event of class `A` into the events that replace it
+   * @tparam A
+   *   Class of the events handled by the step
+   * @return
+   *   New upcaster with the step appended
+   */
+  def withStep[A](upcast: A => Seq[Any])(using ClassTag[A]): EventUpcaster[E]
+
+  /**
+   * Create a new upcaster that saves, or does not save, a snapshot after a recovery that upcast events.
+   *
+   * @param value
+   *   Whether a snapshot is saved after a recovery that upcast events
+   * @return
+   *   New upcaster with updated setting
+   */
+  def withSnapshotAfterUpcast(value: Boolean): EventUpcaster[E]
+}
+
+/**
+ * Companion object for EventUpcaster.
+ */
+object EventUpcaster {
+
+  /**
+   * Step of the chain.
+   *
+   * @param eventClass
+   *   Class of the events handled by the step, including its subclasses
+   * @param upcast
+   *   Function turning an event into the events that replace it
+   */
+  private final case class Step(eventClass: Class[?], upcast: Any => Seq[Any])
+
+  private final case class Impl[E](steps: Vector[Step], snapshotAfterUpcast: Boolean) extends EventUpcaster[E] {
+
+    // Indices of the steps handling each event class, in chain order
+    private val stepsByClass = new ConcurrentHashMap[Class[?], Array[Int]]()
+
+    private def stepsFor(eventClass: Class[?]): Array[Int] =
+      stepsByClass.computeIfAbsent(
+        eventClass,
+        cls => steps.indices.filter(steps(_).eventClass.isAssignableFrom(cls)).toArray,
+      )
+
+    override def isCurrent(event: Any): Boolean =
+      stepsFor(event.getClass).isEmpty
+
+    override def upcast(event: Any): Seq[E] = {
+      val result = Vector.newBuilder[E]
+      upcastAfter(event, -1, result)
+      result.result()
+    }
+
+    /**
+     * Pass an event to the first step after the given one that handles it.
+     *
+     * @param event
+     *   Event to transform
+     * @param previousStep
+     *   Index of the step that produced the event, or -1 for an event read from the journal
+     * @param result
+     *   Builder collecting the events of the current version
+     */
+    private def upcastAfter(event: Any, previousStep: Int, result: mutable.Growable[E]): Unit =
+      stepsFor(event.getClass).find(_ > previousStep) match {
+        case Some(index) =>
+          steps(index).upcast(event).foreach(upcastAfter(_, index, result))
+        case None =>
+          result += event.asInstanceOf[E]
+      }
+
+    override def withStep[A](upcast: A => Seq[Any])(using tag: ClassTag[A]): EventUpcaster[E] =
+      copy(steps = steps :+ Step(tag.runtimeClass, event => upcast(event.asInstanceOf[A])))
+
+    override def withSnapshotAfterUpcast(value: Boolean): EventUpcaster[E] =
+      copy(snapshotAfterUpcast = value)
+  }
+
+  /**
+   * Create an empty upcaster, to which steps are added with [[EventUpcaster.withStep]].
+   *
+   * @param snapshotAfterUpcast
+   *   Whether a snapshot is saved after a recovery that upcast events (default: false)
+   * @tparam E
+   *   Type of event
+   * @return
+   *   EventUpcaster instance
+   */
+  def apply[E](snapshotAfterUpcast: Boolean = false): EventUpcaster[E] =
+    Impl(Vector.empty, snapshotAfterUpcast)
+}
@@ -0,0 +1,130 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+import java.util.concurrent.atomic.{AtomicLong, AtomicLongArray}
+
+/**
+ * Lock-free histogram of non-negative long values with a relative precision of about 1.5%. Values are counted in
+ * log-linear buckets, as in HdrHistogram with two significant digits: values below 128 are counted exactly, and each
+ * further power of two is divided into 64 buckets. Memory usage is fixed (about 30 KB) regardless of the number or
+ * range of recorded values.
+ */
+final class Histogram {
+  import Histogram.*
+
+  private val counts = new AtomicLongArray(BucketCount)
+  private val totalCount = new AtomicLong(0L)
+  private val totalSum = new AtomicLong(0L)
+  private val maxValue = new AtomicLong(0L)
+
+  /**
+   * Record a value. Negative values are recorded as 0.
+   *
+   * @param value
+   *   Value to record
+   */
+  def record(value: Long): Unit = {
+    val v = math.max(value, 0L)
+    counts.incrementAndGet(bucketIndex(v))
+    totalCount.incrementAndGet()
+    totalSum.addAndGet(v)
+    maxValue.accumulateAndGet(v, math.max)
+  }
+
+  /**
+   * Get the number of recorded values.
+   *
+   * @return
+   *   Number of recorded values
+   */
+  def count: Long = totalCount.get()
+
+  /**
+   * Get the largest recorded value.
+   *
+   * @return
+   *   Largest recorded value, or 0 if no value has been recorded
+   */
+  def max: Long = maxValue.get()
+
+  /**
+   * Get the mean of the recorded values.
+   *
+   * @return
+   *   Mean of the recorded values, or 0 if no value has been recorded
+   */
+  def mean: Double = {
+    val n = count
+    if (n == 0) 0.0 else totalSum.get().toDouble / n
+  }
+
+  /**
+   * Get the value at the given percentile. The result is the highest value of the bucket containing the percentile, so
+   * it is never lower than the exact value.
+   *
+   * @param percentile
+   *   Percentile between 0 and 100 (e.g. 99.0 for p99)
+   * @return
+   *   Value at the percentile, or 0 if no value has been recorded
+   */
+  def valueAtPercentile(percentile: Double): Long = {
+    require(percentile >= 0.0 && percentile <= 100.0, "percentile must be between 0 and 100")
+    val n = count
+    if (n == 0) 0L
+    else {
+      val target = math.max(1L, math.ceil(percentile / 100.0 * n).toLong)
+      var accumulated = 0L
+      var i = 0
+      var result = max
+      while (i < BucketCount && accumulated < target) {
+        accumulated += counts.get(i)
+        if (accumulated >= target) result = math.min(highestValueInBucket(i), max)
+        i += 1
+      }
+      result
+    }
+  }
+
+  /**
+   * Clear all recorded values. Values recorded concurrently with the reset may be partially kept.
+   */
+  def reset(): Unit = {
+    var i = 0
+    while (i < BucketCount) {
+      counts.set(i, 0L)
+      i += 1
+    }
+    totalCount.set(0L)
+    totalSum.set(0L)
+    maxValue.set(0L)
+  }
+
+  override def toString: String =
+    f"Histogram(count=$count, mean=$mean%.1f, p50=${valueAtPercentile(50.0)}, p99=${valueAtPercentile(99.0)}, max=$max)"
+}
+
+/**
+ * Companion object for Histogram.
+ */
+object Histogram {
+  // Values below 2^LinearBits are counted exactly
+  private final val LinearBits = 7
+  private final val LinearCount = 1 << LinearBits
+  private final val SubBucketCount = LinearCount / 2
+  // One group of sub-buckets per power of two from 2^LinearBits to 2^62
+  private final val BucketCount = LinearCount + (63 - LinearBits) * SubBucketCount
+
+  private def bucketIndex(value: Long): Int =
+    if (value < LinearCount) value.toInt
+    else {
+      val shift = (63 - java.lang.Long.numberOfLeadingZeros(value)) - (LinearBits - 1)
+      LinearCount + (shift - 1) * SubBucketCount + ((value >>> shift) - SubBucketCount).toInt
+    }
+
+  private def highestValueInBucket(index: Int): Long =
+    if (index < LinearCount) index.toLong
+    else {
+      val shift = (index - LinearCount) / SubBucketCount + 1
+      val subBucket = (index - LinearCount) % SubBucketCount + SubBucketCount
+      ((subBucket.toLong + 1) << shift) - 1
+    }
+}
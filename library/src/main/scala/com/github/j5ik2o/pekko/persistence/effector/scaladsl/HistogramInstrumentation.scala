@@ -0,0 +1,256 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import scala.jdk.CollectionConverters.*
+
+/**
+ * In-process [[PersistenceEffectorInstrumentation]] that aggregates the reported events into [[Histogram]]s per entity
+ * type, i.e. per entity type hint of the persistence ID. Persistence IDs without a type hint are aggregated under
+ * [[HistogramInstrumentation.UnknownEntityType]].
+ *
+ * A single instance is meant to be shared by all effectors of a node and read periodically, e.g. to export p99
+ * latencies to a dashboard.
+ */
+final class HistogramInstrumentation extends PersistenceEffectorInstrumentation {
+  import HistogramInstrumentation.*
+
+  private val metrics = new ConcurrentHashMap[String, EntityTypeMetrics]()
+
+  private def metricsOf(entityType: String): EntityTypeMetrics =
+    metrics.computeIfAbsent(entityType, _ => new EntityTypeMetrics)
+
+  private def metricsOf(persistenceId: PersistenceId): EntityTypeMetrics =
+    metricsOf(persistenceId.entityTypeHint.getOrElse(UnknownEntityType))
+
+  override def persistCompleted(
+    persistenceId: PersistenceId,
+    operation: PersistenceOperation,
+    durationNanos: Long,
+  ): Unit =
+    metricsOf(persistenceId).latency(operation.ordinal).record(durationNanos)
+
+  override def persistFailed(persistenceId: PersistenceId, operation: PersistenceOperation, cause: Throwable): Unit =
+    metricsOf(persistenceId).failures(operation.ordinal).incrementAndGet()
+
+  override def messageStashed(persistenceId: PersistenceId, stashDepth: Int): Unit =
+    metricsOf(persistenceId).stashDepth.record(stashDepth.toLong)
+
+  override def stashOverflowed(persistenceId: PersistenceId, stashDepth: Int): Unit =
+    metricsOf(persistenceId).stashOverflows.incrementAndGet()
+
+  override def recoveryCompleted(
+    persistenceId: PersistenceId,
+    durationNanos: Long,
+    replayedEvents: Long,
+    snapshotHit: Boolean,
+  ): Unit = {
+    val entityMetrics = metricsOf(persistenceId)
+    entityMetrics.recoveryDuration.record(durationNanos)
+    entityMetrics.replayedEvents.record(replayedEvents)
+    (if (snapshotHit) entityMetrics.snapshotHits else entityMetrics.snapshotMisses).incrementAndGet()
+  }
+
+  override def snapshotSerialized(persistenceId: PersistenceId, sizeInBytes: Long): Unit =
+    metricsOf(persistenceId).snapshotSize.record(sizeInBytes)
+
+  override def snapshotEncoded(
+    persistenceId: PersistenceId,
+    rawSizeInBytes: Long,
+    encodedSizeInBytes: Long,
+    durationNanos: Long,
+  ): Unit = {
+    val entityMetrics = metricsOf(persistenceId)
+    entityMetrics.encodedSnapshotSize.record(encodedSizeInBytes)
+    entityMetrics.snapshotEncodeDuration.record(durationNanos)
+  }
+
+  override def snapshotDecoded(persistenceId: PersistenceId, encodedSizeInBytes: Long, durationNanos: Long): Unit =
+    metricsOf(persistenceId).snapshotDecodeDuration.record(durationNanos)
+
+  /**
+   * Get the latency histogram of an operation, in nanoseconds.
+   *
+   * @param entityType
+   *   Entity type hint
+   * @param operation
+   *   Kind of operation
+   * @return
+   *   Latency histogram
+   */
+  def persistLatency(entityType: String, operation: PersistenceOperation): Histogram =
+    metricsOf(entityType).latency(operation.ordinal)
+
+  /**
+   * Get the number of failed or rejected operations.
+   *
+   * @param entityType
+   *   Entity type hint
+   * @param operation
+   *   Kind of operation
+   * @return
+   *   Number of failures
+   */
+  def failureCount(entityType: String, operation: PersistenceOperation): Long =
+    metricsOf(entityType).failures(operation.ordinal).get()
+
+  /**
+   * Get the histogram of the stash depth observed while recovering or waiting for writes.
+   *
+   * @param entityType
+   *   Entity type hint
+   * @return
+   *   Stash depth histogram
+   */
+  def stashDepth(entityType: String): Histogram =
+    metricsOf(entityType).stashDepth
+
+  /**
+   * Get the largest number of messages stashed by an entity, i.e. the high-water mark of the stash depth.
+   *
+   * @param entityType
+   *   Entity type hint
+   * @return
+   *   Largest stash depth
+   */
+  def stashHighWaterMark(entityType: String): Long =
+    metricsOf(entityType).stashDepth.max
+
+  /**
+   * Get the number of messages that arrived while the stash was full.
+   *
+   * @param entityType
+   *   Entity type hint
+   * @return
+   *   Number of stash overflows
+   */
+  def stashOverflows(entityType: String): Long =
+    metricsOf(entityType).stashOverflows.get()
+
+  /**
+   * Get the histogram of recovery durations, in nanoseconds.
+   *
+   * @param entityType
+   *   Entity type hint
+   * @return
+   *   Recovery duration histogram
+   */
+  def recoveryDuration(entityType: String): Histogram =
+    metricsOf(entityType).recoveryDuration
+
+  /**
+   * Get the histogram of the number of events replayed during recovery.
+   *
+   * @param entityType
+   *   Entity type hint
+   * @return
+   *   Replayed events histogram
+   */
+  def replayedEvents(entityType: String): Histogram =
+    metricsOf(entityType).replayedEvents
+
+  /**
+   * Get the number of recoveries that started from a snapshot.
+   *
+   * @param entityType
+   *   Entity type hint
+   * @return
+   *   Number of snapshot hits
+   */
+  def snapshotHits(entityType: String): Long =
+    metricsOf(entityType).snapshotHits.get()
+
+  /**
+   * Get the number of recoveries that started without a snapshot.
+   *
+   * @param entityType
+   *   Entity type hint
+   * @return
+   *   Number of snapshot misses
+   */
+  def snapshotMisses(entityType: String): Long =
+    metricsOf(entityType).snapshotMisses.get()
+
+  /**
+   * Get the histogram of serialized snapshot sizes, in bytes.
+   *
+   * @param entityType
+   *   Entity type hint
+   * @return
+   *   Snapshot size histogram
+   */
+  def snapshotSize(entityType: String): Histogram =
+    metricsOf(entityType).snapshotSize
+
+  /**
+   * Get the histogram of snapshot sizes after encoding by the snapshot codec, in bytes.
+   *
+   * @param entityType
+   *   Entity type hint
+   * @return
+   *   Encoded snapshot size histogram
+   */
+  def encodedSnapshotSize(entityType: String): Histogram =
+    metricsOf(entityType).encodedSnapshotSize
+
+  /**
+   * Get the histogram of the time to serialize and encode snapshots, in nanoseconds.
+   *
+   * @param entityType
+   *   Entity type hint
+   * @return
+   *   Snapshot encode duration histogram
+   */
+  def snapshotEncodeDuration(entityType: String): Histogram =
+    metricsOf(entityType).snapshotEncodeDuration
+
+  /**
+   * Get the histogram of the time to decode and deserialize snapshots during recovery, in nanoseconds.
+   *
+   * @param entityType
+   *   Entity type hint
+   * @return
+   *   Snapshot decode duration histogram
+   */
+  def snapshotDecodeDuration(entityType: String): Histogram =
+    metricsOf(entityType).snapshotDecodeDuration
+
+  /**
+   * Get the entity types for which events have been reported.
+   *
+   * @return
+   *   Entity types
+   */
+  def entityTypes: Set[String] =
+    metrics.keySet().asScala.toSet
+}
+
+/**
+ * Companion object for HistogramInstrumentation.
+ */
+object HistogramInstrumentation {
+
+  /**
+   * Entity type under which persistence IDs without a type hint are aggregated
+   */
+  final val UnknownEntityType = "unknown"
+
+  /**
+   * Metrics of one entity type
+   */
+  private final class EntityTypeMetrics {
+    // Indexed by PersistenceOperation ordinal
+    val latency: Array[Histogram] = Array.fill(PersistenceOperation.values.length)(new Histogram)
+    val failures: Array[AtomicLong] = Array.fill(PersistenceOperation.values.length)(new AtomicLong(0L))
+    val stashDepth = new Histogram
+    val stashOverflows = new AtomicLong(0L)
+    val recoveryDuration = new Histogram
+    val replayedEvents = new Histogram
+    val snapshotHits = new AtomicLong(0L)
+    val snapshotMisses = new AtomicLong(0L)
+    val snapshotSize = new Histogram
+    val encodedSnapshotSize = new Histogram
+    val snapshotEncodeDuration = new Histogram
+    val snapshotDecodeDuration = new Histogram
+  }
+}
@@ -15,14 +15,17 @@ import scala.compiletime.asMatchable
 trait MessageConverter[S, E, M] {
 
   /**
-   * Wrap persisted events into a message.
+   * Wrap persisted events into a message. Replies to event writes are routed to the effector directly, so the effector
+   * never sends this message to the actor, and the method does not need to be overridden.
    *
    * @param events
    *   Events to wrap
    * @return
    *   Message containing the events
    */
-  def wrapPersistedEvents(events: Seq[E]): M & PersistedEvent[E, M]
+  @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
+  def wrapPersistedEvents(events: Seq[E]): M & PersistedEvent[E, M] =
+    MessageConverter.StandardPersistedEvent(events).asInstanceOf[M & PersistedEvent[E, M]]
 
   /**
    * Wrap a persisted snapshot into a message.
@@ -55,13 +58,27 @@ trait MessageConverter[S, E, M] {
   def wrapDeleteSnapshots(maxSequenceNumber: Long): M & DeletedSnapshots[M]
 
   /**
-   * Extract persisted events from a message.
+   * Wrap deleted journal events information into a message. The message is consumed by the effector before it reaches
+   * the actor behavior, so the default implementation does not need to be overridden.
+   *
+   * @param toSequenceNumber
+   *   Maximum sequence number of deleted events
+   * @return
+   *   Message containing the maximum sequence number
+   */
+  def wrapDeletedEvents(toSequenceNumber: Long): M & DeletedEvents[M] =
+    MessageConverter.StandardDeletedEvents(toSequenceNumber).asInstanceOf[M & DeletedEvents[M]]
+
+  /**
+   * Extract persisted events from a message. The effector does not use it, since replies to event writes never reach
+   * the actor behavior.
    *
    * @param message
    *   Message to extract from
    * @return
    *   Option containing the events, or None if the message doesn't contain events
    */
+  @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
   def unwrapPersistedEvents(message: M): Option[Seq[E]] = message.asMatchable match {
     case msg: PersistedEvent[E, M] @unchecked => Some(msg.events)
     case other => None
@@ -107,6 +124,19 @@ trait MessageConverter[S, E, M] {
     case _ => None
   }
 
+  /**
+   * Extract deleted journal events information from a message.
+   *
+   * @param message
+   *   Message to extract from
+   * @return
+   *   Option containing the maximum sequence number, or None if the message doesn't contain deleted events information
+   */
+  def unwrapDeletedEvents(message: M): Option[Long] = message.asMatchable match {
+    case msg: DeletedEvents[M] @unchecked => Some(msg.toSequenceNumber)
+    case _ => None
+  }
+
 }
 
 object MessageConverter {
@@ -116,6 +146,7 @@ object MessageConverter {
     _wrapRecoveredState: S => M & RecoveredState[S, M],
     _wrapDeleteSnapshots: Long => M & DeletedSnapshots[M],
   ) extends MessageConverter[S, E, M] {
+    @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
     override def wrapPersistedEvents(events: Seq[E]): M & PersistedEvent[E, M] =
       _wrapPersistedEvents(events)
     override def wrapPersistedSnapshot(state: S): M & PersistedState[S, M] = _wrapPersistedState(state)
@@ -128,7 +159,7 @@ object MessageConverter {
    * Create a MessageConverter with the specified functions.
    *
    * @param wrapPersistedEvents
-   *   Function to wrap persisted events
+   *   Function to wrap persisted events, which the effector no longer uses
    * @param wrapPersistedState
    *   Function to wrap persisted state
    * @param wrapRecoveredState
@@ -160,6 +191,8 @@ object MessageConverter {
 
   private[effector] case class StandardDeletedSnapshots(maxSequenceNumber: Long) extends DeletedSnapshots[Any]
 
+  private[effector] case class StandardDeletedEvents(toSequenceNumber: Long) extends DeletedEvents[Any]
+
   /**
    * Create a default MessageConverter with standard implementations.
    *
@@ -173,9 +206,6 @@ object MessageConverter {
    *   Default MessageConverter instance
    */
   def defaultFunctions[S, E, M]: MessageConverter[S, E, M] = new MessageConverter[S, E, M] {
-    override def wrapPersistedEvents(events: Seq[E]): M & PersistedEvent[E, M] =
-      StandardPersistedEvent(events).asInstanceOf[M & PersistedEvent[E, M]]
-
     override def wrapPersistedSnapshot(state: S): M & PersistedState[S, M] =
       StandardPersistedState(state).asInstanceOf[M & PersistedState[S, M]]
 
@@ -81,3 +81,20 @@ trait DeletedSnapshots[M] extends MessageWrapper[M] {
    */
   def maxSequenceNumber: Long
 }
+
+/**
+ * Trait for messages containing information about deleted journal events.
+ *
+ * @tparam M
+ *   Type of message
+ */
+trait DeletedEvents[M] extends MessageWrapper[M] {
+
+  /**
+   * Get the maximum sequence number of deleted events.
+   *
+   * @return
+   *   Maximum sequence number
+   */
+  def toSequenceNumber: Long
+}
@@ -0,0 +1,13 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+/**
+ * Journal event holding the events of a multi-event persist, written as a single row when packed batches are
+ * configured. The journal serializer has to support this class. Readers of the journal other than the effector, such as
+ * projections, see the envelope rather than the events it holds.
+ *
+ * @param codecId
+ *   Identifier of the codec that encoded the events
+ * @param payload
+ *   Serialized events, encoded by the codec
+ */
+final case class PackedEvents(codecId: String, payload: Array[Byte]) extends Serializable
@@ -0,0 +1,63 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+import scala.concurrent.duration.{Duration, FiniteDuration}
+
+/**
+ * Configuration for passivating idle entities. Once no message has reached the actor for `idleTimeout` and no write is
+ * in flight, the effector optionally saves a snapshot of the state, stops the persistence store actor of the entity and
+ * lets the actor stop, so that idle entities do not hold memory.
+ *
+ * @tparam M
+ *   Type of message
+ */
+trait PassivationConfig[M] {
+
+  /**
+   * Time without messages after which the entity is passivated.
+   *
+   * @return
+   *   idle timeout
+   */
+  def idleTimeout: FiniteDuration
+
+  /**
+   * Whether a snapshot of the state is saved before passivating, if events were persisted since the latest snapshot, so
+   * that the next activation recovers without replaying them.
+   *
+   * @return
+   *   true if a snapshot is saved on passivation
+   */
+  def snapshotOnPassivate: Boolean
+
+  /**
+   * Message passed to the actor behavior to signal the passivation, e.g. to passivate through Cluster Sharding. The
+   * behavior is expected to stop the actor; messages that arrive until then are not processed. When not set, the actor
+   * stops itself.
+   *
+   * @return
+   *   Optional message signaling the passivation
+   */
+  def passivateMessage: Option[M]
+}
+
+object PassivationConfig {
+
+  private[effector] final case class Impl[M](
+    idleTimeout: FiniteDuration,
+    snapshotOnPassivate: Boolean,
+    passivateMessage: Option[M],
+  ) extends PassivationConfig[M]
+
+  def apply[M](
+    idleTimeout: FiniteDuration,
+    snapshotOnPassivate: Boolean = true,
+    passivateMessage: Option[M] = None,
+  ): PassivationConfig[M] = {
+    require(idleTimeout > Duration.Zero, "idleTimeout must be greater than 0")
+    Impl(idleTimeout, snapshotOnPassivate, passivateMessage)
+  }
+
+  def unapply[M](self: PassivationConfig[M]): Option[(FiniteDuration, Boolean, Option[M])] =
+    Some((self.idleTimeout, self.snapshotOnPassivate, self.passivateMessage))
+
+}
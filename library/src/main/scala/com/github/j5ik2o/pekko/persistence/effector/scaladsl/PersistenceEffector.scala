@@ -2,14 +2,21 @@ package com.github.j5ik2o.pekko.persistence.effector.scaladsl
 
 import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.PersistenceStoreProtocol.*
 import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.{
+  BoundedStash,
   DefaultPersistenceEffector,
   DeferredEffector,
+  DirectJournalWriter,
   InMemoryEffector,
+  InMemoryEventStore,
+  InMemoryEventStoreUnpinInterceptor,
+  InMemoryPassivationInterceptor,
   PersistenceStoreActor,
+  SharedJournalWriter,
 }
 import org.apache.pekko.actor.ActorPath
 import org.apache.pekko.actor.typed.scaladsl.{ActorContext, Behaviors}
 import org.apache.pekko.actor.typed.{ActorRef, Behavior}
+import org.apache.pekko.persistence.effector.JournalProtocolBridge
 
 import java.net.URLEncoder
 import java.nio.charset.StandardCharsets
@@ -19,6 +26,18 @@ import scala.compiletime.asMatchable
  * Trait defining the persistence operations for event sourcing. This trait provides methods to persist events and
  * snapshots, and to manage the lifecycle of persisted data.
  *
+ * By default each persist waits for the journal, and the actor continues with the behavior returned by `onPersisted`.
+ * In pipelined mode, enabled by `maxInFlightPersists` greater than 1 or by a batching configuration, a persist returns
+ * `Behaviors.same` right away, so the actor keeps its current behavior and processes the next message while the write
+ * is in flight. `onPersisted` callbacks are then invoked in the order of the persists once their events are
+ * acknowledged; for `persistSnapshot` once the events sent before the snapshot are acknowledged, without waiting for
+ * the snapshot itself. Each behavior a callback returns, other than `Behaviors.same`, becomes the behavior of the actor
+ * when it is returned. A callback only sees the state captured by the message that persisted its events, so a handler
+ * that lets several persists be in flight should apply the events to its state itself, continuing with the new state
+ * rather than the returned `Behaviors.same`, and have the callbacks return `Behaviors.same`. `onReady` is only invoked
+ * once, with the recovered state; a persist made within `onReady` in pipelined mode stashes messages until its callback
+ * returns the behavior to continue with.
+ *
  * @tparam S
  *   Type of state
  * @tparam E
@@ -36,10 +55,33 @@ trait PersistenceEffector[S, E, M] {
    * @param onPersisted
    *   Callback function to execute after the event is persisted
    * @return
-   *   The behavior returned by the callback
+   *   The behavior returned by the callback, or Behaviors.same in pipelined mode
    */
   def persistEvent(event: E)(onPersisted: E => Behavior[M]): Behavior[M]
 
+  /**
+   * Persist a single event, handling a failed write instead of failing the actor. The write fails if the journal
+   * rejects or fails to store the event, or does not acknowledge it within the persist timeout of the
+   * PersistenceEffectorConfig. After a failure or a timeout it is unknown whether the event was stored, so the callback
+   * should stop the actor, which then recovers from the journal when it is started again. After a rejection the event
+   * was not stored and the actor can continue. In pipelined mode a rejection rolls the effector back to the last
+   * acknowledged event: the writes the persistence store actor receives after the rejected one are rejected as well
+   * without invoking their callbacks, and the actor continues with the behavior returned by this callback. A rejected
+   * batch of batching mode is handled by the failure callback of its first persist. If a write sent after the rejected
+   * one is stored all the same, or after a failure, the actor fails instead.
+   *
+   * @param event
+   *   Event to persist
+   * @param onFailure
+   *   Callback function to execute if the event could not be persisted
+   * @param onPersisted
+   *   Callback function to execute after the event is persisted
+   * @return
+   *   The behavior returned by one of the callbacks, or Behaviors.same in pipelined mode
+   */
+  def persistEvent(event: E, onFailure: Throwable => Behavior[M])(onPersisted: E => Behavior[M]): Behavior[M] =
+    persistEvent(event)(onPersisted)
+
   /**
    * Persist multiple events.
    *
@@ -48,10 +90,27 @@ trait PersistenceEffector[S, E, M] {
    * @param onPersisted
    *   Callback function to execute after the events are persisted
    * @return
-   *   The behavior returned by the callback
+   *   The behavior returned by the callback, or Behaviors.same in pipelined mode
    */
   def persistEvents(events: Seq[E])(onPersisted: Seq[E] => Behavior[M]): Behavior[M]
 
+  /**
+   * Persist multiple events, handling a failed write instead of failing the actor, as described on the
+   * `persistEvent` taking `onFailure`.
+   *
+   * @param events
+   *   Events to persist
+   * @param onFailure
+   *   Callback function to execute if the events could not be persisted
+   * @param onPersisted
+   *   Callback function to execute after the events are persisted
+   * @return
+   *   The behavior returned by one of the callbacks, or Behaviors.same in pipelined mode
+   */
+  def persistEvents(events: Seq[E], onFailure: Throwable => Behavior[M])(
+    onPersisted: Seq[E] => Behavior[M]): Behavior[M] =
+    persistEvents(events)(onPersisted)
+
   /**
    * Persist a snapshot.
    *
@@ -60,7 +119,7 @@ trait PersistenceEffector[S, E, M] {
    * @param onPersisted
    *   Callback function to execute after the snapshot is persisted
    * @return
-   *   The behavior returned by the callback
+   *   The behavior returned by the callback, or Behaviors.same in pipelined mode
    */
   def persistSnapshot(snapshot: S)(onPersisted: S => Behavior[M]): Behavior[M] =
     persistSnapshot(snapshot, force = false)(onPersisted)
@@ -75,10 +134,32 @@ trait PersistenceEffector[S, E, M] {
    * @param onPersisted
    *   Callback function to execute after the snapshot is persisted
    * @return
-   *   The behavior returned by the callback
+   *   The behavior returned by the callback, or Behaviors.same in pipelined mode
    */
   def persistSnapshot(snapshot: S, force: Boolean)(onPersisted: S => Behavior[M]): Behavior[M]
 
+  /**
+   * Persist a snapshot with force option, handling a failed save instead of failing the actor. The snapshot store
+   * keeps the previous snapshots, so the actor can continue. In pipelined mode the behavior returned by the callback
+   * replaces the current behavior when the save fails, after `onPersisted` has been invoked. With asynchronous
+   * snapshots a failed save never fails the actor and is only reported to the snapshot outcome handler, so the callback
+   * is not invoked.
+   *
+   * @param snapshot
+   *   Snapshot to persist
+   * @param force
+   *   If true, forces snapshot persistence regardless of snapshot criteria
+   * @param onFailure
+   *   Callback function to execute if the snapshot could not be saved
+   * @param onPersisted
+   *   Callback function to execute after the snapshot is persisted
+   * @return
+   *   The behavior returned by one of the callbacks, or Behaviors.same in pipelined mode
+   */
+  def persistSnapshot(snapshot: S, force: Boolean, onFailure: Throwable => Behavior[M])(
+    onPersisted: S => Behavior[M]): Behavior[M] =
+    persistSnapshot(snapshot, force)(onPersisted)
+
   /**
    * Persist an event and evaluate snapshot criteria with the current state (for backward compatibility).
    *
@@ -89,7 +170,7 @@ trait PersistenceEffector[S, E, M] {
    * @param onPersisted
    *   Callback function to execute after the event is persisted
    * @return
-   *   The behavior returned by the callback
+   *   The behavior returned by the callback, or Behaviors.same in pipelined mode
    */
   def persistEventWithSnapshot(event: E, snapshot: S)(onPersisted: E => Behavior[M]): Behavior[M] =
     persistEventWithSnapshot(event, snapshot, forceSnapshot = false)(onPersisted)
@@ -106,11 +187,33 @@ trait PersistenceEffector[S, E, M] {
    * @param onPersisted
    *   Callback function to execute after the event is persisted
    * @return
-   *   The behavior returned by the callback
+   *   The behavior returned by the callback, or Behaviors.same in pipelined mode
    */
   def persistEventWithSnapshot(event: E, snapshot: S, forceSnapshot: Boolean)(
     onPersisted: E => Behavior[M]): Behavior[M]
 
+  /**
+   * Persist an event and evaluate snapshot criteria with the current state, handling a failed write of the event
+   * instead of failing the actor, as described on the `persistEvent` taking `onFailure`. The snapshot is only taken once the event is stored, so a failed save of the snapshot still fails the actor unless
+   * snapshots are asynchronous.
+   *
+   * @param event
+   *   Event to persist
+   * @param snapshot
+   *   Current state
+   * @param forceSnapshot
+   *   If true, forces snapshot persistence regardless of snapshot criteria
+   * @param onFailure
+   *   Callback function to execute if the event could not be persisted
+   * @param onPersisted
+   *   Callback function to execute after the event is persisted
+   * @return
+   *   The behavior returned by one of the callbacks, or Behaviors.same in pipelined mode
+   */
+  def persistEventWithSnapshot(event: E, snapshot: S, forceSnapshot: Boolean, onFailure: Throwable => Behavior[M])(
+    onPersisted: E => Behavior[M]): Behavior[M] =
+    persistEventWithSnapshot(event, snapshot, forceSnapshot)(onPersisted)
+
   /**
    * Persist multiple events and evaluate snapshot criteria with the current state (for backward compatibility).
    *
@@ -121,7 +224,7 @@ trait PersistenceEffector[S, E, M] {
    * @param onPersisted
    *   Callback function to execute after the events are persisted
    * @return
-   *   The behavior returned by the callback
+   *   The behavior returned by the callback, or Behaviors.same in pipelined mode
    */
   def persistEventsWithSnapshot(events: Seq[E], snapshot: S)(onPersisted: Seq[E] => Behavior[M]): Behavior[M] =
     persistEventsWithSnapshot(events, snapshot, forceSnapshot = false)(onPersisted)
@@ -138,15 +241,39 @@ trait PersistenceEffector[S, E, M] {
    * @param onPersisted
    *   Callback function to execute after the events are persisted
    * @return
-   *   The behavior returned by the callback
+   *   The behavior returned by the callback, or Behaviors.same in pipelined mode
    */
   def persistEventsWithSnapshot(events: Seq[E], snapshot: S, forceSnapshot: Boolean)(
     onPersisted: Seq[E] => Behavior[M]): Behavior[M]
+
+  /**
+   * Persist multiple events and evaluate snapshot criteria with the current state, handling a failed write of the
+   * events instead of failing the actor, as described on the `persistEventWithSnapshot` taking `onFailure`.
+   *
+   * @param events
+   *   Sequence of events to persist
+   * @param snapshot
+   *   Current state
+   * @param forceSnapshot
+   *   If true, forces snapshot persistence regardless of snapshot criteria
+   * @param onFailure
+   *   Callback function to execute if the events could not be persisted
+   * @param onPersisted
+   *   Callback function to execute after the events are persisted
+   * @return
+   *   The behavior returned by one of the callbacks, or Behaviors.same in pipelined mode
+   */
+  def persistEventsWithSnapshot(
+    events: Seq[E],
+    snapshot: S,
+    forceSnapshot: Boolean,
+    onFailure: Throwable => Behavior[M])(onPersisted: Seq[E] => Behavior[M]): Behavior[M] =
+    persistEventsWithSnapshot(events, snapshot, forceSnapshot)(onPersisted)
 }
 
 object PersistenceEffector {
   // Message for handling recovery completion internally
-  private case class RecoveryCompletedInternal[S](state: S, sequenceNr: Long)
+  private case class RecoveryCompletedInternal[S](recoveryDone: RecoveryDone[S])
 
   private[effector] def persistenceStoreActorName(persistenceId: String): String = {
     val actorName = s"effector-${URLEncoder.encode(persistenceId, StandardCharsets.UTF_8)}"
@@ -298,7 +425,7 @@ object PersistenceEffector {
     context: ActorContext[M],
   ): Behavior[M] =
     config.persistenceMode match {
-      case PersistenceMode.Persisted => buildPersisted(config)(onReady)
+      case PersistenceMode.Persisted | PersistenceMode.Direct => buildPersisted(config)(onReady)
       case PersistenceMode.Ephemeral => buildEphemeral(config)(onReady)
       case PersistenceMode.Deferred => buildDeferred(config)(onReady)
     }
@@ -316,7 +443,7 @@ object PersistenceEffector {
 
     // Fix recoveryAdapter: Convert from RecoveryDone to RecoveryCompletedInternal
     val recoveryAdapter = context.messageAdapter[RecoveryDone[S]] { rd =>
-      RecoveryCompletedInternal(rd.state, rd.sequenceNr).asInstanceOf[M]
+      RecoveryCompletedInternal(rd).asInstanceOf[M]
     }
 
     val persistenceRef = spawnEventStoreActor(
@@ -326,26 +453,54 @@ object PersistenceEffector {
       applyEvent,
       recoveryAdapter,
       backoffConfig,
+      config.instrumentation,
+      config.deltaSnapshotConfig,
+      config.recoveryConfig,
+      config.eventUpcaster,
+      config.snapshotCodec,
+      config.packedBatchCodec,
+      DefaultPersistenceEffector.isPipelined(config),
     )
 
+    val interceptsReplies = DefaultPersistenceEffector.interceptsReplies(config)
+
     val adapter = context.messageAdapter[PersistenceReply[S, E]] {
-      case PersistSingleEventSucceeded(event) => wrapPersistedEvents(Seq(event))
-      case PersistMultipleEventsSucceeded(events) => wrapPersistedEvents(events)
-      case PersistSnapshotSucceeded(snapshot) => wrapPersistedSnapshot(snapshot)
-      case PersistSnapshotFailed(snapshot, cause) =>
-        throw new IllegalStateException("Failed to persist snapshot", cause)
+      case reply @ (_: PersistSnapshotReply[S, E] | _: DeleteSnapshotsReply[S, E]) if interceptsReplies =>
+        DefaultPersistenceEffector.SnapshotReplyReceived(reply).asInstanceOf[M]
+      // Event writes reply to the actor itself, so these replies are only routed here by a store using this adapter
+      case reply: PersistEventsReply[S, E] => reply.asInstanceOf[M]
+      case PersistSnapshotSucceeded(snapshot, _) => wrapPersistedSnapshot(snapshot)
+      // Failures have no message in the converter, and are handled by the effector waiting for the snapshot
+      case reply: PersistSnapshotFailed[S, E] => DefaultPersistenceEffector.SnapshotReplyReceived(reply).asInstanceOf[M]
       case DeleteSnapshotsSucceeded(maxSequenceNumber) => wrapDeleteSnapshots(maxSequenceNumber)
       case DeleteSnapshotsFailed(maxSequenceNumber, cause) =>
         throw new IllegalStateException("Failed to delete snapshots", cause)
+      case DeleteEventsSucceeded(toSequenceNumber) => wrapDeletedEvents(toSequenceNumber)
+      // Failures have no message in the converter, and are reported without stopping the actor
+      case reply: DeleteEventsFailed[S, E] => DefaultPersistenceEffector.SnapshotReplyReceived(reply).asInstanceOf[M]
+    }
+
+    val directWriter = Option.when(persistenceMode == PersistenceMode.Direct) {
+      import org.apache.pekko.actor.typed.scaladsl.adapter.*
+      new DirectJournalWriter[S, E](
+        persistenceId,
+        JournalProtocolBridge.journalFor(context.system.toClassic, ""),
+        context.self.toClassic,
+        instrumentation,
+        config.sharedWriteBatching.map(SharedJournalWriter(context.system).writerFor),
+      )
     }
 
     def awaitRecovery(): Behavior[M] =
-      Behaviors.withStash(config.stashSize) { stashBuffer =>
+      // The stash is bounded by BoundedStash, which applies the stash overflow strategy
+      Behaviors.withStash(Int.MaxValue) { stashBuffer =>
+        val stash = new BoundedStash[M](context, stashBuffer, config)
         Behaviors.receiveMessagePartial { msg =>
           msg.asMatchable match {
             case msg: RecoveryCompletedInternal[?] =>
-              val state = msg.asInstanceOf[RecoveryCompletedInternal[S]].state
-              val sequenceNr = msg.asInstanceOf[RecoveryCompletedInternal[S]].sequenceNr
+              val recoveryDone = msg.asInstanceOf[RecoveryCompletedInternal[S]].recoveryDone
+              val state = recoveryDone.state
+              val sequenceNr = recoveryDone.sequenceNr
               context.log.debug(
                 "Recovery completed. State = {}, SequenceNr = {}",
                 state,
@@ -353,16 +508,33 @@ object PersistenceEffector {
               )
               val effector = new DefaultPersistenceEffector[S, E, M](
                 context,
-                stashBuffer,
+                stash,
                 config,
                 persistenceRef,
                 adapter,
                 sequenceNr,
+                state,
+                recoveryDone.replayedEvents,
+                recoveryDone.durationNanos,
+                recoveryDone.snapshotSequenceNr,
+                directWriter,
               )
-              stashBuffer.unstashAll(onReady(state, effector))
+              val ready =
+                if (recoveryDone.upcastEvents > 0 && config.eventUpcaster.exists(_.snapshotAfterUpcast)) {
+                  // Store the upcast form, so that the next recoveries do not replay the legacy events again. It is
+                  // saved like any other snapshot, so that the retention criteria apply to it.
+                  context.log.info(
+                    "Upcast {} events while recovering {}, saving a snapshot",
+                    recoveryDone.upcastEvents,
+                    persistenceId.asString)
+                  effector.persistSnapshot(state, force = true)(snapshot => onReady((snapshot, effector)))
+                } else {
+                  onReady(state, effector)
+                }
+              effector.start(ready)
             case other =>
               context.log.debug("Stashing message during recovery: {}", other)
-              stashBuffer.stash(other)
+              stash.stash(other)
               Behaviors.same
           }
         }
@@ -377,12 +549,25 @@ object PersistenceEffector {
     context: ActorContext[M],
   ): Behavior[M] =
     Behaviors.withStash(config.stashSize) { stashBuffer =>
+      // Keep the entity from being evicted from the in-memory store while the actor is running
+      InMemoryEventStore.pin(config.persistenceId)
       val effector = new InMemoryEffector[S, E, M](
         context,
         stashBuffer,
         config,
       )
-      onReady(effector.getState, effector)
+      val behavior = onReady(effector.getState, effector)
+      if (!Behavior.isAlive(behavior)) {
+        InMemoryEventStore.unpin(config.persistenceId)
+        behavior
+      } else {
+        val passivating =
+          if (config.passivation.isDefined)
+            Behaviors.intercept(() => new InMemoryPassivationInterceptor(effector))(behavior)
+          else
+            behavior
+        Behaviors.intercept(() => new InMemoryEventStoreUnpinInterceptor[M](config.persistenceId))(passivating)
+      }
     }
 
   private def buildDeferred[S, E, M](
@@ -401,16 +586,30 @@ object PersistenceEffector {
     initialState: S,
     applyEvent: (S, E) => S,
     recoveryAdapter: ActorRef[RecoveryDone[S]],
-    backoffConfig: Option[BackoffConfig]) = {
+    backoffConfig: Option[BackoffConfig],
+    instrumentation: PersistenceEffectorInstrumentation,
+    deltaSnapshotConfig: Option[DeltaSnapshotConfig[S]],
+    recoveryConfig: Option[RecoveryConfig],
+    eventUpcaster: Option[EventUpcaster[E]],
+    snapshotCodec: Option[SnapshotCodec],
+    packedBatchCodec: Option[SnapshotCodec],
+    pipelinedWrites: Boolean) = {
     import org.apache.pekko.actor.typed.scaladsl.adapter.*
     context
       .actorOf(
         PersistenceStoreActor.props(
-          persistenceId.asString,
+          persistenceId,
           initialState,
           applyEvent,
           recoveryAdapter,
           backoffConfig,
+          instrumentation,
+          deltaSnapshotConfig,
+          recoveryConfig,
+          eventUpcaster,
+          snapshotCodec,
+          packedBatchCodec,
+          pipelinedWrites,
         ),
         persistenceStoreActorName(persistenceId.asString),
       )
@@ -1,9 +1,16 @@
 package com.github.j5ik2o.pekko.persistence.effector.scaladsl
 
+import scala.concurrent.duration.{Duration, FiniteDuration}
+
 /**
  * Configuration for PersistenceEffector in Scala API. This trait defines all the settings needed to create and
  * configure a PersistenceEffector.
  *
+ * Options that cannot take effect together are rejected with an IllegalArgumentException as soon as they are combined:
+ * a persist timeout with pipelining, options of Persisted and Direct mode in Ephemeral or Deferred mode, shared write
+ * batching outside Direct mode, and packed batches outside Persisted mode, with batching, with retention criteria or
+ * with snapshot criteria counting events. Set the persistence mode before the options that depend on it.
+ *
  * @tparam S
  *   Type of state
  * @tparam E
@@ -54,7 +61,8 @@ trait PersistenceEffectorConfig[S, E, M] {
   def persistenceMode: PersistenceMode
 
   /**
-   * Get the stash size for the effector. Determines how many messages can be stashed during recovery.
+   * Get the stash size for the effector. Determines how many messages can be stashed during recovery or while waiting
+   * for a write; further messages are handled by the stash overflow strategy.
    *
    * @return
    *   Maximum stash size
@@ -93,12 +101,194 @@ trait PersistenceEffectorConfig[S, E, M] {
    */
   def messageConverter: MessageConverter[S, E, M]
 
+  /**
+   * Get the maximum number of persist requests that may be in flight at the same time. With the default of 1 the
+   * effector waits for each write before processing the next message. Values greater than 1 enable pipelined mode: a
+   * persist returns `Behaviors.same`, the actor keeps processing messages with its current behavior, and the effector
+   * only stashes messages once this many requests await acknowledgement. `onPersisted` callbacks are invoked in order
+   * once their write is acknowledged, and the behaviors they return replace the current behavior, as described on
+   * [[PersistenceEffector]]. `onReady` is invoked once after recovery and never again, so side effects in it are not
+   * repeated per write. If the journal rejects a write, the effector rolls back to the last acknowledged event: the
+   * later writes are rejected without invoking their callbacks, and the actor continues with the behavior returned by
+   * the failure callback of the rejected persist. Without a failure callback, if a later write was stored all the same,
+   * or if a write fails, the actor fails and recovers from the journal when restarted by its supervisor. Values greater
+   * than 1 are rejected in Ephemeral and Deferred mode.
+   *
+   * @return
+   *   Maximum number of in-flight persist requests
+   */
+  def maxInFlightPersists: Int
+
+  /**
+   * Get the batching configuration. When set, events from consecutive persist calls are collected and written to the
+   * journal as one `persistAll` once the batch is full or its maximum latency has elapsed. As in pipelined mode,
+   * `onPersisted` callbacks are invoked individually and in order once the batch holding their events is acknowledged.
+   * A rejected batch rolls the effector back with the failure callback of its first persist, without invoking the
+   * `onPersisted` callbacks of the batch; without that callback, or if the batch fails, the actor fails. Up to
+   * `maxInFlightPersists` batches are written concurrently; while they are in flight the next batch keeps collecting
+   * events, and messages are only stashed once it is full. Events of a batch that is still open when the actor stops
+   * are not written. Rejected in Ephemeral and Deferred mode.
+   *
+   * @return
+   *   Optional batching configuration
+   */
+  def batchingConfig: Option[BatchingConfig]
+
+  /**
+   * Get whether snapshots are saved asynchronously. By default the effector waits for a snapshot, and the retention
+   * deletion that follows it, to be stored before invoking the `onPersisted` callback, so command processing stalls for
+   * the duration of the snapshot write. When enabled, the callback is invoked as soon as the events are persisted and
+   * the snapshot is written in the background. Old snapshots are only deleted after the new one has been saved, and a
+   * failed save or deletion is logged and reported to `snapshotOutcomeHandler` instead of failing the actor. Rejected
+   * in Ephemeral and Deferred mode.
+   *
+   * @return
+   *   true if snapshots are saved asynchronously
+   */
+  def asyncSnapshots: Boolean
+
+  /**
+   * Get the handler notified of the outcome of snapshot saves and deletions. It is invoked on the actor thread.
+   *
+   * @return
+   *   Snapshot outcome handler
+   */
+  def snapshotOutcomeHandler: SnapshotOutcome => Unit
+
+  /**
+   * Get the instrumentation notified of write latencies, failures, stash depth, recovery and snapshot sizes. Callbacks
+   * are invoked on the actor threads, so implementations must be thread-safe and must not block. Metrics are only
+   * reported in Persisted mode.
+   *
+   * @return
+   *   Instrumentation
+   */
+  def instrumentation: PersistenceEffectorInstrumentation
+
+  /**
+   * Get the handler for read-only messages. When set, messages it classifies as read-only are handled against the last
+   * confirmed state while the effector waits for a write, instead of being stashed. Only applies to Persisted and
+   * Direct mode, since the other modes do not wait for writes, and is rejected in Ephemeral and Deferred mode.
+   *
+   * @return
+   *   Optional read-only command handler
+   */
+  def readOnlyCommandHandler: Option[ReadOnlyCommandHandler[S, M]]
+
+  /**
+   * Get the configuration for incremental snapshots. When set, snapshots are written as a full base snapshot followed
+   * by deltas against it, and retention never deletes the base of the current chain. Only applies to Persisted and
+   * Direct mode, and is rejected in Ephemeral and Deferred mode.
+   *
+   * @return
+   *   Optional delta snapshot configuration
+   */
+  def deltaSnapshotConfig: Option[DeltaSnapshotConfig[S]]
+
+  /**
+   * Get the maximum time to wait for the journal to acknowledge a write. When it elapses, the write is treated as
+   * failed: the `onFailure` callback of the write is invoked if given, otherwise the actor fails. Whether the events
+   * were stored is unknown at that point, so the actor should be stopped or restarted to recover the journal state.
+   * Only applies to Persisted and Direct mode without pipelining, and is rejected with `maxInFlightPersists` greater
+   * than 1, with `batchingConfig`, and in Ephemeral and Deferred mode.
+   *
+   * @return
+   *   Optional persist timeout
+   */
+  def persistTimeout: Option[FiniteDuration]
+
+  /**
+   * Get the strategy applied to messages that arrive while `stashSize` messages are already stashed, during recovery or
+   * while waiting for a write.
+   *
+   * @return
+   *   Stash overflow strategy
+   */
+  def stashOverflowStrategy: StashOverflowStrategy[M]
+
+  /**
+   * Get the batching configuration of the journal writer shared with other entities. When set in Direct mode, the
+   * writes of this effector are handed to a writer shared by all effectors of the node with the same configuration,
+   * which combines the writes of many entities into one journal request once it holds `maxBatchSize` events or
+   * `maxLatency` has elapsed since its first write. Each entity still gets the replies to its own writes in order.
+   * Rejected in the other modes.
+   *
+   * @return
+   *   Optional batching configuration of the shared journal writer
+   */
+  def sharedWriteBatching: Option[BatchingConfig]
+
+  /**
+   * Get the passivation configuration. When set, the entity is passivated once it has been idle for the configured
+   * timeout: a snapshot is optionally saved, the persistence store actor is stopped and the actor stops, or is passed
+   * the passivation message. Ignored in Deferred mode.
+   *
+   * @return
+   *   Optional passivation configuration
+   */
+  def passivation: Option[PassivationConfig[M]]
+
+  /**
+   * Get the recovery configuration. When set in Persisted or Direct mode, replayed events are folded in chunks,
+   * optionally on a dedicated dispatcher, and the progress of the recovery is reported to the instrumentation after
+   * each chunk. Rejected in Ephemeral and Deferred mode.
+   *
+   * @return
+   *   Optional recovery configuration
+   */
+  def recoveryConfig: Option[RecoveryConfig]
+
+  /**
+   * Get the upcaster of replayed events. When set in Persisted or Direct mode, events read from the journal during
+   * recovery go through its chain of steps, which may upcast, drop or split them, before they are applied to the state.
+   * Rejected in Ephemeral and Deferred mode.
+   *
+   * @return
+   *   Optional event upcaster
+   */
+  def eventUpcaster: Option[EventUpcaster[E]]
+
+  /**
+   * Get the codec applied to snapshots. When set in Persisted or Direct mode, snapshots are serialized, encoded by the
+   * codec, e.g. compressed, and saved as [[EncodedSnapshot]]s, which are decoded when they are loaded during recovery.
+   * Snapshots saved without a codec are still loaded as they are. Rejected in Ephemeral and Deferred mode.
+   *
+   * @return
+   *   Optional snapshot codec
+   */
+  def snapshotCodec: Option[SnapshotCodec]
+
+  /**
+   * Get the codec of packed batches. When set in Persisted mode, the events of a multi-event persist are serialized,
+   * encoded together by the codec, e.g. compressed, and written as a single [[PackedEvents]] journal event, which is
+   * unpacked during recovery. Sequence numbers then count journal events, so a packed persist advances the sequence
+   * number by one. For that reason, packed batches are rejected with retention criteria and with snapshot criteria
+   * counting events, i.e. `every` and `adaptive`, as well as with batching and in the other modes. Event-based
+   * snapshot predicates receive the sequence number of the journal event.
+   *
+   * @return
+   *   Optional codec of packed batches
+   */
+  def packedBatchCodec: Option[SnapshotCodec]
+
+  /**
+   * Get whether the state is cached when the actor stops. When enabled in Persisted and Direct modes, the effector puts
+   * the state derived from the acknowledged events in the [[StateCache]] of the actor system when the actor stops with
+   * no write in flight, and the next actor of the entity on the same node takes it over instead of replaying the
+   * events, as long as the journal has not advanced in the meantime. Rejected in Ephemeral and Deferred mode.
+   *
+   * @return
+   *   true if the state is cached when the actor stops
+   */
+  def stateCaching: Boolean
+
   /**
    * Get the function to wrap persisted events into a message.
    *
    * @return
    *   Function to wrap events
    */
+  @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
   def wrapPersistedEvents: Seq[E] => M
 
   /**
@@ -125,12 +315,21 @@ trait PersistenceEffectorConfig[S, E, M] {
    */
   def wrapDeleteSnapshots: Long => M
 
+  /**
+   * Get the function to wrap deleted journal events information into a message.
+   *
+   * @return
+   *   Function to wrap deleted events information
+   */
+  def wrapDeletedEvents: Long => M
+
   /**
    * Get the function to extract persisted events from a message.
    *
    * @return
    *   Function to extract events
    */
+  @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
   def unwrapPersistedEvents: M => Option[Seq[E]]
 
   /**
@@ -157,6 +356,14 @@ trait PersistenceEffectorConfig[S, E, M] {
    */
   def unwrapDeleteSnapshots: M => Option[Long]
 
+  /**
+   * Get the function to extract deleted journal events information from a message.
+   *
+   * @return
+   *   Function to extract deleted events information
+   */
+  def unwrapDeletedEvents: M => Option[Long]
+
   /**
    * Create a new configuration with the specified persistence mode.
    *
@@ -216,6 +423,166 @@ trait PersistenceEffectorConfig[S, E, M] {
    *   New configuration with updated message converter
    */
   def withMessageConverter(value: MessageConverter[S, E, M]): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified maximum number of in-flight persist requests.
+   *
+   * @param value
+   *   Maximum number of in-flight persist requests (1 disables pipelining)
+   * @return
+   *   New configuration with updated maximum number of in-flight persist requests
+   */
+  def withMaxInFlightPersists(value: Int): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified batching configuration.
+   *
+   * @param value
+   *   Batching configuration to use
+   * @return
+   *   New configuration with updated batching configuration
+   */
+  def withBatchingConfig(value: BatchingConfig): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with asynchronous snapshot saving enabled or disabled.
+   *
+   * @param value
+   *   Whether snapshots are saved asynchronously
+   * @return
+   *   New configuration with updated snapshot saving mode
+   */
+  def withAsyncSnapshots(value: Boolean): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified snapshot outcome handler.
+   *
+   * @param value
+   *   Snapshot outcome handler to use
+   * @return
+   *   New configuration with updated snapshot outcome handler
+   */
+  def withSnapshotOutcomeHandler(value: SnapshotOutcome => Unit): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified instrumentation.
+   *
+   * @param value
+   *   Instrumentation to use
+   * @return
+   *   New configuration with updated instrumentation
+   */
+  def withInstrumentation(value: PersistenceEffectorInstrumentation): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified read-only command handler.
+   *
+   * @param value
+   *   Read-only command handler to use
+   * @return
+   *   New configuration with updated read-only command handler
+   */
+  def withReadOnlyCommandHandler(value: ReadOnlyCommandHandler[S, M]): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified delta snapshot configuration.
+   *
+   * @param value
+   *   Delta snapshot configuration to use
+   * @return
+   *   New configuration with updated delta snapshot configuration
+   */
+  def withDeltaSnapshotConfig(value: DeltaSnapshotConfig[S]): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified persist timeout.
+   *
+   * @param value
+   *   Maximum time to wait for the journal to acknowledge a write
+   * @return
+   *   New configuration with updated persist timeout
+   */
+  def withPersistTimeout(value: FiniteDuration): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified stash overflow strategy.
+   *
+   * @param value
+   *   Stash overflow strategy to use
+   * @return
+   *   New configuration with updated stash overflow strategy
+   */
+  def withStashOverflowStrategy(value: StashOverflowStrategy[M]): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified batching configuration of the shared journal writer.
+   *
+   * @param value
+   *   Batching configuration of the journal writer shared with other entities
+   * @return
+   *   New configuration with updated shared write batching
+   */
+  def withSharedWriteBatching(value: BatchingConfig): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified passivation configuration.
+   *
+   * @param value
+   *   Passivation configuration
+   * @return
+   *   New configuration with updated passivation
+   */
+  def withPassivation(value: PassivationConfig[M]): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified recovery configuration.
+   *
+   * @param value
+   *   Recovery configuration
+   * @return
+   *   New configuration with updated recovery configuration
+   */
+  def withRecoveryConfig(value: RecoveryConfig): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified event upcaster.
+   *
+   * @param value
+   *   Upcaster of replayed events
+   * @return
+   *   New configuration with updated event upcaster
+   */
+  def withEventUpcaster(value: EventUpcaster[E]): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with the specified snapshot codec.
+   *
+   * @param value
+   *   Codec applied to snapshots
+   * @return
+   *   New configuration with updated snapshot codec
+   */
+  def withSnapshotCodec(value: SnapshotCodec): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration that writes multi-event persists as packed batches encoded by the specified codec.
+   *
+   * @param value
+   *   Codec of packed batches
+   * @return
+   *   New configuration with updated codec of packed batches
+   */
+  def withPackedBatches(value: SnapshotCodec): PersistenceEffectorConfig[S, E, M]
+
+  /**
+   * Create a new configuration with state caching enabled or disabled.
+   *
+   * @param value
+   *   Whether the state is cached when the actor stops
+   * @return
+   *   New configuration with updated state caching
+   */
+  def withStateCaching(value: Boolean): PersistenceEffectorConfig[S, E, M]
 }
 
 /**
@@ -232,16 +599,75 @@ object PersistenceEffectorConfig {
     retentionCriteria: Option[RetentionCriteria],
     backoffConfig: Option[BackoffConfig],
     messageConverter: MessageConverter[S, E, M],
+    maxInFlightPersists: Int,
+    batchingConfig: Option[BatchingConfig],
+    asyncSnapshots: Boolean,
+    snapshotOutcomeHandler: SnapshotOutcome => Unit,
+    instrumentation: PersistenceEffectorInstrumentation,
+    readOnlyCommandHandler: Option[ReadOnlyCommandHandler[S, M]],
+    deltaSnapshotConfig: Option[DeltaSnapshotConfig[S]],
+    persistTimeout: Option[FiniteDuration],
+    stashOverflowStrategy: StashOverflowStrategy[M],
+    sharedWriteBatching: Option[BatchingConfig],
+    passivation: Option[PassivationConfig[M]],
+    recoveryConfig: Option[RecoveryConfig],
+    eventUpcaster: Option[EventUpcaster[E]],
+    snapshotCodec: Option[SnapshotCodec],
+    packedBatchCodec: Option[SnapshotCodec],
+    stateCaching: Boolean,
   ) extends PersistenceEffectorConfig[S, E, M] {
+    require(maxInFlightPersists >= 1, "maxInFlightPersists must be >= 1")
+    require(persistTimeout.forall(_ > Duration.Zero), "persistTimeout must be positive")
+    require(
+      persistTimeout.isEmpty || (maxInFlightPersists == 1 && batchingConfig.isEmpty),
+      "persistTimeout cannot be combined with maxInFlightPersists > 1 or batchingConfig",
+    )
+    require(
+      sharedWriteBatching.isEmpty || persistenceMode == PersistenceMode.Direct,
+      "sharedWriteBatching only applies to Direct mode",
+    )
+    require(
+      packedBatchCodec.isEmpty || (persistenceMode != PersistenceMode.Direct && batchingConfig.isEmpty),
+      "packedBatchCodec cannot be combined with Direct mode or batchingConfig",
+    )
+    require(
+      packedBatchCodec.isEmpty || (retentionCriteria.isEmpty && !snapshotCriteria.exists(_.countsSequenceNumbers)),
+      "packedBatchCodec cannot be combined with retentionCriteria or snapshotCriteria counting events, " +
+        "since sequence numbers count packed journal events",
+    )
+    if (persistenceMode == PersistenceMode.Ephemeral || persistenceMode == PersistenceMode.Deferred) {
+      val persistedOnlyOptions = Seq(
+        "maxInFlightPersists" -> (maxInFlightPersists > 1),
+        "batchingConfig" -> batchingConfig.isDefined,
+        "asyncSnapshots" -> asyncSnapshots,
+        "readOnlyCommandHandler" -> readOnlyCommandHandler.isDefined,
+        "deltaSnapshotConfig" -> deltaSnapshotConfig.isDefined,
+        "persistTimeout" -> persistTimeout.isDefined,
+        "recoveryConfig" -> recoveryConfig.isDefined,
+        "eventUpcaster" -> eventUpcaster.isDefined,
+        "snapshotCodec" -> snapshotCodec.isDefined,
+        "packedBatchCodec" -> packedBatchCodec.isDefined,
+        "stateCaching" -> stateCaching,
+      ).collect { case (name, true) => name }
+      require(
+        persistedOnlyOptions.isEmpty,
+        s"${persistedOnlyOptions.mkString(", ")} only apply to Persisted and Direct mode, not to $persistenceMode mode",
+      )
+    }
+
     override def persistenceIdAsString: String = persistenceId.asString
+    @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
     override def wrapPersistedEvents: Seq[E] => M = messageConverter.wrapPersistedEvents
     override def wrapPersistedSnapshot: S => M = messageConverter.wrapPersistedSnapshot
     override def wrapRecoveredState: S => M = messageConverter.wrapRecoveredState
     override def wrapDeleteSnapshots: Long => M = messageConverter.wrapDeleteSnapshots
+    override def wrapDeletedEvents: Long => M = messageConverter.wrapDeletedEvents
+    @deprecated("Replies to event writes are consumed by the effector and never reach the actor behavior")
     override def unwrapPersistedEvents: M => Option[Seq[E]] = messageConverter.unwrapPersistedEvents
     override def unwrapPersistedSnapshot: M => Option[S] = messageConverter.unwrapPersistedSnapshot
     override def unwrapRecoveredState: M => Option[S] = messageConverter.unwrapRecoveredState
     override def unwrapDeleteSnapshots: M => Option[Long] = messageConverter.unwrapDeleteSnapshots
+    override def unwrapDeletedEvents: M => Option[Long] = messageConverter.unwrapDeletedEvents
 
     override def withPersistenceMode(value: PersistenceMode): PersistenceEffectorConfig[S, E, M] =
       copy(persistenceMode = value)
@@ -260,6 +686,54 @@ object PersistenceEffectorConfig {
 
     override def withMessageConverter(value: MessageConverter[S, E, M]): PersistenceEffectorConfig[S, E, M] =
       copy(messageConverter = value)
+
+    override def withMaxInFlightPersists(value: Int): PersistenceEffectorConfig[S, E, M] =
+      copy(maxInFlightPersists = value)
+
+    override def withBatchingConfig(value: BatchingConfig): PersistenceEffectorConfig[S, E, M] =
+      copy(batchingConfig = Some(value))
+
+    override def withAsyncSnapshots(value: Boolean): PersistenceEffectorConfig[S, E, M] =
+      copy(asyncSnapshots = value)
+
+    override def withSnapshotOutcomeHandler(value: SnapshotOutcome => Unit): PersistenceEffectorConfig[S, E, M] =
+      copy(snapshotOutcomeHandler = value)
+
+    override def withInstrumentation(value: PersistenceEffectorInstrumentation): PersistenceEffectorConfig[S, E, M] =
+      copy(instrumentation = value)
+
+    override def withReadOnlyCommandHandler(value: ReadOnlyCommandHandler[S, M]): PersistenceEffectorConfig[S, E, M] =
+      copy(readOnlyCommandHandler = Some(value))
+
+    override def withDeltaSnapshotConfig(value: DeltaSnapshotConfig[S]): PersistenceEffectorConfig[S, E, M] =
+      copy(deltaSnapshotConfig = Some(value))
+
+    override def withPersistTimeout(value: FiniteDuration): PersistenceEffectorConfig[S, E, M] =
+      copy(persistTimeout = Some(value))
+
+    override def withStashOverflowStrategy(value: StashOverflowStrategy[M]): PersistenceEffectorConfig[S, E, M] =
+      copy(stashOverflowStrategy = value)
+
+    override def withSharedWriteBatching(value: BatchingConfig): PersistenceEffectorConfig[S, E, M] =
+      copy(sharedWriteBatching = Some(value))
+
+    override def withPassivation(value: PassivationConfig[M]): PersistenceEffectorConfig[S, E, M] =
+      copy(passivation = Some(value))
+
+    override def withRecoveryConfig(value: RecoveryConfig): PersistenceEffectorConfig[S, E, M] =
+      copy(recoveryConfig = Some(value))
+
+    override def withEventUpcaster(value: EventUpcaster[E]): PersistenceEffectorConfig[S, E, M] =
+      copy(eventUpcaster = Some(value))
+
+    override def withSnapshotCodec(value: SnapshotCodec): PersistenceEffectorConfig[S, E, M] =
+      copy(snapshotCodec = Some(value))
+
+    override def withPackedBatches(value: SnapshotCodec): PersistenceEffectorConfig[S, E, M] =
+      copy(packedBatchCodec = Some(value))
+
+    override def withStateCaching(value: Boolean): PersistenceEffectorConfig[S, E, M] =
+      copy(stateCaching = value)
   }
 
   def unapply[S, E, M](self: PersistenceEffectorConfig[S, E, M]): Option[(
@@ -307,6 +781,38 @@ object PersistenceEffectorConfig {
    *   Backoff configuration (default: None)
    * @param messageConverter
    *   Message converter (default: default functions)
+   * @param maxInFlightPersists
+   *   Maximum number of in-flight persist requests (default: 1)
+   * @param batchingConfig
+   *   Batching configuration (default: None)
+   * @param asyncSnapshots
+   *   Whether snapshots are saved asynchronously (default: false)
+   * @param snapshotOutcomeHandler
+   *   Handler notified of snapshot outcomes (default: no-op)
+   * @param instrumentation
+   *   Instrumentation (default: PersistenceEffectorInstrumentation.NoOp)
+   * @param readOnlyCommandHandler
+   *   Handler for read-only messages (default: None)
+   * @param deltaSnapshotConfig
+   *   Delta snapshot configuration (default: None)
+   * @param persistTimeout
+   *   Maximum time to wait for a write to be acknowledged (default: None)
+   * @param stashOverflowStrategy
+   *   Strategy for messages that arrive while the stash is full (default: Fail)
+   * @param sharedWriteBatching
+   *   Batching configuration of the journal writer shared with other entities in Direct mode (default: None)
+   * @param passivation
+   *   Passivation of the entity when idle (default: None)
+   * @param recoveryConfig
+   *   Chunked recovery with progress reporting in Persisted and Direct modes (default: None)
+   * @param eventUpcaster
+   *   Upcaster of the events replayed in Persisted and Direct modes (default: None)
+   * @param snapshotCodec
+   *   Codec applied to snapshots in Persisted and Direct modes (default: None)
+   * @param packedBatchCodec
+   *   Codec of the multi-event persists written as a single journal event in Persisted mode (default: None)
+   * @param stateCaching
+   *   Whether the state is cached when the actor stops in Persisted and Direct modes (default: false)
    * @tparam S
    *   Type of state
    * @tparam E
@@ -326,6 +832,22 @@ object PersistenceEffectorConfig {
     retentionCriteria: Option[RetentionCriteria] = None,
     backoffConfig: Option[BackoffConfig] = None,
     messageConverter: MessageConverter[S, E, M] = MessageConverter.defaultFunctions[S, E, M],
+    maxInFlightPersists: Int = 1,
+    batchingConfig: Option[BatchingConfig] = None,
+    asyncSnapshots: Boolean = false,
+    snapshotOutcomeHandler: SnapshotOutcome => Unit = _ => (),
+    instrumentation: PersistenceEffectorInstrumentation = PersistenceEffectorInstrumentation.NoOp,
+    readOnlyCommandHandler: Option[ReadOnlyCommandHandler[S, M]] = None,
+    deltaSnapshotConfig: Option[DeltaSnapshotConfig[S]] = None,
+    persistTimeout: Option[FiniteDuration] = None,
+    stashOverflowStrategy: StashOverflowStrategy[M] = StashOverflowStrategy.Fail,
+    sharedWriteBatching: Option[BatchingConfig] = None,
+    passivation: Option[PassivationConfig[M]] = None,
+    recoveryConfig: Option[RecoveryConfig] = None,
+    eventUpcaster: Option[EventUpcaster[E]] = None,
+    snapshotCodec: Option[SnapshotCodec] = None,
+    packedBatchCodec: Option[SnapshotCodec] = None,
+    stateCaching: Boolean = false,
   ): PersistenceEffectorConfig[S, E, M] =
     new Impl[S, E, M](
       persistenceId = persistenceId,
@@ -337,6 +859,22 @@ object PersistenceEffectorConfig {
       retentionCriteria = retentionCriteria,
       backoffConfig = backoffConfig,
       messageConverter = messageConverter,
+      maxInFlightPersists = maxInFlightPersists,
+      batchingConfig = batchingConfig,
+      asyncSnapshots = asyncSnapshots,
+      snapshotOutcomeHandler = snapshotOutcomeHandler,
+      instrumentation = instrumentation,
+      readOnlyCommandHandler = readOnlyCommandHandler,
+      deltaSnapshotConfig = deltaSnapshotConfig,
+      persistTimeout = persistTimeout,
+      stashOverflowStrategy = stashOverflowStrategy,
+      sharedWriteBatching = sharedWriteBatching,
+      passivation = passivation,
+      recoveryConfig = recoveryConfig,
+      eventUpcaster = eventUpcaster,
+      snapshotCodec = snapshotCodec,
+      packedBatchCodec = packedBatchCodec,
+      stateCaching = stateCaching,
     )
 
 }
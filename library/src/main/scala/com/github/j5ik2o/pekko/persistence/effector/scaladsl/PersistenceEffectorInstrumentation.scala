@@ -0,0 +1,151 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+/**
+ * Instrumentation SPI notified of the operations of the PersistenceEffector in Persisted mode. All methods do nothing
+ * by default, so implementations only override the events they are interested in.
+ *
+ * Methods are invoked on the threads of the actors using the effector, concurrently for different entities, so
+ * implementations must be thread-safe and must not block.
+ */
+trait PersistenceEffectorInstrumentation {
+
+  /**
+   * Called when a write operation has completed successfully.
+   *
+   * @param persistenceId
+   *   Persistence ID of the entity
+   * @param operation
+   *   Kind of operation
+   * @param durationNanos
+   *   Time between the request reaching the persistence store actor and its completion, in nanoseconds
+   */
+  def persistCompleted(persistenceId: PersistenceId, operation: PersistenceOperation, durationNanos: Long): Unit = ()
+
+  /**
+   * Called when a write operation has failed or has been rejected by the journal.
+   *
+   * @param persistenceId
+   *   Persistence ID of the entity
+   * @param operation
+   *   Kind of operation
+   * @param cause
+   *   Cause of the failure
+   */
+  def persistFailed(persistenceId: PersistenceId, operation: PersistenceOperation, cause: Throwable): Unit = ()
+
+  /**
+   * Called when a message is stashed while the effector recovers or waits for a write to complete.
+   *
+   * @param persistenceId
+   *   Persistence ID of the entity
+   * @param stashDepth
+   *   Number of stashed messages, including this one
+   */
+  def messageStashed(persistenceId: PersistenceId, stashDepth: Int): Unit = ()
+
+  /**
+   * Called when a message arrives while the stash is full, before the stash overflow strategy is applied.
+   *
+   * @param persistenceId
+   *   Persistence ID of the entity
+   * @param stashDepth
+   *   Number of stashed messages
+   */
+  def stashOverflowed(persistenceId: PersistenceId, stashDepth: Int): Unit = ()
+
+  /**
+   * Called when recovery has completed.
+   *
+   * @param persistenceId
+   *   Persistence ID of the entity
+   * @param durationNanos
+   *   Duration of the recovery, in nanoseconds
+   * @param replayedEvents
+   *   Number of events replayed
+   * @param snapshotHit
+   *   Whether recovery started from a snapshot
+   */
+  def recoveryCompleted(
+    persistenceId: PersistenceId,
+    durationNanos: Long,
+    replayedEvents: Long,
+    snapshotHit: Boolean,
+  ): Unit = ()
+
+  /**
+   * Called after each chunk of replayed events during a chunked recovery (see [[RecoveryConfig]]).
+   *
+   * @param persistenceId
+   *   Persistence ID of the entity
+   * @param replayedEvents
+   *   Number of events replayed so far
+   * @param elapsedNanos
+   *   Time since the recovery started, in nanoseconds
+   */
+  def recoveryProgress(persistenceId: PersistenceId, replayedEvents: Long, elapsedNanos: Long): Unit = ()
+
+  /**
+   * Called when a snapshot is saved, with its serialized size. Computing the size serializes the snapshot once more, so
+   * this is only done when instrumentation other than [[PersistenceEffectorInstrumentation.NoOp]] is configured.
+   *
+   * @param persistenceId
+   *   Persistence ID of the entity
+   * @param sizeInBytes
+   *   Serialized size of the snapshot
+   */
+  def snapshotSerialized(persistenceId: PersistenceId, sizeInBytes: Long): Unit = ()
+
+  /**
+   * Called when a snapshot has been encoded by the configured [[SnapshotCodec]], before it is saved.
+   *
+   * @param persistenceId
+   *   Persistence ID of the entity
+   * @param rawSizeInBytes
+   *   Serialized size of the snapshot
+   * @param encodedSizeInBytes
+   *   Size of the snapshot after encoding
+   * @param durationNanos
+   *   Time to serialize and encode the snapshot, in nanoseconds
+   */
+  def snapshotEncoded(
+    persistenceId: PersistenceId,
+    rawSizeInBytes: Long,
+    encodedSizeInBytes: Long,
+    durationNanos: Long,
+  ): Unit = ()
+
+  /**
+   * Called when an encoded snapshot has been decoded during recovery.
+   *
+   * @param persistenceId
+   *   Persistence ID of the entity
+   * @param encodedSizeInBytes
+   *   Size of the encoded snapshot
+   * @param durationNanos
+   *   Time to decode and deserialize the snapshot, in nanoseconds
+   */
+  def snapshotDecoded(persistenceId: PersistenceId, encodedSizeInBytes: Long, durationNanos: Long): Unit = ()
+}
+
+/**
+ * Companion object for PersistenceEffectorInstrumentation.
+ */
+object PersistenceEffectorInstrumentation {
+
+  /**
+   * Instrumentation that ignores all events. The effector skips timing and snapshot serialization entirely when it is
+   * configured, so it adds no overhead.
+   */
+  val NoOp: PersistenceEffectorInstrumentation = new PersistenceEffectorInstrumentation {}
+
+  /**
+   * Whether the instrumentation has to be notified.
+   *
+   * @param instrumentation
+   *   Instrumentation to check
+   * @return
+   *   false for [[NoOp]], true otherwise
+   */
+  private[effector] def isEnabled(instrumentation: PersistenceEffectorInstrumentation): Boolean =
+    instrumentation ne NoOp
+}
@@ -12,6 +12,16 @@ enum PersistenceMode {
    */
   case Persisted
 
+  /**
+   * Persistence mode where events are saved to disk like [[Persisted]], but written by the effector directly to the
+   * journal plugin actor shared by the entities of the node, instead of through the persistence store actor of the
+   * entity. This saves two message hops per write, which matters for latency-sensitive entities. Sequence numbers and
+   * the ordering of writes are the same as in [[Persisted]] mode. Recovery, snapshots and deletions still go through
+   * the persistence store actor, so a snapshot requested while writes are in flight (pipelined mode) may be saved
+   * before they are acknowledged.
+   */
+  case Direct
+
   /**
    * In-memory persistence mode where events and snapshots are only kept in memory. This mode is faster but does not
    * provide durability across application restarts. Useful for testing or scenarios where persistence is not required.
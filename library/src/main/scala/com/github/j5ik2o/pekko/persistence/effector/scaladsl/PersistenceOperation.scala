@@ -0,0 +1,33 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+/**
+ * Enumeration representing the kinds of write operations performed by the PersistenceEffector, as reported to
+ * [[PersistenceEffectorInstrumentation]].
+ */
+enum PersistenceOperation {
+
+  /**
+   * Persisting a single event
+   */
+  case SingleEvent
+
+  /**
+   * Persisting multiple events atomically
+   */
+  case MultipleEvents
+
+  /**
+   * Saving a snapshot
+   */
+  case Snapshot
+
+  /**
+   * Deleting old snapshots
+   */
+  case DeleteSnapshots
+
+  /**
+   * Deleting journal events covered by the oldest kept snapshot
+   */
+  case DeleteEvents
+}
@@ -0,0 +1,87 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+/**
+ * Handler for read-only messages in Scala API. While the effector waits for a write to complete, messages classified as
+ * read-only are handled against the last confirmed state instead of being stashed, so queries are not delayed by the
+ * journal latency.
+ *
+ * The confirmed state is the state derived from the events acknowledged by the journal, so it never includes events
+ * that are still in flight. Read-only messages may therefore be answered before messages stashed earlier, and must not
+ * change the state of the actor.
+ *
+ * @tparam S
+ *   Type of state
+ * @tparam M
+ *   Type of message
+ */
+trait ReadOnlyCommandHandler[S, M] {
+
+  /**
+   * Whether the message is read-only in the confirmed state.
+   *
+   * @param state
+   *   Last confirmed state
+   * @param message
+   *   Received message
+   * @return
+   *   true if the message can be handled against the confirmed state
+   */
+  def isReadOnly(state: S, message: M): Boolean
+
+  /**
+   * Handle a read-only message, typically by replying to it.
+   *
+   * @param state
+   *   Last confirmed state
+   * @param message
+   *   Read-only message
+   */
+  def handle(state: S, message: M): Unit
+}
+
+/**
+ * Companion object for ReadOnlyCommandHandler. Provides factory methods to create handlers.
+ */
+object ReadOnlyCommandHandler {
+
+  private final case class Impl[S, M](
+    isReadOnlyFunction: (S, M) => Boolean,
+    handleFunction: (S, M) => Unit,
+  ) extends ReadOnlyCommandHandler[S, M] {
+    override def isReadOnly(state: S, message: M): Boolean = isReadOnlyFunction(state, message)
+    override def handle(state: S, message: M): Unit = handleFunction(state, message)
+  }
+
+  /**
+   * Create a ReadOnlyCommandHandler from a predicate and a handler function.
+   *
+   * @param isReadOnly
+   *   Predicate classifying messages as read-only
+   * @param handle
+   *   Function handling a read-only message against the confirmed state
+   * @tparam S
+   *   Type of state
+   * @tparam M
+   *   Type of message
+   * @return
+   *   ReadOnlyCommandHandler instance
+   */
+  def apply[S, M](isReadOnly: (S, M) => Boolean)(handle: (S, M) => Unit): ReadOnlyCommandHandler[S, M] =
+    Impl(isReadOnly, handle)
+
+  /**
+   * Create a ReadOnlyCommandHandler from a partial function. Pairs of confirmed state and message for which the partial
+   * function is defined are read-only.
+   *
+   * @param handler
+   *   Partial function handling read-only messages against the confirmed state
+   * @tparam S
+   *   Type of state
+   * @tparam M
+   *   Type of message
+   * @return
+   *   ReadOnlyCommandHandler instance
+   */
+  def fromPartialFunction[S, M](handler: PartialFunction[(S, M), Unit]): ReadOnlyCommandHandler[S, M] =
+    Impl((state, message) => handler.isDefinedAt((state, message)), (state, message) => handler((state, message)))
+}
@@ -0,0 +1,51 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+/**
+ * Configuration for the recovery of an entity in Persisted and Direct modes. Replayed events are collected in chunks of
+ * `chunkSize` events, which are folded into the state one after the other, and the progress of the recovery is reported
+ * to [[PersistenceEffectorInstrumentation.recoveryProgress]] after each chunk.
+ *
+ * With a dispatcher, the chunks are folded on it while the journal keeps replaying, so that recovering an entity with a
+ * long journal does not hold a thread of the dispatcher of the actors. `applyEvent` must then be free of side effects
+ * on shared state, as it no longer runs on the actor thread; chunks waiting to be folded are held in memory.
+ */
+trait RecoveryConfig {
+
+  /**
+   * Number of replayed events folded at a time and between progress reports.
+   *
+   * @return
+   *   number of events in a chunk
+   */
+  def chunkSize: Int
+
+  /**
+   * ID of the dispatcher the chunks are folded on, or None to fold them on the actor thread.
+   *
+   * @return
+   *   Optional ID of the recovery dispatcher
+   */
+  def dispatcher: Option[String]
+}
+
+object RecoveryConfig {
+
+  private[effector] final case class Impl(chunkSize: Int = 1000, dispatcher: Option[String] = None)
+    extends RecoveryConfig
+
+  private def apply(): RecoveryConfig = Impl()
+
+  /**
+   * Default recovery configuration. Folds chunks of 1000 events on the actor thread.
+   */
+  final val Default: RecoveryConfig = apply()
+
+  def apply(chunkSize: Int, dispatcher: Option[String] = None): RecoveryConfig = {
+    require(chunkSize > 0, "chunkSize must be greater than 0")
+    Impl(chunkSize, dispatcher)
+  }
+
+  def unapply(self: RecoveryConfig): Option[(Int, Option[String])] =
+    Some((self.chunkSize, self.dispatcher))
+
+}
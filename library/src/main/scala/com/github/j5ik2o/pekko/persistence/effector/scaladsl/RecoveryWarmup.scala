@@ -0,0 +1,227 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.RecoveryWarmupActor
+import org.apache.pekko.actor.ExtendedActorSystem
+import org.apache.pekko.actor.typed.{ActorSystem, Extension, ExtensionId}
+import org.apache.pekko.stream.SystemMaterializer
+import org.apache.pekko.stream.scaladsl.Source
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.{ConcurrentHashMap, TimeoutException}
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.control.NonFatal
+
+/**
+ * Recovers many entities ahead of their first message, e.g. after a node restart or a shard rebalance.
+ *
+ * [[warmUp]] recovers a stream of persistence IDs from the journal with bounded concurrency and rate, and keeps the
+ * recovered states. When the actor of a warmed-up entity starts in Persisted mode, its effector takes the state over
+ * and only reads the highest sequence number from the journal instead of replaying the events. If the journal has
+ * advanced since the warmup, the state is discarded and the entity recovers normally.
+ *
+ * Entities whose effector has an [[EventUpcaster]] have to be warmed up with [[warmUpFromConfig]], which replays the
+ * events with the upcaster and the codecs of the effector configuration. States warmed up without an upcaster are not
+ * taken over by such entities, as they may have been derived from legacy events applied as they are.
+ *
+ * The states are kept per actor system, and each state is handed over once.
+ *
+ * @param system
+ *   Actor system in which the entities run
+ */
+final class RecoveryWarmup private (system: ActorSystem[?]) extends Extension {
+  import RecoveryWarmup.*
+
+  private val warmedStates = new ConcurrentHashMap[String, WarmedState]()
+
+  private val recoveryCounter = new AtomicLong(0L)
+
+  /**
+   * Recover the given entities and keep their states for their actors. Entities that fail to recover or time out are
+   * skipped and recover normally when their actor starts.
+   *
+   * @param persistenceIds
+   *   Persistence IDs of the entities to recover
+   * @param initialState
+   *   Initial state, as configured for the effector of the entities
+   * @param applyEvent
+   *   Function to apply events to state, as configured for the effector of the entities
+   * @param config
+   *   Warmup configuration
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   * @return
+   *   Future completed with the number of recovered entities once the stream is exhausted
+   */
+  def warmUp[S, E](
+    persistenceIds: Source[PersistenceId, ?],
+    initialState: S,
+    applyEvent: (S, E) => S,
+    config: RecoveryWarmupConfig = RecoveryWarmupConfig.Default,
+  ): Future[Int] =
+    warmUpWith(persistenceIds, RecoverySettings[S, E](initialState, applyEvent, None, None, None), config)
+
+  /**
+   * Recover the given entities as their effector would, with the event upcaster and the codecs of its configuration,
+   * and keep their states for their actors. Entities that fail to recover or time out are skipped and recover normally
+   * when their actor starts.
+   *
+   * @param persistenceIds
+   *   Persistence IDs of the entities to recover
+   * @param effectorConfig
+   *   Configuration of the effector of the entities
+   * @param config
+   *   Warmup configuration
+   * @tparam S
+   *   Type of state
+   * @tparam E
+   *   Type of event
+   * @return
+   *   Future completed with the number of recovered entities once the stream is exhausted
+   */
+  def warmUpFromConfig[S, E](
+    persistenceIds: Source[PersistenceId, ?],
+    effectorConfig: PersistenceEffectorConfig[S, E, ?],
+    config: RecoveryWarmupConfig = RecoveryWarmupConfig.Default,
+  ): Future[Int] =
+    warmUpWith(
+      persistenceIds,
+      RecoverySettings(
+        effectorConfig.initialState,
+        effectorConfig.applyEvent,
+        effectorConfig.eventUpcaster,
+        effectorConfig.snapshotCodec,
+        effectorConfig.packedBatchCodec,
+      ),
+      config,
+    )
+
+  private def warmUpWith[S, E](
+    persistenceIds: Source[PersistenceId, ?],
+    settings: RecoverySettings[S, E],
+    config: RecoveryWarmupConfig,
+  ): Future[Int] = {
+    given ExecutionContext = system.executionContext
+    removeExpired()
+    persistenceIds
+      .throttle(config.maxRecoveriesPerSecond, 1.second)
+      .mapAsyncUnordered(config.parallelism) { persistenceId =>
+        recover(persistenceId, settings, config)
+          .map { case (state, sequenceNr) =>
+            val expiresAtNanos = System.nanoTime() + config.timeToLive.toNanos
+            val upcast = settings.eventUpcaster.isDefined
+            warmedStates.put(persistenceId.asString, WarmedState(state, sequenceNr, expiresAtNanos, upcast))
+            1
+          }
+          .recover { case NonFatal(cause) =>
+            system.log.warn(s"Failed to warm up ${persistenceId.asString}", cause)
+            0
+          }
+      }
+      .runFold(0)(_ + _)(using SystemMaterializer(system).materializer)
+  }
+
+  /**
+   * Get the number of recovered states that have not been handed over yet.
+   *
+   * @return
+   *   Number of recovered states
+   */
+  def warmedCount: Int = warmedStates.size()
+
+  /**
+   * Discard all recovered states.
+   */
+  def clear(): Unit = warmedStates.clear()
+
+  /**
+   * Take the recovered state of an entity, if it has not expired.
+   *
+   * @param persistenceId
+   *   Persistence ID of the entity
+   * @param upcasts
+   *   Whether the effector of the entity upcasts replayed events, in which case only states recovered with an upcaster
+   *   are taken
+   * @tparam S
+   *   Type of state
+   * @return
+   *   The recovered state and its sequence number
+   */
+  private[effector] def take[S](persistenceId: PersistenceId, upcasts: Boolean): Option[(S, Long)] =
+    Option(warmedStates.remove(persistenceId.asString))
+      .filterNot(_.isExpired(System.nanoTime()))
+      .filter(warmed => warmed.upcast || !upcasts)
+      .map(warmed => (warmed.state.asInstanceOf[S], warmed.sequenceNr))
+
+  private def recover[S, E](
+    persistenceId: PersistenceId,
+    settings: RecoverySettings[S, E],
+    config: RecoveryWarmupConfig,
+  ): Future[(S, Long)] = {
+    val result = Promise[(S, Long)]()
+    // Top-level actors cannot be created next to a custom user guardian, so recover under the system guardian
+    val actorRef = system.classicSystem
+      .asInstanceOf[ExtendedActorSystem]
+      .systemActorOf(
+        RecoveryWarmupActor.props(
+          persistenceId,
+          settings.initialState,
+          settings.applyEvent,
+          settings.eventUpcaster,
+          settings.snapshotCodec,
+          settings.packedBatchCodec,
+          result,
+        ),
+        s"recoveryWarmup-${recoveryCounter.incrementAndGet()}",
+      )
+    val timeout = system.scheduler.scheduleOnce(
+      config.recoveryTimeout,
+      () =>
+        if (result.tryFailure(new TimeoutException(s"Recovery of ${persistenceId.asString} timed out"))) {
+          system.classicSystem.stop(actorRef)
+        },
+    )(using system.executionContext)
+    result.future.onComplete(_ => timeout.cancel())(using ExecutionContext.parasitic)
+    result.future
+  }
+
+  private def removeExpired(): Unit = {
+    val now = System.nanoTime()
+    warmedStates.values().removeIf(_.isExpired(now))
+  }
+}
+
+/**
+ * Companion object for RecoveryWarmup.
+ */
+object RecoveryWarmup extends ExtensionId[RecoveryWarmup] {
+
+  override def createExtension(system: ActorSystem[?]): RecoveryWarmup = new RecoveryWarmup(system)
+
+  /**
+   * Java API: get the RecoveryWarmup extension of the actor system.
+   *
+   * @param system
+   *   Actor system
+   * @return
+   *   RecoveryWarmup extension
+   */
+  def get(system: ActorSystem[?]): RecoveryWarmup = apply(system)
+
+  /**
+   * How the events of the entities are replayed, as configured for their effector.
+   */
+  private final case class RecoverySettings[S, E](
+    initialState: S,
+    applyEvent: (S, E) => S,
+    eventUpcaster: Option[EventUpcaster[E]],
+    snapshotCodec: Option[SnapshotCodec],
+    packedBatchCodec: Option[SnapshotCodec],
+  )
+
+  private final case class WarmedState(state: Any, sequenceNr: Long, expiresAtNanos: Long, upcast: Boolean) {
+    def isExpired(now: Long): Boolean = expiresAtNanos - now <= 0
+  }
+}
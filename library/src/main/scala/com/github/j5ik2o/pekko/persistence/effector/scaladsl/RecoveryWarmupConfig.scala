@@ -0,0 +1,79 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+import scala.concurrent.duration.{Duration, DurationInt, FiniteDuration}
+
+/**
+ * Configuration for warming up entities with [[RecoveryWarmup]]. Limits how hard the warmup hits the journal and how
+ * long recovered states are kept for their actors.
+ */
+trait RecoveryWarmupConfig {
+
+  /**
+   * Maximum number of recoveries running at the same time.
+   *
+   * @return
+   *   maximum number of concurrent recoveries
+   */
+  def parallelism: Int
+
+  /**
+   * Maximum number of recoveries started per second.
+   *
+   * @return
+   *   maximum recovery rate
+   */
+  def maxRecoveriesPerSecond: Int
+
+  /**
+   * Maximum duration of the recovery of a single entity. Entities that take longer are skipped and recover normally
+   * when their actor starts.
+   *
+   * @return
+   *   recovery timeout
+   */
+  def recoveryTimeout: FiniteDuration
+
+  /**
+   * How long a recovered state is kept for its actor. States that are not picked up in time are discarded, and the
+   * actor recovers from the journal instead.
+   *
+   * @return
+   *   time to live of recovered states
+   */
+  def timeToLive: FiniteDuration
+}
+
+object RecoveryWarmupConfig {
+
+  private[effector] final case class Impl(
+    parallelism: Int = 16,
+    maxRecoveriesPerSecond: Int = 500,
+    recoveryTimeout: FiniteDuration = 30.seconds,
+    timeToLive: FiniteDuration = 5.minutes,
+  ) extends RecoveryWarmupConfig
+
+  private def apply(): RecoveryWarmupConfig = Impl()
+
+  /**
+   * Default warmup configuration. Runs up to 16 recoveries at a time, starts at most 500 per second, times out after 30
+   * seconds and keeps recovered states for 5 minutes.
+   */
+  final val Default: RecoveryWarmupConfig = apply()
+
+  def apply(
+    parallelism: Int,
+    maxRecoveriesPerSecond: Int,
+    recoveryTimeout: FiniteDuration,
+    timeToLive: FiniteDuration,
+  ): RecoveryWarmupConfig = {
+    require(parallelism > 0, "parallelism must be greater than 0")
+    require(maxRecoveriesPerSecond > 0, "maxRecoveriesPerSecond must be greater than 0")
+    require(recoveryTimeout > Duration.Zero, "recoveryTimeout must be greater than 0")
+    require(timeToLive > Duration.Zero, "timeToLive must be greater than 0")
+    Impl(parallelism, maxRecoveriesPerSecond, recoveryTimeout, timeToLive)
+  }
+
+  def unapply(self: RecoveryWarmupConfig): Option[(Int, Int, FiniteDuration, FiniteDuration)] =
+    Some((self.parallelism, self.maxRecoveriesPerSecond, self.recoveryTimeout, self.timeToLive))
+
+}
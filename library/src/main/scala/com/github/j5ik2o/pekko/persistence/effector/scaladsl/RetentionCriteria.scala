@@ -6,6 +6,25 @@ package com.github.j5ik2o.pekko.persistence.effector.scaladsl
 trait RetentionCriteria {
   def snapshotEvery: Option[Int]
   def keepNSnapshots: Option[Int]
+
+  /**
+   * Whether journal events covered by the oldest kept snapshot are deleted once old snapshots have been deleted. Only
+   * applies to Persisted mode.
+   *
+   * @return
+   *   true if events are deleted with old snapshots
+   */
+  def deleteEventsOnSnapshot: Boolean
+
+  /**
+   * Create a new retention criteria with the specified journal event deletion setting.
+   *
+   * @param value
+   *   true to delete journal events up to the oldest kept snapshot
+   * @return
+   *   New retention criteria with updated setting
+   */
+  def withDeleteEventsOnSnapshot(value: Boolean): RetentionCriteria
 }
 
 object RetentionCriteria {
@@ -13,7 +32,11 @@ object RetentionCriteria {
   private final case class Impl(
     snapshotEvery: Option[Int] = None,
     keepNSnapshots: Option[Int] = None,
-  ) extends RetentionCriteria
+    deleteEventsOnSnapshot: Boolean = false,
+  ) extends RetentionCriteria {
+    override def withDeleteEventsOnSnapshot(value: Boolean): RetentionCriteria =
+      copy(deleteEventsOnSnapshot = value)
+  }
 
   def unapply(self: RetentionCriteria): Option[(Option[Int], Option[Int])] =
     Some((self.snapshotEvery, self.keepNSnapshots))
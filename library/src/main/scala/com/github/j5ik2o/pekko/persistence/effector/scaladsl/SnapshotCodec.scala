@@ -0,0 +1,122 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+import java.io.ByteArrayOutputStream
+import java.util.zip.{Deflater, Inflater}
+
+/**
+ * Codec applied to the serialized form of snapshots, e.g. to compress large states. When configured, the persistence
+ * store actor serializes each snapshot with the serializer bound to its class, encodes the bytes with the codec and
+ * saves them as an [[EncodedSnapshot]], which is decoded and deserialized again when it is offered during recovery.
+ *
+ * Implementations must be thread-safe, as a codec is shared by the actors of all entities using the configuration.
+ */
+trait SnapshotCodec {
+
+  /**
+   * Identifier of the codec, stored with each encoded snapshot to select the codec that decodes it. It must not change
+   * as long as snapshots encoded by the codec are kept.
+   *
+   * @return
+   *   identifier of the codec
+   */
+  def id: String
+
+  /**
+   * Encode the serialized form of a snapshot.
+   *
+   * @param bytes
+   *   Serialized snapshot
+   * @return
+   *   Encoded snapshot
+   */
+  def encode(bytes: Array[Byte]): Array[Byte]
+
+  /**
+   * Decode bytes produced by [[encode]].
+   *
+   * @param bytes
+   *   Encoded snapshot
+   * @return
+   *   Serialized snapshot
+   */
+  def decode(bytes: Array[Byte]): Array[Byte]
+}
+
+/**
+ * Companion object for SnapshotCodec. Provides the codecs available without additional dependencies.
+ */
+object SnapshotCodec {
+
+  /**
+   * Identifier of the codecs created by [[deflate]]
+   */
+  final val DeflateId = "deflate"
+
+  private final class DeflateCodec(level: Int) extends SnapshotCodec {
+    override def id: String = DeflateId
+
+    override def encode(bytes: Array[Byte]): Array[Byte] = {
+      val deflater = new Deflater(level)
+      try {
+        deflater.setInput(bytes)
+        deflater.finish()
+        drain(bytes.length, deflater.finished(), deflater.deflate)
+      } finally deflater.end()
+    }
+
+    override def decode(bytes: Array[Byte]): Array[Byte] = {
+      val inflater = new Inflater()
+      try {
+        inflater.setInput(bytes)
+        drain(
+          bytes.length * 2,
+          inflater.finished(),
+          { buffer =>
+            val read = inflater.inflate(buffer)
+            if (read == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary()))
+              throw new IllegalArgumentException("Truncated deflate snapshot")
+            read
+          },
+        )
+      } finally inflater.end()
+    }
+
+    private def drain(sizeHint: Int, finished: => Boolean, read: Array[Byte] => Int): Array[Byte] = {
+      val output = new ByteArrayOutputStream(math.max(sizeHint, 64))
+      val buffer = new Array[Byte](8192)
+      while (!finished) output.write(buffer, 0, read(buffer))
+      output.toByteArray
+    }
+  }
+
+  /**
+   * Create a codec compressing snapshots with DEFLATE from `java.util.zip`.
+   *
+   * @param level
+   *   Compression level from 0 to 9 (default: `Deflater.BEST_SPEED`, which favors speed over ratio)
+   * @return
+   *   SnapshotCodec instance
+   */
+  def deflate(level: Int = Deflater.BEST_SPEED): SnapshotCodec = {
+    require(level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION, "level must be between 0 and 9")
+    new DeflateCodec(level)
+  }
+
+  /**
+   * Codec compressing snapshots with DEFLATE at the fastest level.
+   */
+  final val Deflate: SnapshotCodec = deflate()
+
+  /**
+   * Select the codec that decodes a snapshot encoded with the given codec identifier.
+   *
+   * @param id
+   *   Identifier stored with the snapshot
+   * @param configured
+   *   Codec of the configuration, if any
+   * @return
+   *   The configured codec if it has the identifier, otherwise the built-in codec with the identifier, if any
+   */
+  private[effector] def forId(id: String, configured: Option[SnapshotCodec]): Option[SnapshotCodec] =
+    configured.filter(_.id == id).orElse(Option.when(id == DeflateId)(Deflate))
+}
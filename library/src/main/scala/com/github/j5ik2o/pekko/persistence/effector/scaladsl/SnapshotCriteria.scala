@@ -1,5 +1,7 @@
 package com.github.j5ik2o.pekko.persistence.effector.scaladsl
 
+import scala.concurrent.duration.{Duration, FiniteDuration}
+
 /**
  * Trait defining snapshot strategy. Represents conditions for determining whether a snapshot should be taken
  */
@@ -18,6 +20,72 @@ sealed trait SnapshotCriteria[S, E] {
    *   true if a snapshot should be taken
    */
   def shouldTakeSnapshot(event: E, state: S, sequenceNumber: Long): Boolean
+
+  /**
+   * Create the criteria used by one effector, i.e. by one persistence ID. Criteria that keep measurements return new
+   * [[SnapshotCriteria.Measurements]] holding them, others return themselves.
+   *
+   * @return
+   *   Criteria for one effector
+   */
+  private[effector] def instantiate(): SnapshotCriteria[S, E] = this
+
+  /**
+   * Whether the criteria count events by their sequence numbers, which count journal events rather than domain events
+   * when multi-event persists are packed.
+   *
+   * @return
+   *   true if the criteria depend on the sequence numbers
+   */
+  private[effector] def countsSequenceNumbers: Boolean = false
+
+  /**
+   * Notify the criteria that the recovery of the effector has completed.
+   *
+   * @param sequenceNumber
+   *   Sequence number of the last recovered event
+   * @param replayedEvents
+   *   Number of events replayed after the snapshot, if any
+   * @param durationNanos
+   *   Duration of the recovery, in nanoseconds
+   */
+  private[effector] def recoveryCompleted(sequenceNumber: Long, replayedEvents: Long, durationNanos: Long): Unit = ()
+
+  /**
+   * Notify the criteria that events have been sent to the journal.
+   *
+   * @param events
+   *   Events sent to the journal
+   * @param serializedSize
+   *   Function returning the serialized size of an event in bytes, only evaluated by criteria that need it
+   */
+  private[effector] def eventsPersisted(events: Seq[E], serializedSize: E => Long): Unit = ()
+
+  /**
+   * Notify the criteria that a snapshot is being saved.
+   *
+   * @param sequenceNumber
+   *   Sequence number of the snapshot
+   */
+  private[effector] def snapshotStarted(sequenceNumber: Long): Unit = ()
+
+  /**
+   * Notify the criteria that a snapshot has been saved.
+   *
+   * @param sequenceNumber
+   *   Sequence number of the snapshot
+   * @param durationNanos
+   *   Duration of the save, in nanoseconds
+   */
+  private[effector] def snapshotSaved(sequenceNumber: Long, durationNanos: Long): Unit = ()
+
+  /**
+   * Notify the criteria that a snapshot could not be saved.
+   *
+   * @param sequenceNumber
+   *   Sequence number of the snapshot
+   */
+  private[effector] def snapshotFailed(sequenceNumber: Long): Unit = ()
 }
 
 /**
@@ -51,6 +119,8 @@ object SnapshotCriteria {
 
     override def shouldTakeSnapshot(event: E, state: S, sequenceNumber: Long): Boolean =
       sequenceNumber % every == 0
+
+    override private[effector] def countsSequenceNumbers: Boolean = true
   }
 
   /**
@@ -69,8 +139,250 @@ object SnapshotCriteria {
       val results = criteria.map(_.shouldTakeSnapshot(event, state, sequenceNumber))
       if (requireAll) results.forall(identity) else results.exists(identity)
     }
+
+    override private[effector] def instantiate(): SnapshotCriteria[S, E] =
+      copy(criteria = criteria.map(_.instantiate()))
+
+    override private[effector] def countsSequenceNumbers: Boolean =
+      criteria.exists(_.countsSequenceNumbers)
+
+    override private[effector] def recoveryCompleted(
+      sequenceNumber: Long,
+      replayedEvents: Long,
+      durationNanos: Long,
+    ): Unit =
+      criteria.foreach(_.recoveryCompleted(sequenceNumber, replayedEvents, durationNanos))
+
+    override private[effector] def eventsPersisted(events: Seq[E], serializedSize: E => Long): Unit =
+      criteria.foreach(_.eventsPersisted(events, serializedSize))
+
+    override private[effector] def snapshotStarted(sequenceNumber: Long): Unit =
+      criteria.foreach(_.snapshotStarted(sequenceNumber))
+
+    override private[effector] def snapshotSaved(sequenceNumber: Long, durationNanos: Long): Unit =
+      criteria.foreach(_.snapshotSaved(sequenceNumber, durationNanos))
+
+    override private[effector] def snapshotFailed(sequenceNumber: Long): Unit =
+      criteria.foreach(_.snapshotFailed(sequenceNumber))
+  }
+
+  /**
+   * Strategy to take a snapshot once a given time has elapsed since the last one. The time is measured per effector,
+   * from its start or from the start of the last snapshot save, and checked when an event is persisted with a snapshot
+   * candidate. The criteria itself holds no measurements; evaluated directly, it answers as for an effector that has
+   * just started.
+   *
+   * @param interval
+   *   Minimum time between two snapshots
+   */
+  final case class TimeBased[S, E](
+    interval: FiniteDuration,
+  ) extends SnapshotCriteria[S, E] {
+    require(interval > Duration.Zero, "interval must be greater than 0")
+
+    override def shouldTakeSnapshot(event: E, state: S, sequenceNumber: Long): Boolean =
+      instantiate().shouldTakeSnapshot(event, state, sequenceNumber)
+
+    override private[effector] def instantiate(): SnapshotCriteria[S, E] = new TimeBasedMeasurements(this)
   }
 
+  /**
+   * Strategy to take a snapshot once the events written since the last one reach a given serialized size. Event sizes
+   * are accumulated per effector, from its start or from the start of the last snapshot save. The criteria itself holds
+   * no measurements; evaluated directly, it answers as for an effector that has just started.
+   *
+   * The journal serializes the events itself and does not report their size, so without `eventSize` each event is
+   * serialized a second time with its Pekko serializer when it is persisted, only to be measured. Give `eventSize`
+   * when the size can be estimated more cheaply, e.g. from the fields of the event.
+   *
+   * @param maxBytes
+   *   Serialized size of the events between two snapshots, in bytes
+   * @param eventSize
+   *   Function estimating the serialized size of an event in bytes, or None to serialize each event to measure it
+   */
+  final case class SizeBased[S, E](
+    maxBytes: Long,
+    eventSize: Option[E => Long] = None,
+  ) extends SnapshotCriteria[S, E] {
+    require(maxBytes > 0, "maxBytes must be greater than 0")
+
+    override def shouldTakeSnapshot(event: E, state: S, sequenceNumber: Long): Boolean =
+      instantiate().shouldTakeSnapshot(event, state, sequenceNumber)
+
+    override private[effector] def instantiate(): SnapshotCriteria[S, E] = new SizeBasedMeasurements(this)
+  }
+
+  /**
+   * Strategy adapting the snapshot interval to the measured costs of the entity, so that the expected recovery time
+   * stays under a target while as few snapshots as possible are written.
+   *
+   * Each effector measures the replay time per event during its recovery and the time it takes to save snapshots. The
+   * recovery time after taking a snapshot is estimated as the time to load it, approximated by the time to save it,
+   * plus the time to replay the events written after it. A snapshot is taken once replaying the events written since
+   * the last one would exceed the time left by the target, i.e. at the largest interval that meets the target. Until
+   * the replay time has been measured, a snapshot is taken every `initialEvery` events. Measurements are smoothed with
+   * an exponentially weighted moving average and kept per effector, i.e. per persistence ID. The criteria itself holds
+   * no measurements; evaluated directly, it answers as for an effector that has just started.
+   *
+   * @param targetRecoveryTime
+   *   Expected recovery time to stay under
+   * @param initialEvery
+   *   Take a snapshot every N events until the replay time has been measured
+   * @param minEvery
+   *   Lower bound of the interval, in events
+   * @param maxEvery
+   *   Upper bound of the interval, in events
+   */
+  final case class Adaptive[S, E](
+    targetRecoveryTime: FiniteDuration,
+    initialEvery: Int = 100,
+    minEvery: Int = 1,
+    maxEvery: Int = 100000,
+  ) extends SnapshotCriteria[S, E] {
+    require(targetRecoveryTime > Duration.Zero, "targetRecoveryTime must be greater than 0")
+    require(minEvery > 0, "minEvery must be greater than 0")
+    require(maxEvery >= minEvery, "maxEvery must be greater than or equal to minEvery")
+    require(initialEvery >= minEvery && initialEvery <= maxEvery, "initialEvery must be between minEvery and maxEvery")
+
+    override def shouldTakeSnapshot(event: E, state: S, sequenceNumber: Long): Boolean =
+      instantiate().shouldTakeSnapshot(event, state, sequenceNumber)
+
+    override private[effector] def instantiate(): SnapshotCriteria[S, E] = new AdaptiveMeasurements(this)
+
+    override private[effector] def countsSequenceNumbers: Boolean = true
+  }
+
+  /**
+   * Measurements that one effector keeps for criteria that depend on them. Created by
+   * [[SnapshotCriteria.instantiate]], so that the case classes configuring the criteria stay immutable and can be
+   * shared between effectors.
+   *
+   * @param criteria
+   *   Criteria the measurements are kept for
+   */
+  private[effector] sealed abstract class Measurements[S, E](val criteria: SnapshotCriteria[S, E])
+    extends SnapshotCriteria[S, E] {
+    override private[effector] def instantiate(): SnapshotCriteria[S, E] = criteria.instantiate()
+
+    override private[effector] def countsSequenceNumbers: Boolean = criteria.countsSequenceNumbers
+  }
+
+  /**
+   * Measurements of [[TimeBased]] criteria.
+   */
+  private[effector] final class TimeBasedMeasurements[S, E](config: TimeBased[S, E]) extends Measurements(config) {
+    private var lastSnapshotNanos = System.nanoTime()
+    private var pendingSnapshotNanos: Option[Long] = None
+
+    override def shouldTakeSnapshot(event: E, state: S, sequenceNumber: Long): Boolean =
+      pendingSnapshotNanos.isEmpty && System.nanoTime() - lastSnapshotNanos >= config.interval.toNanos
+
+    override private[effector] def snapshotStarted(sequenceNumber: Long): Unit =
+      pendingSnapshotNanos = Some(System.nanoTime())
+
+    override private[effector] def snapshotSaved(sequenceNumber: Long, durationNanos: Long): Unit = {
+      pendingSnapshotNanos.foreach(lastSnapshotNanos = _)
+      pendingSnapshotNanos = None
+    }
+
+    override private[effector] def snapshotFailed(sequenceNumber: Long): Unit =
+      pendingSnapshotNanos = None
+  }
+
+  /**
+   * Measurements of [[SizeBased]] criteria.
+   */
+  private[effector] final class SizeBasedMeasurements[S, E](config: SizeBased[S, E]) extends Measurements(config) {
+    private var bytesSinceSnapshot = 0L
+    // Bytes covered by the snapshot being saved, if any
+    private var pendingSnapshotBytes: Option[Long] = None
+
+    override def shouldTakeSnapshot(event: E, state: S, sequenceNumber: Long): Boolean =
+      pendingSnapshotBytes.isEmpty && bytesSinceSnapshot >= config.maxBytes
+
+    override private[effector] def eventsPersisted(events: Seq[E], serializedSize: E => Long): Unit = {
+      val size = config.eventSize.getOrElse(serializedSize)
+      events.foreach(event => bytesSinceSnapshot += size(event))
+    }
+
+    override private[effector] def snapshotStarted(sequenceNumber: Long): Unit =
+      pendingSnapshotBytes = Some(bytesSinceSnapshot)
+
+    override private[effector] def snapshotSaved(sequenceNumber: Long, durationNanos: Long): Unit = {
+      pendingSnapshotBytes.foreach(bytesSinceSnapshot -= _)
+      pendingSnapshotBytes = None
+    }
+
+    override private[effector] def snapshotFailed(sequenceNumber: Long): Unit =
+      pendingSnapshotBytes = None
+  }
+
+  /**
+   * Measurements of [[Adaptive]] criteria.
+   */
+  private[effector] final class AdaptiveMeasurements[S, E](config: Adaptive[S, E]) extends Measurements(config) {
+    import config.*
+
+    // Estimated replay time per event and snapshot save time, in nanoseconds (NaN until measured)
+    private var replayNanosPerEvent = Double.NaN
+    private var snapshotNanos = Double.NaN
+
+    private var lastSnapshotSequenceNumber = 0L
+    private var pendingSnapshotSequenceNumber: Option[Long] = None
+
+    /**
+     * Get the current snapshot interval.
+     *
+     * @return
+     *   Number of events between two snapshots
+     */
+    def currentInterval: Long =
+      if (replayNanosPerEvent.isNaN) initialEvery.toLong
+      else {
+        val loadNanos = if (snapshotNanos.isNaN) 0.0 else snapshotNanos
+        val replayBudgetNanos = targetRecoveryTime.toNanos.toDouble - loadNanos
+        val interval = replayBudgetNanos / math.max(replayNanosPerEvent, 1.0)
+        math.min(math.max(interval, minEvery.toDouble), maxEvery.toDouble).toLong
+      }
+
+    override def shouldTakeSnapshot(event: E, state: S, sequenceNumber: Long): Boolean =
+      pendingSnapshotSequenceNumber.isEmpty && sequenceNumber - lastSnapshotSequenceNumber >= currentInterval
+
+    override private[effector] def recoveryCompleted(
+      sequenceNumber: Long,
+      replayedEvents: Long,
+      durationNanos: Long,
+    ): Unit = {
+      lastSnapshotSequenceNumber = sequenceNumber - replayedEvents
+      if (replayedEvents >= MinReplayedEvents) {
+        // The recovery also loaded the snapshot the events were replayed after, if any
+        val loadNanos = if (lastSnapshotSequenceNumber > 0 && !snapshotNanos.isNaN) snapshotNanos else 0.0
+        replayNanosPerEvent =
+          smooth(replayNanosPerEvent, math.max(durationNanos.toDouble - loadNanos, 0.0) / replayedEvents)
+      }
+    }
+
+    override private[effector] def snapshotStarted(sequenceNumber: Long): Unit =
+      pendingSnapshotSequenceNumber = Some(sequenceNumber)
+
+    override private[effector] def snapshotSaved(sequenceNumber: Long, durationNanos: Long): Unit = {
+      pendingSnapshotSequenceNumber = None
+      lastSnapshotSequenceNumber = math.max(lastSnapshotSequenceNumber, sequenceNumber)
+      snapshotNanos = smooth(snapshotNanos, durationNanos.toDouble)
+    }
+
+    override private[effector] def snapshotFailed(sequenceNumber: Long): Unit =
+      pendingSnapshotSequenceNumber = None
+  }
+
+  // Weight of the latest measurement in the moving averages of Adaptive
+  private final val SmoothingFactor = 0.3
+
+  // Replays shorter than this are dominated by the fixed cost of the recovery and are not measured
+  private final val MinReplayedEvents = 10
+  private def smooth(average: Double, sample: Double): Double =
+    if (average.isNaN) sample else average + SmoothingFactor * (sample - average)
+
   /**
    * Strategy to always take a snapshot
    */
@@ -94,4 +406,44 @@ object SnapshotCriteria {
    */
   def every[S, E](nth: Int): SnapshotCriteria[S, E] =
     CountBased[S, E](nth)
+
+  /**
+   * Strategy to take a snapshot once a given time has elapsed since the last one
+   *
+   * @param interval
+   *   Minimum time between two snapshots
+   */
+  def timeBased[S, E](interval: FiniteDuration): SnapshotCriteria[S, E] =
+    TimeBased[S, E](interval)
+
+  /**
+   * Strategy to take a snapshot once the events written since the last one reach a given serialized size. Each event
+   * is serialized a second time to be measured, see [[SizeBased]].
+   *
+   * @param maxBytes
+   *   Serialized size of the events between two snapshots, in bytes
+   */
+  def sizeBased[S, E](maxBytes: Long): SnapshotCriteria[S, E] =
+    SizeBased[S, E](maxBytes)
+
+  /**
+   * Strategy to take a snapshot once the estimated size of the events written since the last one reaches a given size.
+   * Unlike [[sizeBased(maxBytes:Long)*]], the events are not serialized a second time to be measured.
+   *
+   * @param maxBytes
+   *   Size of the events between two snapshots, in bytes
+   * @param eventSize
+   *   Function estimating the serialized size of an event in bytes
+   */
+  def sizeBased[S, E](maxBytes: Long, eventSize: E => Long): SnapshotCriteria[S, E] =
+    SizeBased[S, E](maxBytes, Some(eventSize))
+
+  /**
+   * Strategy to take snapshots at an interval adapted to the measured replay and snapshot costs
+   *
+   * @param targetRecoveryTime
+   *   Expected recovery time to stay under
+   */
+  def adaptive[S, E](targetRecoveryTime: FiniteDuration): SnapshotCriteria[S, E] =
+    Adaptive[S, E](targetRecoveryTime)
 }
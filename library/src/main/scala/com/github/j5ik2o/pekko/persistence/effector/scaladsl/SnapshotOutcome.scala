@@ -0,0 +1,62 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+/**
+ * Enumeration representing the outcome of a snapshot save or deletion, or of the journal event deletion that follows
+ * it, as reported to the snapshot outcome handler of the PersistenceEffectorConfig.
+ */
+enum SnapshotOutcome {
+
+  /**
+   * The snapshot was saved.
+   *
+   * @param sequenceNumber
+   *   Sequence number of the snapshot
+   */
+  case Saved(sequenceNumber: Long)
+
+  /**
+   * The snapshot could not be saved.
+   *
+   * @param sequenceNumber
+   *   Sequence number of the snapshot
+   * @param cause
+   *   Cause of the failure
+   */
+  case SaveFailed(sequenceNumber: Long, cause: Throwable)
+
+  /**
+   * Old snapshots were deleted based on the retention criteria.
+   *
+   * @param maxSequenceNumber
+   *   Maximum sequence number of the deleted snapshots
+   */
+  case Deleted(maxSequenceNumber: Long)
+
+  /**
+   * Old snapshots could not be deleted.
+   *
+   * @param maxSequenceNumber
+   *   Maximum sequence number of the snapshots to delete
+   * @param cause
+   *   Cause of the failure
+   */
+  case DeleteFailed(maxSequenceNumber: Long, cause: Throwable)
+
+  /**
+   * Journal events covered by the oldest kept snapshot were deleted based on the retention criteria.
+   *
+   * @param toSequenceNumber
+   *   Maximum sequence number of the deleted events
+   */
+  case EventsDeleted(toSequenceNumber: Long)
+
+  /**
+   * Journal events could not be deleted. The events are kept, and deletion is retried with the next snapshot.
+   *
+   * @param toSequenceNumber
+   *   Maximum sequence number of the events to delete
+   * @param cause
+   *   Cause of the failure
+   */
+  case EventsDeleteFailed(toSequenceNumber: Long, cause: Throwable)
+}
@@ -0,0 +1,36 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+/**
+ * Enumeration representing what the PersistenceEffector does with a message that arrives while the stash is full, i.e.
+ * when `stashSize` messages are already stashed during recovery or while waiting for a write. Stashing is unbounded
+ * with the default `stashSize`, so a strategy only takes effect with a bounded stash.
+ *
+ * @tparam M
+ *   Type of message
+ */
+enum StashOverflowStrategy[-M] {
+
+  /**
+   * Fail the actor with a StashOverflowException. This is the default.
+   */
+  case Fail extends StashOverflowStrategy[Any]
+
+  /**
+   * Discard the arriving message by sending it to dead letters.
+   */
+  case DropNewest extends StashOverflowStrategy[Any]
+
+  /**
+   * Discard the oldest stashed message by sending it to dead letters, and stash the arriving message.
+   */
+  case DropOldest extends StashOverflowStrategy[Any]
+
+  /**
+   * Discard the arriving message after passing it to a handler, e.g. to reply to its sender with a rejection. The
+   * handler is invoked on the actor thread and must not block.
+   *
+   * @param onRejected
+   *   Handler of the rejected message
+   */
+  case Reject[M](onRejected: M => Unit) extends StashOverflowStrategy[M]
+}
@@ -0,0 +1,137 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+import org.apache.pekko.actor.typed.{ActorSystem, Extension, ExtensionId}
+
+/**
+ * Node-local cache of the states of stopped entities, so that an entity restarted on the same node skips the replay of
+ * its events.
+ *
+ * When state caching is enabled in the configuration, the effector puts the confirmed state and its sequence number in
+ * the cache when the actor stops with no write in flight. When the actor of the entity starts again in Persisted or
+ * Direct mode, its effector takes the state over and only reads the highest sequence number from the journal instead of
+ * replaying the events. If the journal has advanced in the meantime, e.g. because the entity ran on another node, the
+ * state is discarded and the entity recovers normally.
+ *
+ * The cache is bounded by a number of entries, beyond which the least recently stopped entities are evicted. The states
+ * are kept per actor system, and each state is handed over once.
+ */
+final class StateCache private () extends Extension {
+  import StateCache.*
+
+  // Entries in the order they were put, the least recent first
+  private val entries = new java.util.LinkedHashMap[String, Entry]()
+
+  private var maxEntriesValue: Int = DefaultMaxEntries
+
+  /**
+   * Set the maximum number of cached states. Entries beyond the limit are evicted immediately.
+   *
+   * @param value
+   *   Maximum number of cached states (0 to disable the cache)
+   */
+  def setMaxEntries(value: Int): Unit = {
+    require(value >= 0, "maxEntries must be >= 0")
+    synchronized {
+      maxEntriesValue = value
+      evictOverflow()
+    }
+  }
+
+  /**
+   * Get the maximum number of cached states.
+   *
+   * @return
+   *   Maximum number of cached states
+   */
+  def maxEntries: Int = synchronized(maxEntriesValue)
+
+  /**
+   * Get the number of cached states.
+   *
+   * @return
+   *   Number of cached states
+   */
+  def size: Int = synchronized(entries.size())
+
+  /**
+   * Discard all cached states.
+   */
+  def clear(): Unit = synchronized(entries.clear())
+
+  /**
+   * Cache the state of a stopped entity, replacing any previous state of the entity.
+   *
+   * @param persistenceId
+   *   Persistence ID of the entity
+   * @param state
+   *   State derived from the events acknowledged by the journal
+   * @param sequenceNr
+   *   Sequence number of the last event of the state
+   * @param snapshotSequenceNr
+   *   Sequence number of the latest snapshot of the entity, or 0 if there is none
+   */
+  private[effector] def put(
+    persistenceId: PersistenceId,
+    state: Any,
+    sequenceNr: Long,
+    snapshotSequenceNr: Long): Unit =
+    synchronized {
+      entries.remove(persistenceId.asString)
+      entries.put(persistenceId.asString, Entry(state, sequenceNr, snapshotSequenceNr))
+      evictOverflow()
+    }
+
+  /**
+   * Take the cached state of an entity.
+   *
+   * @param persistenceId
+   *   Persistence ID of the entity
+   * @return
+   *   The cached state, if any
+   */
+  private[effector] def take(persistenceId: PersistenceId): Option[Entry] =
+    synchronized(Option(entries.remove(persistenceId.asString)))
+
+  private def evictOverflow(): Unit = {
+    val iterator = entries.values().iterator()
+    while (entries.size() > maxEntriesValue) {
+      iterator.next()
+      iterator.remove()
+    }
+  }
+}
+
+/**
+ * Companion object for StateCache.
+ */
+object StateCache extends ExtensionId[StateCache] {
+
+  /**
+   * Default maximum number of cached states
+   */
+  final val DefaultMaxEntries = 10000
+
+  override def createExtension(system: ActorSystem[?]): StateCache = new StateCache()
+
+  /**
+   * Java API: get the StateCache extension of the actor system.
+   *
+   * @param system
+   *   Actor system
+   * @return
+   *   StateCache extension
+   */
+  def get(system: ActorSystem[?]): StateCache = apply(system)
+
+  /**
+   * Cached state of an entity.
+   *
+   * @param state
+   *   State of the entity
+   * @param sequenceNr
+   *   Sequence number of the last event of the state
+   * @param snapshotSequenceNr
+   *   Sequence number of the latest snapshot of the entity, or 0 if unknown
+   */
+  private[effector] final case class Entry(state: Any, sequenceNr: Long, snapshotSequenceNr: Long)
+}
@@ -0,0 +1,107 @@
+package org.apache.pekko.persistence.effector
+
+import org.apache.pekko.actor.{ActorRef, ActorSystem}
+import org.apache.pekko.persistence.{AtomicWrite, JournalProtocol, Persistence, PersistentRepr}
+
+import scala.collection.immutable
+import scala.compiletime.asMatchable
+
+/**
+ * INTERNAL API: access to the write protocol of the journal, which is not part of the public Pekko API. Used by
+ * pekko-persistence-effector to write events to the journal without going through a persistent actor.
+ */
+object JournalProtocolBridge {
+
+  /**
+   * Get the journal plugin actor, which is shared by all persistent actors of the actor system using the plugin.
+   *
+   * @param system
+   *   Actor system
+   * @param journalPluginId
+   *   ID of the journal plugin, or an empty string for the default journal
+   * @return
+   *   Journal plugin actor
+   */
+  def journalFor(system: ActorSystem, journalPluginId: String): ActorRef =
+    Persistence(system).journalFor(journalPluginId)
+
+  /**
+   * Send a write request to the journal. The journal replies to `writer` with the result of each event.
+   *
+   * @param journal
+   *   Journal plugin actor
+   * @param writes
+   *   Atomic writes to perform, in order
+   * @param writer
+   *   Actor receiving the replies of the journal
+   * @param actorInstanceId
+   *   Instance ID echoed in the replies
+   */
+  def writeMessages(
+    journal: ActorRef,
+    writes: immutable.Seq[AtomicWrite],
+    writer: ActorRef,
+    actorInstanceId: Int,
+  ): Unit =
+    journal.tell(JournalProtocol.WriteMessages(writes, writer, actorInstanceId), writer)
+
+  /**
+   * Whether a message is a reply of the journal.
+   */
+  def isResponse(msg: Any): Boolean =
+    msg.isInstanceOf[JournalProtocol.Response]
+
+  /**
+   * Address a reply of the journal to the given instance, so that a writer acting on behalf of other actors can forward
+   * the reply to them. Other messages are returned as is.
+   *
+   * @param response
+   *   Reply of the journal
+   * @param actorInstanceId
+   *   Instance ID of the actor the reply is forwarded to
+   * @return
+   *   The reply with the given instance ID
+   */
+  def withActorInstanceId(response: Any, actorInstanceId: Int): Any =
+    response.asMatchable match {
+      case reply: JournalProtocol.WriteMessageSuccess => reply.copy(actorInstanceId = actorInstanceId)
+      case reply: JournalProtocol.WriteMessageRejected => reply.copy(actorInstanceId = actorInstanceId)
+      case reply: JournalProtocol.WriteMessageFailure => reply.copy(actorInstanceId = actorInstanceId)
+      case other => other
+    }
+
+  /**
+   * Extractor for the successful write of an event.
+   */
+  object WriteMessageSuccess {
+    def unapply(msg: Any): Option[(PersistentRepr, Int)] =
+      msg.asMatchable match {
+        case JournalProtocol.WriteMessageSuccess(persistent, actorInstanceId) => Some((persistent, actorInstanceId))
+        case _ => None
+      }
+  }
+
+  /**
+   * Extractor for an event rejected by the journal.
+   */
+  object WriteMessageRejected {
+    def unapply(msg: Any): Option[(PersistentRepr, Throwable, Int)] =
+      msg.asMatchable match {
+        case JournalProtocol.WriteMessageRejected(message, cause, actorInstanceId) =>
+          Some((message, cause, actorInstanceId))
+        case _ => None
+      }
+  }
+
+  /**
+   * Extractor for an event whose write failed.
+   */
+  object WriteMessageFailure {
+    def unapply(msg: Any): Option[(PersistentRepr, Throwable, Int)] =
+      msg.asMatchable match {
+        case JournalProtocol.WriteMessageFailure(message, cause, actorInstanceId) =>
+          Some((message, cause, actorInstanceId))
+        case _ => None
+      }
+  }
+}
@@ -0,0 +1,34 @@
+package org.apache.pekko.persistence.effector
+
+import org.apache.pekko.persistence.{SelectedSnapshot, SnapshotProtocol}
+
+import scala.compiletime.asMatchable
+
+/**
+ * INTERNAL API: extractors for replies of the snapshot store that are not part of the public Pekko API. Used by
+ * pekko-persistence-effector to receive snapshots loaded with `Snapshotter.loadSnapshot`.
+ */
+object SnapshotProtocolBridge {
+
+  /**
+   * Extractor for the result of `loadSnapshot`.
+   */
+  object LoadSnapshotResult {
+    def unapply(msg: Any): Option[Option[SelectedSnapshot]] =
+      msg.asMatchable match {
+        case SnapshotProtocol.LoadSnapshotResult(snapshot, _) => Some(snapshot)
+        case _ => None
+      }
+  }
+
+  /**
+   * Extractor for the failure of `loadSnapshot`.
+   */
+  object LoadSnapshotFailed {
+    def unapply(msg: Any): Option[Throwable] =
+      msg.asMatchable match {
+        case SnapshotProtocol.LoadSnapshotFailed(cause) => Some(cause)
+        case _ => None
+      }
+  }
+}
@@ -0,0 +1,32 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.SnapshotOutcome
+
+import scala.concurrent.duration.*
+
+/**
+ * Test for the snapshots saved without stalling command processing
+ */
+class AsyncSnapshotSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  "PersistenceEffector with asynchronous snapshots" should {
+    "complete callbacks without waiting for snapshots and report their outcome" in {
+      val outcomeProbe = createTestProbe[SnapshotOutcome]()
+      val config = createConfig(uniquePersistenceId("test-async-snapshots"))
+        .withAsyncSnapshots(true)
+        .withSnapshotOutcomeHandler(outcomeProbe.ref ! _)
+      val replyProbe = createTestProbe[String]()
+      val values = (1 to 3).map(n => s"value-$n")
+
+      val actor = spawnEffector(config)(snapshotHandler(_ => true))
+      values.foreach(value => actor ! Append(value, replyProbe.ref))
+
+      replyProbe.receiveMessages(values.size, 10.seconds) shouldBe values
+      outcomeProbe.receiveMessages(values.size, 10.seconds) shouldBe
+        (1 to values.size).map(n => SnapshotOutcome.Saved(n.toLong))
+
+      testKit.stop(actor)
+    }
+  }
+}
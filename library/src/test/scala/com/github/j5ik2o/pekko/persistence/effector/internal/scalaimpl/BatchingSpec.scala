@@ -0,0 +1,85 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.TestEvent
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.BatchingConfig
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+
+import scala.concurrent.duration.*
+
+/**
+ * Test for the batched writes of Persisted mode
+ */
+class BatchingSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  "PersistenceEffector in batching mode" should {
+    "write collected events in batches and complete callbacks individually in order" in {
+      val config = createConfig(uniquePersistenceId("test-batching"))
+        .withBatchingConfig(BatchingConfig(maxBatchSize = 5, maxLatency = 50.millis))
+      val replyProbe = createTestProbe[String]()
+      // Two full batches and a partial one that is written once its latency has elapsed
+      val values = (1 to 12).map(n => s"value-$n")
+
+      val actor = spawnEffector(config)(appendHandler)
+      values.foreach(value => actor ! Append(value, replyProbe.ref))
+
+      replyProbe.receiveMessages(values.size, 10.seconds) shouldBe values
+      testKit.stop(actor)
+      recoveredState(config).values shouldBe values
+    }
+
+    "complete callbacks only once their batch is acknowledged" in withHoldingJournal { kit =>
+      val config = createLedgerConfig(uniquePersistenceId("test-batching-held"))
+        .withBatchingConfig(BatchingConfig(maxBatchSize = 2, maxLatency = 10.seconds))
+      val replyProbe = kit.createTestProbe[String]()
+      val actor = spawnEffector(config, kit)(ledgerHandler)
+
+      // The batch is neither written nor completed until it is full
+      actor ! Append("a", replyProbe.ref)
+      replyProbe.expectNoMessage(300.millis)
+      HoldingJournal.heldWrites.isEmpty shouldBe true
+      actor ! Append("b", replyProbe.ref)
+      val first = nextHeldWrite()
+      first.messages.flatMap(_.payload).map(_.payload) shouldBe Seq(
+        TestEvent.TestEventA("a"),
+        TestEvent.TestEventA("b"))
+      replyProbe.expectNoMessage(200.millis)
+      first.release()
+      replyProbe.receiveMessages(2, 10.seconds) shouldBe Seq("persisted: a", "persisted: b")
+
+      // A rejected batch is completed with the failure callback of its first persist only
+      actor ! Append("c", replyProbe.ref)
+      actor ! Append("bad", replyProbe.ref)
+      nextHeldWrite().release()
+      replyProbe.expectMessage(10.seconds, "failed: c: NotSerializableException")
+      replyProbe.expectNoMessage(200.millis)
+
+      actor ! Append("d", replyProbe.ref)
+      actor ! Append("e", replyProbe.ref)
+      nextHeldWrite().release()
+      replyProbe.receiveMessages(2, 10.seconds) shouldBe Seq("persisted: d", "persisted: e")
+      kit.stop(actor)
+
+      val recovered = spawnEffector(config, kit)(ledgerHandler)
+      recovered ! Append("get", replyProbe.ref)
+      replyProbe.expectMessage(10.seconds, Seq("a", "b", "d", "e").map(TestEvent.TestEventA(_)).mkString(","))
+    }
+
+    "fail the actor when the first persist of a rejected batch has no failure callback" in {
+      val config = createLedgerConfig(uniquePersistenceId("test-batching-rejected"))
+        .withBatchingConfig(BatchingConfig(maxBatchSize = 2, maxLatency = 10.seconds))
+      val replyProbe = createTestProbe[String]()
+      val actor = spawnEffector(config) { (_, effector) =>
+        Behaviors.receiveMessage { case Append(value, replyTo) =>
+          effector.persistEvent(UnserializableEvent(value)) { _ =>
+            replyTo ! s"persisted: $value"
+            Behaviors.same
+          }
+        }
+      }
+      actor ! Append("a", replyProbe.ref)
+      actor ! Append("b", replyProbe.ref)
+      replyProbe.expectTerminated(actor, 10.seconds)
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
+  HistogramInstrumentation,
+  PersistenceEffector,
+  PersistenceEffectorConfig,
+  PersistenceId,
+  StashOverflowStrategy,
+}
+import com.github.j5ik2o.pekko.persistence.effector.{TestEvent, TestState}
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+import org.apache.pekko.actor.typed.{ActorRef, Behavior}
+
+import java.util.concurrent.{CountDownLatch, TimeUnit}
+import scala.concurrent.duration.*
+
+/**
+ * Test for the overflow strategies of the stash of an effector
+ */
+class BoundedStashSpec extends PersistedEffectorSpecBase {
+  import BoundedStashSpec.*
+  import PersistedEffectorFixture.*
+
+  private def boundedConfig(persistenceId: PersistenceId): PersistenceEffectorConfig[TestState, TestEvent, Append] =
+    PersistenceEffectorConfig.create[TestState, TestEvent, Append](
+      persistenceId = persistenceId,
+      initialState = TestState(),
+      applyEvent = (state, event) => state.applyEvent(event),
+      stashSize = 2,
+    )
+
+  /**
+   * Spawn an actor that only starts its effector once the gate is open, so that the messages sent until then are all
+   * stashed during recovery
+   */
+  private def spawnGated(
+    config: PersistenceEffectorConfig[TestState, TestEvent, Append],
+    gate: CountDownLatch): ActorRef[Append] =
+    spawn(Behaviors.setup[Append] { context =>
+      gate.await(10, TimeUnit.SECONDS)
+      PersistenceEffector.fromConfig[TestState, TestEvent, Append](config) { case (state, effector) =>
+        appendHandler(state, effector)
+      }(using context)
+    })
+
+  "PersistenceEffector with a bounded stash" should {
+    "reject messages that arrive while the stash is full and record the high-water mark" in {
+      val instrumentation = new HistogramInstrumentation
+      val config = boundedConfig(PersistenceId.of("BoundedStash", java.util.UUID.randomUUID().toString))
+        .withStashOverflowStrategy(StashOverflowStrategy.Reject { case Append(value, replyTo) =>
+          replyTo ! s"rejected: $value"
+        })
+        .withInstrumentation(instrumentation)
+
+      val replyProbe = createTestProbe[String]()
+      val gate = new CountDownLatch(1)
+      val actor = spawnGated(config, gate)
+      (1 to 6).foreach(n => actor ! Append(s"value-$n", replyProbe.ref))
+      gate.countDown()
+
+      replyProbe.receiveMessages(6, 10.seconds) should contain theSameElementsAs
+        (Seq("value-1", "value-2") ++ (3 to 6).map(n => s"rejected: value-$n"))
+      instrumentation.stashHighWaterMark("BoundedStash") shouldBe 2L
+      instrumentation.stashOverflows("BoundedStash") shouldBe 4L
+      testKit.stop(actor)
+    }
+
+    "drop the oldest stashed messages when the stash is full" in {
+      val config = boundedConfig(uniquePersistenceId("test-drop-oldest"))
+        .withStashOverflowStrategy(StashOverflowStrategy.DropOldest)
+
+      val replyProbe = createTestProbe[String]()
+      val gate = new CountDownLatch(1)
+      val actor = spawnGated(config, gate)
+      (1 to 6).foreach(n => actor ! Append(s"value-$n", replyProbe.ref))
+      gate.countDown()
+
+      replyProbe.receiveMessages(2, 10.seconds) shouldBe Seq("value-5", "value-6")
+      replyProbe.expectNoMessage(200.millis)
+      testKit.stop(actor)
+    }
+
+    "drop the oldest messages when the stash overflows while the stashed messages are processed" in {
+      val config = PersistenceEffectorConfig
+        .create[TestState, TestEvent, Command](
+          persistenceId = uniquePersistenceId("test-drop-oldest-unstash"),
+          initialState = TestState(),
+          applyEvent = (state, event) => state.applyEvent(event),
+          stashSize = 2,
+        )
+        .withStashOverflowStrategy(StashOverflowStrategy.DropOldest)
+      val probe = createTestProbe[Int]()
+
+      val actor = spawn(Behaviors.setup[Command] { context =>
+        Behaviors.withStash(Int.MaxValue) { stashBuffer =>
+          val stash = new BoundedStash[Command](context, stashBuffer, config)
+          def delivering: Behavior[Command] = Behaviors.receiveMessage {
+            case Item(n) =>
+              probe.ref ! n
+              Behaviors.same
+            case Release =>
+              Behaviors.same
+          }
+          // Stashes two messages for each one it processes, so that the stash overflows during unstashAll
+          def restashing: Behavior[Command] = Behaviors.receiveMessage {
+            case Item(n) =>
+              stash.stash(Item(n))
+              stash.stash(Item(n + 100))
+              Behaviors.same
+            case Release =>
+              stash.unstashAll(delivering)
+          }
+          Behaviors.receiveMessage {
+            case item: Item =>
+              stash.stash(item)
+              Behaviors.same
+            case Release =>
+              stash.unstashAll(restashing)
+          }
+        }
+      })
+      actor ! Item(1)
+      actor ! Item(2)
+      actor ! Release
+      actor ! Release
+
+      // Each message is processed once: the dropped ones are not delivered afterwards
+      probe.receiveMessages(2, 10.seconds) shouldBe Seq(2, 102)
+      probe.expectNoMessage(200.millis)
+      testKit.stop(actor)
+    }
+  }
+}
+
+object BoundedStashSpec {
+  sealed trait Command
+  final case class Item(n: Int) extends Command
+  case object Release extends Command
+}
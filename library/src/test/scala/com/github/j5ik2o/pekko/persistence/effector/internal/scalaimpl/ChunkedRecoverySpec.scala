@@ -0,0 +1,52 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.{TestEvent, TestState}
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
+  PersistenceEffectorConfig,
+  PersistenceEffectorInstrumentation,
+  PersistenceId,
+  RecoveryConfig,
+}
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import scala.concurrent.duration.*
+
+/**
+ * Test for the recovery that folds the replayed events in chunks
+ */
+class ChunkedRecoverySpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  "PersistenceEffector with chunked recovery" should {
+    "fold the replayed events in chunks and report the progress" in {
+      val values = (1 to 25).map(n => s"value-$n")
+      val foldThreads = new ConcurrentLinkedQueue[String]()
+      val baseConfig = PersistenceEffectorConfig.create[TestState, TestEvent, Append](
+        persistenceId = uniquePersistenceId("test-chunked-recovery"),
+        initialState = TestState(),
+        applyEvent = (state, event) => {
+          foldThreads.add(Thread.currentThread().getName)
+          state.applyEvent(event)
+        },
+      )
+      appendValues(baseConfig, values)
+
+      Seq(None, Some("pekko.actor.default-blocking-io-dispatcher")).foreach { dispatcher =>
+        val progressProbe = createTestProbe[Long]()
+        val config = baseConfig
+          .withRecoveryConfig(RecoveryConfig(chunkSize = 10, dispatcher = dispatcher))
+          .withInstrumentation(new PersistenceEffectorInstrumentation {
+            override def recoveryProgress(persistenceId: PersistenceId, replayedEvents: Long, elapsedNanos: Long)
+              : Unit =
+              progressProbe.ref ! replayedEvents
+          })
+        foldThreads.clear()
+
+        recoveredState(config).values shouldBe values
+        progressProbe.receiveMessages(2, 10.seconds) shouldBe Seq(10L, 20L)
+        foldThreads.size() shouldBe values.size
+        if (dispatcher.isDefined) foldThreads.forEach(_ should include("default-blocking-io-dispatcher"))
+      }
+    }
+  }
+}
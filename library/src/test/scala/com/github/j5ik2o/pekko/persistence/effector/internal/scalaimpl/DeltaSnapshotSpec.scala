@@ -0,0 +1,42 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.TestState
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.DeltaSnapshotConfig
+
+import java.util.concurrent.atomic.AtomicInteger
+import scala.concurrent.duration.*
+
+/**
+ * Test for the delta snapshots saved between full snapshots
+ */
+class DeltaSnapshotSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  "PersistenceEffector with delta snapshots" should {
+    "recover from a base snapshot, a delta and the events written after it" in {
+      val diffCount = new AtomicInteger(0)
+      val patchCount = new AtomicInteger(0)
+      val config = createConfig(uniquePersistenceId("test-delta-snapshots"))
+        .withDeltaSnapshotConfig(DeltaSnapshotConfig[TestState, Vector[String]](fullSnapshotEvery = 3) {
+          (base, current) =>
+            diffCount.incrementAndGet()
+            current.values.drop(base.values.size)
+        } { (base, delta) =>
+          patchCount.incrementAndGet()
+          base.copy(values = base.values ++ delta)
+        })
+
+      val replyProbe = createTestProbe[String]()
+      // Snapshots at 1 (base), 2 and 3 (deltas), 4 (base) and 5 (delta); event 6 is replayed
+      val actor = spawnEffector(config)(snapshotHandler(_ != "value-6"))
+      val values = (1 to 6).map(n => s"value-$n")
+      values.foreach(value => actor ! Append(value, replyProbe.ref))
+      replyProbe.receiveMessages(values.size, 10.seconds)
+      testKit.stop(actor)
+
+      recoveredState(config) shouldBe TestState(values.toVector)
+      diffCount.get() shouldBe 3
+      patchCount.get() shouldBe 1
+    }
+  }
+}
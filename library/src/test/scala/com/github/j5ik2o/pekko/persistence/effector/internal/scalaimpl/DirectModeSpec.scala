@@ -0,0 +1,109 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.TestEvent
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
+  BatchingConfig,
+  PersistenceEffector,
+  PersistenceEffectorConfig,
+  PersistenceId,
+  PersistenceMode,
+  SnapshotOutcome,
+}
+import org.apache.pekko.actor.typed.Behavior
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+
+import scala.concurrent.duration.*
+
+/**
+ * Test for Direct mode, which writes events straight to the journal
+ */
+class DirectModeSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  private def directConfig(persistenceId: PersistenceId): PersistenceEffectorConfig[Vector[String], Any, Append] =
+    PersistenceEffectorConfig.create[Vector[String], Any, Append](
+      persistenceId = persistenceId,
+      initialState = Vector.empty,
+      applyEvent = (state, event) => state :+ event.toString,
+      persistenceMode = PersistenceMode.Direct,
+    )
+
+  "PersistenceEffector in direct mode" should {
+    "write events directly to the journal, snapshot at their sequence numbers and recover them" in {
+      val persistenceId = uniquePersistenceId("test-direct")
+      val outcomeProbe = createTestProbe[SnapshotOutcome]()
+      val config = directConfig(persistenceId).withSnapshotOutcomeHandler(outcomeProbe.ref ! _)
+
+      def handler(state: Vector[String], effector: PersistenceEffector[Vector[String], Any, Append])
+        : Behavior[Append] =
+        Behaviors.receiveMessage {
+          case Append("bad", replyTo) =>
+            effector.persistEvent(
+              UnserializableEvent("bad"),
+              cause => {
+                replyTo ! s"failed: bad: ${cause.getClass.getSimpleName}"
+                handler(state, effector)
+              },
+            ) { _ =>
+              replyTo ! "persisted: bad"
+              handler(state, effector)
+            }
+          case Append(value, replyTo) =>
+            val event = TestEvent.TestEventA(value)
+            val newState = state :+ event.toString
+            effector.persistEventWithSnapshot(event, newState, forceSnapshot = value == "c") { _ =>
+              replyTo ! s"persisted: $value"
+              handler(newState, effector)
+            }
+        }
+
+      val replyProbe = createTestProbe[String]()
+      val actor = spawnEffector(config)(handler)
+      Seq("a", "bad", "b", "c", "d").foreach(value => actor ! Append(value, replyProbe.ref))
+      replyProbe.receiveMessages(5, 10.seconds) shouldBe Seq(
+        "persisted: a",
+        "failed: bad: NotSerializableException",
+        "persisted: b",
+        "persisted: c",
+        "persisted: d",
+      )
+      // The rejected event does not take a sequence number
+      outcomeProbe.expectMessage(10.seconds, SnapshotOutcome.Saved(3L))
+      testKit.stop(actor)
+
+      readJournal(persistenceId) shouldBe Seq("a", "b", "c", "d").map(TestEvent.TestEventA(_))
+
+      // Recovered from the snapshot at 3 and the event written after it
+      recoveredState(config) shouldBe Seq("a", "b", "c", "d").map(TestEvent.TestEventA(_).toString)
+    }
+
+    "batch the writes of many entities through the shared journal writer" in {
+      val persistenceIds = (1 to 4).map(i => uniquePersistenceId(s"test-shared-writer-$i"))
+      val batching = BatchingConfig(maxBatchSize = 8, maxLatency = 50.millis)
+      def config(persistenceId: PersistenceId) = directConfig(persistenceId).withSharedWriteBatching(batching)
+
+      val probes = persistenceIds.map(_ => createTestProbe[String]())
+      val actors = persistenceIds.map(persistenceId => spawnEffector(config(persistenceId))(ledgerHandler))
+      // The entities write concurrently, and the rejected event of the first entity does not affect the others
+      (1 to 5).foreach { n =>
+        actors.zip(probes).zipWithIndex.foreach { case ((actor, probe), i) =>
+          actor ! Append(if (i == 0 && n == 3) "bad" else s"v$n", probe.ref)
+        }
+      }
+      probes.zipWithIndex.foreach { case (probe, i) =>
+        probe.receiveMessages(5, 10.seconds) shouldBe (1 to 5).map { n =>
+          if (i == 0 && n == 3) "failed: bad: NotSerializableException" else s"persisted: v$n"
+        }
+      }
+      actors.foreach(testKit.stop(_))
+
+      def expectedEvents(i: Int): Seq[TestEvent] =
+        (1 to 5).filterNot(n => i == 0 && n == 3).map(n => TestEvent.TestEventA(s"v$n"))
+
+      persistenceIds.zipWithIndex.foreach { case (persistenceId, i) =>
+        readJournal(persistenceId) shouldBe expectedEvents(i)
+        recoveredState(config(persistenceId)) shouldBe expectedEvents(i).map(_.toString)
+      }
+    }
+  }
+}
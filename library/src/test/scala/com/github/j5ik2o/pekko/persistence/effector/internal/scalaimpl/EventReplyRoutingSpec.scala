@@ -0,0 +1,87 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
+  BatchingConfig,
+  PersistenceEffector,
+  PersistenceEffectorConfig,
+}
+import com.github.j5ik2o.pekko.persistence.effector.{TestEvent, TestState}
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+import org.apache.pekko.actor.typed.{ActorRef, Behavior}
+
+import scala.concurrent.duration.*
+
+/**
+ * Test that the replies to writes are consumed by the effector and never reach the actor behavior
+ */
+class EventReplyRoutingSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  /**
+   * Handler that reports every message it receives before handling it. `many` persists two events, `snap` persists an
+   * event with a forced snapshot, and any other value persists a single event.
+   */
+  private def recordingHandler(seen: ActorRef[Any])(
+    state: TestState,
+    effector: PersistenceEffector[TestState, TestEvent, Append]): Behavior[Append] =
+    Behaviors.receiveMessage { msg =>
+      seen ! msg
+      msg match {
+        case Append("many", replyTo) =>
+          effector.persistEvents(Seq(TestEvent.TestEventA("many-1"), TestEvent.TestEventA("many-2"))) { events =>
+            replyTo ! "many"
+            recordingHandler(seen)(events.foldLeft(state)(_.applyEvent(_)), effector)
+          }
+        case Append("snap", replyTo) =>
+          val event = TestEvent.TestEventA("snap")
+          val newState = state.applyEvent(event)
+          effector.persistEventWithSnapshot(event, newState, forceSnapshot = true) { _ =>
+            replyTo ! "snap"
+            recordingHandler(seen)(newState, effector)
+          }
+        case Append(value, replyTo) =>
+          effector.persistEvent(TestEvent.TestEventA(value)) { event =>
+            replyTo ! value
+            recordingHandler(seen)(state.applyEvent(event), effector)
+          }
+      }
+    }
+
+  private def assertOnlyCommandsReachBehavior(config: PersistenceEffectorConfig[TestState, TestEvent, Append]): Unit = {
+    val seenProbe = createTestProbe[Any]()
+    val replyProbe = createTestProbe[String]()
+    val values = Seq("a", "many", "b", "snap", "c")
+
+    val actor = spawnEffector(config)(recordingHandler(seenProbe.ref))
+    values.foreach(value => actor ! Append(value, replyProbe.ref))
+
+    replyProbe.receiveMessages(values.size, 10.seconds) shouldBe values
+    seenProbe.receiveMessages(values.size, 10.seconds) shouldBe values.map(Append(_, replyProbe.ref))
+    seenProbe.expectNoMessage(300.millis)
+    testKit.stop(actor)
+  }
+
+  "PersistenceEffector in Persisted mode" should {
+    "not pass replies to writes to the actor behavior when no interceptor is installed" in {
+      val config = createConfig(uniquePersistenceId("test-routing-plain"))
+      DefaultPersistenceEffector.installsInterceptor(config) shouldBe false
+
+      assertOnlyCommandsReachBehavior(config)
+    }
+
+    "not pass replies to writes to the actor behavior in pipelined mode" in {
+      val config = createConfig(uniquePersistenceId("test-routing-pipelined")).withMaxInFlightPersists(3)
+      DefaultPersistenceEffector.installsInterceptor(config) shouldBe true
+
+      assertOnlyCommandsReachBehavior(config)
+    }
+
+    "not pass replies to writes to the actor behavior with batching" in {
+      val config = createConfig(uniquePersistenceId("test-routing-batched"))
+        .withBatchingConfig(BatchingConfig(maxBatchSize = 3, maxLatency = 20.millis))
+      DefaultPersistenceEffector.installsInterceptor(config) shouldBe true
+
+      assertOnlyCommandsReachBehavior(config)
+    }
+  }
+}
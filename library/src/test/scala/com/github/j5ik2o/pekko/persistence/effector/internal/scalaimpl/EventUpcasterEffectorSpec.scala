@@ -0,0 +1,75 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{EventUpcaster, RetentionCriteria, SnapshotOutcome}
+import com.github.j5ik2o.pekko.persistence.effector.{TestEvent, TestState}
+
+import java.util.concurrent.atomic.AtomicInteger
+import scala.concurrent.duration.*
+
+/**
+ * Test for the upcasting of legacy events during recovery
+ */
+class EventUpcasterEffectorSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  "PersistenceEffector with an event upcaster" should {
+    "upcast, drop and split legacy events and snapshot the upcast state" in {
+      val persistenceId = uniquePersistenceId("test-upcaster")
+      writeJournal(
+        persistenceId,
+        LegacyAppendedV1("a"),
+        LegacyHeartbeat,
+        LegacyAppendedV2("b", "v2"),
+        LegacyAppendedAll(Seq("c", "d")),
+        TestEvent.TestEventA("e"),
+      )
+
+      val upcastCount = new AtomicInteger()
+      val upcaster = EventUpcaster[TestEvent](snapshotAfterUpcast = true)
+        .withStep[LegacyAppendedAll](event => event.values.map(LegacyAppendedV1(_)))
+        .withStep[LegacyAppendedV1] { event =>
+          upcastCount.incrementAndGet()
+          Seq(LegacyAppendedV2(event.value, "v1"))
+        }
+        .withStep[LegacyAppendedV2](event => Seq(TestEvent.TestEventA(event.value)))
+        .withStep[LegacyHeartbeat.type](_ => Seq.empty)
+      val config = createConfig(persistenceId).withEventUpcaster(upcaster)
+
+      recoveredState(config) shouldBe TestState(Vector("a", "b", "c", "d", "e"))
+      upcastCount.get() shouldBe 3
+
+      // The next recoveries start from the snapshot saved after upcasting
+      createTestProbe[Unit]().awaitAssert(
+        {
+          upcastCount.set(0)
+          recoveredState(config) shouldBe TestState(Vector("a", "b", "c", "d", "e"))
+          upcastCount.get() shouldBe 0
+        },
+        10.seconds,
+      )
+    }
+
+    "apply the retention criteria to the snapshot saved after upcasting" in {
+      val persistenceId = uniquePersistenceId("test-upcaster-retention")
+      writeJournal(persistenceId, LegacyAppendedV1("a"))
+
+      val outcomeProbe = createTestProbe[SnapshotOutcome]()
+      val config = createConfig(persistenceId)
+        .withEventUpcaster(
+          EventUpcaster[TestEvent](snapshotAfterUpcast = true)
+            .withStep[LegacyAppendedV1](event => Seq(TestEvent.TestEventA(event.value))))
+        .withRetentionCriteria(RetentionCriteria.snapshotEvery(numberOfEvents = 100, keepNSnapshots = 1))
+        .withSnapshotOutcomeHandler(outcomeProbe.ref ! _)
+
+      val replyProbe = createTestProbe[String]()
+      val actor = spawnEffector(config)(snapshotHandler(_ => true))
+      outcomeProbe.expectMessage(10.seconds, SnapshotOutcome.Saved(1L))
+
+      // The snapshot saved after upcasting is indexed, so the next one replaces it
+      actor ! Append("b", replyProbe.ref)
+      replyProbe.expectMessage(10.seconds, "b")
+      outcomeProbe.receiveMessages(2, 10.seconds) shouldBe Seq(SnapshotOutcome.Saved(2L), SnapshotOutcome.Deleted(1L))
+      testKit.stop(actor)
+    }
+  }
+}
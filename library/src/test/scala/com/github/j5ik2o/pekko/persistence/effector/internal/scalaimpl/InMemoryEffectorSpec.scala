@@ -1,6 +1,7 @@
 package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
 
 import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
+  PassivationConfig,
   PersistenceEffector,
   PersistenceEffectorConfig,
   PersistenceId,
@@ -10,6 +11,7 @@ import com.github.j5ik2o.pekko.persistence.effector.{TestEvent, TestMessage, Tes
 import org.apache.pekko.actor.typed.scaladsl.Behaviors
 
 import java.util
+import scala.concurrent.duration.*
 
 /**
  * Test for PersistenceEffector using InMemory mode
@@ -125,6 +127,34 @@ class InMemoryEffectorSpec extends PersistenceEffectorTestBase {
       // Verify that applyEvent is called only once (only during manual update)
       applyEventCount shouldBe 1
     }
+    "snapshot the stored events and stop the actor once idle" in {
+      val persistenceId = PersistenceId.ofUniqueId(s"test-passivation-${util.UUID.randomUUID()}")
+      val config =
+        PersistenceEffectorConfig
+          .create[TestState, TestEvent, TestMessage](
+            persistenceId = persistenceId,
+            initialState = TestState(),
+            applyEvent = (state, event) => state.applyEvent(event),
+            persistenceMode = persistenceMode,
+            messageConverter = messageConverter,
+          )
+          .withPassivation(PassivationConfig(idleTimeout = 300.millis))
+
+      val actor = spawn(Behaviors.setup[TestMessage] { context =>
+        PersistenceEffector.fromConfig[TestState, TestEvent, TestMessage](config) { case (_, effector) =>
+          effector.persistEvents(Seq(TestEvent.TestEventA("a"), TestEvent.TestEventB(1))) { _ =>
+            Behaviors.receiveMessage(_ => Behaviors.same)
+          }
+        }(using context)
+      })
+
+      val probe = createTestProbe[Any]()
+      probe.expectTerminated(actor, 10.seconds)
+      InMemoryEventStore.getSnapshotSequenceNumbers(persistenceId) shouldBe Seq(2L)
+      InMemoryEventStore.getEventsAfterSnapshot[TestEvent](persistenceId) shouldBe empty
+      InMemoryEventStore.getLatestSnapshot[TestState](persistenceId) shouldBe
+        Some(TestState().applyEvent(TestEvent.TestEventA("a")).applyEvent(TestEvent.TestEventB(1)))
+    }
   }
 
   // Clear InMemoryStore at the end of the test
@@ -0,0 +1,151 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.PersistenceId
+import org.scalatest.BeforeAndAfterEach
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.concurrent.duration.*
+import scala.concurrent.{Await, ExecutionContext, Future}
+
+/**
+ * Unit tests for InMemoryEventStore.
+ */
+class InMemoryEventStoreSpec extends AnyWordSpec with Matchers with BeforeAndAfterEach {
+
+  override def beforeEach(): Unit =
+    InMemoryEventStore.clear()
+
+  override def afterEach(): Unit = {
+    InMemoryEventStore.setMaxRetainedEvents(Long.MaxValue)
+    InMemoryEventStore.setCompactOnSnapshot(false)
+  }
+
+  "InMemoryEventStore" should {
+
+    "keep events in order and count them in the sequence number" in {
+      val id = PersistenceId.ofUniqueId("store-order")
+      InMemoryEventStore.addEvent(id, "e1")
+      InMemoryEventStore.addEvents(id, (2 to 40).map(n => s"e$n"))
+
+      InMemoryEventStore.getEvents[String](id) shouldBe (1 to 40).map(n => s"e$n").toVector
+      InMemoryEventStore.getCurrentSequenceNumber(id) shouldBe 40L
+    }
+
+    "return only events after the latest snapshot" in {
+      val id = PersistenceId.ofUniqueId("store-snapshot")
+      InMemoryEventStore.addEvents(id, Seq(1, 2, 3))
+      InMemoryEventStore.saveSnapshot(id, 6)
+      InMemoryEventStore.addEvents(id, Seq(4, 5))
+
+      InMemoryEventStore.getLatestSnapshot[Int](id) shouldBe Some(6)
+      InMemoryEventStore.getEventsAfterSnapshot[Int](id) shouldBe Vector(4, 5)
+      InMemoryEventStore.replayEvents[Int, Int](id, 6, _ + _) shouldBe 15
+    }
+
+    "retain every event and delete the snapshots asked for without compaction" in {
+      val id = PersistenceId.ofUniqueId("store-no-compaction")
+      InMemoryEventStore.addEvents(id, Seq(1, 2, 3))
+      InMemoryEventStore.saveSnapshot(id, 6) shouldBe 3L
+      InMemoryEventStore.addEvents(id, Seq(4, 5))
+      InMemoryEventStore.saveSnapshot(id, 15) shouldBe 5L
+
+      InMemoryEventStore.getEvents[Int](id) shouldBe Vector(1, 2, 3, 4, 5)
+      InMemoryEventStore.retainedEventCount shouldBe 5L
+      InMemoryEventStore.getEventsAfterSnapshot[Int](id) shouldBe empty
+
+      // The events of the previous snapshot are still there after the latest one is deleted
+      InMemoryEventStore.deleteSnapshots(id, 5L)
+      InMemoryEventStore.getSnapshotSequenceNumbers(id) shouldBe empty
+      InMemoryEventStore.getEventsAfterSnapshot[Int](id) shouldBe Vector(1, 2, 3, 4, 5)
+      InMemoryEventStore.replayEvents[Int, Int](id, 0, _ + _) shouldBe 15
+    }
+
+    "discard events before a snapshot and keep the latest snapshot with compaction" in {
+      InMemoryEventStore.setCompactOnSnapshot(true)
+      val id = PersistenceId.ofUniqueId("store-compaction")
+      InMemoryEventStore.addEvents(id, Seq(1, 2, 3))
+      InMemoryEventStore.retainedEventCount shouldBe 3L
+
+      InMemoryEventStore.saveSnapshot(id, 6) shouldBe 3L
+      InMemoryEventStore.getEvents[Int](id) shouldBe empty
+      InMemoryEventStore.retainedEventCount shouldBe 0L
+
+      InMemoryEventStore.addEvents(id, Seq(4, 5))
+      InMemoryEventStore.saveSnapshot(id, 15) shouldBe 5L
+      InMemoryEventStore.getSnapshotSequenceNumbers(id) shouldBe Seq(5L, 3L)
+
+      InMemoryEventStore.deleteSnapshots(id, 5L)
+      InMemoryEventStore.getSnapshotSequenceNumbers(id) shouldBe Seq(5L)
+      InMemoryEventStore.getCurrentSequenceNumber(id) shouldBe 5L
+    }
+
+    "evict the least recently used entities that are not pinned when over budget" in {
+      val pinned = PersistenceId.ofUniqueId("store-pinned")
+      val idle1 = PersistenceId.ofUniqueId("store-idle-1")
+      val idle2 = PersistenceId.ofUniqueId("store-idle-2")
+      InMemoryEventStore.pin(pinned)
+      InMemoryEventStore.addEvents(pinned, Seq(1, 2, 3))
+      InMemoryEventStore.addEvents(idle1, Seq(1, 2, 3))
+      InMemoryEventStore.addEvents(idle2, Seq(1, 2, 3))
+
+      InMemoryEventStore.setMaxRetainedEvents(6L)
+      InMemoryEventStore.entityCount shouldBe 2
+      InMemoryEventStore.retainedEventCount shouldBe 6L
+      InMemoryEventStore.getCurrentSequenceNumber(idle1) shouldBe 3L
+      InMemoryEventStore.getEvents[Int](idle1) shouldBe empty
+      InMemoryEventStore.getEvents[Int](pinned) shouldBe Vector(1, 2, 3)
+
+      InMemoryEventStore.setMaxRetainedEvents(3L)
+      InMemoryEventStore.getEvents[Int](idle2) shouldBe empty
+      InMemoryEventStore.getEvents[Int](pinned) shouldBe Vector(1, 2, 3)
+
+      InMemoryEventStore.unpin(pinned)
+      InMemoryEventStore.addEvent(idle2, 1)
+      InMemoryEventStore.entityCount shouldBe 1
+      InMemoryEventStore.getEvents[Int](idle2) shouldBe Vector(1)
+      // The sequence numbers of an evicted entity continue where they stopped
+      InMemoryEventStore.getCurrentSequenceNumber(idle2) shouldBe 4L
+    }
+
+    "evict below the budget so that the following writes fit without evicting again" in {
+      val ids = (1 to 9).map(n => PersistenceId.ofUniqueId(s"store-headroom-$n"))
+      InMemoryEventStore.setMaxRetainedEvents(16L)
+      ids.take(8).foreach(id => InMemoryEventStore.addEvents(id, Seq(1, 2)))
+      InMemoryEventStore.entityCount shouldBe 8
+
+      // 17 events exceed the budget, and the two least recently used entities are evicted to get 2 events below it
+      InMemoryEventStore.addEvent(ids(8), 1)
+      InMemoryEventStore.entityCount shouldBe 7
+      InMemoryEventStore.retainedEventCount shouldBe 13L
+      InMemoryEventStore.getEvents[Int](ids(0)) shouldBe empty
+      InMemoryEventStore.getEvents[Int](ids(1)) shouldBe empty
+
+      InMemoryEventStore.addEvents(ids(8), Seq(2, 3, 4))
+      InMemoryEventStore.entityCount shouldBe 7
+      InMemoryEventStore.retainedEventCount shouldBe 16L
+    }
+
+    "not lose events or sequence numbers under concurrent appends" in {
+      given ExecutionContext = ExecutionContext.global
+      val ids = (1 to 4).map(n => PersistenceId.ofUniqueId(s"store-concurrent-$n"))
+      val appendsPerWriter = 1000
+
+      val writers = for {
+        id <- ids
+        writer <- 1 to 4
+      } yield Future {
+        (1 to appendsPerWriter).foreach { n =>
+          if (n % 2 == 0) InMemoryEventStore.addEvent(id, n)
+          else InMemoryEventStore.addEvents(id, Seq(n))
+        }
+      }
+      Await.result(Future.sequence(writers), 30.seconds)
+
+      ids.foreach { id =>
+        InMemoryEventStore.getCurrentSequenceNumber(id) shouldBe 4L * appendsPerWriter
+        InMemoryEventStore.getEvents[Int](id).size shouldBe 4 * appendsPerWriter
+      }
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{HistogramInstrumentation, PersistenceId, PersistenceOperation}
+
+import scala.concurrent.duration.*
+
+/**
+ * Test for the instrumentation of an effector
+ */
+class InstrumentationSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  "PersistenceEffector with instrumentation" should {
+    "report write latencies, snapshot sizes and recoveries" in {
+      val entityType = s"instrumented${java.util.UUID.randomUUID().toString.replace("-", "")}"
+      val instrumentation = new HistogramInstrumentation
+      val config = createConfig(PersistenceId.of(entityType, "1")).withInstrumentation(instrumentation)
+      val handler = snapshotHandler(_ == "value-2")
+
+      val replyProbe = createTestProbe[String]()
+      val actor = spawnEffector(config)(handler)
+      (1 to 3).foreach(n => actor ! Append(s"value-$n", replyProbe.ref))
+      replyProbe.receiveMessages(3, 10.seconds)
+      testKit.stop(actor)
+
+      val recovered = spawnEffector(config)(handler)
+      recovered ! Append("value-4", replyProbe.ref)
+      replyProbe.expectMessage(10.seconds, "value-4")
+
+      eventually {
+        instrumentation.persistLatency(entityType, PersistenceOperation.SingleEvent).count shouldBe 4L
+        instrumentation.persistLatency(entityType, PersistenceOperation.Snapshot).count shouldBe 1L
+        instrumentation.snapshotSize(entityType).count shouldBe 1L
+        instrumentation.snapshotSize(entityType).max should be > 0L
+        instrumentation.snapshotMisses(entityType) shouldBe 1L
+        instrumentation.snapshotHits(entityType) shouldBe 1L
+        instrumentation.replayedEvents(entityType).max shouldBe 1L
+        instrumentation.failureCount(entityType, PersistenceOperation.SingleEvent) shouldBe 0L
+      }
+
+      testKit.stop(recovered)
+    }
+  }
+}
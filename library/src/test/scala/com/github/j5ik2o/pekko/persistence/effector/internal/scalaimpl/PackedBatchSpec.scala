@@ -0,0 +1,54 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PackedEvents, PersistenceEffector, SnapshotCodec}
+import com.github.j5ik2o.pekko.persistence.effector.{TestEvent, TestState}
+import org.apache.pekko.actor.typed.Behavior
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+
+import scala.concurrent.duration.*
+
+/**
+ * Test for the multi-event persists written as single packed journal events
+ */
+class PackedBatchSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  /**
+   * Handler that persists the space-separated words of each value together
+   */
+  private def packingHandler(state: TestState, effector: PersistenceEffector[TestState, TestEvent, Append])
+    : Behavior[Append] =
+    Behaviors.receiveMessage { case Append(values, replyTo) =>
+      val events = values.split(' ').toSeq.map(TestEvent.TestEventA(_))
+      effector.persistEvents(events) { persisted =>
+        replyTo ! values
+        packingHandler(persisted.foldLeft(state)(_.applyEvent(_)), effector)
+      }
+    }
+
+  "PersistenceEffector with packed batches" should {
+    "write each multi-event persist as one journal event and unpack it during recovery" in {
+      val persistenceId = uniquePersistenceId("test-packed")
+      val config = createConfig(persistenceId).withPackedBatches(SnapshotCodec.Deflate)
+
+      val replyProbe = createTestProbe[String]()
+      val writer = spawnEffector(config)(packingHandler)
+      Seq("a b c", "d").foreach(values => writer ! Append(values, replyProbe.ref))
+      replyProbe.receiveMessages(2, 10.seconds)
+      testKit.stop(writer)
+
+      val recovered = spawnEffector(config)(packingHandler)
+      recovered ! Append("e f", replyProbe.ref)
+      replyProbe.expectMessage(10.seconds, "e f")
+      testKit.stop(recovered)
+
+      val journalEvents = readJournal(persistenceId)
+      journalEvents should have size 3
+      journalEvents(0) shouldBe a[PackedEvents]
+      journalEvents(1) shouldBe TestEvent.TestEventA("d")
+      journalEvents(2) shouldBe a[PackedEvents]
+
+      recoveredState(config).values shouldBe Seq("a", "b", "c", "d", "e", "f")
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.TestEvent.TestEventA
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PassivationConfig, PersistenceEffector, SnapshotOutcome}
+import org.apache.pekko.actor.typed.Behavior
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+
+import scala.concurrent.duration.*
+
+/**
+ * Test for the passivation of idle entities
+ */
+class PassivationSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  "PersistenceEffector with passivation" should {
+    "save a snapshot and signal the actor once idle, and recover from the snapshot" in {
+      val outcomeProbe = createTestProbe[SnapshotOutcome]()
+      val passivateProbe = createTestProbe[String]()
+      val config = createLedgerConfig(uniquePersistenceId("test-passivation"))
+        .withSnapshotOutcomeHandler(outcomeProbe.ref ! _)
+        .withPassivation(
+          PassivationConfig(
+            idleTimeout = 500.millis,
+            passivateMessage = Some(Append("passivate", passivateProbe.ref)),
+          ))
+
+      // Stops on the passivation message, and handles the other messages like a ledger
+      def handler(state: Vector[String], effector: PersistenceEffector[Vector[String], Any, Append])
+        : Behavior[Append] =
+        Behaviors.receiveMessage {
+          case Append("passivate", replyTo) =>
+            replyTo ! "passivating"
+            Behaviors.stopped
+          case Append("get", replyTo) =>
+            replyTo ! state.mkString(",")
+            Behaviors.same
+          case Append(value, replyTo) =>
+            effector.persistEvent(TestEventA(value)) { event =>
+              replyTo ! s"persisted: $value"
+              handler(state :+ event.toString, effector)
+            }
+        }
+
+      val replyProbe = createTestProbe[String]()
+      val actor = spawnEffector(config)(handler)
+      Seq("a", "b").foreach(value => actor ! Append(value, replyProbe.ref))
+      replyProbe.receiveMessages(2, 10.seconds) shouldBe Seq("persisted: a", "persisted: b")
+
+      // Messages keep the entity active
+      (1 to 3).foreach { _ =>
+        Thread.sleep(200)
+        actor ! Append("get", replyProbe.ref)
+        replyProbe.expectMessage(10.seconds, "TestEventA(a),TestEventA(b)")
+      }
+      passivateProbe.expectNoMessage(100.millis)
+
+      outcomeProbe.expectMessage(10.seconds, SnapshotOutcome.Saved(2L))
+      passivateProbe.expectMessage(10.seconds, "passivating")
+      replyProbe.expectTerminated(actor, 10.seconds)
+
+      val recovered = spawnEffector(config)(handler)
+      recovered ! Append("get", replyProbe.ref)
+      replyProbe.expectMessage(10.seconds, "TestEventA(a),TestEventA(b)")
+      // Nothing was persisted since the snapshot, so the entity is passivated without a new one
+      passivateProbe.expectMessage(10.seconds, "passivating")
+      outcomeProbe.expectNoMessage(100.millis)
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.TestEvent
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceEffector, PersistenceEffectorConfig}
+import org.apache.pekko.actor.typed.Behavior
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+
+import scala.concurrent.duration.*
+
+/**
+ * Test for the completion of writes that the journal rejects or that time out
+ */
+class PersistFailureSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  /**
+   * Handler of a ledger like [[ledgerHandler]] that persists two events per value with the given persist method, the
+   * second one being rejected for the value `bad`
+   */
+  private def multiEventHandler(method: String)(
+    state: Vector[String],
+    effector: PersistenceEffector[Vector[String], Any, Append]): Behavior[Append] =
+    Behaviors.receiveMessage {
+      case Append("get", replyTo) =>
+        replyTo ! state.mkString(",")
+        Behaviors.same
+      case Append(value, replyTo) =>
+        val second = if (value == "bad") UnserializableEvent(value) else TestEvent.TestEventA(s"$value-2")
+        val events = Seq(TestEvent.TestEventA(value), second)
+        val newState = state ++ events.map(_.toString)
+        val onFailure = (cause: Throwable) => {
+          replyTo ! s"failed: $value: ${cause.getClass.getSimpleName}"
+          multiEventHandler(method)(state, effector)
+        }
+        def onPersisted(): Behavior[Append] = {
+          replyTo ! s"persisted: $value"
+          multiEventHandler(method)(newState, effector)
+        }
+        method match {
+          case "persistEvents" =>
+            effector.persistEvents(events, onFailure)(_ => onPersisted())
+          case "persistEventWithSnapshot" =>
+            effector.persistEventWithSnapshot(second, state :+ second.toString, forceSnapshot = true, onFailure) { _ =>
+              replyTo ! s"persisted: $value"
+              multiEventHandler(method)(state :+ second.toString, effector)
+            }
+          case "persistEventsWithSnapshot" =>
+            effector.persistEventsWithSnapshot(events, newState, forceSnapshot = true, onFailure)(_ => onPersisted())
+        }
+    }
+
+  "PersistenceEffector with failure handling" should {
+    "complete a rejected write with onFailure and keep running" in {
+      val persistenceId = uniquePersistenceId("test-persist-rejected")
+      val config = createLedgerConfig(persistenceId).withPersistTimeout(5.seconds)
+
+      val replyProbe = createTestProbe[String]()
+      val actor = spawnEffector(config)(ledgerHandler)
+      actor ! Append("bad", replyProbe.ref)
+      actor ! Append("good", replyProbe.ref)
+      replyProbe.receiveMessages(2, 10.seconds) shouldBe Seq(
+        "failed: bad: NotSerializableException",
+        "persisted: good")
+      testKit.stop(actor)
+
+      readJournal(persistenceId) shouldBe Seq(TestEvent.TestEventA("good"))
+    }
+
+    "keep writing when a write that timed out is rejected afterwards" in withHoldingJournal { kit =>
+      val config = createLedgerConfig(uniquePersistenceId("test-timeout-rejected")).withPersistTimeout(200.millis)
+
+      val replyProbe = kit.createTestProbe[String]()
+      val actor = spawnEffector(config, kit)(ledgerHandler)
+      actor ! Append("bad", replyProbe.ref)
+      val rejected = nextHeldWrite()
+      replyProbe.expectMessage(10.seconds, "failed: bad: TimeoutException")
+
+      // The write of "good" waits for the timed out one, whose rejection is discarded by the effector
+      actor ! Append("good", replyProbe.ref)
+      replyProbe.expectNoMessage(200.millis)
+      rejected.release()
+      nextHeldWrite().release()
+      replyProbe.expectMessage(10.seconds, "persisted: good")
+
+      actor ! Append("next", replyProbe.ref)
+      nextHeldWrite().release()
+      replyProbe.expectMessage(10.seconds, "persisted: next")
+      kit.stop(actor)
+
+      val recovered = spawnEffector(config, kit)(ledgerHandler)
+      recovered ! Append("get", replyProbe.ref)
+      replyProbe.expectMessage(
+        10.seconds,
+        Seq(TestEvent.TestEventA("good"), TestEvent.TestEventA("next")).mkString(","))
+    }
+
+    Seq("persistEvents", "persistEventWithSnapshot", "persistEventsWithSnapshot").foreach { method =>
+      Seq(1, 3).foreach { maxInFlightPersists =>
+        val mode = if (maxInFlightPersists > 1) "pipelined" else "sequential"
+        s"complete a rejected write of $method with onFailure in $mode mode" in {
+          val persistenceId = uniquePersistenceId(s"test-$method-rejected")
+          val config = createLedgerConfig(persistenceId).withMaxInFlightPersists(maxInFlightPersists)
+
+          val replyProbe = createTestProbe[String]()
+          val actor = spawnEffector(config)(multiEventHandler(method))
+          actor ! Append("bad", replyProbe.ref)
+          replyProbe.expectMessage(10.seconds, "failed: bad: NotSerializableException")
+          actor ! Append("good", replyProbe.ref)
+          replyProbe.expectMessage(10.seconds, "persisted: good")
+          testKit.stop(actor)
+
+          val persisted = readJournal(persistenceId)
+          persisted should not be empty
+          persisted.exists(_.isInstanceOf[UnserializableEvent]) shouldBe false
+        }
+      }
+    }
+
+    Seq(1, 3).foreach { maxInFlightPersists =>
+      val mode = if (maxInFlightPersists > 1) "pipelined" else "sequential"
+      s"complete a failed snapshot save with onFailure in $mode mode" in {
+        val config = PersistenceEffectorConfig
+          .create[Any, Any, Append](
+            persistenceId = uniquePersistenceId("test-snapshot-failed"),
+            initialState = "initial",
+            applyEvent = (_, event) => event,
+          )
+          .withMaxInFlightPersists(maxInFlightPersists)
+
+        val replyProbe = createTestProbe[String]()
+        val actor = spawnEffector(config) { (state, effector) =>
+          def handler(state: Any): Behavior[Append] =
+            Behaviors.receiveMessage {
+              case Append("get", replyTo) =>
+                replyTo ! state.toString
+                Behaviors.same
+              case Append(value, replyTo) =>
+                // The local snapshot store cannot serialize the lock of an UnserializableEvent
+                val snapshot = if (value == "bad") UnserializableEvent(value) else value
+                effector.persistSnapshot(
+                  snapshot,
+                  force = true,
+                  cause => {
+                    replyTo ! s"failed: $value"
+                    handler(state)
+                  },
+                ) { _ =>
+                  replyTo ! s"persisted: $value"
+                  handler(snapshot)
+                }
+            }
+          handler(state)
+        }
+
+        actor ! Append("good", replyProbe.ref)
+        replyProbe.expectMessage(10.seconds, "persisted: good")
+        actor ! Append("bad", replyProbe.ref)
+        // In pipelined mode the callback is invoked without waiting for the snapshot, then the failure is handled
+        if (maxInFlightPersists > 1) replyProbe.expectMessage(10.seconds, "persisted: bad")
+        replyProbe.expectMessage(10.seconds, "failed: bad")
+        actor ! Append("get", replyProbe.ref)
+        replyProbe.expectMessage(10.seconds, "good")
+      }
+    }
+  }
+}
@@ -0,0 +1,320 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceEffector, PersistenceEffectorConfig, PersistenceId}
+import com.github.j5ik2o.pekko.persistence.effector.{TestConfig, TestEvent, TestState}
+import com.typesafe.config.{Config, ConfigFactory}
+import org.apache.pekko.Done
+import org.apache.pekko.actor.testkit.typed.scaladsl.{ActorTestKit, ScalaTestWithActorTestKit}
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+import org.apache.pekko.actor.typed.{ActorRef, Behavior}
+import org.apache.pekko.actor.{ExtendedActorSystem, Props}
+import org.apache.pekko.pattern.ask
+import org.apache.pekko.persistence.journal.AsyncWriteJournal
+import org.apache.pekko.persistence.{
+  AtomicWrite,
+  PersistentActor,
+  PersistentRepr,
+  Recovery,
+  RecoveryCompleted,
+  SnapshotSelectionCriteria,
+}
+
+import java.io.NotSerializableException
+import java.util.concurrent.{LinkedBlockingQueue, TimeUnit}
+import scala.collection.concurrent.TrieMap
+import scala.collection.immutable
+import scala.collection.mutable.ArrayBuffer
+import scala.concurrent.duration.*
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.{Failure, Success, Try}
+
+object PersistedEffectorFixture {
+  final case class Append(value: String, replyTo: ActorRef[String])
+
+  /**
+   * Classic persistent actor that writes to the journal of an entity behind the back of its effector
+   */
+  final class JournalWriter(override val persistenceId: String) extends PersistentActor {
+    override def receiveRecover: Receive = { case _ => }
+
+    override def receiveCommand: Receive = { case event =>
+      persist(event)(_ => sender() ! Done)
+    }
+  }
+
+  /**
+   * Classic persistent actor that replays the whole journal of an entity, ignoring snapshots
+   */
+  final class JournalReader(override val persistenceId: String, replyTo: ActorRef[Seq[Any]]) extends PersistentActor {
+    private val events = ArrayBuffer.empty[Any]
+
+    override def recovery: Recovery = Recovery(fromSnapshot = SnapshotSelectionCriteria.None)
+
+    override def receiveRecover: Receive = {
+      case RecoveryCompleted =>
+        replyTo ! events.toSeq
+        context.stop(self)
+      case event =>
+        events += event
+    }
+
+    override def receiveCommand: Receive = PartialFunction.empty
+  }
+
+  /**
+   * Event rejected by the journal, because it cannot be serialized
+   */
+  final case class UnserializableEvent(value: String, lock: AnyRef = new Object)
+
+  /**
+   * Write held by [[HoldingJournal]] until the test releases it
+   */
+  final class HeldWrite(val messages: immutable.Seq[AtomicWrite]) {
+    private[PersistedEffectorFixture] val released: Promise[Unit] = Promise()
+
+    def release(): Unit = released.success(())
+  }
+
+  /**
+   * In-memory journal that holds each write until the test releases it, rejecting [[UnserializableEvent]]s
+   */
+  final class HoldingJournal extends AsyncWriteJournal {
+    private val journal = TrieMap.empty[String, Vector[PersistentRepr]]
+
+    override def asyncWriteMessages(messages: immutable.Seq[AtomicWrite]): Future[immutable.Seq[Try[Unit]]] = {
+      val write = new HeldWrite(messages)
+      HoldingJournal.heldWrites.put(write)
+      write.released.future.map { _ =>
+        messages.map { message =>
+          if (message.payload.exists(_.payload.isInstanceOf[UnserializableEvent]))
+            Failure(new NotSerializableException(classOf[UnserializableEvent].getName))
+          else {
+            journal.updateWith(message.persistenceId)(events => Some(events.getOrElse(Vector.empty) ++ message.payload))
+            Success(())
+          }
+        }
+      }(using ExecutionContext.parasitic)
+    }
+
+    override def asyncDeleteMessagesTo(persistenceId: String, toSequenceNr: Long): Future[Unit] = {
+      journal.updateWith(persistenceId)(_.map(_.filter(_.sequenceNr > toSequenceNr)))
+      Future.successful(())
+    }
+
+    override def asyncReplayMessages(persistenceId: String, fromSequenceNr: Long, toSequenceNr: Long, max: Long)(
+      recoveryCallback: PersistentRepr => Unit): Future[Unit] = {
+      journal
+        .getOrElse(persistenceId, Vector.empty)
+        .filter(repr => repr.sequenceNr >= fromSequenceNr && repr.sequenceNr <= toSequenceNr)
+        .take(math.min(max, Int.MaxValue.toLong).toInt)
+        .foreach(recoveryCallback)
+      Future.successful(())
+    }
+
+    override def asyncReadHighestSequenceNr(persistenceId: String, fromSequenceNr: Long): Future[Long] =
+      Future.successful(journal.get(persistenceId).flatMap(_.lastOption).fold(0L)(_.sequenceNr))
+  }
+
+  object HoldingJournal {
+    val heldWrites: LinkedBlockingQueue[HeldWrite] = new LinkedBlockingQueue[HeldWrite]()
+
+    def config: Config =
+      ConfigFactory
+        .parseString(s"""
+                        |pekko.persistence.journal.plugin = "holding-journal"
+                        |holding-journal.class = "${classOf[HoldingJournal].getName}"
+                        |""".stripMargin)
+        .withFallback(TestConfig.config)
+  }
+
+  /**
+   * Events of older versions, upcast to [[TestEvent]] during recovery
+   */
+  final case class LegacyAppendedV1(value: String)
+  final case class LegacyAppendedV2(value: String, source: String)
+  final case class LegacyAppendedAll(values: Seq[String])
+  case object LegacyHeartbeat
+
+  enum LedgerCommand {
+    case Write(value: String, readProbe: ActorRef[Vector[String]], replyTo: ActorRef[String])
+    case Read(replyTo: ActorRef[Vector[String]])
+  }
+}
+
+/**
+ * Actors, journals and handlers shared by the specs of the features of Persisted mode.
+ *
+ * The entities of these specs receive [[PersistedEffectorFixture.Append]] messages. The value `get` replies with the
+ * current state, any other value is persisted as an event.
+ */
+trait PersistedEffectorFixture { this: ScalaTestWithActorTestKit =>
+  import PersistedEffectorFixture.*
+
+  /**
+   * Spawn an actor that starts an effector from the configuration and hands it over to the given handler
+   */
+  protected def spawnEffector[S, E](config: PersistenceEffectorConfig[S, E, Append], kit: ActorTestKit = testKit)(
+    handler: (S, PersistenceEffector[S, E, Append]) => Behavior[Append]): ActorRef[Append] =
+    kit.spawn(Behaviors.setup[Append] { context =>
+      PersistenceEffector.fromConfig[S, E, Append](config) { case (state, effector) =>
+        handler(state, effector)
+      }(using context)
+    })
+
+  /**
+   * Handler that persists each value as a [[TestEvent.TestEventA]] and replies with the value once it is persisted
+   */
+  protected def appendHandler(state: TestState, effector: PersistenceEffector[TestState, TestEvent, Append])
+    : Behavior[Append] =
+    Behaviors.receiveMessage {
+      case Append("get", replyTo) =>
+        replyTo ! state.values.mkString(",")
+        Behaviors.same
+      case Append(value, replyTo) =>
+        effector.persistEvent(TestEvent.TestEventA(value)) { event =>
+          replyTo ! value
+          appendHandler(state.applyEvent(event), effector)
+        }
+    }
+
+  /**
+   * Handler like [[appendHandler]] that persists each event with the new state, forcing a snapshot for the values
+   * matching `forceSnapshot`
+   */
+  protected def snapshotHandler(forceSnapshot: String => Boolean)(
+    state: TestState,
+    effector: PersistenceEffector[TestState, TestEvent, Append]): Behavior[Append] =
+    Behaviors.receiveMessage {
+      case Append("get", replyTo) =>
+        replyTo ! state.values.mkString(",")
+        Behaviors.same
+      case Append(value, replyTo) =>
+        val event = TestEvent.TestEventA(value)
+        val newState = state.applyEvent(event)
+        effector.persistEventWithSnapshot(event, newState, forceSnapshot(value)) { _ =>
+          replyTo ! value
+          snapshotHandler(forceSnapshot)(newState, effector)
+        }
+    }
+
+  /**
+   * Handler of a ledger, whose state is the string representation of its events. The value `bad` is persisted as an
+   * [[UnserializableEvent]], which the journal rejects; the handler then replies with the cause and keeps its state.
+   */
+  protected def ledgerHandler(state: Vector[String], effector: PersistenceEffector[Vector[String], Any, Append])
+    : Behavior[Append] =
+    Behaviors.receiveMessage {
+      case Append("get", replyTo) =>
+        replyTo ! state.mkString(",")
+        Behaviors.same
+      case Append(value, replyTo) =>
+        val event = if (value == "bad") UnserializableEvent(value) else TestEvent.TestEventA(value)
+        effector.persistEvent(
+          event,
+          cause => {
+            replyTo ! s"failed: $value: ${cause.getClass.getSimpleName}"
+            ledgerHandler(state, effector)
+          },
+        ) { _ =>
+          replyTo ! s"persisted: $value"
+          ledgerHandler(state :+ event.toString, effector)
+        }
+    }
+
+  protected def createConfig(persistenceId: PersistenceId): PersistenceEffectorConfig[TestState, TestEvent, Append] =
+    PersistenceEffectorConfig.create[TestState, TestEvent, Append](
+      persistenceId = persistenceId,
+      initialState = TestState(),
+      applyEvent = (state, event) => state.applyEvent(event),
+    )
+
+  protected def createLedgerConfig(persistenceId: PersistenceId)
+    : PersistenceEffectorConfig[Vector[String], Any, Append] =
+    PersistenceEffectorConfig.create[Vector[String], Any, Append](
+      persistenceId = persistenceId,
+      initialState = Vector.empty,
+      applyEvent = (state, event) => state :+ event.toString,
+    )
+
+  protected def uniquePersistenceId(prefix: String): PersistenceId =
+    PersistenceId.ofUniqueId(s"$prefix-${java.util.UUID.randomUUID()}")
+
+  /**
+   * Persist the values through an [[appendHandler]] and stop the actor once all of them are persisted
+   */
+  protected def appendValues(
+    config: PersistenceEffectorConfig[TestState, TestEvent, Append],
+    values: Seq[String]): Unit = {
+    val replyProbe = createTestProbe[String]()
+    val actor = spawnEffector(config)(appendHandler)
+    values.foreach(value => actor ! Append(value, replyProbe.ref))
+    replyProbe.receiveMessages(values.size, 10.seconds)
+    testKit.stop(actor)
+  }
+
+  /**
+   * Recover an actor from the configuration and return its recovered state
+   */
+  protected def recoveredState[S, E](config: PersistenceEffectorConfig[S, E, Append]): S = {
+    val stateProbe = createTestProbe[S]()
+    val actor = spawnEffector(config) { (state, _) =>
+      stateProbe ! state
+      Behaviors.empty
+    }
+    val state = stateProbe.receiveMessage(10.seconds)
+    testKit.stop(actor)
+    state
+  }
+
+  /**
+   * Write the events to the journal of the entity with a classic persistent actor
+   */
+  protected def writeJournal(persistenceId: PersistenceId, events: Any*): Unit = {
+    val writer = system.classicSystem
+      .asInstanceOf[ExtendedActorSystem]
+      .systemActorOf(Props(new JournalWriter(persistenceId.asString)), s"journalWriter-${java.util.UUID.randomUUID()}")
+    events.foreach(event => writer.ask(event)(using 10.seconds).futureValue shouldBe Done)
+    system.classicSystem.stop(writer)
+  }
+
+  /**
+   * Read the whole journal of the entity, ignoring its snapshots
+   */
+  protected def readJournal(persistenceId: PersistenceId): Seq[Any] = {
+    val eventsProbe = createTestProbe[Seq[Any]]()
+    system.classicSystem
+      .asInstanceOf[ExtendedActorSystem]
+      .systemActorOf(
+        Props(new JournalReader(persistenceId.asString, eventsProbe.ref)),
+        s"journalReader-${java.util.UUID.randomUUID()}")
+    eventsProbe.receiveMessage(10.seconds)
+  }
+
+  /**
+   * Run the test with an actor test kit whose journal holds each write until the test releases it
+   */
+  protected def withHoldingJournal(test: ActorTestKit => Unit): Unit = {
+    HoldingJournal.heldWrites.clear()
+    val kit = ActorTestKit(HoldingJournal.config)
+    try test(kit)
+    finally kit.shutdownTestKit()
+  }
+
+  protected def nextHeldWrite(): HeldWrite = {
+    val write = HoldingJournal.heldWrites.poll(10, TimeUnit.SECONDS)
+    write should not be null
+    write
+  }
+
+  /**
+   * Release the held writes until the given number of events has been released, however the journal batched them
+   */
+  protected def releaseHeldWrites(events: Int): Unit = {
+    var released = 0
+    while (released < events) {
+      val write = nextHeldWrite()
+      released += write.messages.map(_.size).sum
+      write.release()
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.TestConfig
+import org.apache.pekko.actor.testkit.typed.scaladsl.ScalaTestWithActorTestKit
+import org.scalatest.wordspec.AnyWordSpecLike
+
+import java.io.File
+
+/**
+ * Base class of the specs of the features of Persisted mode
+ */
+abstract class PersistedEffectorSpecBase
+  extends ScalaTestWithActorTestKit(TestConfig.config)
+  with AnyWordSpecLike
+  with PersistedEffectorFixture {
+
+  // Ensure LevelDB storage directory is created before testing
+  override def beforeAll(): Unit = {
+    new File("target/journal").mkdirs()
+    new File("target/snapshot").mkdirs()
+    super.beforeAll()
+  }
+}
@@ -0,0 +1,184 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceEffector, PersistenceEffectorConfig}
+import com.github.j5ik2o.pekko.persistence.effector.{TestEvent, TestState}
+import org.apache.pekko.actor.typed.Behavior
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+
+import scala.concurrent.duration.*
+
+/**
+ * Test for the pipelined writes of Persisted mode
+ */
+class PipeliningSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  private def pipelinedLedgerConfig(prefix: String): PersistenceEffectorConfig[Vector[String], Any, Append] =
+    createLedgerConfig(uniquePersistenceId(prefix)).withMaxInFlightPersists(3)
+
+  "PersistenceEffector in pipelined mode" should {
+    "complete callbacks in order with multiple persists in flight and recover all events" in {
+      val config = createConfig(uniquePersistenceId("test-pipelined")).withMaxInFlightPersists(3)
+      val replyProbe = createTestProbe[String]()
+      val values = (1 to 10).map(n => s"value-$n")
+
+      val actor = spawnEffector(config)(appendHandler)
+      values.foreach(value => actor ! Append(value, replyProbe.ref))
+
+      replyProbe.receiveMessages(values.size, 10.seconds) shouldBe values
+
+      // Callbacks run once the writes are acknowledged, so the events are in the journal
+      testKit.stop(actor)
+      recoveredState(config).values shouldBe values
+    }
+
+    "write without waiting for the previous writes to be acknowledged" in withHoldingJournal { kit =>
+      val config = createConfig(uniquePersistenceId("test-pipelined-held")).withMaxInFlightPersists(3)
+      val replyProbe = kit.createTestProbe[String]()
+      val actor = spawnEffector(config, kit)(appendHandler)
+      Seq("a", "b", "c").foreach(value => actor ! Append(value, replyProbe.ref))
+
+      val first = nextHeldWrite()
+      first.messages should have size 1
+      replyProbe.expectNoMessage(200.millis)
+      first.release()
+
+      // The writes received while the first one was held are outstanding together, without any reply
+      val second = nextHeldWrite()
+      second.messages should have size 2
+      replyProbe.expectMessage(10.seconds, "a")
+      replyProbe.expectNoMessage(200.millis)
+      second.release()
+      replyProbe.receiveMessages(2, 10.seconds) shouldBe Seq("b", "c")
+    }
+
+    "continue with the behavior returned by each callback once its write is acknowledged" in withHoldingJournal { kit =>
+      val config = createConfig(uniquePersistenceId("test-pipelined-callbacks")).withMaxInFlightPersists(5)
+
+      // "which" replies with the label of the current behavior
+      def handler(
+        label: String,
+        state: TestState,
+        effector: PersistenceEffector[TestState, TestEvent, Append]): Behavior[Append] =
+        Behaviors.receiveMessage {
+          case Append("which", replyTo) =>
+            replyTo ! label
+            Behaviors.same
+          case Append("snapshot", replyTo) =>
+            effector.persistSnapshot(state, force = true) { _ =>
+              replyTo ! "snapshot"
+              handler("after snapshot", state, effector)
+            }
+          case Append(value, replyTo) =>
+            effector.persistEvent(TestEvent.TestEventA(value)) { _ =>
+              replyTo ! value
+              handler(s"after $value", state, effector)
+            }
+        }
+
+      val replyProbe = kit.createTestProbe[String]()
+      val actor = spawnEffector(config, kit)(handler("initial", _, _))
+
+      actor ! Append("a", replyProbe.ref)
+      val first = nextHeldWrite()
+      // The actor keeps its behavior while the write is in flight
+      actor ! Append("which", replyProbe.ref)
+      replyProbe.expectMessage(10.seconds, "initial")
+      actor ! Append("b", replyProbe.ref)
+      // The snapshot callback waits for the writes sent before the snapshot
+      actor ! Append("snapshot", replyProbe.ref)
+      replyProbe.expectNoMessage(200.millis)
+
+      first.release()
+      replyProbe.expectMessage(10.seconds, "a")
+      // The behavior returned by the callback of "a" replaces the current one, although "b" is still pending
+      actor ! Append("which", replyProbe.ref)
+      replyProbe.expectMessage(10.seconds, "after a")
+
+      nextHeldWrite().release()
+      replyProbe.receiveMessages(2, 10.seconds) shouldBe Seq("b", "snapshot")
+      actor ! Append("which", replyProbe.ref)
+      replyProbe.expectMessage(10.seconds, "after snapshot")
+    }
+
+    "invoke onReady only once however many writes are in flight" in withHoldingJournal { kit =>
+      val config = createConfig(uniquePersistenceId("test-pipelined-on-ready")).withMaxInFlightPersists(3)
+      val readyProbe = kit.createTestProbe[TestState]()
+      val replyProbe = kit.createTestProbe[String]()
+      val actor = spawnEffector(config, kit) { (state, effector) =>
+        readyProbe ! state
+        appendHandler(state, effector)
+      }
+      readyProbe.expectMessage(10.seconds, TestState())
+
+      Seq("a", "b", "c").foreach(value => actor ! Append(value, replyProbe.ref))
+      // The journal writes b and c together or one by one, depending on when they reach it
+      releaseHeldWrites(3)
+      replyProbe.receiveMessages(3, 10.seconds) shouldBe Seq("a", "b", "c")
+      readyProbe.expectNoMessage(200.millis)
+    }
+
+    "roll back to the last acknowledged event when a write is rejected" in withHoldingJournal { kit =>
+      val config = pipelinedLedgerConfig("test-pipelined-rollback")
+      val replyProbe = kit.createTestProbe[String]()
+      val actor = spawnEffector(config, kit)(ledgerHandler)
+
+      actor ! Append("a", replyProbe.ref)
+      nextHeldWrite().release()
+      replyProbe.expectMessage(10.seconds, "persisted: a")
+
+      actor ! Append("bad", replyProbe.ref)
+      val rejected = nextHeldWrite()
+      // The actor keeps its behavior while the write is outstanding
+      actor ! Append("get", replyProbe.ref)
+      replyProbe.expectMessage(10.seconds, TestEvent.TestEventA("a").toString)
+      rejected.release()
+      replyProbe.expectMessage(10.seconds, "failed: bad: NotSerializableException")
+
+      actor ! Append("get", replyProbe.ref)
+      replyProbe.expectMessage(10.seconds, TestEvent.TestEventA("a").toString)
+      actor ! Append("d", replyProbe.ref)
+      nextHeldWrite().release()
+      replyProbe.expectMessage(10.seconds, "persisted: d")
+      kit.stop(actor)
+
+      val recovered = spawnEffector(config, kit)(ledgerHandler)
+      recovered ! Append("get", replyProbe.ref)
+      replyProbe.expectMessage(10.seconds, Seq(TestEvent.TestEventA("a"), TestEvent.TestEventA("d")).mkString(","))
+    }
+
+    "fail the actor when a write is stored after a rejected one" in withHoldingJournal { kit =>
+      val config = pipelinedLedgerConfig("test-pipelined-stored")
+      val replyProbe = kit.createTestProbe[String]()
+      val actor = spawnEffector(config, kit)(ledgerHandler)
+
+      actor ! Append("bad", replyProbe.ref)
+      val rejected = nextHeldWrite()
+      // The write of "c" is sent to the journal after the rejected one, so it cannot be rolled back
+      actor ! Append("c", replyProbe.ref)
+      replyProbe.expectNoMessage(200.millis)
+      rejected.release()
+      nextHeldWrite().release()
+      replyProbe.expectTerminated(actor, 10.seconds)
+
+      val recovered = spawnEffector(config, kit)(ledgerHandler)
+      recovered ! Append("get", replyProbe.ref)
+      replyProbe.expectMessage(10.seconds, TestEvent.TestEventA("c").toString)
+    }
+
+    "fail the actor when a write without a failure callback is rejected" in {
+      val config = pipelinedLedgerConfig("test-pipelined-rejected")
+      val replyProbe = createTestProbe[String]()
+      val actor = spawnEffector(config) { (_, effector) =>
+        Behaviors.receiveMessage { case Append(value, replyTo) =>
+          effector.persistEvent(UnserializableEvent(value)) { _ =>
+            replyTo ! s"persisted: $value"
+            Behaviors.same
+          }
+        }
+      }
+      actor ! Append("bad", replyProbe.ref)
+      replyProbe.expectTerminated(actor, 10.seconds)
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
+  PersistenceEffector,
+  PersistenceEffectorConfig,
+  ReadOnlyCommandHandler,
+}
+import com.github.j5ik2o.pekko.persistence.effector.{TestEvent, TestState}
+import org.apache.pekko.actor.typed.Behavior
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+
+import scala.concurrent.duration.*
+
+/**
+ * Test for the read-only commands served while a write is in flight
+ */
+class ReadOnlyCommandHandlerSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  "PersistenceEffector with a read-only command handler" should {
+    "handle read-only messages with the confirmed state while a write is in flight" in {
+      val config =
+        PersistenceEffectorConfig
+          .create[TestState, TestEvent, LedgerCommand](
+            persistenceId = uniquePersistenceId("test-read-only"),
+            initialState = TestState(),
+            applyEvent = (state, event) => state.applyEvent(event),
+          )
+          .withReadOnlyCommandHandler(ReadOnlyCommandHandler.fromPartialFunction[TestState, LedgerCommand] {
+            case (state, LedgerCommand.Read(replyTo)) => replyTo ! state.values
+          })
+
+      def handler(
+        state: TestState,
+        effector: PersistenceEffector[TestState, TestEvent, LedgerCommand],
+      ): Behavior[LedgerCommand] =
+        Behaviors.setup { context =>
+          Behaviors.receiveMessage {
+            case LedgerCommand.Write(value, readProbe, replyTo) =>
+              // The read is enqueued before the write is acknowledged, so it arrives while the effector is waiting
+              context.self ! LedgerCommand.Read(readProbe)
+              val event = TestEvent.TestEventA(value)
+              val newState = state.applyEvent(event)
+              effector.persistEvent(event) { _ =>
+                replyTo ! value
+                handler(newState, effector)
+              }
+            case LedgerCommand.Read(replyTo) =>
+              replyTo ! state.values
+              Behaviors.same
+          }
+        }
+
+      val readProbe = createTestProbe[Vector[String]]()
+      val replyProbe = createTestProbe[String]()
+
+      val actor = spawn(Behaviors.setup[LedgerCommand] { context =>
+        PersistenceEffector.fromConfig[TestState, TestEvent, LedgerCommand](config) { case (state, effector) =>
+          handler(state, effector)
+        }(using context)
+      })
+
+      actor ! LedgerCommand.Write("value-1", readProbe.ref, replyProbe.ref)
+      readProbe.expectMessage(10.seconds, Vector.empty)
+      replyProbe.expectMessage(10.seconds, "value-1")
+
+      actor ! LedgerCommand.Write("value-2", readProbe.ref, replyProbe.ref)
+      readProbe.expectMessage(10.seconds, Vector("value-1"))
+      replyProbe.expectMessage(10.seconds, "value-2")
+
+      actor ! LedgerCommand.Read(readProbe.ref)
+      readProbe.expectMessage(10.seconds, Vector("value-1", "value-2"))
+
+      testKit.stop(actor)
+    }
+  }
+}
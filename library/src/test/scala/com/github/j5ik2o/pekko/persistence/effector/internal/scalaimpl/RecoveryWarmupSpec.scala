@@ -0,0 +1,79 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{EventUpcaster, PersistenceEffectorConfig, RecoveryWarmup}
+import com.github.j5ik2o.pekko.persistence.effector.{TestEvent, TestState}
+import org.apache.pekko.stream.scaladsl.Source
+
+/**
+ * Test for the bulk recovery that warms up the states of many entities
+ */
+class RecoveryWarmupSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  "PersistenceEffector with recovery warmup" should {
+    "hand recovered states over to the actors of the entities" in {
+      val persistenceIds = (1 to 3).map(n => uniquePersistenceId(s"test-warmup-$n"))
+      persistenceIds.foreach(persistenceId => appendValues(createConfig(persistenceId), Seq("a", "b")))
+
+      val warmup = RecoveryWarmup(system)
+      val warmed = warmup
+        .warmUp[TestState, TestEvent](Source(persistenceIds), TestState(), (state, event) => state.applyEvent(event))
+        .futureValue
+      warmed shouldBe 3
+
+      recoveredState(createConfig(persistenceIds.head)) shouldBe TestState(Vector("a", "b"))
+      warmup.warmedCount shouldBe 2
+      warmup.clear()
+    }
+
+    "recover from the journal when the warmed state is outdated" in {
+      val persistenceId = uniquePersistenceId("test-warmup-outdated")
+      val config = createConfig(persistenceId)
+      appendValues(config, Seq("a"))
+
+      RecoveryWarmup(system)
+        .warmUp[TestState, TestEvent](
+          Source.single(persistenceId),
+          TestState(),
+          (state, event) => state.applyEvent(event))
+        .futureValue shouldBe 1
+
+      writeJournal(persistenceId, TestEvent.TestEventA("b"))
+
+      recoveredState(config) shouldBe TestState(Vector("a", "b"))
+    }
+
+    "replay legacy events with the upcaster of the effector configuration" in {
+      val persistenceId = uniquePersistenceId("test-warmup-upcast")
+      writeJournal(persistenceId, LegacyAppendedV1("a"), TestEvent.TestEventA("b"))
+
+      val appliedEvents = new java.util.concurrent.atomic.AtomicInteger()
+      val config = PersistenceEffectorConfig
+        .create[TestState, TestEvent, Append](
+          persistenceId = persistenceId,
+          initialState = TestState(),
+          applyEvent = (state, event) => {
+            appliedEvents.incrementAndGet()
+            state.applyEvent(event)
+          },
+        )
+        .withEventUpcaster(
+          EventUpcaster[TestEvent](snapshotAfterUpcast = false)
+            .withStep[LegacyAppendedV1](event => Seq(TestEvent.TestEventA(event.value))))
+      val warmup = RecoveryWarmup(system)
+
+      // A state warmed up without the upcaster is not taken over by an effector that upcasts
+      warmup
+        .warmUp[TestState, Any](Source.single(persistenceId), TestState(), (state, _) => state)
+        .futureValue shouldBe 1
+      recoveredState(config) shouldBe TestState(Vector("a", "b"))
+      appliedEvents.get() shouldBe 2
+
+      warmup.warmUpFromConfig(Source.single(persistenceId), config).futureValue shouldBe 1
+      appliedEvents.set(0)
+      recoveredState(config) shouldBe TestState(Vector("a", "b"))
+      appliedEvents.get() shouldBe 0
+      warmup.warmedCount shouldBe 0
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.TestEvent
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{SnapshotCriteria, SnapshotOutcome}
+import org.apache.pekko.serialization.SerializationExtension
+
+import scala.concurrent.duration.*
+
+/**
+ * Test for the size-based snapshot criteria of an effector
+ */
+class SizeBasedSnapshotSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  "PersistenceEffector with size-based snapshot criteria" should {
+    "take a snapshot whenever the serialized events since the last one reach the size" in {
+      val eventSize =
+        SerializationExtension(system.classicSystem).serialize(TestEvent.TestEventA("value-1")).get.length.toLong
+      val outcomeProbe = createTestProbe[SnapshotOutcome]()
+      val config = createConfig(uniquePersistenceId("test-size-based"))
+        .withSnapshotCriteria(SnapshotCriteria.sizeBased(eventSize * 2))
+        .withSnapshotOutcomeHandler(outcomeProbe.ref ! _)
+
+      val replyProbe = createTestProbe[String]()
+      val actor = spawnEffector(config)(snapshotHandler(_ => false))
+      (1 to 5).foreach(n => actor ! Append(s"value-$n", replyProbe.ref))
+      replyProbe.receiveMessages(5, 10.seconds)
+
+      outcomeProbe.receiveMessages(2, 10.seconds) shouldBe Seq(SnapshotOutcome.Saved(2L), SnapshotOutcome.Saved(4L))
+      outcomeProbe.expectNoMessage(200.millis)
+      testKit.stop(actor)
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{HistogramInstrumentation, PersistenceId, SnapshotCodec}
+
+import scala.concurrent.duration.*
+
+/**
+ * Test for the snapshots encoded with a snapshot codec
+ */
+class SnapshotCodecEffectorSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  "PersistenceEffector with a snapshot codec" should {
+    "save compressed snapshots and recover from them" in {
+      val entityType = s"compressed${java.util.UUID.randomUUID().toString.replace("-", "")}"
+      val instrumentation = new HistogramInstrumentation
+      val values = (1 to 50).map(n => s"value-$n")
+      val baseConfig = createConfig(PersistenceId.of(entityType, "1")).withInstrumentation(instrumentation)
+
+      val replyProbe = createTestProbe[String]()
+      val writer =
+        spawnEffector(baseConfig.withSnapshotCodec(SnapshotCodec.Deflate))(snapshotHandler(_ == values.last))
+      values.foreach(value => writer ! Append(value, replyProbe.ref))
+      replyProbe.receiveMessages(values.size, 10.seconds)
+      testKit.stop(writer)
+
+      instrumentation.encodedSnapshotSize(entityType).count shouldBe 1L
+      instrumentation.snapshotEncodeDuration(entityType).count shouldBe 1L
+      instrumentation.encodedSnapshotSize(entityType).max should be < instrumentation.snapshotSize(entityType).max
+
+      // Built-in codecs are found by the identifier stored with the snapshot, even when no codec is configured
+      Seq(baseConfig.withSnapshotCodec(SnapshotCodec.Deflate), baseConfig).foreach { config =>
+        recoveredState(config).values shouldBe values
+      }
+      instrumentation.snapshotHits(entityType) shouldBe 2L
+      instrumentation.snapshotDecodeDuration(entityType).count shouldBe 2L
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.TestEvent
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{RetentionCriteria, SnapshotOutcome}
+
+import scala.concurrent.duration.*
+
+/**
+ * Test for the retention of the snapshots and events of an effector
+ */
+class SnapshotRetentionSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  "PersistenceEffector with retention" should {
+    "keep the latest snapshots at arbitrary positions and delete the events they cover" in {
+      val persistenceId = uniquePersistenceId("test-retention-index")
+      val outcomeProbe = createTestProbe[SnapshotOutcome]()
+      val config = createConfig(persistenceId)
+        .withRetentionCriteria(
+          RetentionCriteria.snapshotEvery(numberOfEvents = 10, keepNSnapshots = 2).withDeleteEventsOnSnapshot(true))
+        .withSnapshotOutcomeHandler(outcomeProbe.ref ! _)
+      // Forced snapshots that are not on multiples of snapshotEvery
+      val snapshotValues = Set("value-3", "value-4", "value-7")
+
+      val replyProbe = createTestProbe[String]()
+      val actor = spawnEffector(config)(snapshotHandler(snapshotValues.contains))
+      (1 to 7).foreach(n => actor ! Append(s"value-$n", replyProbe.ref))
+      replyProbe.receiveMessages(7, 10.seconds)
+
+      // Snapshots and events are deleted concurrently, so their outcomes may arrive in any order
+      outcomeProbe.receiveMessages(5, 10.seconds) should contain theSameElementsAs Seq(
+        SnapshotOutcome.Saved(3L),
+        SnapshotOutcome.Saved(4L),
+        SnapshotOutcome.Saved(7L),
+        SnapshotOutcome.Deleted(3L),
+        SnapshotOutcome.EventsDeleted(4L),
+      )
+      testKit.stop(actor)
+
+      // Events up to the oldest kept snapshot (4) are deleted from the journal
+      eventually {
+        readJournal(persistenceId) shouldBe (5 to 7).map(n => TestEvent.TestEventA(s"value-$n"))
+      }
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl
+
+import com.github.j5ik2o.pekko.persistence.effector.TestState
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{PersistenceId, StateCache}
+
+/**
+ * Test for the cache of the states of stopped entities
+ */
+class StateCacheSpec extends PersistedEffectorSpecBase {
+
+  "PersistenceEffector with state caching" should {
+    "take over the state cached when the actor stopped instead of replaying the events" in {
+      val persistenceId = uniquePersistenceId("test-state-cache")
+      val config = createConfig(persistenceId).withStateCaching(true)
+      val stateCache = StateCache(system)
+      appendValues(config, Seq("a", "b"))
+
+      val cached = stateCache.take(persistenceId)
+      cached.map(entry => (entry.state, entry.sequenceNr)) shouldBe Some((TestState(Vector("a", "b")), 2L))
+
+      // A state that replaying the events would not produce shows that the replay is skipped
+      stateCache.put(persistenceId, TestState(Vector("cached")), 2L, 0L)
+      recoveredState(config) shouldBe TestState(Vector("cached"))
+    }
+
+    "recover from the journal when the cached state is outdated" in {
+      val persistenceId = uniquePersistenceId("test-state-cache-outdated")
+      val config = createConfig(persistenceId).withStateCaching(true)
+      appendValues(config, Seq("a", "b"))
+
+      StateCache(system).put(persistenceId, TestState(Vector("cached")), 1L, 0L)
+      recoveredState(config) shouldBe TestState(Vector("a", "b"))
+    }
+
+    "evict the least recently cached states beyond the maximum number of entries" in {
+      val stateCache = StateCache(system)
+      val persistenceIds = (1 to 3).map(n => PersistenceId.ofUniqueId(s"test-state-cache-lru-$n"))
+      stateCache.setMaxEntries(2)
+      try {
+        persistenceIds.zipWithIndex.foreach { case (persistenceId, index) =>
+          stateCache.put(persistenceId, TestState(), index.toLong + 1, 0L)
+        }
+        stateCache.take(persistenceIds.head) shouldBe None
+        stateCache.take(persistenceIds(2)).map(_.sequenceNr) shouldBe Some(3L)
+      } finally {
+        stateCache.clear()
+        stateCache.setMaxEntries(StateCache.DefaultMaxEntries)
+      }
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package com.github.j5ik2o.pekko.persistence.effector.javadsl
+
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.{
+  HistogramInstrumentation,
+  PersistenceMode as SPersistenceMode,
+  SnapshotCodec,
+  SnapshotOutcome,
+  StashOverflowStrategy as SStashOverflowStrategy,
+}
+import com.github.j5ik2o.pekko.persistence.effector.{TestEvent, TestMessage, TestState}
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import java.time.Duration
+import java.util.Optional
+import scala.collection.mutable.ArrayBuffer
+import scala.concurrent.duration.*
+
+/**
+ * Unit test for the conversion of the Java PersistenceEffectorConfig to the Scala configuration
+ */
+class PersistenceEffectorConfigSpec extends AnyWordSpec with Matchers {
+
+  private def config(mode: PersistenceMode = PersistenceMode.PERSISTENCE) =
+    PersistenceEffectorConfig
+      .create[TestState, TestEvent, TestMessage](
+        PersistenceId.ofUniqueId("test-java-config"),
+        TestState(),
+        (state, event) => state.applyEvent(event),
+      )
+      .withPersistenceMode(mode)
+
+  "Java PersistenceEffectorConfig" should {
+    "convert the maximum number of in-flight persists" in {
+      config().withMaxInFlightPersists(3).toScala.maxInFlightPersists shouldBe 3
+      an[IllegalArgumentException] should be thrownBy config().withMaxInFlightPersists(0)
+    }
+
+    "convert the batching configuration" in {
+      val batching =
+        config().withBatchingConfig(BatchingConfig.create(10, Duration.ofMillis(20))).toScala.batchingConfig
+      batching.map(b => (b.maxBatchSize, b.maxLatency)) shouldBe Some((10, 20.millis))
+    }
+
+    "convert asynchronous snapshots and pass the snapshot outcomes to the Java handler" in {
+      val outcomes = ArrayBuffer.empty[SnapshotOutcome]
+      val scalaConfig =
+        config().withAsyncSnapshots(true).withSnapshotOutcomeHandler(outcome => outcomes += outcome).toScala
+      scalaConfig.asyncSnapshots shouldBe true
+      scalaConfig.snapshotOutcomeHandler(SnapshotOutcome.Saved(3L))
+      outcomes shouldBe Seq(SnapshotOutcome.Saved(3L))
+    }
+
+    "pass the instrumentation through" in {
+      val instrumentation = new HistogramInstrumentation
+      config().withInstrumentation(instrumentation).toScala.instrumentation should be theSameInstanceAs instrumentation
+    }
+
+    "convert the read-only command handler" in {
+      val query = TestMessage.SnapshotsDeleted(1L)
+      val handled = ArrayBuffer.empty[TestMessage]
+      val readOnlyCommandHandler = ReadOnlyCommandHandler.create[TestState, TestMessage](
+        (_, message) => message == query,
+        (_, message) => handled += message,
+      )
+      val handler = config().withReadOnlyCommandHandler(readOnlyCommandHandler).toScala.readOnlyCommandHandler.get
+      handler.isReadOnly(TestState(), query) shouldBe true
+      handler.isReadOnly(TestState(), TestMessage.StateRecovered(TestState())) shouldBe false
+      handler.handle(TestState(), query)
+      handled shouldBe Seq(query)
+    }
+
+    "convert the delta snapshot configuration" in {
+      val deltaSnapshotConfig = DeltaSnapshotConfig.create[TestState, Vector[String]](
+        5,
+        (base, current) => current.values.drop(base.values.size),
+        (base, delta) => TestState(base.values ++ delta),
+      )
+      val delta = config().withDeltaSnapshotConfig(deltaSnapshotConfig).toScala.deltaSnapshotConfig.get
+      val base = TestState(Vector("a"))
+      val current = TestState(Vector("a", "b", "c"))
+      delta.fullSnapshotEvery shouldBe 5
+      delta.patch(base, delta.diff(base, current)) shouldBe current
+    }
+
+    "convert the deletion of events with old snapshots" in {
+      val retention = RetentionCriteria.ofSnapshotEvery(10, 2).withDeleteEventsOnSnapshot(true)
+      val converted = config().withRetentionCriteria(retention).toScala.retentionCriteria
+      converted.map(_.deleteEventsOnSnapshot) shouldBe Some(true)
+    }
+
+    "convert the persist timeout and reject it together with pipelining" in {
+      config().withPersistTimeout(Duration.ofSeconds(5)).toScala.persistTimeout shouldBe Some(5.seconds)
+      an[IllegalArgumentException] should be thrownBy
+        config().withPersistTimeout(Duration.ofSeconds(5)).withMaxInFlightPersists(2)
+    }
+
+    "convert the stash overflow strategies" in {
+      def converted(strategy: StashOverflowStrategy[TestMessage]) =
+        config().withStashOverflowStrategy(strategy).toScala.stashOverflowStrategy
+      converted(StashOverflowStrategy.fail()) shouldBe SStashOverflowStrategy.Fail
+      converted(StashOverflowStrategy.dropNewest()) shouldBe SStashOverflowStrategy.DropNewest
+      converted(StashOverflowStrategy.dropOldest()) shouldBe SStashOverflowStrategy.DropOldest
+
+      val rejected = ArrayBuffer.empty[TestMessage]
+      converted(StashOverflowStrategy.reject(message => rejected += message)) match {
+        case SStashOverflowStrategy.Reject(onRejected) => onRejected(TestMessage.SnapshotsDeleted(1L))
+        case other => fail(s"Unexpected strategy: $other")
+      }
+      rejected shouldBe Seq(TestMessage.SnapshotsDeleted(1L))
+    }
+
+    "convert Direct mode" in {
+      config(PersistenceMode.DIRECT).toScala.persistenceMode shouldBe SPersistenceMode.Direct
+    }
+
+    "accept shared write batching in Direct mode only" in {
+      val batching = BatchingConfig.create(10, Duration.ofMillis(20))
+      config(PersistenceMode.DIRECT).withSharedWriteBatching(batching).toScala.sharedWriteBatching should not be empty
+      an[IllegalArgumentException] should be thrownBy config().withSharedWriteBatching(batching)
+    }
+
+    "convert the passivation configuration" in {
+      val passivateMessage = TestMessage.SnapshotsDeleted(0L)
+      val passivation =
+        PassivationConfig.create[TestMessage](Duration.ofMinutes(1), true, Optional.of(passivateMessage))
+      val converted = config().withPassivation(passivation).toScala.passivation.get
+      converted.idleTimeout shouldBe 1.minute
+      converted.snapshotOnPassivate shouldBe true
+      converted.passivateMessage shouldBe Some(passivateMessage)
+    }
+
+    "convert the recovery configuration" in {
+      val recoveryConfig = RecoveryConfig.create(100, Optional.of("recovery-dispatcher"))
+      val recovery = config().withRecoveryConfig(recoveryConfig).toScala.recoveryConfig
+      recovery.map(r => (r.chunkSize, r.dispatcher)) shouldBe Some((100, Some("recovery-dispatcher")))
+    }
+
+    "convert the event upcaster" in {
+      val upcaster = EventUpcaster
+        .create[TestEvent](true)
+        .withStep(
+          classOf[java.lang.Integer],
+          (value: java.lang.Integer) => java.util.List.of[TestEvent](TestEvent.TestEventB(value)),
+        )
+      val converted = config().withEventUpcaster(upcaster).toScala.eventUpcaster.get
+      converted.snapshotAfterUpcast shouldBe true
+      converted.upcast(Integer.valueOf(7)) shouldBe Seq(TestEvent.TestEventB(7))
+    }
+
+    "pass the snapshot codec through" in {
+      config().withSnapshotCodec(SnapshotCodec.Deflate).toScala.snapshotCodec shouldBe Some(SnapshotCodec.Deflate)
+    }
+
+    "pass the packed batch codec through and reject it where sequence numbers count events" in {
+      config().withPackedBatches(SnapshotCodec.Deflate).toScala.packedBatchCodec shouldBe Some(SnapshotCodec.Deflate)
+      an[IllegalArgumentException] should be thrownBy
+        config().withPackedBatches(SnapshotCodec.Deflate).withSnapshotCriteria(SnapshotCriteria.every(10))
+    }
+
+    "convert state caching" in {
+      config().withStateCaching(true).toScala.stateCaching shouldBe true
+    }
+  }
+}
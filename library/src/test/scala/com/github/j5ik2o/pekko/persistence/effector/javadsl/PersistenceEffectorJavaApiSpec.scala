@@ -0,0 +1,170 @@
+package com.github.j5ik2o.pekko.persistence.effector.javadsl
+
+import com.github.j5ik2o.pekko.persistence.effector.internal.scalaimpl.{
+  PersistedEffectorFixture,
+  PersistedEffectorSpecBase,
+}
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl.SnapshotOutcome
+import com.github.j5ik2o.pekko.persistence.effector.{TestEvent, TestState}
+import org.apache.pekko.actor.typed.scaladsl.Behaviors
+import org.apache.pekko.actor.typed.{ActorRef, Behavior}
+
+import scala.concurrent.duration.*
+import scala.jdk.CollectionConverters.*
+
+/**
+ * Test of an effector configured and driven through the Java API
+ */
+class PersistenceEffectorJavaApiSpec extends PersistedEffectorSpecBase {
+  import PersistedEffectorFixture.*
+
+  private def createJavaConfig(prefix: String): PersistenceEffectorConfig[TestState, TestEvent, Append] =
+    PersistenceEffectorConfig.create[TestState, TestEvent, Append](
+      PersistenceId.ofUniqueId(s"$prefix-${java.util.UUID.randomUUID()}"),
+      TestState(),
+      (state, event) => state.applyEvent(event),
+    )
+
+  private def spawnJavaEffector(config: PersistenceEffectorConfig[TestState, TestEvent, Append])(
+    handler: (TestState, PersistenceEffector[TestState, TestEvent, Append]) => Behavior[Append]): ActorRef[Append] =
+    spawn(PersistenceEffector.fromConfig[TestState, TestEvent, Append](config, handler(_, _)))
+
+  /**
+   * Handler that persists each value with the new state, forcing a snapshot for the values matching `forceSnapshot`,
+   * and reports every message it receives before handling it
+   */
+  private def snapshotHandler(seen: ActorRef[Any], forceSnapshot: String => Boolean)(
+    state: TestState,
+    effector: PersistenceEffector[TestState, TestEvent, Append]): Behavior[Append] =
+    Behaviors.receiveMessage { msg =>
+      seen ! msg
+      val event = TestEvent.TestEventA(msg.value)
+      val newState = state.applyEvent(event)
+      effector.persistEventWithSnapshot(
+        event,
+        newState,
+        forceSnapshot(msg.value),
+        _ => {
+          msg.replyTo ! msg.value
+          snapshotHandler(seen, forceSnapshot)(newState, effector)
+        },
+      )
+    }
+
+  /**
+   * Default message converter that reports the sequence numbers it wraps as deleted events. It is generic in the
+   * message type, as the standard wrappers are not messages of the actor.
+   */
+  private def reportingDeletedEvents[M](deleted: ActorRef[Long]): MessageConverter[TestState, TestEvent, M] = {
+    val defaults = MessageConverter.defaultFunctions[TestState, TestEvent, M]
+    new MessageConverter[TestState, TestEvent, M] {
+      override def wrapPersistedSnapshot(state: TestState): M & PersistedState[TestState, M] =
+        defaults.wrapPersistedSnapshot(state)
+
+      override def wrapRecoveredState(state: TestState): M & RecoveredState[TestState, M] =
+        defaults.wrapRecoveredState(state)
+
+      override def wrapDeleteSnapshots(maxSequenceNumber: java.lang.Long): M & DeletedSnapshots[M] =
+        defaults.wrapDeleteSnapshots(maxSequenceNumber)
+
+      override def wrapDeletedEvents(toSequenceNumber: java.lang.Long): M & DeletedEvents[M] = {
+        deleted ! toSequenceNumber.longValue
+        super.wrapDeletedEvents(toSequenceNumber)
+      }
+    }
+  }
+
+  /**
+   * Handler of a ledger whose state is the list of its events. Each value names the persist method to use and the
+   * value to persist, e.g. `persistEvents:bad`; the value `bad` is persisted as an [[UnserializableEvent]], which the
+   * journal and the snapshot store cannot serialize. The failures are handled with the onFailure overloads.
+   */
+  private def ledgerHandler(
+    state: Vector[Any],
+    effector: PersistenceEffector[Vector[Any], Any, Append]): Behavior[Append] =
+    Behaviors.receiveMessage { case Append(command, replyTo) =>
+      val method = command.takeWhile(_ != ':')
+      val value = command.drop(method.length + 1)
+      val event: Any = if (value == "bad") UnserializableEvent(value) else TestEvent.TestEventA(value)
+      val events = java.util.List.of[Any](TestEvent.TestEventA(s"$value-1"), event)
+      val onFailure: java.util.function.Function[Throwable, Behavior[Append]] = _ => {
+        replyTo ! s"failed: $command"
+        ledgerHandler(state, effector)
+      }
+      def onPersisted(newState: Vector[Any]): Behavior[Append] = {
+        replyTo ! s"persisted: $command"
+        ledgerHandler(newState, effector)
+      }
+      method match {
+        case "persistEvent" =>
+          effector.persistEvent(event, _ => onPersisted(state :+ event), onFailure)
+        case "persistEvents" =>
+          effector.persistEvents(events, _ => onPersisted(state ++ events.asScala), onFailure)
+        case "persistEventWithSnapshot" =>
+          effector.persistEventWithSnapshot(event, state :+ event, true, _ => onPersisted(state :+ event), onFailure)
+        case "persistEventsWithSnapshot" =>
+          val newState = state ++ events.asScala
+          effector.persistEventsWithSnapshot(events, newState, true, _ => onPersisted(newState), onFailure)
+        case "persistSnapshot" =>
+          effector.persistSnapshot(state :+ event, true, snapshot => onPersisted(snapshot), onFailure)
+      }
+    }
+
+  "PersistenceEffector of the Java API" should {
+    "report the deletion of events through the message converter without passing it to the actor behavior" in {
+      val deletedProbe = createTestProbe[Long]()
+      val outcomeProbe = createTestProbe[SnapshotOutcome]()
+      val config = createJavaConfig("test-java-delete-events")
+        .withMessageConverter(reportingDeletedEvents(deletedProbe.ref))
+        .withRetentionCriteria(RetentionCriteria.ofSnapshotEvery(10, 2).withDeleteEventsOnSnapshot(true))
+        .withSnapshotOutcomeHandler(outcomeProbe.ref ! _)
+      val snapshotValues = Set("value-3", "value-4", "value-7")
+
+      val seenProbe = createTestProbe[Any]()
+      val replyProbe = createTestProbe[String]()
+      val actor = spawnJavaEffector(config)(snapshotHandler(seenProbe.ref, snapshotValues.contains))
+      val commands = (1 to 7).map(n => Append(s"value-$n", replyProbe.ref))
+      commands.foreach(actor ! _)
+      replyProbe.receiveMessages(7, 10.seconds)
+
+      // Events up to the oldest kept snapshot (4) are deleted
+      deletedProbe.expectMessage(10.seconds, 4L)
+      // Snapshots and events are deleted concurrently, so their outcomes may arrive in any order
+      outcomeProbe.receiveMessages(5, 10.seconds) should contain theSameElementsAs Seq(
+        SnapshotOutcome.Saved(3L),
+        SnapshotOutcome.Saved(4L),
+        SnapshotOutcome.Saved(7L),
+        SnapshotOutcome.Deleted(3L),
+        SnapshotOutcome.EventsDeleted(4L),
+      )
+      seenProbe.receiveMessages(7) shouldBe commands
+      seenProbe.expectNoMessage(300.millis)
+      testKit.stop(actor)
+
+      eventually {
+        readJournal(config.persistenceId.toScala) shouldBe (5 to 7).map(n => TestEvent.TestEventA(s"value-$n"))
+      }
+    }
+
+    Seq("persistEvent", "persistEvents", "persistEventWithSnapshot", "persistEventsWithSnapshot", "persistSnapshot")
+      .foreach { method =>
+        s"complete a failed $method with its onFailure callback and keep running" in {
+          val config = PersistenceEffectorConfig.create[Vector[Any], Any, Append](
+            PersistenceId.ofUniqueId(s"test-java-$method-failed-${java.util.UUID.randomUUID()}"),
+            Vector.empty,
+            (state, event) => state :+ event,
+          )
+
+          val replyProbe = createTestProbe[String]()
+          val actor = spawn(PersistenceEffector.fromConfig[Vector[Any], Any, Append](config, ledgerHandler(_, _)))
+          actor ! Append(s"$method:bad", replyProbe.ref)
+          replyProbe.expectMessage(10.seconds, s"failed: $method:bad")
+          actor ! Append(s"$method:good", replyProbe.ref)
+          replyProbe.expectMessage(10.seconds, s"persisted: $method:good")
+          testKit.stop(actor)
+
+          readJournal(config.persistenceId.toScala).exists(_.isInstanceOf[UnserializableEvent]) shouldBe false
+        }
+      }
+  }
+}
@@ -1,8 +1,11 @@
 package com.github.j5ik2o.pekko.persistence.effector.javadsl
 
+import com.github.j5ik2o.pekko.persistence.effector.scaladsl
 import org.scalatest.freespec.AnyFreeSpec
 import org.scalatest.matchers.should.Matchers
 
+import scala.concurrent.duration.*
+
 object SnapshotCriteriaSpec {
   class TestState
   class TestEvent
@@ -92,6 +95,32 @@ final class SnapshotCriteriaSpec extends AnyFreeSpec with Matchers {
       }
     }
 
+    "when using time- and size-based strategies" - {
+      "should convert to the Scala criteria and back" in {
+        val timeBased = SnapshotCriteria.timeBased[TestState, TestEvent](java.time.Duration.ofSeconds(30))
+        val sizeBased = SnapshotCriteria.sizeBased[TestState, TestEvent](1024L)
+
+        timeBased.toScala shouldBe scaladsl.SnapshotCriteria.TimeBased[TestState, TestEvent](30.seconds)
+        sizeBased.toScala shouldBe scaladsl.SnapshotCriteria.SizeBased[TestState, TestEvent](1024L)
+        SnapshotCriteria.fromScala(sizeBased.toScala) shouldBe sizeBased
+        assertSnapshotShouldNotBeTaken(timeBased, new TestEvent, 1L)
+      }
+
+      "should pass the size estimate to the Scala criteria" in {
+        val sizeBased = SnapshotCriteria.sizeBased[TestState, TestEvent](100L, _ => 60L)
+        val criteria = sizeBased.toScala.instantiate()
+
+        criteria.eventsPersisted(Seq(new TestEvent, new TestEvent), _ => fail("events must not be serialized"))
+        criteria.shouldTakeSnapshot(new TestEvent, new TestState, 2L) shouldBe true
+      }
+
+      "should reject non-positive limits" in {
+        an[IllegalArgumentException] should be thrownBy SnapshotCriteria.timeBased[TestState, TestEvent](
+          java.time.Duration.ZERO)
+        an[IllegalArgumentException] should be thrownBy SnapshotCriteria.sizeBased[TestState, TestEvent](0L)
+      }
+    }
+
     "when converting between Scala and Java implementations" - {
       "should maintain the same behavior" in {
         val javaCriteria = SnapshotCriteria.every[TestState, TestEvent](2)
@@ -0,0 +1,58 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+/**
+ * Unit test for Histogram
+ */
+class HistogramSpec extends AnyWordSpec with Matchers {
+
+  "Histogram" should {
+    "return zero for an empty histogram" in {
+      val histogram = new Histogram
+      histogram.count shouldBe 0L
+      histogram.max shouldBe 0L
+      histogram.mean shouldBe 0.0
+      histogram.valueAtPercentile(99.0) shouldBe 0L
+    }
+
+    "count small values exactly" in {
+      val histogram = new Histogram
+      (1L to 100L).foreach(histogram.record)
+
+      histogram.count shouldBe 100L
+      histogram.max shouldBe 100L
+      histogram.mean shouldBe 50.5
+      histogram.valueAtPercentile(50.0) shouldBe 50L
+      histogram.valueAtPercentile(99.0) shouldBe 99L
+      histogram.valueAtPercentile(100.0) shouldBe 100L
+    }
+
+    "keep the relative error of large values within the bucket precision" in {
+      val histogram = new Histogram
+      (1L to 10000L).foreach(n => histogram.record(n * 1000L))
+
+      Seq(50.0 -> 5000000L, 90.0 -> 9000000L, 99.0 -> 9900000L).foreach { case (percentile, exact) =>
+        val value = histogram.valueAtPercentile(percentile)
+        value should be >= exact
+        (value - exact).toDouble / exact should be < 0.016
+      }
+      histogram.valueAtPercentile(100.0) shouldBe 10000000L
+    }
+
+    "record negative values as zero and be cleared by reset" in {
+      val histogram = new Histogram
+      histogram.record(-5L)
+      histogram.valueAtPercentile(100.0) shouldBe 0L
+
+      histogram.record(Long.MaxValue)
+      histogram.max shouldBe Long.MaxValue
+      histogram.valueAtPercentile(100.0) shouldBe Long.MaxValue
+
+      histogram.reset()
+      histogram.count shouldBe 0L
+      histogram.max shouldBe 0L
+    }
+  }
+}
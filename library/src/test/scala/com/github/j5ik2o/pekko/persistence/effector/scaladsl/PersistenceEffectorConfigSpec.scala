@@ -0,0 +1,95 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+import com.github.j5ik2o.pekko.persistence.effector.{TestEvent, TestMessage, TestState}
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import scala.concurrent.duration.*
+
+/**
+ * Unit test for the validation of PersistenceEffectorConfig
+ */
+class PersistenceEffectorConfigSpec extends AnyWordSpec with Matchers {
+
+  private def config(mode: PersistenceMode = PersistenceMode.Persisted) =
+    PersistenceEffectorConfig.create[TestState, TestEvent, TestMessage](
+      persistenceId = PersistenceId.ofUniqueId("test-config"),
+      initialState = TestState(),
+      applyEvent = (state, event) => state.applyEvent(event),
+      persistenceMode = mode,
+    )
+
+  "PersistenceEffectorConfig" should {
+    "reject a persist timeout together with pipelining" in {
+      val withTimeout = config().withPersistTimeout(5.seconds)
+      an[IllegalArgumentException] should be thrownBy withTimeout.withMaxInFlightPersists(2)
+      an[IllegalArgumentException] should be thrownBy withTimeout.withBatchingConfig(BatchingConfig(10, 10.millis))
+      an[IllegalArgumentException] should be thrownBy config().withMaxInFlightPersists(2).withPersistTimeout(5.seconds)
+    }
+
+    "accept a persist timeout without pipelining" in {
+      config().withPersistTimeout(5.seconds).persistTimeout shouldBe Some(5.seconds)
+      config(PersistenceMode.Direct).withPersistTimeout(5.seconds).persistTimeout shouldBe Some(5.seconds)
+    }
+
+    "reject options of Persisted and Direct mode in Ephemeral and Deferred mode" in {
+      for (mode <- Seq(PersistenceMode.Ephemeral, PersistenceMode.Deferred)) {
+        val options: Seq[PersistenceEffectorConfig[TestState, TestEvent, TestMessage] => Any] = Seq(
+          _.withMaxInFlightPersists(2),
+          _.withBatchingConfig(BatchingConfig(10, 10.millis)),
+          _.withAsyncSnapshots(true),
+          _.withReadOnlyCommandHandler(ReadOnlyCommandHandler[TestState, TestMessage]((_, _) => true)((_, _) => ())),
+          _.withDeltaSnapshotConfig(
+            DeltaSnapshotConfig[TestState, TestState](10)((_, current) => current)((_, delta) => delta)),
+          _.withPersistTimeout(5.seconds),
+          _.withRecoveryConfig(RecoveryConfig(chunkSize = 10)),
+          _.withSnapshotCodec(SnapshotCodec.Deflate),
+          _.withPackedBatches(SnapshotCodec.Deflate),
+          _.withStateCaching(true),
+        )
+        options.foreach { option =>
+          an[IllegalArgumentException] should be thrownBy option(config(mode))
+        }
+        // Setting the mode after the option is rejected as well
+        an[IllegalArgumentException] should be thrownBy config().withAsyncSnapshots(true).withPersistenceMode(mode)
+      }
+    }
+
+    "accept the options shared by all modes in Ephemeral mode" in {
+      val ephemeral = config(PersistenceMode.Ephemeral)
+        .withRetentionCriteria(RetentionCriteria.snapshotEvery(10, 2))
+        .withSnapshotCriteria(SnapshotCriteria.every(10))
+        .withPassivation(PassivationConfig(1.minute))
+        .withStashOverflowStrategy(StashOverflowStrategy.DropNewest)
+      ephemeral.persistenceMode shouldBe PersistenceMode.Ephemeral
+    }
+
+    "reject shared write batching outside Direct mode" in {
+      val batching = BatchingConfig(10, 10.millis)
+      config(PersistenceMode.Direct).withSharedWriteBatching(batching).sharedWriteBatching shouldBe Some(batching)
+      an[IllegalArgumentException] should be thrownBy config().withSharedWriteBatching(batching)
+      an[IllegalArgumentException] should be thrownBy
+        config(PersistenceMode.Direct).withSharedWriteBatching(batching).withPersistenceMode(PersistenceMode.Persisted)
+    }
+
+    "reject packed batches where sequence numbers are expected to count events" in {
+      val packed = config().withPackedBatches(SnapshotCodec.Deflate)
+      an[IllegalArgumentException] should be thrownBy
+        packed.withRetentionCriteria(RetentionCriteria.snapshotEvery(10, 2))
+      an[IllegalArgumentException] should be thrownBy packed.withSnapshotCriteria(SnapshotCriteria.every(10))
+      an[IllegalArgumentException] should be thrownBy packed.withSnapshotCriteria(
+        SnapshotCriteria.Combined(Seq(SnapshotCriteria.timeBased(1.minute), SnapshotCriteria.adaptive(1.second))))
+      an[IllegalArgumentException] should be thrownBy packed.withBatchingConfig(BatchingConfig(10, 10.millis))
+      an[IllegalArgumentException] should be thrownBy packed.withPersistenceMode(PersistenceMode.Direct)
+      an[IllegalArgumentException] should be thrownBy
+        config().withSnapshotCriteria(SnapshotCriteria.every(10)).withPackedBatches(SnapshotCodec.Deflate)
+    }
+
+    "accept packed batches with snapshot criteria that do not count events" in {
+      val criteria = SnapshotCriteria.Combined[TestState, TestEvent](
+        Seq(SnapshotCriteria.timeBased(1.minute), SnapshotCriteria.sizeBased(1024L)))
+      val packed = config().withPackedBatches(SnapshotCodec.Deflate).withSnapshotCriteria(criteria)
+      packed.snapshotCriteria shouldBe Some(criteria)
+    }
+  }
+}
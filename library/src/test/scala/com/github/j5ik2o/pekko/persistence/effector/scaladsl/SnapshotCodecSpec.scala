@@ -0,0 +1,38 @@
+package com.github.j5ik2o.pekko.persistence.effector.scaladsl
+
+import org.scalatest.matchers.should.Matchers
+import org.scalatest.wordspec.AnyWordSpec
+
+import java.nio.charset.StandardCharsets
+
+/**
+ * Unit test for SnapshotCodec
+ */
+class SnapshotCodecSpec extends AnyWordSpec with Matchers {
+
+  "SnapshotCodec.deflate" should {
+    "restore the encoded bytes" in {
+      val random = new scala.util.Random(42)
+      Seq(Array.emptyByteArray, Array.fill(100000)(random.nextInt().toByte)).foreach { bytes =>
+        Seq(SnapshotCodec.Deflate, SnapshotCodec.deflate(9)).foreach { codec =>
+          codec.decode(codec.encode(bytes)) shouldBe bytes
+        }
+      }
+    }
+
+    "compress repetitive snapshots" in {
+      val bytes = ("value," * 10000).getBytes(StandardCharsets.UTF_8)
+      SnapshotCodec.Deflate.encode(bytes).length should be < bytes.length / 10
+    }
+
+    "reject truncated input" in {
+      val encoded = SnapshotCodec.Deflate.encode(("value," * 1000).getBytes(StandardCharsets.UTF_8))
+      an[IllegalArgumentException] should be thrownBy SnapshotCodec.Deflate.decode(encoded.take(encoded.length / 2))
+    }
+
+    "be selected by its identifier when no codec is configured" in {
+      SnapshotCodec.forId(SnapshotCodec.DeflateId, None) shouldBe Some(SnapshotCodec.Deflate)
+      SnapshotCodec.forId("unknown", Some(SnapshotCodec.Deflate)) shouldBe None
+    }
+  }
+}
@@ -4,6 +4,7 @@ import com.github.j5ik2o.pekko.persistence.effector.{TestEvent, TestState}
 import org.scalatest.matchers.should.Matchers
 import org.scalatest.wordspec.AnyWordSpec
 
+import scala.concurrent.duration.*
 import scala.language.adhocExtensions
 
 /**
@@ -95,5 +96,101 @@ class SnapshotCriteriaUnitSpec extends AnyWordSpec with Matchers {
         .shouldTakeSnapshot(TestEvent.TestEventB(42), TestState(), 4)
         .shouldBe(true) // Both match
     }
+
+    "take time-based snapshots once the interval has elapsed since the last save started" in {
+      val criteria = SnapshotCriteria.timeBased[TestState, TestEvent](50.millis).instantiate()
+      val event = TestEvent.TestEventA("test")
+
+      criteria.shouldTakeSnapshot(event, TestState(), 1) shouldBe false
+      Thread.sleep(60)
+      criteria.shouldTakeSnapshot(event, TestState(), 2) shouldBe true
+
+      criteria.snapshotStarted(2)
+      criteria.shouldTakeSnapshot(event, TestState(), 3) shouldBe false
+      criteria.snapshotSaved(2, 0L)
+      criteria.shouldTakeSnapshot(event, TestState(), 4) shouldBe false
+    }
+
+    "take size-based snapshots once the events since the last snapshot reach the size" in {
+      val criteria = SnapshotCriteria.sizeBased[TestState, TestEvent](100).instantiate()
+      val event = TestEvent.TestEventA("test")
+      val serializedSize = (_: TestEvent) => 40L
+
+      criteria.eventsPersisted(Seq(event, event), serializedSize)
+      criteria.shouldTakeSnapshot(event, TestState(), 2) shouldBe false
+      criteria.eventsPersisted(Seq(event), serializedSize)
+      criteria.shouldTakeSnapshot(event, TestState(), 3) shouldBe true
+
+      // Events written while the snapshot is saved count towards the next one
+      criteria.snapshotStarted(3)
+      criteria.eventsPersisted(Seq(event, event), serializedSize)
+      criteria.shouldTakeSnapshot(event, TestState(), 5) shouldBe false
+      criteria.snapshotSaved(3, 0L)
+      criteria.shouldTakeSnapshot(event, TestState(), 5) shouldBe false
+      criteria.eventsPersisted(Seq(event, event, event), serializedSize)
+      criteria.shouldTakeSnapshot(event, TestState(), 8) shouldBe true
+    }
+
+    "adapt the interval of adaptive criteria to the measured replay and snapshot costs" in {
+      val criteria = SnapshotCriteria
+        .Adaptive[TestState, TestEvent](targetRecoveryTime = 50.millis, initialEvery = 100, maxEvery = 1000)
+        .instantiate()
+      val event = TestEvent.TestEventA("test")
+
+      // Until the replay time is measured, the initial interval applies
+      criteria.shouldTakeSnapshot(event, TestState(), 99) shouldBe false
+      criteria.shouldTakeSnapshot(event, TestState(), 100) shouldBe true
+
+      // 100 events replayed after the snapshot at 900 in 100ms: 1ms per event, so 50 events fit in the target
+      criteria.recoveryCompleted(1000, 100, 100.millis.toNanos)
+      criteria.shouldTakeSnapshot(event, TestState(), 949) shouldBe false
+      criteria.shouldTakeSnapshot(event, TestState(), 950) shouldBe true
+
+      // No further snapshot is taken while one is being saved
+      criteria.snapshotStarted(950)
+      criteria.shouldTakeSnapshot(event, TestState(), 1000) shouldBe false
+
+      // Loading a snapshot that takes 10ms to save leaves 40ms for the replay
+      criteria.snapshotSaved(950, 10.millis.toNanos)
+      criteria.shouldTakeSnapshot(event, TestState(), 989) shouldBe false
+      criteria.shouldTakeSnapshot(event, TestState(), 990) shouldBe true
+    }
+
+    "keep measurements per instance and bound the adaptive interval" in {
+      val config = SnapshotCriteria.Adaptive[TestState, TestEvent](targetRecoveryTime = 1.second, maxEvery = 500)
+      val cheap = config.instantiate()
+      val other = config.instantiate()
+      val event = TestEvent.TestEventA("test")
+
+      // 1000 events replayed after the snapshot at 1000 in 1ms: the interval is capped at maxEvery
+      cheap.recoveryCompleted(2000, 1000, 1.millis.toNanos)
+      cheap.shouldTakeSnapshot(event, TestState(), 1499) shouldBe false
+      cheap.shouldTakeSnapshot(event, TestState(), 1500) shouldBe true
+
+      other.shouldTakeSnapshot(event, TestState(), 100) shouldBe true
+      config.shouldTakeSnapshot(event, TestState(), 100) shouldBe true
+    }
+
+    "keep the criteria themselves free of measurements" in {
+      val config = SnapshotCriteria.SizeBased[TestState, TestEvent](100)
+      val criteria = config.instantiate()
+      val event = TestEvent.TestEventA("test")
+
+      criteria.eventsPersisted(Seq(event), _ => 100L)
+      criteria.shouldTakeSnapshot(event, TestState(), 1) shouldBe true
+      config.shouldTakeSnapshot(event, TestState(), 1) shouldBe false
+      config shouldBe SnapshotCriteria.SizeBased[TestState, TestEvent](100)
+    }
+
+    "measure events with the estimate of size-based criteria instead of serializing them" in {
+      val criteria = SnapshotCriteria.sizeBased[TestState, TestEvent](100, _ => 50L).instantiate()
+      val event = TestEvent.TestEventA("test")
+      val serializedSize = (_: TestEvent) => fail("events must not be serialized")
+
+      criteria.eventsPersisted(Seq(event), serializedSize)
+      criteria.shouldTakeSnapshot(event, TestState(), 1) shouldBe false
+      criteria.eventsPersisted(Seq(event), serializedSize)
+      criteria.shouldTakeSnapshot(event, TestState(), 2) shouldBe true
+    }
   }
 }